@@ -0,0 +1,86 @@
+package hu.metainf.jiracsvuploader.benchmark;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Synthetic CSV data of the benchmarks, generated by a {@link CsvGenerator} from a fixed seed,
+ * so runs compare.
+ *
+ */
+final class BenchmarkData {
+    /** Number of records generated. */
+    static final int RECORD_NR = 1000;
+    /** Seed of the generator. */
+    private static final long SEED = 20180813L;
+    /** Share of the descriptions containing quotes and commas. */
+    private static final double QUOTED_SHARE = 0.5;
+    /** Exponent of the Zipf distributions of the column values. */
+    private static final double VALUE_SKEW = 1.0;
+
+    /** Ctor. */
+    private BenchmarkData() {}
+
+    /**
+     * Creates the generator of the data.
+     *
+     * @param columnNr
+     *            number of columns, at least 9
+     * @param descriptionLineNr
+     *            maximal number of lines of the descriptions, 1 for single-line descriptions
+     * @return Generator created
+     */
+    private static CsvGenerator createGenerator(final int columnNr, final int descriptionLineNr) {
+        return new CsvGenerator(SEED, columnNr, descriptionLineNr > 1 ? 1.0 : 0.0,
+                descriptionLineNr, QUOTED_SHARE, VALUE_SKEW);
+    }
+
+    /**
+     * Creates the header row.
+     *
+     * @param columnNr
+     *            number of columns, at least 9
+     * @return Field values of the header row
+     */
+    static String[] createHeaderRow(final int columnNr) {
+        return createGenerator(columnNr, 1).createHeaderRow();
+    }
+
+    /**
+     * Creates the data records.
+     *
+     * @param columnNr
+     *            number of columns, at least 9
+     * @param descriptionLineNr
+     *            maximal number of lines of the descriptions
+     * @return Field values of the records
+     */
+    static String[][] createRecords(final int columnNr, final int descriptionLineNr) {
+        final CsvGenerator generator = createGenerator(columnNr, descriptionLineNr);
+        final String[][] records = new String[RECORD_NR][];
+        for (int i = 0; i < RECORD_NR; i++) {
+            records[i] = generator.nextRecord();
+        }
+        return records;
+    }
+
+    /**
+     * Creates the CSV text of a header row and data records.
+     *
+     * @param columnNr
+     *            number of columns, at least 9
+     * @param descriptionLineNr
+     *            maximal number of lines of the descriptions
+     * @return CSV text
+     */
+    static String createCsv(final int columnNr, final int descriptionLineNr) {
+        final StringWriter csv = new StringWriter();
+        try {
+            createGenerator(columnNr, descriptionLineNr).write(csv, RECORD_NR);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return csv.toString();
+    }
+}
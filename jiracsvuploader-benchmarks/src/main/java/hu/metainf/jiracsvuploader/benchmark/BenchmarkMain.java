@@ -0,0 +1,34 @@
+package hu.metainf.jiracsvuploader.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Main class of the benchmarks, running JMH with JSON results written to
+ * <code>jmh-result.json</code> unless another result format is given, so the results of runs
+ * can be compared.
+ *
+ */
+public final class BenchmarkMain {
+    /** Ctor. */
+    private BenchmarkMain() {}
+
+    /**
+     * Benchmarks main method.
+     *
+     * @param args
+     *            JMH command line arguments
+     * @throws Exception
+     *             If running the benchmarks fails
+     */
+    public static void main(final String[] args) throws Exception {
+        final List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.addAll(0, Arrays.asList("-rf", "json"));
+        }
+        Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,409 @@
+package hu.metainf.jiracsvuploader.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generator of synthetic CSV files shaped like a Jira export, of any number of rows. The columns
+ * are those of a Jira export followed by custom fields. A configurable share of the descriptions
+ * spans multiple lines, and another share contains quotes and commas, so it has to be quoted.
+ * Statuses, users and custom field values are drawn from Zipf distributions: with a skew of 0
+ * all values are equally frequent, with higher skews a few values dominate. The output only
+ * depends on the settings and the seed.
+ *
+ */
+public class CsvGenerator {
+    /** Headers of the columns before the custom fields. */
+    private static final String[] FIXED_HEADERS = {"Issue key", "Issue id", "Status", "Created",
+        "Updated", "Assignee", "Creator", "Description", "Summary"};
+    /** Statuses of the issues, most frequent first. */
+    private static final String[] STATUSES =
+        {"Backlog", "Open", "In Progress", "To Do", "In Review", "Done", "Closed"};
+    /** Words of the text fields. */
+    private static final String[] WORDS = {"bug", "report", "customer", "login", "page", "fails",
+        "with", "error", "when", "saving", "invoice", "export", "slow", "search", "results",
+        "after", "upgrade", "mobile", "app", "crashes", "on", "startup", "timeout", "server"};
+    /** Users assigned to or creating issues, the least frequent one standing for none. */
+    private static final String[] USERS = createValues("user", 49, "");
+    /** Distinct values of the custom fields. */
+    private static final String[] CUSTOM_VALUES = createValues("value", 200, null);
+    /** Number of words of a summary. */
+    private static final int SUMMARY_WORD_NR = 6;
+    /** Number of words of a description line. */
+    private static final int LINE_WORD_NR = 12;
+    /** Number of days the creation dates are spread over. */
+    private static final int CREATED_DAY_NR = 365;
+    /** Number of minutes in a day. */
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    /** Formatted days the issues are created on, in the format of a Jira export. */
+    private static final String[] DAYS = new String[CREATED_DAY_NR + 1];
+    /** Formatted minutes of a day, in the format of a Jira export. */
+    private static final String[] MINUTES = new String[MINUTES_PER_DAY];
+    /** Default number of columns. */
+    private static final String DEFAULT_COLUMN_NR = "20";
+    /** Default share of the multi-line descriptions. */
+    private static final String DEFAULT_MULTILINE_SHARE = "0.2";
+    /** Default maximal number of lines of a multi-line description. */
+    private static final String DEFAULT_MAX_DESCRIPTION_LINE_NR = "10";
+    /** Default share of the quoted descriptions. */
+    private static final String DEFAULT_QUOTED_SHARE = "0.3";
+    /** Default exponent of the Zipf distributions. */
+    private static final String DEFAULT_VALUE_SKEW = "1.0";
+    /** Default seed. */
+    private static final String DEFAULT_SEED = "42";
+
+    static {
+        final LocalDate firstDay = LocalDate.of(2018, 1, 1);
+        final DateTimeFormatter dayFormat =
+                DateTimeFormatter.ofPattern("dd/MMM/yy", Locale.ENGLISH);
+        for (int i = 0; i < DAYS.length; i++) {
+            DAYS[i] = dayFormat.format(firstDay.plusDays(i)) + " ";
+        }
+        final DateTimeFormatter minuteFormat =
+                DateTimeFormatter.ofPattern("h:mm a", Locale.ENGLISH);
+        for (int i = 0; i < MINUTES.length; i++) {
+            MINUTES[i] = minuteFormat.format(LocalTime.MIDNIGHT.plusMinutes(i));
+        }
+    }
+
+    /** Number of columns. */
+    private final int columnNr;
+    /** Share of the descriptions spanning multiple lines. */
+    private final double multilineShare;
+    /** Maximal number of lines of a multi-line description. */
+    private final int maxDescriptionLineNr;
+    /** Share of the descriptions containing quotes and commas. */
+    private final double quotedShare;
+    /** Cumulative probabilities of the statuses. */
+    private final double[] statusDistribution;
+    /** Cumulative probabilities of the users. */
+    private final double[] userDistribution;
+    /** Cumulative probabilities of the custom field values. */
+    private final double[] customValueDistribution;
+    /** Random generator. */
+    private final Random random;
+    /** Number of records generated. */
+    private long recordNr;
+
+    /**
+     * Ctor.
+     *
+     * @param seed
+     *            seed of the random generator
+     * @param columnNr
+     *            number of columns, at least 9; the columns after the ninth are custom fields
+     * @param multilineShare
+     *            share of the descriptions spanning multiple lines, between 0 and 1
+     * @param maxDescriptionLineNr
+     *            maximal number of lines of a multi-line description, at least 2
+     * @param quotedShare
+     *            share of the descriptions containing quotes and commas, between 0 and 1
+     * @param valueSkew
+     *            exponent of the Zipf distributions of the column values, 0 for uniform ones
+     */
+    public CsvGenerator(
+            final long seed,
+            final int columnNr,
+            final double multilineShare,
+            final int maxDescriptionLineNr,
+            final double quotedShare,
+            final double valueSkew) {
+        if (columnNr < FIXED_HEADERS.length) {
+            throw new IllegalArgumentException(
+                    "Number of columns has to be at least " + FIXED_HEADERS.length);
+        }
+        this.columnNr = columnNr;
+        this.multilineShare = multilineShare;
+        this.maxDescriptionLineNr = Math.max(2, maxDescriptionLineNr);
+        this.quotedShare = quotedShare;
+        statusDistribution = createZipfDistribution(STATUSES.length, valueSkew);
+        userDistribution = createZipfDistribution(USERS.length, valueSkew);
+        customValueDistribution = createZipfDistribution(CUSTOM_VALUES.length, valueSkew);
+        random = new Random(seed);
+    }
+
+    /**
+     * Creates the header row.
+     *
+     * @return Field values of the header row
+     */
+    public String[] createHeaderRow() {
+        final String[] headerRow = Arrays.copyOf(FIXED_HEADERS, columnNr);
+        for (int i = FIXED_HEADERS.length; i < columnNr; i++) {
+            headerRow[i] = "Custom field " + (i - FIXED_HEADERS.length + 1);
+        }
+        return headerRow;
+    }
+
+    /**
+     * Generates the next data record.
+     *
+     * @return Field values of the record
+     */
+    public String[] nextRecord() {
+        recordNr++;
+        final String[] fields = new String[columnNr];
+        fields[0] = "DEMO-" + recordNr;
+        fields[1] = String.valueOf(10000L + recordNr);
+        fields[2] = STATUSES[draw(statusDistribution)];
+        final int created = random.nextInt(CREATED_DAY_NR * MINUTES_PER_DAY);
+        final int updated = created + random.nextInt(MINUTES_PER_DAY);
+        fields[3] = formatMinute(created);
+        fields[4] = formatMinute(updated);
+        fields[5] = USERS[draw(userDistribution)];
+        fields[6] = USERS[draw(userDistribution)];
+        fields[7] = createDescription();
+        fields[8] = createText(SUMMARY_WORD_NR) + " #" + random.nextInt(1000);
+        for (int i = FIXED_HEADERS.length; i < columnNr; i++) {
+            fields[i] = CUSTOM_VALUES[draw(customValueDistribution)];
+        }
+        return fields;
+    }
+
+    /**
+     * Writes a CSV file of a header row and data records.
+     *
+     * @param writer
+     *            destination
+     * @param rowNr
+     *            number of data records
+     * @throws IOException
+     *             If writing fails
+     */
+    public void write(final Writer writer, final long rowNr) throws IOException {
+        final StringBuilder row = new StringBuilder();
+        appendCsvRow(row, createHeaderRow());
+        writer.append(row);
+        for (long i = 0; i < rowNr; i++) {
+            row.setLength(0);
+            appendCsvRow(row, nextRecord());
+            writer.append(row);
+        }
+    }
+
+    /**
+     * Appends a row to CSV text, quoting the fields that need it.
+     *
+     * @param csv
+     *            CSV text
+     * @param fields
+     *            field values of the row
+     */
+    static void appendCsvRow(final StringBuilder csv, final String[] fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            final String field = fields[i];
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0) {
+                csv.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                csv.append(field);
+            }
+        }
+        csv.append("\r\n");
+    }
+
+    /**
+     * Formats a time in the format of a Jira export.
+     *
+     * @param minute
+     *            number of minutes since the first day the issues are created on
+     * @return Formatted time
+     */
+    private static String formatMinute(final int minute) {
+        return DAYS[minute / MINUTES_PER_DAY].concat(MINUTES[minute % MINUTES_PER_DAY]);
+    }
+
+    /**
+     * Generates a description.
+     *
+     * @return description
+     */
+    private String createDescription() {
+        final int lineNr = random.nextDouble() < multilineShare
+                ? 2 + random.nextInt(maxDescriptionLineNr - 1) : 1;
+        final boolean quoted = random.nextDouble() < quotedShare;
+        final StringBuilder description = new StringBuilder();
+        for (int i = 0; i < lineNr; i++) {
+            if (i > 0) {
+                description.append('\n');
+            }
+            description.append(createText(LINE_WORD_NR));
+            if (quoted) {
+                description.append(", see \"").append(WORDS[random.nextInt(WORDS.length)])
+                        .append('"');
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Generates a text of random words.
+     *
+     * @param wordNr
+     *            number of words
+     * @return Text generated
+     */
+    private String createText(final int wordNr) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < wordNr; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Draws an index from a distribution.
+     *
+     * @param distribution
+     *            cumulative probabilities of the indexes
+     * @return Index drawn
+     */
+    private int draw(final double[] distribution) {
+        final int index = Arrays.binarySearch(distribution, random.nextDouble());
+        return Math.min(index >= 0 ? index + 1 : -index - 1, distribution.length - 1);
+    }
+
+    /**
+     * Creates numbered values.
+     *
+     * @param prefix
+     *            prefix of the values
+     * @param valueNr
+     *            number of numbered values
+     * @param lastValue
+     *            value appended after the numbered ones, or <code>null</code> if none
+     * @return Values created
+     */
+    private static String[] createValues(
+            final String prefix,
+            final int valueNr,
+            final String lastValue) {
+        final String[] values = new String[lastValue != null ? valueNr + 1 : valueNr];
+        for (int i = 0; i < valueNr; i++) {
+            values[i] = String.format("%s%02d", prefix, i + 1);
+        }
+        if (lastValue != null) {
+            values[valueNr] = lastValue;
+        }
+        return values;
+    }
+
+    /**
+     * Creates the cumulative probabilities of a Zipf distribution.
+     *
+     * @param valueNr
+     *            number of values
+     * @param skew
+     *            exponent of the distribution, 0 for a uniform one
+     * @return Cumulative probabilities of the values in order
+     */
+    private static double[] createZipfDistribution(final int valueNr, final double skew) {
+        final double[] distribution = new double[valueNr];
+        double sum = 0.0;
+        for (int i = 0; i < valueNr; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            distribution[i] = sum;
+        }
+        for (int i = 0; i < valueNr; i++) {
+            distribution[i] /= sum;
+        }
+        return distribution;
+    }
+
+    /**
+     * Creates a generator from parsed command line arguments.
+     *
+     * @param cmd
+     *            parsed command line arguments, see {@link #addOptions(Options)}
+     * @return The generator created
+     */
+    static CsvGenerator fromCommandLine(final CommandLine cmd) {
+        return new CsvGenerator(Long.parseLong(cmd.getOptionValue("seed", DEFAULT_SEED)),
+                Integer.parseInt(cmd.getOptionValue("columns", DEFAULT_COLUMN_NR)),
+                Double.parseDouble(cmd.getOptionValue("multilineShare", DEFAULT_MULTILINE_SHARE)),
+                Integer.parseInt(cmd.getOptionValue("maxLines", DEFAULT_MAX_DESCRIPTION_LINE_NR)),
+                Double.parseDouble(cmd.getOptionValue("quotedShare", DEFAULT_QUOTED_SHARE)),
+                Double.parseDouble(cmd.getOptionValue("skew", DEFAULT_VALUE_SKEW)));
+    }
+
+    /**
+     * Adds the command line options of the generator settings.
+     *
+     * @param options
+     *            options to add to
+     */
+    static void addOptions(final Options options) {
+        options.addOption(null, "columns", true,
+                "Number of columns, at least 9 (default: " + DEFAULT_COLUMN_NR + ")");
+        options.addOption(null, "multilineShare", true,
+                "Share of the descriptions spanning multiple lines (default: "
+                        + DEFAULT_MULTILINE_SHARE + ")");
+        options.addOption(null, "maxLines", true,
+                "Maximal number of lines of a multi-line description (default: "
+                        + DEFAULT_MAX_DESCRIPTION_LINE_NR + ")");
+        options.addOption(null, "quotedShare", true,
+                "Share of the descriptions containing quotes and commas (default: "
+                        + DEFAULT_QUOTED_SHARE + ")");
+        options.addOption(null, "skew", true,
+                "Zipf exponent of the distribution of statuses, users and custom field values,"
+                        + " 0 for uniform (default: " + DEFAULT_VALUE_SKEW + ")");
+        options.addOption(null, "seed", true,
+                "Seed of the random generator (default: " + DEFAULT_SEED + ")");
+    }
+
+    /**
+     * Generator main method.
+     *
+     * @param args
+     *            command line arguments array
+     * @throws IOException
+     *             If writing the CSV file fails
+     */
+    public static void main(final String[] args) throws IOException {
+        final Logger logger = LoggerFactory.getLogger(CsvGenerator.class);
+        final Options options = new Options();
+        options.addRequiredOption("o", "output", true, "Path of the CSV file to be written");
+        options.addRequiredOption("n", "rows", true, "Number of data rows");
+        addOptions(options);
+        final CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (final ParseException e) {
+            logger.error("Failed to parse command line arguments: {}", e.getMessage());
+            new HelpFormatter().printHelp(CsvGenerator.class.getName(), options);
+            System.exit(1);
+            return;
+        }
+        final long rowNr = Long.parseLong(cmd.getOptionValue("n"));
+        final long startTime = System.nanoTime();
+        final Path outputPath = Paths.get(cmd.getOptionValue("o"));
+        try (Writer writer = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)) {
+            fromCommandLine(cmd).write(writer, rowNr);
+        }
+        logger.info("Generated {} row(s) to {} in {} ms", rowNr, cmd.getOptionValue("o"),
+                (System.nanoTime() - startTime) / 1_000_000L);
+    }
+}
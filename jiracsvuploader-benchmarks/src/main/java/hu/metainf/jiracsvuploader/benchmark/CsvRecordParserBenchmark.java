@@ -0,0 +1,71 @@
+package hu.metainf.jiracsvuploader.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.metainf.jiracsvuploader.process.CsvRecordParser;
+
+/**
+ * Benchmark of assembling records from CSV text, as done by the reader for every record of the
+ * file. Multi-line descriptions make the parser carry quoted fields over line breaks.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvRecordParserBenchmark {
+    /** Number of columns of the records. */
+    @Param({"10", "50"})
+    int columnNr;
+    /** Maximal number of lines of the descriptions. */
+    @Param({"1", "10"})
+    int descriptionLineNr;
+    /** CSV text parsed. */
+    private String csv;
+
+    /**
+     * Creates the CSV text.
+     */
+    @Setup
+    public void setUp() {
+        csv = BenchmarkData.createCsv(columnNr, descriptionLineNr);
+    }
+
+    /**
+     * Parses all records of the CSV text.
+     *
+     * @param blackhole
+     *            consumer of the records
+     * @throws IOException
+     *             If parsing fails
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.RECORD_NR)
+    public void parseRecords(final Blackhole blackhole) throws IOException {
+        try (CsvRecordParser parser = new CsvRecordParser(new StringReader(csv))) {
+            String[] fields = parser.nextRecord();
+            while (fields != null) {
+                blackhole.consume(fields);
+                fields = parser.nextRecord();
+            }
+        }
+    }
+}
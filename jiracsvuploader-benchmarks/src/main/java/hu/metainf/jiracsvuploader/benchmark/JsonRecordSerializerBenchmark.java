@@ -0,0 +1,66 @@
+package hu.metainf.jiracsvuploader.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hu.metainf.jiracsvuploader.process.JsonRecordSerializer;
+
+/**
+ * Benchmark of transforming records to the JSON payloads uploaded. Descriptions contain quotes
+ * and line breaks to be escaped.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonRecordSerializerBenchmark {
+    /** Number of columns of the records. */
+    @Param({"10", "50"})
+    int columnNr;
+    /** Maximal number of lines of the descriptions. */
+    @Param({"1", "10"})
+    int descriptionLineNr;
+    /** Records serialized. */
+    private String[][] records;
+    /** Serializer compiled from the header row. */
+    private JsonRecordSerializer serializer;
+
+    /**
+     * Creates the records and the serializer.
+     */
+    @Setup
+    public void setUp() {
+        records = BenchmarkData.createRecords(columnNr, descriptionLineNr);
+        serializer = new JsonRecordSerializer(BenchmarkData.createHeaderRow(columnNr));
+    }
+
+    /**
+     * Serializes all records.
+     *
+     * @param blackhole
+     *            consumer of the payloads
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.RECORD_NR)
+    public void serializeRecords(final Blackhole blackhole) {
+        for (final String[] fields : records) {
+            blackhole.consume(serializer.serialize(fields));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package hu.metainf.jiracsvuploader.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hu.metainf.jiracsvuploader.util.CustomLinkedBlockingQueue;
+import hu.metainf.jiracsvuploader.util.QueueTimedTask;
+
+/**
+ * Benchmark of the task queue of the worker pool, timing the waiting of every task. The
+ * <code>offerTake</code> benchmark measures the uncontended cost of a round trip, the
+ * <code>handoff</code> group a reader thread offering tasks to worker threads polling them. The
+ * score of the <code>handoff</code> group includes the failed offers and polls, its
+ * <code>offered</code> and <code>polled</code> counters give the rate of the tasks actually
+ * transferred. Use the <code>-tg</code> JMH option for other reader and worker thread numbers.
+ *
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+    /** Capacity of the queue. */
+    @Param({"64", "1024"})
+    int capacity;
+    /** Queue benchmarked. */
+    private CustomLinkedBlockingQueue queue;
+    /** Task queued. */
+    private final QueueTimedTask task = new QueueTimedTask() {
+        @Override
+        public void run() {
+            // Never run
+        }
+    };
+
+    /**
+     * Creates an empty queue.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = new CustomLinkedBlockingQueue(capacity);
+    }
+
+    /**
+     * Offers a task, then takes it.
+     *
+     * @return Task taken
+     * @throws InterruptedException
+     *             If taking is interrupted
+     */
+    @Benchmark
+    @Group("offerTake")
+    @GroupThreads(1)
+    public Runnable offerTake() throws InterruptedException {
+        queue.offer(task);
+        return queue.take();
+    }
+
+    /**
+     * Offers a task, failing if the queue is full.
+     *
+     * @param transfers
+     *            counters of the tasks transferred by the thread
+     * @return <code>true</code> if the task was queued
+     */
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean offer(final Transfers transfers) {
+        final boolean offered = queue.offer(task);
+        if (offered) {
+            transfers.offered++;
+        }
+        return offered;
+    }
+
+    /**
+     * Polls a task, failing if the queue is empty.
+     *
+     * @param transfers
+     *            counters of the tasks transferred by the thread
+     * @return Task polled, or <code>null</code>
+     */
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(4)
+    public Runnable poll(final Transfers transfers) {
+        final Runnable polled = queue.poll();
+        if (polled != null) {
+            transfers.polled++;
+        }
+        return polled;
+    }
+
+    /**
+     * Counters of the tasks transferred by a thread of the <code>handoff</code> group, reported
+     * by JMH as rates next to the score.
+     *
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Transfers {
+        /** Number of tasks offered successfully. */
+        public long offered;
+        /** Number of tasks polled successfully. */
+        public long polled;
+
+        /**
+         * Resets the counters.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            offered = 0L;
+            polled = 0L;
+        }
+    }
+}
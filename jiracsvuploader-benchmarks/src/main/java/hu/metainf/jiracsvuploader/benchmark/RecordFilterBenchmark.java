@@ -0,0 +1,73 @@
+package hu.metainf.jiracsvuploader.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+
+/**
+ * Benchmark of matching records against a filter, covering the fast paths of regular
+ * expressions on any column, the general regular expression path and column predicates.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordFilterBenchmark {
+    /** Filter expression, see {@link RecordFilter#compile(String)}. */
+    @Param({"*=~.*invoice.*", "*=~.*(invoice|export|search).*", "*=~.*#[0-9]{3}",
+        "Status=~Open|In Progress", "Status=Open && Created>2018-06-01"})
+    String expression;
+    /** Number of columns of the records. */
+    @Param({"10", "50"})
+    int columnNr;
+    /** Maximal number of lines of the descriptions. */
+    @Param({"1", "10"})
+    int descriptionLineNr;
+    /** Records matched. */
+    private String[][] records;
+    /** Filter compiled. */
+    private RecordFilter recordFilter;
+
+    /**
+     * Creates the records and compiles the filter.
+     */
+    @Setup
+    public void setUp() {
+        records = BenchmarkData.createRecords(columnNr, descriptionLineNr);
+        recordFilter = RecordFilter.compile(expression);
+        recordFilter.bind(BenchmarkData.createHeaderRow(columnNr));
+    }
+
+    /**
+     * Matches all records.
+     *
+     * @return Number of records matching
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.RECORD_NR)
+    public int matchRecords() {
+        int matchNr = 0;
+        for (final String[] fields : records) {
+            if (recordFilter.test(fields)) {
+                matchNr++;
+            }
+        }
+        return matchNr;
+    }
+}
@@ -0,0 +1,122 @@
+package hu.metainf.jiracsvuploader.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hu.metainf.jiracsvuploader.stat.LatencyHistogram;
+import hu.metainf.jiracsvuploader.stat.StatData;
+
+/**
+ * Benchmark of stat updates contended by 1 to 64 threads, as done by the upload threads for
+ * every record: incrementing a counter, keeping a maximum and recording a latency.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatDataBenchmark {
+    /** Property updated. */
+    private static final String PROPERTY_ID = "benchmark.value";
+    /** Highest latency recorded in nanoseconds. */
+    private static final long MAX_LATENCY = 100_000_000L;
+    /** Histogram updated. */
+    private final LatencyHistogram histogram = StatData.getHistogram("benchmark.latency");
+
+    /** Increments a counter. */
+    @Benchmark
+    @Threads(1)
+    public void incrementThreads1() {
+        StatData.addIncrementedValue(PROPERTY_ID);
+    }
+
+    /** Increments a counter. */
+    @Benchmark
+    @Threads(4)
+    public void incrementThreads4() {
+        StatData.addIncrementedValue(PROPERTY_ID);
+    }
+
+    /** Increments a counter. */
+    @Benchmark
+    @Threads(16)
+    public void incrementThreads16() {
+        StatData.addIncrementedValue(PROPERTY_ID);
+    }
+
+    /** Increments a counter. */
+    @Benchmark
+    @Threads(64)
+    public void incrementThreads64() {
+        StatData.addIncrementedValue(PROPERTY_ID);
+    }
+
+    /** Keeps a maximum. */
+    @Benchmark
+    @Threads(1)
+    public void maxThreads1() {
+        StatData.setMaxValue(PROPERTY_ID, ThreadLocalRandom.current().nextLong(MAX_LATENCY));
+    }
+
+    /** Keeps a maximum. */
+    @Benchmark
+    @Threads(4)
+    public void maxThreads4() {
+        StatData.setMaxValue(PROPERTY_ID, ThreadLocalRandom.current().nextLong(MAX_LATENCY));
+    }
+
+    /** Keeps a maximum. */
+    @Benchmark
+    @Threads(16)
+    public void maxThreads16() {
+        StatData.setMaxValue(PROPERTY_ID, ThreadLocalRandom.current().nextLong(MAX_LATENCY));
+    }
+
+    /** Keeps a maximum. */
+    @Benchmark
+    @Threads(64)
+    public void maxThreads64() {
+        StatData.setMaxValue(PROPERTY_ID, ThreadLocalRandom.current().nextLong(MAX_LATENCY));
+    }
+
+    /** Records a latency. */
+    @Benchmark
+    @Threads(1)
+    public void histogramThreads1() {
+        histogram.record(ThreadLocalRandom.current().nextLong(MAX_LATENCY));
+    }
+
+    /** Records a latency. */
+    @Benchmark
+    @Threads(4)
+    public void histogramThreads4() {
+        histogram.record(ThreadLocalRandom.current().nextLong(MAX_LATENCY));
+    }
+
+    /** Records a latency. */
+    @Benchmark
+    @Threads(16)
+    public void histogramThreads16() {
+        histogram.record(ThreadLocalRandom.current().nextLong(MAX_LATENCY));
+    }
+
+    /** Records a latency. */
+    @Benchmark
+    @Threads(64)
+    public void histogramThreads64() {
+        histogram.record(ThreadLocalRandom.current().nextLong(MAX_LATENCY));
+    }
+}
@@ -0,0 +1,223 @@
+package hu.metainf.jiracsvuploader.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.AppMain;
+import hu.metainf.jiracsvuploader.stat.LatencyHistogram;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * End-to-end throughput harness: generates a synthetic CSV file with a {@link CsvGenerator}, or
+ * takes an existing one, runs the uploader on it in the same JVM and reports the rows uploaded
+ * per second, the upload latency percentiles, the peak heap usage and the garbage collection
+ * time of the run. The arguments after <code>--</code> are passed to the uploader, so the mock
+ * uploader can be configured with <code>--mockLatency</code>, <code>--mockErrors</code> and
+ * <code>--mockThrottle</code>, like:
+ *
+ * <pre>
+ * ThroughputHarness -n 10000000 --multilineShare 0.3 -- -t 64 --pipeline
+ *     --mockLatency lognormal:40,1.0 --mockErrors 403:0.01,500:0.001 --mockThrottle 30000:2000
+ * </pre>
+ *
+ */
+public final class ThroughputHarness {
+    /** {@link Logger} instance. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThroughputHarness.class);
+    /** Interval of the heap usage sampling in milliseconds. */
+    private static final long HEAP_SAMPLE_INTERVAL = 50L;
+    /** Default number of data rows generated. */
+    private static final String DEFAULT_ROW_NR = "100000";
+    /** Latency percentiles reported. */
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    /** Number of bytes in a megabyte. */
+    private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+    /** Number of nanoseconds in a millisecond. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /** Ctor. */
+    private ThroughputHarness() {}
+
+    /**
+     * Harness main method.
+     *
+     * @param args
+     *            harness arguments, then <code>--</code> and the arguments of the uploader
+     * @throws IOException
+     *             If generating the CSV file fails
+     * @throws InterruptedException
+     *             If waiting for the heap sampler is interrupted
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final int separator = Arrays.asList(args).indexOf("--");
+        final String[] harnessArgs = separator < 0 ? args : Arrays.copyOf(args, separator);
+        final List<String> uploaderArgs = new ArrayList<>(separator < 0 ? List.of()
+                : Arrays.asList(args).subList(separator + 1, args.length));
+        final CommandLine cmd = parseCmdArgs(harnessArgs);
+
+        final Path csvPath;
+        if (cmd.hasOption("csv")) {
+            csvPath = Paths.get(cmd.getOptionValue("csv"));
+        } else {
+            csvPath = Files.createTempFile("jiracsvuploader-harness", ".csv");
+            if (!cmd.hasOption("keep")) {
+                csvPath.toFile().deleteOnExit();
+            }
+            generate(cmd, csvPath);
+        }
+        uploaderArgs.add("-f");
+        uploaderArgs.add(csvPath.toString());
+        if (!uploaderArgs.contains("-t")) {
+            uploaderArgs.add("-t");
+            uploaderArgs.add(String.valueOf(Runtime.getRuntime().availableProcessors()));
+        }
+
+        final AtomicLong peakHeap = new AtomicLong();
+        final Thread heapSampler = startHeapSampler(peakHeap);
+        final long gcTimeBefore = getGcTime();
+        final long gcCountBefore = getGcCount();
+        final long startTime = System.nanoTime();
+        AppMain.main(uploaderArgs.toArray(new String[0]));
+        final long elapsedNanos = System.nanoTime() - startTime;
+        heapSampler.interrupt();
+        heapSampler.join();
+
+        final long uploadedNr = StatData.getValue(StatTypeKeys.UPLOADED_ROW_NR);
+        final LatencyHistogram latencies = StatData.getHistogram(StatTypeKeys.EXEC_TIME);
+        final StringBuilder percentiles = new StringBuilder();
+        for (final double percentile : PERCENTILES) {
+            percentiles.append(percentiles.length() > 0 ? ", " : "").append('p')
+                    .append(percentile % 1 == 0 ? String.valueOf((int) percentile)
+                            : String.valueOf(percentile))
+                    .append('=').append(String.format("%.3f",
+                            latencies.getValueAtPercentile(percentile) / NANOS_PER_MILLI));
+        }
+        LOGGER.info("Harness run took {} ms: {} row(s) processed, {} uploaded, {} failed",
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                StatData.getValue(StatTypeKeys.PROCESSED_ROW_NR), uploadedNr,
+                StatData.getValue(StatTypeKeys.FAILED_ROW_UPLOAD_NR));
+        LOGGER.info("Harness throughput in uploaded rows per second: {}",
+                String.format("%.1f", uploadedNr * 1e9 / elapsedNanos));
+        LOGGER.info("Harness upload latency percentiles in milliseconds: {}", percentiles);
+        LOGGER.info("Harness peak heap usage in megabytes: {}",
+                String.format("%.1f", peakHeap.get() / BYTES_PER_MEGABYTE));
+        LOGGER.info("Harness garbage collection: {} collection(s) taking {} ms",
+                getGcCount() - gcCountBefore, getGcTime() - gcTimeBefore);
+    }
+
+    /**
+     * Generates the CSV file.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @param csvPath
+     *            path of the CSV file
+     * @throws IOException
+     *             If writing the CSV file fails
+     */
+    private static void generate(final CommandLine cmd, final Path csvPath) throws IOException {
+        final long rowNr = Long.parseLong(cmd.getOptionValue("n", DEFAULT_ROW_NR));
+        final long startTime = System.nanoTime();
+        try (Writer writer = Files.newBufferedWriter(csvPath, StandardCharsets.UTF_8)) {
+            CsvGenerator.fromCommandLine(cmd).write(writer, rowNr);
+        }
+        LOGGER.info("Generated {} row(s), {} bytes to {} in {} ms", rowNr, Files.size(csvPath),
+                csvPath, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Starts a daemon thread sampling the heap usage, keeping the highest one.
+     *
+     * @param peakHeap
+     *            highest heap usage in bytes
+     * @return The thread started, stopped by interrupting it
+     */
+    private static Thread startHeapSampler(final AtomicLong peakHeap) {
+        final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        final Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakHeap.accumulateAndGet(memoryBean.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(HEAP_SAMPLE_INTERVAL);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+        }, "harness-heap-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+        return sampler;
+    }
+
+    /**
+     * Returns the total time spent in garbage collection.
+     *
+     * @return time in milliseconds
+     */
+    private static long getGcTime() {
+        long time = 0L;
+        for (final GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0L, gcBean.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Returns the total number of garbage collections.
+     *
+     * @return number of collections
+     */
+    private static long getGcCount() {
+        long count = 0L;
+        for (final GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, gcBean.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Parses the harness arguments.
+     *
+     * @param args
+     *            harness arguments
+     * @return The parsed arguments
+     */
+    private static CommandLine parseCmdArgs(final String[] args) {
+        final Options options = new Options();
+        options.addOption("n", "rows", true,
+                "Number of data rows generated (default: " + DEFAULT_ROW_NR + ")");
+        options.addOption(null, "csv", true, "Existing CSV file to be uploaded instead");
+        options.addOption(null, "keep", false, "Keeps the generated CSV file");
+        CsvGenerator.addOptions(options);
+        try {
+            return new DefaultParser().parse(options, args);
+        } catch (final ParseException e) {
+            LOGGER.error("Failed to parse command line arguments: {}", e.getMessage());
+            new HelpFormatter().printHelp(ThroughputHarness.class.getName()
+                    + " [options] -- <uploader options>", options);
+            System.exit(1);
+            return null;
+        }
+    }
+}
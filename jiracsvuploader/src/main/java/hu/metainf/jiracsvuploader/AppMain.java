@@ -1,6 +1,19 @@
 package hu.metainf.jiracsvuploader;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -11,10 +24,38 @@ import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import hu.metainf.jiracsvuploader.audit.AuditFormat;
+import hu.metainf.jiracsvuploader.audit.AuditLog;
+import hu.metainf.jiracsvuploader.coordination.CooperativeImport;
+import hu.metainf.jiracsvuploader.coordination.DirectoryCoordinator;
+import hu.metainf.jiracsvuploader.dedupe.KeyIndex;
+import hu.metainf.jiracsvuploader.dedupe.KeyIndexLoader;
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+import hu.metainf.jiracsvuploader.journal.ProgressJournal;
+import hu.metainf.jiracsvuploader.journal.ResumeState;
+import hu.metainf.jiracsvuploader.limit.AdaptiveConcurrencyLimiter;
+import hu.metainf.jiracsvuploader.limit.ConcurrencyLimiter;
+import hu.metainf.jiracsvuploader.limit.ProjectRateLimiter;
+import hu.metainf.jiracsvuploader.mapping.FieldMapping;
+import hu.metainf.jiracsvuploader.metrics.LiveMetrics;
+import hu.metainf.jiracsvuploader.metrics.PrometheusEndpoint;
 import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.process.CsvRecordParser;
+import hu.metainf.jiracsvuploader.process.ExecutionMode;
+import hu.metainf.jiracsvuploader.process.InputFile;
 import hu.metainf.jiracsvuploader.process.JiraCsvReader;
+import hu.metainf.jiracsvuploader.process.PipelineSettings;
+import hu.metainf.jiracsvuploader.retry.CircuitBreaker;
+import hu.metainf.jiracsvuploader.retry.RejectsCsvWriter;
+import hu.metainf.jiracsvuploader.retry.RetryPolicy;
+import hu.metainf.jiracsvuploader.retry.RetryScheduler;
 import hu.metainf.jiracsvuploader.stat.StatData;
 import hu.metainf.jiracsvuploader.stat.StatPrinter;
+import hu.metainf.jiracsvuploader.upload.BatchingJiraUploader;
+import hu.metainf.jiracsvuploader.upload.HttpJiraUploader;
+import hu.metainf.jiracsvuploader.upload.JiraUploader;
+import hu.metainf.jiracsvuploader.upload.MockBehavior;
+import hu.metainf.jiracsvuploader.upload.MockJiraUploader;
 import hu.metainf.jiracsvuploader.util.StatTypeKeys;
 
 /**
@@ -24,6 +65,28 @@ import hu.metainf.jiracsvuploader.util.StatTypeKeys;
 public final class AppMain {
     /** {@link Logger} instance. */
     private static final Logger LOGGER = LoggerFactory.getLogger(AppMain.class);
+    /** Default time between progress lines in seconds. */
+    private static final String DEFAULT_PROGRESS_INTERVAL = "10";
+    /** Default timeout of Jira requests in milliseconds. */
+    private static final String DEFAULT_JIRA_TIMEOUT = "30000";
+    /** Default maximal total payload length of a bulk upload in bytes. */
+    private static final String DEFAULT_BATCH_MAX_BYTES = "1048576";
+    /** Default time in milliseconds a record waits for its bulk upload to fill. */
+    private static final String DEFAULT_BATCH_LINGER = "50";
+    /** Default size of the audit file in bytes rotating it. */
+    private static final String DEFAULT_AUDIT_MAX_BYTES = "104857600";
+    /** Default number of rotated audit files kept. */
+    private static final String DEFAULT_AUDIT_MAX_FILES = "5";
+    /** Default minimal number of partitions of a cooperative import. */
+    private static final String DEFAULT_PARTITIONS = "64";
+    /** Default validity of the leases of a cooperative import in seconds. */
+    private static final String DEFAULT_LEASE_TIME = "30";
+    /** Glob matching the files read from a directory. */
+    private static final String DIRECTORY_GLOB = "glob:*.{csv,gz,zst}";
+    /** Characters marking a path as a glob. */
+    private static final String GLOB_CHARS = "*?[{";
+    /** Exit code used when exiting with an error. */
+    private static final int ERROR_EXIT_CODE = 127;
 
     /** Ctor. */
     private AppMain() {}
@@ -41,10 +104,54 @@ public final class AppMain {
         final CommandLine cmd = AppMain.parseCmdArgs(args);
         final String csvFilePath = cmd.getOptionValue("f");
         final int threadNr = Integer.parseInt(cmd.getOptionValue("t"));
-        final String lineRegex = cmd.getOptionValue("r");
+        final RecordFilter recordFilter = AppMain.createRecordFilter(cmd);
+        final List<Path> inputPaths = AppMain.findInputFiles(cmd);
+        final int maxRecordLength = Integer.parseInt(cmd.getOptionValue("l",
+                String.valueOf(CsvRecordParser.DEFAULT_MAX_RECORD_LENGTH)));
+        final int readerThreadNr = Integer.parseInt(cmd.getOptionValue("p", "1"));
+        final int queueCapacity = Integer.parseInt(cmd.getOptionValue("q", "0"));
+        // Records hold their in-flight slot till the response of their bulk upload arrives, so a
+        // bulk upload could never fill up if only as many records as threads were in flight
+        final int batchSize = Integer.parseInt(cmd.getOptionValue("b", "1"));
+        final int maxInFlight = Integer.parseInt(cmd.getOptionValue("c",
+                String.valueOf(threadNr * Math.max(1, batchSize))));
+        final ExecutionMode executionMode = AppMain.getExecutionMode(cmd);
+        final ResumeState resumeState =
+                cmd.hasOption("resume") ? AppMain.loadResumeState(cmd) : null;
         LOGGER.debug("Start Jira CSV record processing");
-        final CsvLineProcessor csvRecordProcessor = new CsvLineProcessor(threadNr);
-        new JiraCsvReader().doJiraCSVProcessing(csvFilePath, lineRegex, csvRecordProcessor);
+        final CsvLineProcessor csvRecordProcessor = new CsvLineProcessor(threadNr, queueCapacity,
+                AppMain.createJiraUploader(cmd),
+                cmd.hasOption("adaptive") ? new AdaptiveConcurrencyLimiter(maxInFlight)
+                        : new ConcurrencyLimiter(maxInFlight),
+                AppMain.createRateLimiter(cmd), executionMode, AppMain.createRetryScheduler(cmd),
+                AppMain.createRejectsWriter(cmd), AppMain.createProgressJournal(cmd),
+                AppMain.createAuditLog(cmd), AppMain.createPipelineSettings(cmd,
+                        inputPaths == null ? recordFilter : null));
+        csvRecordProcessor.setFieldMapping(AppMain.createFieldMapping(cmd));
+        final LiveMetrics liveMetrics = AppMain.createLiveMetrics(cmd, csvRecordProcessor);
+        final KeyIndex keyIndex = AppMain.createKeyIndex(cmd, maxRecordLength);
+        final JiraCsvReader jiraCsvReader =
+                new JiraCsvReader(maxRecordLength, resumeState, keyIndex,
+                        cmd.hasOption("compactRecords"));
+        final CooperativeImport cooperativeImport =
+                AppMain.createCooperativeImport(cmd, inputPaths, maxRecordLength, keyIndex);
+        // In pipeline mode the records are filtered by a stage of the pipeline
+        final RecordFilter readerFilter =
+                executionMode == ExecutionMode.PIPELINE ? null : recordFilter;
+        List<InputFile> inputFiles = null;
+        if (cooperativeImport != null) {
+            AppMain.runCooperativeImport(cmd, cooperativeImport, readerFilter,
+                    csvRecordProcessor);
+        } else if (inputPaths != null) {
+            // Each file has its own header row the filter is bound to, so it's read filtered
+            inputFiles = jiraCsvReader.doMultiFileJiraCSVProcessing(inputPaths,
+                    () -> AppMain.createRecordFilter(cmd), csvRecordProcessor, readerThreadNr);
+        } else if (readerThreadNr > 1) {
+            jiraCsvReader.doParallelJiraCSVProcessing(csvFilePath, readerFilter, csvRecordProcessor,
+                    readerThreadNr);
+        } else {
+            jiraCsvReader.doJiraCSVProcessing(csvFilePath, readerFilter, csvRecordProcessor);
+        }
         LOGGER.info("JIRA CSV Uploader application finished CSV data processing");
         StatData.addValue(StatTypeKeys.APP_END_TIMESTAMP, new Date().getTime());
         try {
@@ -54,14 +161,501 @@ public final class AppMain {
             LOGGER.warn("Background worker thread pool shutdown waiting was interrupted: {}",
                     e.getMessage());
         }
+        liveMetrics.close();
         LOGGER.info("JIRA CSV Uploader application finished CSV data uploading");
         LOGGER.debug("Start printing statistical information");
-        new StatPrinter().printAppStats();
+        final StatPrinter statPrinter = new StatPrinter();
+        statPrinter.printAppStats();
+        if (inputFiles != null) {
+            statPrinter.printInputFileStats(inputFiles);
+        } else if (recordFilter != null) {
+            statPrinter.printFilterStats(recordFilter);
+        }
+        statPrinter.printPipelineStats(csvRecordProcessor.getPipelineStages());
+        if (cooperativeImport != null) {
+            try {
+                statPrinter.printMergedStats(cooperativeImport.mergeStats());
+            } catch (final IOException e) {
+                LOGGER.error("Failed to merge stats of the cooperative import: {}",
+                        e.getMessage());
+            }
+        }
         LOGGER.debug("JIRA CSV Uploader application exiting");
     }
 
-    /** Exit code used when exiting with an error. */
-    private static final int ERROR_EXIT_CODE = 127;
+    /**
+     * Returns the {@link ExecutionMode} to be used.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link ExecutionMode} selected
+     */
+    private static ExecutionMode getExecutionMode(final CommandLine cmd) {
+        if (cmd.hasOption("pipeline")) {
+            return ExecutionMode.PIPELINE;
+        }
+        return cmd.hasOption("a") ? ExecutionMode.ASYNC : ExecutionMode.POOLED;
+    }
+
+    /**
+     * Creates the {@link LiveMetrics} publishing the state of the import while it's running. If
+     * starting the metrics endpoint fails, quits with an error status code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     * @return The {@link LiveMetrics} created
+     */
+    private static LiveMetrics createLiveMetrics(
+            final CommandLine cmd,
+            final CsvLineProcessor csvRecordProcessor) {
+        final int metricsPort = Integer.parseInt(cmd.getOptionValue("metricsPort", "-1"));
+        try {
+            return new LiveMetrics(csvRecordProcessor, metricsPort, Long.parseLong(
+                    cmd.getOptionValue("progressInterval", DEFAULT_PROGRESS_INTERVAL)));
+        } catch (final IOException e) {
+            LOGGER.error("Failed to start metrics endpoint on port {}: {}", metricsPort,
+                    e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the {@link PipelineSettings} to be used in pipeline mode.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @param recordFilter
+     *            {@link RecordFilter} applied by the filter stage, or <code>null</code>
+     * @return The {@link PipelineSettings} created
+     */
+    private static PipelineSettings createPipelineSettings(
+            final CommandLine cmd,
+            final RecordFilter recordFilter) {
+        return new PipelineSettings(recordFilter,
+                Integer.parseInt(cmd.getOptionValue("filterThreads",
+                        String.valueOf(PipelineSettings.DEFAULT_FILTER_THREAD_NR))),
+                Integer.parseInt(cmd.getOptionValue("serializeThreads",
+                        String.valueOf(PipelineSettings.DEFAULT_SERIALIZE_THREAD_NR))),
+                Integer.parseInt(cmd.getOptionValue("ringSize",
+                        String.valueOf(PipelineSettings.DEFAULT_RING_SIZE))));
+    }
+
+    /**
+     * Creates the {@link JiraUploader} to be used. If no Jira URL is given, a
+     * {@link MockJiraUploader} is created.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link JiraUploader} created
+     */
+    private static JiraUploader createJiraUploader(final CommandLine cmd) {
+        final String jiraUrl = cmd.getOptionValue("u");
+        final JiraUploader jiraUploader;
+        if (jiraUrl == null) {
+            LOGGER.info("No Jira URL given, using mock uploader");
+            jiraUploader = new MockJiraUploader(AppMain.createMockBehavior(cmd));
+        } else {
+            LOGGER.info("Uploading to Jira instance at {}", jiraUrl);
+            jiraUploader = new HttpJiraUploader(jiraUrl, cmd.getOptionValue("jiraUser"),
+                    cmd.getOptionValue("jiraToken"),
+                    Long.parseLong(cmd.getOptionValue("jiraTimeout", DEFAULT_JIRA_TIMEOUT)));
+        }
+        final int batchSize = Integer.parseInt(cmd.getOptionValue("b", "1"));
+        if (batchSize <= 1) {
+            return jiraUploader;
+        }
+        return new BatchingJiraUploader(jiraUploader, batchSize,
+                Integer.parseInt(cmd.getOptionValue("batchMaxBytes", DEFAULT_BATCH_MAX_BYTES)),
+                Long.parseLong(cmd.getOptionValue("batchLinger", DEFAULT_BATCH_LINGER)));
+    }
+
+    /**
+     * Creates the {@link MockBehavior} of the mock uploader.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link MockBehavior} created
+     */
+    private static MockBehavior createMockBehavior(final CommandLine cmd) {
+        try {
+            return new MockBehavior(cmd.getOptionValue("mockLatency"),
+                    cmd.getOptionValue("mockErrors"), cmd.getOptionValue("mockThrottle"));
+        } catch (final IllegalArgumentException e) {
+            LOGGER.error("Failed to configure mock uploader: {}", e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the {@link ProjectRateLimiter} to be used. If the rates are invalid, quits with an
+     * error status code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link ProjectRateLimiter} created, or <code>null</code> if uploads aren't rate
+     *         limited
+     */
+    private static ProjectRateLimiter createRateLimiter(final CommandLine cmd) {
+        if (!cmd.hasOption("rateLimit") && !cmd.hasOption("projectRateLimit")) {
+            return null;
+        }
+        try {
+            return new ProjectRateLimiter(Double.parseDouble(cmd.getOptionValue("rateLimit", "0")),
+                    cmd.getOptionValue("projectRateLimit"));
+        } catch (final IllegalArgumentException e) {
+            LOGGER.error("Failed to configure rate limits: {}", e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the {@link RetryScheduler} to be used, with its {@link CircuitBreaker}.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link RetryScheduler} created
+     */
+    private static RetryScheduler createRetryScheduler(final CommandLine cmd) {
+        return new RetryScheduler(
+                new RetryPolicy(
+                        Integer.parseInt(cmd.getOptionValue("maxRetries",
+                                String.valueOf(CsvLineProcessor.DEFAULT_MAX_RETRIES))),
+                        Long.parseLong(cmd.getOptionValue("retryBaseDelay",
+                                String.valueOf(CsvLineProcessor.DEFAULT_RETRY_BASE_DELAY))),
+                        Long.parseLong(cmd.getOptionValue("retryMaxDelay",
+                                String.valueOf(CsvLineProcessor.DEFAULT_RETRY_MAX_DELAY)))),
+                new CircuitBreaker(
+                        Double.parseDouble(cmd.getOptionValue("breakerFailureRate",
+                                String.valueOf(CsvLineProcessor.DEFAULT_BREAKER_FAILURE_RATE))),
+                        Long.parseLong(cmd.getOptionValue("breakerOpenTime",
+                                String.valueOf(CsvLineProcessor.DEFAULT_BREAKER_OPEN_TIME)))));
+    }
+
+    /**
+     * Creates the {@link RejectsCsvWriter} to be used. If creating the rejects file fails, quits
+     * with an error status code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link RejectsCsvWriter} created, or <code>null</code> if no rejects file is
+     *         given
+     */
+    private static RejectsCsvWriter createRejectsWriter(final CommandLine cmd) {
+        final String rejectsFilePath = cmd.getOptionValue("rejectsFile");
+        if (rejectsFilePath == null) {
+            return null;
+        }
+        try {
+            return new RejectsCsvWriter(rejectsFilePath, cmd.hasOption("resume"));
+        } catch (final IOException e) {
+            LOGGER.error("Failed to create rejects file {}: {}", rejectsFilePath, e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Compiles the {@link RecordFilter} of the records to be processed, combining the regular
+     * expression and the filter expression given. If compiling fails, quits with an error status
+     * code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link RecordFilter} compiled, or <code>null</code> if all records are processed
+     */
+    private static RecordFilter createRecordFilter(final CommandLine cmd) {
+        final String lineRegex = cmd.getOptionValue("r");
+        final String filterExpression = cmd.getOptionValue("filter");
+        try {
+            RecordFilter recordFilter = null;
+            if (lineRegex != null && !lineRegex.isEmpty()) {
+                recordFilter = RecordFilter.anyFieldMatching(lineRegex);
+            }
+            if (filterExpression != null && !filterExpression.trim().isEmpty()) {
+                final RecordFilter expressionFilter = RecordFilter.compile(filterExpression);
+                recordFilter = recordFilter == null ? expressionFilter
+                        : recordFilter.and(expressionFilter);
+            }
+            return recordFilter;
+        } catch (final IllegalArgumentException e) {
+            LOGGER.error("Failed to compile record filter: {}", e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the progress of the interrupted import to be resumed from its journal. If no journal
+     * is given or reading it fails, quits with an error status code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The progress loaded, or <code>null</code> if the journal file doesn't exist yet
+     */
+    private static ResumeState loadResumeState(final CommandLine cmd) {
+        final String journalPath = cmd.getOptionValue("journal");
+        if (journalPath == null) {
+            LOGGER.error("Resuming an import requires its journal file");
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+        try {
+            final ResumeState resumeState = ProgressJournal.load(journalPath);
+            if (resumeState == null) {
+                LOGGER.info("No progress journal {} found, starting the import from the beginning",
+                        journalPath);
+            } else {
+                LOGGER.info(
+                        "Resuming import after record #{} with {} later record(s) completed",
+                        resumeState.getCheckpointRecordNr(),
+                        resumeState.getCompletedAfterCheckpointNr());
+            }
+            return resumeState;
+        } catch (final IOException e) {
+            LOGGER.error("Failed to read progress journal {}: {}", journalPath, e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the {@link ProgressJournal} to be used. When resuming, the journal is continued,
+     * otherwise it is started anew. If opening the journal file fails, quits with an error status
+     * code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link ProgressJournal} created, or <code>null</code> if no journal file is
+     *         given
+     */
+    private static ProgressJournal createProgressJournal(final CommandLine cmd) {
+        final String journalPath = cmd.getOptionValue("journal");
+        if (journalPath == null) {
+            return null;
+        }
+        try {
+            return new ProgressJournal(journalPath, cmd.hasOption("resume"));
+        } catch (final IOException e) {
+            LOGGER.error("Failed to open progress journal {}: {}", journalPath, e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the {@link AuditLog} to be used. If the audit settings are invalid or creating the
+     * audit file fails, quits with an error status code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link AuditLog} created, or <code>null</code> if no audit file is given
+     */
+    private static AuditLog createAuditLog(final CommandLine cmd) {
+        final String auditPath = cmd.getOptionValue("auditLog");
+        if (auditPath == null) {
+            return null;
+        }
+        try {
+            final double sampleRate = Double.parseDouble(cmd.getOptionValue("auditSample", "1"));
+            if (sampleRate < 0.0 || sampleRate > 1.0) {
+                throw new IllegalArgumentException("Audit sample rate must be between 0 and 1");
+            }
+            return new AuditLog(auditPath,
+                    AuditFormat.valueOf(cmd.getOptionValue("auditFormat", "ndjson").toUpperCase()),
+                    sampleRate, cmd.hasOption("auditPayloads"),
+                    Long.parseLong(cmd.getOptionValue("auditMaxBytes", DEFAULT_AUDIT_MAX_BYTES)),
+                    Integer.parseInt(
+                            cmd.getOptionValue("auditMaxFiles", DEFAULT_AUDIT_MAX_FILES)));
+        } catch (final IllegalArgumentException e) {
+            LOGGER.error("Invalid audit log settings: {}", e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        } catch (final IOException e) {
+            LOGGER.error("Failed to create audit log {}: {}", auditPath, e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the {@link FieldMapping} of the CSV columns to Jira fields. If loading fails, quits
+     * with an error status code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return The {@link FieldMapping} loaded, or <code>null</code> if each header is mapped to
+     *         the string value of its column
+     */
+    private static FieldMapping createFieldMapping(final CommandLine cmd) {
+        final String mappingFile = cmd.getOptionValue("fieldMapping");
+        if (mappingFile == null) {
+            return null;
+        }
+        final String userNameFile = cmd.getOptionValue("userNames");
+        try {
+            return FieldMapping.load(Paths.get(mappingFile),
+                    userNameFile != null ? Paths.get(userNameFile) : null);
+        } catch (final IOException | IllegalArgumentException e) {
+            LOGGER.error("Failed to load field mapping: {}", e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the {@link KeyIndex} of the issue keys already present in Jira. If loading fails,
+     * quits with an error status code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @param maxRecordLength
+     *            maximal length of a CSV record in characters
+     * @return The {@link KeyIndex} loaded, or <code>null</code> if records aren't deduplicated
+     */
+    private static KeyIndex createKeyIndex(final CommandLine cmd, final int maxRecordLength) {
+        final String keyFiles = cmd.getOptionValue("dedupeKeys");
+        if (keyFiles == null) {
+            return null;
+        }
+        try {
+            return new KeyIndexLoader(maxRecordLength).load(Arrays.asList(keyFiles.split(",")));
+        } catch (final IOException | IllegalArgumentException | IllegalStateException e) {
+            LOGGER.error("Failed to load issue keys to deduplicate by: {}", e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the {@link CooperativeImport} worker of this process if a coordination directory
+     * is given. The progress journal, resuming and the rejects file aren't supported in a
+     * cooperative import, nor is reading multiple files. If an option not supported is given or
+     * the coordination directory can't be created, quits with an error status code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @param inputPaths
+     *            paths of the files of a multi-file import, or <code>null</code>
+     * @param maxRecordLength
+     *            maximal length of a CSV record in characters
+     * @param keyIndex
+     *            index of the issue keys already present in Jira, or <code>null</code>
+     * @return The worker created, or <code>null</code> if the import isn't cooperative
+     */
+    private static CooperativeImport createCooperativeImport(
+            final CommandLine cmd,
+            final List<Path> inputPaths,
+            final int maxRecordLength,
+            final KeyIndex keyIndex) {
+        final String coordinationDir = cmd.getOptionValue("coordinationDir");
+        if (coordinationDir == null) {
+            return null;
+        }
+        if (inputPaths != null || cmd.hasOption("journal") || cmd.hasOption("resume")
+                || cmd.hasOption("rejectsFile")) {
+            LOGGER.error("Multiple CSV files, the progress journal, resuming and the rejects file"
+                    + " aren't supported in a cooperative import");
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+        final long leaseMillis = TimeUnit.SECONDS
+                .toMillis(Long.parseLong(cmd.getOptionValue("leaseTime", DEFAULT_LEASE_TIME)));
+        try {
+            return new CooperativeImport(new DirectoryCoordinator(coordinationDir, leaseMillis),
+                    ManagementFactory.getRuntimeMXBean().getName(), leaseMillis, maxRecordLength,
+                    keyIndex, cmd.hasOption("compactRecords"));
+        } catch (final IOException e) {
+            LOGGER.error("Failed to create coordination directory {}: {}", coordinationDir,
+                    e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+    }
+
+    /**
+     * Processes partitions of the CSV file in a cooperative import till all partitions are
+     * completed.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @param cooperativeImport
+     *            worker of this process
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records read, or <code>null</code>
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     */
+    private static void runCooperativeImport(
+            final CommandLine cmd,
+            final CooperativeImport cooperativeImport,
+            final RecordFilter recordFilter,
+            final CsvLineProcessor csvRecordProcessor) {
+        try {
+            cooperativeImport.run(cmd.getOptionValue("f"),
+                    Integer.parseInt(cmd.getOptionValue("partitions", DEFAULT_PARTITIONS)),
+                    recordFilter, csvRecordProcessor);
+        } catch (final IOException e) {
+            LOGGER.error("Cooperative import failed: {}", e.getMessage());
+        } catch (final InterruptedException e) {
+            LOGGER.warn("Cooperative import was interrupted: {}", e.getMessage());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Finds the CSV files to be read if the path given is a directory or a glob. The files of a
+     * directory ending with .csv, .gz or .zst are read. A glob may only contain wildcards in its
+     * last path element. The progress journal and the rejects file aren't supported when reading
+     * multiple files. If no file is found, or an option not supported is given, quits with an
+     * error status code.
+     *
+     * @param cmd
+     *            parsed command line arguments
+     * @return Paths of the files found in name order, or <code>null</code> if a single file is
+     *         to be read
+     */
+    private static List<Path> findInputFiles(final CommandLine cmd) {
+        final String csvFilePath = cmd.getOptionValue("f");
+        final Path directory;
+        final PathMatcher matcher;
+        if (csvFilePath.chars().anyMatch(c -> GLOB_CHARS.indexOf(c) >= 0)) {
+            final int separator = csvFilePath.lastIndexOf(File.separatorChar);
+            directory = Paths.get(separator >= 0 ? csvFilePath.substring(0, separator + 1) : ".");
+            matcher = FileSystems.getDefault()
+                    .getPathMatcher("glob:" + csvFilePath.substring(separator + 1));
+        } else if (Files.isDirectory(Paths.get(csvFilePath))) {
+            directory = Paths.get(csvFilePath);
+            matcher = FileSystems.getDefault().getPathMatcher(DIRECTORY_GLOB);
+        } else {
+            return null;
+        }
+        if (cmd.hasOption("journal") || cmd.hasOption("rejectsFile")) {
+            LOGGER.error("The progress journal and the rejects file aren't supported when reading"
+                    + " multiple CSV files");
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+        final List<Path> inputPaths;
+        try (Stream<Path> files = Files.list(directory)) {
+            inputPaths = files.filter(file -> Files.isRegularFile(file)
+                    && matcher.matches(file.getFileName())).sorted().collect(Collectors.toList());
+        } catch (final IOException e) {
+            LOGGER.error("Failed to list CSV files in {}: {}", directory, e.getMessage());
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+        if (inputPaths.isEmpty()) {
+            LOGGER.error("No CSV file found matching {}", csvFilePath);
+            System.exit(ERROR_EXIT_CODE);
+            return null;
+        }
+        return inputPaths;
+    }
 
     /**
      * Parses command line arguments and transfers them to a {@link CommandLine} instance. If
@@ -96,11 +690,156 @@ public final class AppMain {
     private static Options createAppOptions() {
         final Options options = new Options();
         options.addRequiredOption("f", "csvFile", true,
-                "Absolute or relative path of the CSV file to be read");
+                "Absolute or relative path of the CSV file to be read, gzip or zstd compressed"
+                        + " files are decompressed while reading. A directory or a glob like"
+                        + " 'export/*.csv' reads multiple files in parallel, each with its own"
+                        + " header row");
         options.addRequiredOption("t", "threadsNr", true,
                 "Number of parallel threads to be used when processing data");
         options.addOption("r", "regex", true,
                 "Regular expression for matching lines to be processed");
+        options.addOption(null, "filter", true,
+                "Filter expression of column predicates for matching lines to be processed, like"
+                        + " 'Status=~Backlog|To Do && Created>2018-06-01'. Operators: =~ !~"
+                        + " (regular expression), = != < <= > >= (numbers, dates or text); * as"
+                        + " column matches any column; combine with && || ! and parentheses");
+        options.addOption("l", "maxRecordLength", true,
+                "Maximal length of a CSV record in characters, longer records are skipped");
+        options.addOption("p", "readerThreadsNr", true,
+                "Number of parallel threads to be used when reading the CSV file (default: 1)");
+        options.addOption("q", "queueCapacity", true,
+                "Maximal number of records waiting for upload, reading blocks while the queue is"
+                        + " full (default: 0, unbounded)");
+        options.addOption("c", "maxInFlight", true,
+                "Maximal number of uploads waiting for a response, counting each record of a bulk"
+                        + " upload (default: threadsNr, times batchSize with bulk uploads)");
+        options.addOption("a", "async", false,
+                "Runs uploads asynchronously, threads only transform records and the number of"
+                        + " uploads in flight is limited by maxInFlight alone");
+        options.addOption(null, "pipeline", false,
+                "Runs records through filter, serialize and upload stages connected by ring"
+                        + " buffers, threadsNr being the number of upload threads; stage"
+                        + " throughput and utilization are printed at the end");
+        options.addOption(null, "filterThreads", true,
+                "Number of threads of the filter stage in pipeline mode (default: "
+                        + PipelineSettings.DEFAULT_FILTER_THREAD_NR + ")");
+        options.addOption(null, "serializeThreads", true,
+                "Number of threads of the serialize stage in pipeline mode (default: "
+                        + PipelineSettings.DEFAULT_SERIALIZE_THREAD_NR + ")");
+        options.addOption(null, "ringSize", true,
+                "Number of records buffered before each stage in pipeline mode, rounded up to a"
+                        + " power of two (default: " + PipelineSettings.DEFAULT_RING_SIZE + ")");
+        options.addOption(null, "adaptive", false,
+                "Adapts the number of uploads in flight to the observed latency and throttling"
+                        + " responses of Jira, using maxInFlight as upper bound");
+        options.addOption("u", "jiraUrl", true,
+                "Base URL of the Jira instance to upload to, a mock uploader is used if not given");
+        options.addOption(null, "rateLimit", true,
+                "Maximal number of uploads per second in total (default: unlimited)");
+        options.addOption(null, "projectRateLimit", true,
+                "Maximal number of uploads per second of each Jira project, by the project prefix"
+                        + " of the Issue key, optionally followed by limits of specific projects,"
+                        + " e.g. 5,DEMO=2,OPS=0.5; uploads of a project over its limit are deferred"
+                        + " without holding up other projects (default: unlimited)");
+        options.addOption(null, "mockLatency", true,
+                "Latency distribution of the mock uploader in milliseconds: uniform:<min>-<max>,"
+                        + " lognormal:<median>,<sigma> or"
+                        + " bimodal:<min>-<max>,<min>-<max>,<slowShare>"
+                        + " (default: " + MockBehavior.DEFAULT_LATENCY + ")");
+        options.addOption(null, "mockErrors", true,
+                "Error status codes and rates of the mock uploader, like 403:0.01,500:0.002"
+                        + " (default: " + MockBehavior.DEFAULT_ERRORS + ")");
+        options.addOption(null, "mockThrottle", true,
+                "Throttling of the mock uploader as <period>:<window> in milliseconds, rejecting"
+                        + " all uploads with 429 in the last window of every period");
+        options.addOption(null, "jiraUser", true, "User name for Jira basic authentication");
+        options.addOption(null, "jiraToken", true,
+                "Password or API token of the Jira user, or personal access token if no user is"
+                        + " given");
+        options.addOption(null, "jiraTimeout", true,
+                "Connection and request timeout of Jira requests in milliseconds (default: "
+                        + DEFAULT_JIRA_TIMEOUT + ")");
+        options.addOption("b", "batchSize", true,
+                "Maximal number of records uploaded in a bulk request, at most "
+                        + BatchingJiraUploader.MAX_BATCH_SIZE + " (default: 1, no bulk uploads)");
+        options.addOption(null, "batchMaxBytes", true,
+                "Maximal total payload length of a bulk upload in bytes (default: "
+                        + DEFAULT_BATCH_MAX_BYTES + ")");
+        options.addOption(null, "batchLinger", true,
+                "Maximal time in milliseconds a record waits for its bulk upload to fill"
+                        + " (default: " + DEFAULT_BATCH_LINGER + ")");
+        options.addOption(null, "maxRetries", true,
+                "Maximal number of retries of an upload failing with no response, 408, 429 or 5xx"
+                        + " status (default: " + CsvLineProcessor.DEFAULT_MAX_RETRIES + ")");
+        options.addOption(null, "retryBaseDelay", true,
+                "Base delay of the first retry in milliseconds, doubled by every retry (default: "
+                        + CsvLineProcessor.DEFAULT_RETRY_BASE_DELAY + ")");
+        options.addOption(null, "retryMaxDelay", true,
+                "Maximal delay of a retry in milliseconds, unless Jira asks for a longer one"
+                        + " (default: " + CsvLineProcessor.DEFAULT_RETRY_MAX_DELAY + ")");
+        options.addOption(null, "breakerFailureRate", true,
+                "Rate of failures among recent uploads pausing all uploads, 0 disables pausing"
+                        + " (default: " + CsvLineProcessor.DEFAULT_BREAKER_FAILURE_RATE + ")");
+        options.addOption(null, "breakerOpenTime", true,
+                "Time in milliseconds uploads are paused for (default: "
+                        + CsvLineProcessor.DEFAULT_BREAKER_OPEN_TIME + ")");
+        options.addOption(null, "dedupeKeys", true,
+                "Comma separated paths of files listing the issues already present in Jira, whose"
+                        + " rows are skipped by Issue key or Issue id: a CSV export, the journal"
+                        + " or NDJSON audit log of a previous run, or a key per line; audit logs"
+                        + " which are sampled, rotated or dropped records are refused");
+        options.addOption(null, "fieldMapping", true,
+                "Path of a file mapping CSV columns to Jira fields with value converters, a"
+                        + " line per column like 'Created = fields.created | date dd/MMM/yy"
+                        + " h:mm a'");
+        options.addOption(null, "userNames", true,
+                "Path of a file mapping the values of columns converted by the user converter"
+                        + " to Jira user names, a 'value = user name' line per user");
+        options.addOption(null, "compactRecords", false,
+                "Hold records read in compact form till they are uploaded, coding the repeated"
+                        + " values of each column by a dictionary");
+        options.addOption(null, "coordinationDir", true,
+                "Path of a directory shared by processes importing the same CSV file together,"
+                        + " each uploading the byte range partitions it leases from it");
+        options.addOption(null, "partitions", true,
+                "Minimal number of partitions of a cooperative import (default: "
+                        + DEFAULT_PARTITIONS + ")");
+        options.addOption(null, "leaseTime", true,
+                "Time in seconds a partition lease of a cooperative import is valid without"
+                        + " renewal, the same for all processes (default: " + DEFAULT_LEASE_TIME
+                        + ")");
+        options.addOption(null, "rejectsFile", true,
+                "Path of a CSV file the records failing to upload are written to, for replaying"
+                        + " them later");
+        options.addOption(null, "journal", true,
+                "Path of a journal file the progress of the import is written to, so an"
+                        + " interrupted import can be resumed");
+        options.addOption(null, "resume", false,
+                "Resumes the interrupted import journaled to the journal file, skipping the"
+                        + " records completed already and appending to the rejects file");
+        options.addOption(null, "auditLog", true,
+                "Path of a file the outcome of every upload is written to by a background thread:"
+                        + " row number, issue key, status and latency");
+        options.addOption(null, "auditFormat", true,
+                "Format of the audit records, ndjson or binary (default: ndjson)");
+        options.addOption(null, "auditSample", true,
+                "Share of the successful uploads audited between 0 and 1, failed uploads are"
+                        + " always audited (default: 1)");
+        options.addOption(null, "auditPayloads", false,
+                "Writes the JSON payloads of the uploads to the audit log too");
+        options.addOption(null, "auditMaxBytes", true,
+                "Size of the audit file in bytes rotating it, 0 disables rotation (default: "
+                        + DEFAULT_AUDIT_MAX_BYTES + ")");
+        options.addOption(null, "auditMaxFiles", true,
+                "Number of rotated audit files kept (default: " + DEFAULT_AUDIT_MAX_FILES + ")");
+        options.addOption(null, "metricsPort", true,
+                "Port of a local HTTP endpoint publishing live metrics at "
+                        + PrometheusEndpoint.METRICS_PATH + " in Prometheus text format, 0 for a"
+                        + " free port (default: no endpoint); metrics are published as JMX MBeans"
+                        + " regardless");
+        options.addOption(null, "progressInterval", true,
+                "Time in seconds between progress lines with throughput, ETA and records in"
+                        + " flight, 0 disables them (default: " + DEFAULT_PROGRESS_INTERVAL + ")");
         options.addOption("h", "help", false, "Prints this help");
         return options;
     }
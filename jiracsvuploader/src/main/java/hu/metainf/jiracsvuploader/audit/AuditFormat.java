@@ -0,0 +1,26 @@
+package hu.metainf.jiracsvuploader.audit;
+
+/**
+ * Formats of the records written by an {@link AuditLog}.
+ *
+ */
+public enum AuditFormat {
+    /**
+     * A JSON object per line with the fields <code>time</code> (epoch milliseconds),
+     * <code>row</code>, <code>status</code>, <code>latencyMicros</code>, <code>key</code> (issue
+     * key assigned by Jira or <code>null</code>), <code>sourceKey</code> (issue key or issue id
+     * of the record in the CSV file or <code>null</code>) and, if payloads are written,
+     * <code>payload</code>. The last line is a summary like
+     * <code>{"summary":true,"sampleRate":1,"dropped":0,"rotated":0}</code>, with the share of
+     * the successful uploads recorded, the number of outcomes dropped as the writer fell behind
+     * and the number of rotations of the file; it's missing if the run didn't close the log.
+     */
+    NDJSON,
+    /**
+     * Big-endian binary records: time in epoch milliseconds (long), row number (long), status
+     * code (short), latency in nanoseconds (long), issue key assigned by Jira and source key of
+     * the record in the CSV file as modified UTF-8 (empty if none), payload length (int, -1 if not
+     * written) and the UTF-8 JSON payload.
+     */
+    BINARY
+}
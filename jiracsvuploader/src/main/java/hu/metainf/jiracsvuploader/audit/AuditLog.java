@@ -0,0 +1,412 @@
+package hu.metainf.jiracsvuploader.audit;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.pipeline.RingBuffer;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * Audit channel of the final outcomes of uploads, written to a file separate from the
+ * application log. Outcomes are handed over to a writer thread through a pre-allocated
+ * {@link RingBuffer}, costing a single compare-and-set and no formatting on the upload path. If
+ * the writer falls behind and the buffer is full, outcomes are dropped and counted instead of
+ * blocking uploads. The writer thread formats the records, writes them in batches through a
+ * buffer, flushing whenever the ring buffer runs empty, and rotates the file when it exceeds its
+ * maximal size: the current file is renamed to <code>&lt;path&gt;.1</code>, earlier rotated
+ * files are shifted by one and the oldest one is deleted.
+ * <p>
+ * Successful uploads can be sampled, failed ones are always recorded. An NDJSON audit log ends
+ * with a summary line telling whether it holds every outcome, see {@link AuditFormat#NDJSON}.
+ *
+ */
+public class AuditLog implements Closeable {
+    /** Default number of records buffered for the writer thread. */
+    public static final int DEFAULT_RING_SIZE = 16384;
+    /** Property of the summary line closing an NDJSON audit log. */
+    public static final String SUMMARY_PROPERTY = "summary";
+    /** Property of the share of the successful uploads recorded in the summary line. */
+    public static final String SAMPLE_RATE_PROPERTY = "sampleRate";
+    /** Property of the number of outcomes dropped in the summary line. */
+    public static final String DROPPED_PROPERTY = "dropped";
+    /** Property of the number of rotations of the audit file in the summary line. */
+    public static final String ROTATED_PROPERTY = "rotated";
+    /** Size of the output buffer in bytes. */
+    private static final int OUTPUT_BUFFER_SIZE = 65536;
+    /** Maximal number of records written between flushes. */
+    private static final int MAX_BATCH_RECORD_NR = 4096;
+    /** Number of nanoseconds in a microsecond. */
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+    /** Path of the audit file. */
+    private final Path path;
+    /** {@link AuditFormat} of the records. */
+    private final AuditFormat format;
+    /** Share of the successful uploads recorded, between 0 and 1. */
+    private final double sampleRate;
+    /** Whether the JSON payloads are written. */
+    private final boolean withPayloads;
+    /** Size of the audit file in bytes rotating it, or 0 to never rotate. */
+    private final long maxFileBytes;
+    /** Number of rotated files kept. */
+    private final int maxFileNr;
+    /** Ring buffer handing the records over to the writer thread. */
+    private final RingBuffer<AuditRecord> records;
+    /** Thread writing the records. */
+    private final Thread writerThread;
+    /** Number of outcomes dropped as the writer thread fell behind. */
+    private final AtomicLong droppedNr = new AtomicLong();
+    /** {@link FileOutputStream} of the current audit file, only accessed by the writer thread. */
+    private FileOutputStream fileStream;
+    /** Buffered output of the current audit file, only accessed by the writer thread. */
+    private DataOutputStream output;
+    /** Whether writing failed, in which case records are dropped by the writer thread. */
+    private boolean failed;
+    /** Number of rotations of the audit file, only accessed by the writer thread. */
+    private int rotationNr;
+
+    /**
+     * Ctor, creating the audit file and starting the writer thread.
+     *
+     * @param path
+     *            path of the audit file, an existing file is overwritten
+     * @param format
+     *            {@link AuditFormat} of the records
+     * @param sampleRate
+     *            share of the successful uploads recorded, between 0 and 1
+     * @param withPayloads
+     *            whether the JSON payloads are written
+     * @param maxFileBytes
+     *            size of the audit file in bytes rotating it, or 0 to never rotate
+     * @param maxFileNr
+     *            number of rotated files kept
+     * @throws IOException
+     *             If the audit file can't be created
+     */
+    public AuditLog(
+            final String path,
+            final AuditFormat format,
+            final double sampleRate,
+            final boolean withPayloads,
+            final long maxFileBytes,
+            final int maxFileNr) throws IOException {
+        this.path = Paths.get(path);
+        this.format = format;
+        this.sampleRate = sampleRate;
+        this.withPayloads = withPayloads;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFileNr = Math.max(1, maxFileNr);
+        records = new RingBuffer<>(DEFAULT_RING_SIZE, AuditRecord::new);
+        openFile();
+        writerThread = new Thread(this::runWriter, "audit-log");
+        writerThread.start();
+    }
+
+    /**
+     * Registers the final outcome of an upload, unless it's sampled out or the writer thread
+     * fell behind. Called from the upload path, so it never blocks.
+     *
+     * @param recordNr
+     *            number of the CSV record
+     * @param sourceKey
+     *            issue key or issue id of the record in the CSV file, or <code>null</code> if it
+     *            has none
+     * @param uploadResponse
+     *            final response of the upload
+     * @param latencyNanos
+     *            time in nanoseconds the record took to upload
+     * @param payload
+     *            UTF-8 encoded JSON payload uploaded, or <code>null</code> if not created
+     */
+    public void record(
+            final long recordNr,
+            final String sourceKey,
+            final UploadResponse uploadResponse,
+            final long latencyNanos,
+            final byte[] payload) {
+        if (sampleRate < 1.0 && uploadResponse.isSuccessful()
+                && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        final long sequence = records.tryClaim();
+        if (sequence < 0L) {
+            droppedNr.incrementAndGet();
+            StatData.addIncrementedValue(StatTypeKeys.AUDIT_DROPPED_NR);
+            return;
+        }
+        records.get(sequence).set(System.currentTimeMillis(), recordNr, sourceKey,
+                uploadResponse, latencyNanos, withPayloads ? payload : null);
+        records.publish(sequence);
+    }
+
+    /**
+     * Writes the remaining records, stops the writer thread and closes the audit file.
+     *
+     * @throws IOException
+     *             If closing the audit file fails
+     */
+    @Override
+    public void close() throws IOException {
+        records.close();
+        try {
+            writerThread.join();
+        } catch (final InterruptedException e) {
+            logger.warn("Waiting for the audit log to be written was interrupted");
+            Thread.currentThread().interrupt();
+        }
+        output.close();
+    }
+
+    /**
+     * Main loop of the writer thread.
+     */
+    private void runWriter() {
+        final StringBuilder line = new StringBuilder();
+        int batchRecordNr = 0;
+        try {
+            long sequence;
+            while ((sequence = records.take()) >= 0L) {
+                final AuditRecord record = records.get(sequence);
+                try {
+                    write(record, line);
+                } finally {
+                    record.clear();
+                    records.release(sequence);
+                }
+                if (++batchRecordNr >= MAX_BATCH_RECORD_NR || records.getOccupancy() == 0) {
+                    flush(batchRecordNr);
+                    batchRecordNr = 0;
+                }
+            }
+            if (format == AuditFormat.NDJSON) {
+                writeSummary();
+            }
+            flush(batchRecordNr);
+        } catch (final InterruptedException e) {
+            logger.warn("Audit log thread was interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes a record to the output buffer.
+     *
+     * @param record
+     *            record written
+     * @param line
+     *            reusable builder of NDJSON lines
+     */
+    private void write(final AuditRecord record, final StringBuilder line) {
+        if (failed) {
+            return;
+        }
+        final String issueKey = record.uploadResponse.getIssueKey();
+        try {
+            if (format == AuditFormat.BINARY) {
+                output.writeLong(record.timeMillis);
+                output.writeLong(record.recordNr);
+                output.writeShort(record.uploadResponse.getStatusCode());
+                output.writeLong(record.latencyNanos);
+                output.writeUTF(issueKey != null ? issueKey : "");
+                output.writeUTF(record.sourceKey != null ? record.sourceKey : "");
+                if (record.payload != null) {
+                    output.writeInt(record.payload.length);
+                    output.write(record.payload);
+                } else {
+                    output.writeInt(-1);
+                }
+                return;
+            }
+            line.setLength(0);
+            line.append("{\"time\":").append(record.timeMillis).append(",\"row\":")
+                    .append(record.recordNr).append(",\"status\":")
+                    .append(record.uploadResponse.getStatusCode()).append(",\"latencyMicros\":")
+                    .append(record.latencyNanos / NANOS_PER_MICRO).append(",\"key\":")
+                    .append(issueKey != null ? JSONObject.quote(issueKey) : "null")
+                    .append(",\"sourceKey\":")
+                    .append(record.sourceKey != null ? JSONObject.quote(record.sourceKey) : "null");
+            if (record.payload != null) {
+                output.write(line.append(",\"payload\":").toString()
+                        .getBytes(StandardCharsets.UTF_8));
+                output.write(record.payload);
+                output.write('}');
+                output.write('\n');
+            } else {
+                output.write(line.append("}\n").toString().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Writes the summary line closing an NDJSON audit log.
+     */
+    private void writeSummary() {
+        if (failed) {
+            return;
+        }
+        final JSONObject summary = new JSONObject().put(SUMMARY_PROPERTY, true)
+                .put(SAMPLE_RATE_PROPERTY, sampleRate).put(DROPPED_PROPERTY, droppedNr.get())
+                .put(ROTATED_PROPERTY, rotationNr);
+        try {
+            output.write((summary + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Flushes a batch of records to the audit file, rotating the file if it exceeded its maximal
+     * size.
+     *
+     * @param batchRecordNr
+     *            number of records in the batch
+     */
+    private void flush(final int batchRecordNr) {
+        if (failed || batchRecordNr == 0) {
+            return;
+        }
+        try {
+            output.flush();
+            StatData.addSumValue(StatTypeKeys.AUDIT_RECORD_NR, batchRecordNr);
+            if (maxFileBytes > 0L && fileStream.getChannel().size() >= maxFileBytes) {
+                rotate();
+            }
+        } catch (final IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Closes the current audit file, shifts the rotated files and opens a new audit file.
+     *
+     * @throws IOException
+     *             If renaming or opening a file fails
+     */
+    private void rotate() throws IOException {
+        output.close();
+        Files.deleteIfExists(getRotatedPath(maxFileNr));
+        for (int i = maxFileNr - 1; i >= 1; i--) {
+            final Path rotatedPath = getRotatedPath(i);
+            if (Files.exists(rotatedPath)) {
+                Files.move(rotatedPath, getRotatedPath(i + 1),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(path, getRotatedPath(1), StandardCopyOption.REPLACE_EXISTING);
+        rotationNr++;
+        openFile();
+        logger.debug("Rotated audit log {}", path);
+    }
+
+    /**
+     * Returns the path of a rotated audit file.
+     *
+     * @param index
+     *            index of the rotated file, 1 being the latest one
+     * @return Path of the rotated file
+     */
+    private Path getRotatedPath(final int index) {
+        return path.resolveSibling(path.getFileName() + "." + index);
+    }
+
+    /**
+     * Opens a new audit file at the path of the audit log.
+     *
+     * @throws IOException
+     *             If the file can't be created
+     */
+    private void openFile() throws IOException {
+        fileStream = new FileOutputStream(path.toFile());
+        output = new DataOutputStream(new BufferedOutputStream(fileStream, OUTPUT_BUFFER_SIZE));
+    }
+
+    /**
+     * Stops writing after a failure.
+     *
+     * @param e
+     *            failure
+     */
+    private void fail(final IOException e) {
+        logger.error("Failed to write audit log {}, stopping auditing: {}", path, e.getMessage());
+        failed = true;
+    }
+
+    /**
+     * Pre-allocated entry of the ring buffer, carrying the outcome of an upload.
+     *
+     */
+    private static final class AuditRecord {
+        /** Time of the outcome in epoch milliseconds. */
+        private long timeMillis;
+        /** Number of the CSV record. */
+        private long recordNr;
+        /** Key of the record in the CSV file, or <code>null</code> if it has none. */
+        private String sourceKey;
+        /** Final response of the upload. */
+        private UploadResponse uploadResponse;
+        /** Time in nanoseconds the record took to upload. */
+        private long latencyNanos;
+        /** UTF-8 encoded JSON payload, or <code>null</code> if not written. */
+        private byte[] payload;
+
+        /**
+         * Sets the content of the entry.
+         *
+         * @param timeMillis
+         *            time of the outcome in epoch milliseconds
+         * @param recordNr
+         *            number of the CSV record
+         * @param sourceKey
+         *            key of the record in the CSV file, or <code>null</code> if it has none
+         * @param uploadResponse
+         *            final response of the upload
+         * @param latencyNanos
+         *            time in nanoseconds the record took to upload
+         * @param payload
+         *            UTF-8 encoded JSON payload, or <code>null</code> if not written
+         */
+        private void set(
+                final long timeMillis,
+                final long recordNr,
+                final String sourceKey,
+                final UploadResponse uploadResponse,
+                final long latencyNanos,
+                final byte[] payload) {
+            this.timeMillis = timeMillis;
+            this.recordNr = recordNr;
+            this.sourceKey = sourceKey;
+            this.uploadResponse = uploadResponse;
+            this.latencyNanos = latencyNanos;
+            this.payload = payload;
+        }
+
+        /**
+         * Clears the references of the entry, so the slot doesn't keep them reachable.
+         */
+        private void clear() {
+            sourceKey = null;
+            uploadResponse = null;
+            payload = null;
+        }
+    }
+}
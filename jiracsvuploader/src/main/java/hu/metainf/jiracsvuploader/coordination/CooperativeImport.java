@@ -0,0 +1,297 @@
+package hu.metainf.jiracsvuploader.coordination;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.SortedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.dedupe.KeyIndex;
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+import hu.metainf.jiracsvuploader.journal.ProgressJournal;
+import hu.metainf.jiracsvuploader.journal.ResumeState;
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.process.JiraCsvReader;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * Worker of a cooperative import, in which several processes, possibly on several hosts, import
+ * the same CSV file split into byte range partitions by a {@link PartitionCoordinator}. The
+ * worker leases one partition at a time, renewing the lease from a daemon thread while the
+ * partition is read and its records are uploaded, and marks it completed once all its records
+ * are finally uploaded or failed. Each partition has its own progress journal, so a partition
+ * taken over from a process dying is resumed without uploading its completed records again;
+ * records in flight when the process died may be uploaded twice.
+ *
+ */
+public class CooperativeImport {
+    /** Number of lease renewals, and of polls for a partition, within the validity of a lease. */
+    private static final long RENEWALS_PER_LEASE = 3L;
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(CooperativeImport.class);
+    /** Coordinator of the import. */
+    private final PartitionCoordinator coordinator;
+    /** Identifier of this process. */
+    private final String ownerId;
+    /** Validity of the leases in milliseconds. */
+    private final long leaseMillis;
+    /** Period of the lease renewals, and of the polls for a partition, in milliseconds. */
+    private final long renewalMillis;
+    /** Maximal length of a CSV record in characters. */
+    private final int maxRecordLength;
+    /** Index of the issue keys already present in Jira, or <code>null</code>. */
+    private final KeyIndex keyIndex;
+    /** Whether records are held in compact form till they are uploaded. */
+    private final boolean compactRecords;
+    /** Partition being processed, <code>null</code> between partitions. */
+    private volatile PartitionRun currentRun;
+
+    /**
+     * Ctor.
+     *
+     * @param coordinator
+     *            coordinator of the import
+     * @param ownerId
+     *            identifier of this process, unique among the cooperating processes; whitespace
+     *            is replaced
+     * @param leaseMillis
+     *            validity of the leases in milliseconds, which has to match the validity used by
+     *            the coordinator
+     * @param maxRecordLength
+     *            maximal length of a CSV record in characters
+     * @param keyIndex
+     *            index of the issue keys already present in Jira, or <code>null</code> to not
+     *            deduplicate records
+     * @param compactRecords
+     *            whether records are held in compact form till they are uploaded
+     */
+    public CooperativeImport(
+            final PartitionCoordinator coordinator,
+            final String ownerId,
+            final long leaseMillis,
+            final int maxRecordLength,
+            final KeyIndex keyIndex,
+            final boolean compactRecords) {
+        this.coordinator = coordinator;
+        this.ownerId = ownerId.replaceAll("\\s", "_");
+        this.leaseMillis = leaseMillis;
+        this.renewalMillis = Math.max(1L, leaseMillis / RENEWALS_PER_LEASE);
+        this.maxRecordLength = maxRecordLength;
+        this.keyIndex = keyIndex;
+        this.compactRecords = compactRecords;
+    }
+
+    /**
+     * Processes partitions of the CSV file till all partitions are completed, by this process or
+     * by others.
+     *
+     * @param sourceFilePath
+     *            path of the source CSV file, which has to be the same file for all processes
+     * @param partitionNr
+     *            minimal number of partitions, used by the process initializing the partitions
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     *            to process all records
+     * @param csvRecordProcessor
+     *            CSV record processor object, without a progress journal of its own
+     * @throws IOException
+     *             If coordination fails, or a partition can't be read
+     * @throws InterruptedException
+     *             If waiting for a partition or for the uploads of a partition is interrupted
+     */
+    public void run(
+            final String sourceFilePath,
+            final int partitionNr,
+            final RecordFilter recordFilter,
+            final CsvLineProcessor csvRecordProcessor) throws IOException, InterruptedException {
+        final long inputSize = Files.size(Paths.get(sourceFilePath));
+        StatData.addValue(StatTypeKeys.INPUT_BYTE_NR, inputSize);
+        coordinator.initialize(inputSize, () -> new JiraCsvReader(maxRecordLength)
+                .planPartitions(sourceFilePath, partitionNr));
+        final ScheduledExecutorService renewalTimer =
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "lease-renewal");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            renewalTimer.scheduleWithFixedDelay(this::renewLease, renewalMillis, renewalMillis,
+                    TimeUnit.MILLISECONDS);
+            while (true) {
+                final long acquireTime = System.currentTimeMillis();
+                final PartitionLease lease = coordinator.acquire(ownerId);
+                if (lease != null) {
+                    processPartition(lease, acquireTime + leaseMillis, sourceFilePath,
+                            recordFilter, csvRecordProcessor);
+                } else if (coordinator.isFinished()) {
+                    break;
+                } else {
+                    logger.debug("No partition available, waiting for leases to expire");
+                    Thread.sleep(renewalMillis);
+                }
+            }
+        } finally {
+            renewalTimer.shutdownNow();
+        }
+        logger.info("All partitions of the cooperative import are completed");
+    }
+
+    /**
+     * Publishes the counters of the stats of this process, and returns the counters published by
+     * the processes so far, summed.
+     *
+     * @return counters by name
+     * @throws IOException
+     *             If coordination fails
+     */
+    public SortedMap<String, Long> mergeStats() throws IOException {
+        coordinator.publishStats(ownerId, StatData.getSummedValues());
+        return coordinator.getMergedStats();
+    }
+
+    /**
+     * Processes a leased partition: reads it, waits till all its records are finally uploaded or
+     * failed, and marks it completed. If the lease is lost meanwhile, reading and journaling are
+     * stopped and the partition is left to the process taking it over.
+     *
+     * @param lease
+     *            lease of the partition
+     * @param leaseExpiry
+     *            time the lease expires at unless renewed, in milliseconds since the epoch
+     * @param sourceFilePath
+     *            path of the source CSV file
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     * @throws IOException
+     *             If the partition can't be read, or its journal can't be opened
+     * @throws InterruptedException
+     *             If waiting for the uploads is interrupted
+     */
+    private void processPartition(
+            final PartitionLease lease,
+            final long leaseExpiry,
+            final String sourceFilePath,
+            final RecordFilter recordFilter,
+            final CsvLineProcessor csvRecordProcessor) throws IOException, InterruptedException {
+        logger.info("Processing partition {} of the cooperative import", lease);
+        final String journalPath = coordinator.getJournalPath(lease);
+        final ResumeState resumeState =
+                journalPath != null ? ProgressJournal.load(journalPath) : null;
+        final ProgressJournal journal =
+                journalPath != null ? new ProgressJournal(journalPath, true) : null;
+        final PartitionRun run = new PartitionRun(lease, leaseExpiry, journal);
+        final boolean read;
+        try {
+            csvRecordProcessor.setProgressJournal(journal);
+            currentRun = run;
+            final JiraCsvReader reader =
+                    new JiraCsvReader(maxRecordLength, resumeState, keyIndex, compactRecords);
+            read = reader.doPartitionJiraCSVProcessing(sourceFilePath, lease.getStart(),
+                    lease.getEnd(), recordFilter, csvRecordProcessor, () -> run.lost);
+            // Records in flight refer to the journal, it's closed by the processor on interruption
+            csvRecordProcessor.awaitInFlightRecords();
+        } finally {
+            csvRecordProcessor.setProgressJournal(null);
+            currentRun = null;
+            if (journal != null) {
+                journal.close();
+            }
+        }
+        if (run.lost) {
+            logger.warn("Left partition {} to the process taking over its lease", lease);
+            return;
+        }
+        if (!read) {
+            throw new IOException("Failed to read partition " + lease);
+        }
+        if (!coordinator.complete(lease)) {
+            logger.warn("Lease of partition {} was taken over before its completion", lease);
+        }
+    }
+
+    /**
+     * Renews the lease being processed, called by the renewal timer. A lease refused to be
+     * renewed, or failing to be renewed till it would expire before the next renewal, is marked
+     * lost, and the journal of its partition is discarded, as the partition may already be
+     * resumed from the journal by another process.
+     */
+    private void renewLease() {
+        final PartitionRun run = currentRun;
+        if (run == null || run.lost) {
+            return;
+        }
+        final long renewalTime = System.currentTimeMillis();
+        try {
+            if (coordinator.renew(run.lease)) {
+                run.expiry = renewalTime + leaseMillis;
+            } else {
+                logger.error("Lease of partition {} expired and was taken over by another process,"
+                        + " stopping its processing", run.lease);
+                markLost(run);
+            }
+        } catch (final IOException e) {
+            logger.error("Failed to renew lease of partition {}: {}", run.lease, e.getMessage());
+            if (System.currentTimeMillis() + renewalMillis >= run.expiry) {
+                logger.error("Lease of partition {} expires without being renewed, stopping its"
+                        + " processing", run.lease);
+                markLost(run);
+            }
+        }
+    }
+
+    /**
+     * Marks a lease lost, and discards the journal of its partition.
+     *
+     * @param run
+     *            lease being processed
+     */
+    private static void markLost(final PartitionRun run) {
+        run.lost = true;
+        if (run.journal != null) {
+            run.journal.discard();
+        }
+    }
+
+    /**
+     * Lease being processed together with the journal of its partition.
+     *
+     */
+    private static final class PartitionRun {
+        /** Lease of the partition. */
+        private final PartitionLease lease;
+        /** Progress journal of the partition, or <code>null</code>. */
+        private final ProgressJournal journal;
+        /** Time the lease expires at unless renewed, in milliseconds since the epoch. */
+        private volatile long expiry;
+        /** Whether the lease failed to be renewed. */
+        private volatile boolean lost;
+
+        /**
+         * Ctor.
+         *
+         * @param lease
+         *            lease of the partition
+         * @param expiry
+         *            time the lease expires at unless renewed, in milliseconds since the epoch
+         * @param journal
+         *            progress journal of the partition, or <code>null</code>
+         */
+        private PartitionRun(
+                final PartitionLease lease,
+                final long expiry,
+                final ProgressJournal journal) {
+            this.lease = lease;
+            this.expiry = expiry;
+            this.journal = journal;
+        }
+    }
+}
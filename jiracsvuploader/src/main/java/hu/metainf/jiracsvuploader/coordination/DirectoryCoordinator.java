@@ -0,0 +1,249 @@
+package hu.metainf.jiracsvuploader.coordination;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * {@link PartitionCoordinator} coordinating processes through a shared directory, which may be on
+ * a network file system supporting file locks. The partition table is read and rewritten under
+ * an exclusive lock of a lock file, the new table replacing the old one by an atomic rename, so
+ * a process dying while writing leaves the previous table intact. The progress journals of the
+ * partitions and the stats of the processes are kept in the directory as well. Lease expiry is
+ * based on the wall clock, so the clocks of the hosts have to be synchronized well within the
+ * lease time.
+ *
+ */
+public class DirectoryCoordinator implements PartitionCoordinator {
+    /** Name of the lock file. */
+    private static final String LOCK_FILE_NAME = "coordinator.lock";
+    /** Name of the partition table file. */
+    private static final String TABLE_FILE_NAME = "partitions";
+    /** Suffix of temporary files replacing files by a rename. */
+    private static final String TEMP_SUFFIX = ".tmp";
+    /** Prefix of the stats files of the processes. */
+    private static final String STATS_PREFIX = "stats-";
+    /** Suffix of the stats files of the processes. */
+    private static final String STATS_SUFFIX = ".properties";
+
+    /** Shared directory. */
+    private final Path directory;
+    /** Validity of the leases in milliseconds. */
+    private final long leaseMillis;
+
+    /**
+     * Ctor, creating the directory if it doesn't exist.
+     *
+     * @param directory
+     *            path of the shared directory
+     * @param leaseMillis
+     *            validity of the leases in milliseconds
+     * @throws IOException
+     *             If the directory can't be created
+     */
+    public DirectoryCoordinator(final String directory, final long leaseMillis)
+            throws IOException {
+        this.directory = Files.createDirectories(Paths.get(directory));
+        this.leaseMillis = leaseMillis;
+    }
+
+    @Override
+    public synchronized void initialize(final long inputSize, final PartitionPlanner planner)
+            throws IOException {
+        underLock(() -> {
+            final PartitionTable table = readTable();
+            if (table == null) {
+                writeTable(new PartitionTable(inputSize, planner.plan()));
+            } else if (table.getInputSize() != inputSize) {
+                throw new IOException("Coordination directory " + directory
+                        + " belongs to a CSV file of " + table.getInputSize() + " bytes");
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized PartitionLease acquire(final String ownerId) throws IOException {
+        return underLock(() -> {
+            final PartitionTable table = requireTable();
+            final PartitionLease lease =
+                    table.acquire(ownerId, System.currentTimeMillis(), leaseMillis);
+            writeTable(table);
+            return lease;
+        });
+    }
+
+    @Override
+    public synchronized boolean renew(final PartitionLease lease) throws IOException {
+        return underLock(() -> {
+            final PartitionTable table = requireTable();
+            final boolean renewed = table.renew(lease, System.currentTimeMillis(), leaseMillis);
+            writeTable(table);
+            return renewed;
+        });
+    }
+
+    @Override
+    public synchronized boolean complete(final PartitionLease lease) throws IOException {
+        return underLock(() -> {
+            final PartitionTable table = requireTable();
+            final boolean completed = table.complete(lease);
+            writeTable(table);
+            return completed;
+        });
+    }
+
+    @Override
+    public synchronized boolean isFinished() throws IOException {
+        return underLock(() -> requireTable().isFinished());
+    }
+
+    @Override
+    public String getJournalPath(final PartitionLease lease) {
+        return directory.resolve(lease.getJournalFileName()).toString();
+    }
+
+    @Override
+    public void publishStats(final String ownerId, final SortedMap<String, Long> stats)
+            throws IOException {
+        final Path statsPath =
+                directory.resolve(STATS_PREFIX + ownerId.replaceAll("\\W", "_") + STATS_SUFFIX);
+        final Path tempPath = statsPath.resolveSibling(statsPath.getFileName() + TEMP_SUFFIX);
+        try (Writer writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+            for (final Map.Entry<String, Long> stat : stats.entrySet()) {
+                writer.write(stat.getKey() + "=" + stat.getValue() + "\n");
+            }
+        }
+        Files.move(tempPath, statsPath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public SortedMap<String, Long> getMergedStats() throws IOException {
+        final SortedMap<String, Long> merged = new TreeMap<>();
+        try (DirectoryStream<Path> statsPaths =
+                Files.newDirectoryStream(directory, STATS_PREFIX + "*" + STATS_SUFFIX)) {
+            for (final Path statsPath : statsPaths) {
+                for (final String line : Files.readAllLines(statsPath, StandardCharsets.UTF_8)) {
+                    final int separator = line.lastIndexOf('=');
+                    if (separator > 0) {
+                        merged.merge(line.substring(0, separator),
+                                Long.parseLong(line.substring(separator + 1)), Long::sum);
+                    }
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Runs an action under the exclusive lock of the lock file, which guards the partition table
+     * against other processes. Threads of this process are serialized by the monitor of the
+     * coordinator, as file locks are held on behalf of the whole process.
+     *
+     * @param <T>
+     *            type of the result of the action
+     * @param action
+     *            action reading or rewriting the partition table
+     * @return The result of the action
+     * @throws IOException
+     *             If locking the lock file fails, or the action fails
+     */
+    private <T> T underLock(final LockedAction<T> action) throws IOException {
+        try (FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Released by closing the channel
+            lockChannel.lock();
+            return action.run();
+        }
+    }
+
+    /**
+     * Reads the partition table.
+     *
+     * @return The table read, or <code>null</code> if the partitions weren't initialized yet
+     * @throws IOException
+     *             If reading the table fails
+     */
+    private PartitionTable readTable() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(directory.resolve(TABLE_FILE_NAME),
+                StandardCharsets.UTF_8)) {
+            return PartitionTable.read(reader);
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the partition table, which has to be initialized.
+     *
+     * @return The table read
+     * @throws IOException
+     *             If reading the table fails or the partitions weren't initialized
+     */
+    private PartitionTable requireTable() throws IOException {
+        final PartitionTable table = readTable();
+        if (table == null) {
+            throw new IOException("Partitions in " + directory + " aren't initialized");
+        }
+        return table;
+    }
+
+    /**
+     * Replaces the partition table if it changed, writing a temporary file renamed atomically.
+     *
+     * @param table
+     *            partition table
+     * @throws IOException
+     *             If writing the table fails
+     */
+    private void writeTable(final PartitionTable table) throws IOException {
+        if (!table.isModified()) {
+            return;
+        }
+        final Path tablePath = directory.resolve(TABLE_FILE_NAME);
+        final Path tempPath = directory.resolve(TABLE_FILE_NAME + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                Writer writer = new OutputStreamWriter(Channels.newOutputStream(channel),
+                        StandardCharsets.UTF_8)) {
+            table.write(writer);
+            writer.flush();
+            channel.force(false);
+        }
+        Files.move(tempPath, tablePath, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Action run under the lock of the partition table.
+     *
+     * @param <T>
+     *            type of the result of the action
+     */
+    @FunctionalInterface
+    private interface LockedAction<T> {
+        /**
+         * Runs the action.
+         *
+         * @return The result of the action
+         * @throws IOException
+         *             If the action fails
+         */
+        T run() throws IOException;
+    }
+}
@@ -0,0 +1,104 @@
+package hu.metainf.jiracsvuploader.coordination;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * {@link PartitionCoordinator} of workers within one process, keeping the partition table in
+ * memory. Mainly useful for tests and for importing with several independent workers.
+ *
+ */
+public class LocalCoordinator implements PartitionCoordinator {
+    /** Validity of the leases in milliseconds. */
+    private final long leaseMillis;
+    /** Directory of the progress journals, <code>null</code> if partitions aren't journaled. */
+    private final Path journalDirectory;
+    /** Counters published, by the identifiers of the workers. */
+    private final Map<String, SortedMap<String, Long>> publishedStats = new HashMap<>();
+    /** Partition table, <code>null</code> until initialized. */
+    private PartitionTable table;
+
+    /**
+     * Ctor.
+     *
+     * @param leaseMillis
+     *            validity of the leases in milliseconds
+     * @param journalDirectory
+     *            directory of the progress journals, <code>null</code> to not journal partitions
+     */
+    public LocalCoordinator(final long leaseMillis, final Path journalDirectory) {
+        this.leaseMillis = leaseMillis;
+        this.journalDirectory = journalDirectory;
+    }
+
+    @Override
+    public synchronized void initialize(final long inputSize, final PartitionPlanner planner)
+            throws IOException {
+        if (table == null) {
+            table = new PartitionTable(inputSize, planner.plan());
+        } else if (table.getInputSize() != inputSize) {
+            throw new IOException(
+                    "Partitions belong to a CSV file of " + table.getInputSize() + " bytes");
+        }
+    }
+
+    @Override
+    public synchronized PartitionLease acquire(final String ownerId) throws IOException {
+        return requireTable().acquire(ownerId, System.currentTimeMillis(), leaseMillis);
+    }
+
+    @Override
+    public synchronized boolean renew(final PartitionLease lease) throws IOException {
+        return requireTable().renew(lease, System.currentTimeMillis(), leaseMillis);
+    }
+
+    @Override
+    public synchronized boolean complete(final PartitionLease lease) throws IOException {
+        return requireTable().complete(lease);
+    }
+
+    @Override
+    public synchronized boolean isFinished() throws IOException {
+        return requireTable().isFinished();
+    }
+
+    @Override
+    public String getJournalPath(final PartitionLease lease) {
+        return journalDirectory == null ? null
+                : journalDirectory.resolve(lease.getJournalFileName()).toString();
+    }
+
+    @Override
+    public synchronized void publishStats(
+            final String ownerId,
+            final SortedMap<String, Long> stats) {
+        publishedStats.put(ownerId, new TreeMap<>(stats));
+    }
+
+    @Override
+    public synchronized SortedMap<String, Long> getMergedStats() {
+        final SortedMap<String, Long> merged = new TreeMap<>();
+        for (final SortedMap<String, Long> stats : publishedStats.values()) {
+            stats.forEach((name, value) -> merged.merge(name, value, Long::sum));
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the partition table, which has to be initialized.
+     *
+     * @return The table
+     * @throws IOException
+     *             If the partitions weren't initialized
+     */
+    private PartitionTable requireTable() throws IOException {
+        if (table == null) {
+            throw new IOException("Partitions aren't initialized");
+        }
+        return table;
+    }
+}
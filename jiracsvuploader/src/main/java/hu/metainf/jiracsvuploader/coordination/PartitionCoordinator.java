@@ -0,0 +1,100 @@
+package hu.metainf.jiracsvuploader.coordination;
+
+import java.io.IOException;
+import java.util.SortedMap;
+
+/**
+ * Coordinator of a cooperative import, in which several processes split the CSV file into byte
+ * range partitions. Partitions are claimed through leases expiring unless renewed, so the
+ * partitions of a process dying are leased again by the others.
+ *
+ */
+public interface PartitionCoordinator {
+    /**
+     * Initializes the partitions of the CSV file, unless another process did already.
+     *
+     * @param inputSize
+     *            size of the CSV file in bytes
+     * @param planner
+     *            planner of the partitions, called if they weren't initialized yet
+     * @throws IOException
+     *             If coordination fails, or the partitions were initialized for a file of another
+     *             size
+     */
+    void initialize(long inputSize, PartitionPlanner planner) throws IOException;
+
+    /**
+     * Leases a partition not completed and not leased by a live process.
+     *
+     * @param ownerId
+     *            identifier of the process
+     * @return The lease acquired, or <code>null</code> if no partition is available now
+     * @throws IOException
+     *             If coordination fails
+     */
+    PartitionLease acquire(String ownerId) throws IOException;
+
+    /**
+     * Extends a lease.
+     *
+     * @param lease
+     *            lease held
+     * @return <code>true</code> if the lease was extended, <code>false</code> if it expired and
+     *         was taken over by another process
+     * @throws IOException
+     *             If coordination fails
+     */
+    boolean renew(PartitionLease lease) throws IOException;
+
+    /**
+     * Marks the partition of a lease completed.
+     *
+     * @param lease
+     *            lease held
+     * @return <code>true</code> if the partition was marked, <code>false</code> if the lease
+     *         expired and was taken over by another process
+     * @throws IOException
+     *             If coordination fails
+     */
+    boolean complete(PartitionLease lease) throws IOException;
+
+    /**
+     * Tells whether all partitions are completed.
+     *
+     * @return <code>true</code> if the import is finished
+     * @throws IOException
+     *             If coordination fails
+     */
+    boolean isFinished() throws IOException;
+
+    /**
+     * Returns the path of the progress journal of a partition, shared by the processes leasing
+     * it, so records completed by a process dying aren't uploaded again.
+     *
+     * @param lease
+     *            lease of the partition
+     * @return Path of the journal, or <code>null</code> if partitions aren't journaled
+     */
+    String getJournalPath(PartitionLease lease);
+
+    /**
+     * Publishes the counters of the stats of a process.
+     *
+     * @param ownerId
+     *            identifier of the process
+     * @param stats
+     *            counters by name
+     * @throws IOException
+     *             If coordination fails
+     */
+    void publishStats(String ownerId, SortedMap<String, Long> stats) throws IOException;
+
+    /**
+     * Returns the counters published by all processes, summed.
+     *
+     * @return counters by name
+     * @throws IOException
+     *             If coordination fails
+     */
+    SortedMap<String, Long> getMergedStats() throws IOException;
+}
@@ -0,0 +1,90 @@
+package hu.metainf.jiracsvuploader.coordination;
+
+/**
+ * Lease of a partition of a cooperative import held by a process: a byte range of the CSV file
+ * aligned to record boundaries.
+ *
+ */
+public class PartitionLease {
+    /** Index of the partition. */
+    private final int index;
+    /** Start position (inclusive) of the partition. */
+    private final long start;
+    /** End position (exclusive) of the partition. */
+    private final long end;
+    /** Identifier of the process holding the lease. */
+    private final String ownerId;
+
+    /**
+     * Ctor.
+     *
+     * @param index
+     *            index of the partition
+     * @param start
+     *            start position (inclusive) of the partition
+     * @param end
+     *            end position (exclusive) of the partition
+     * @param ownerId
+     *            identifier of the process holding the lease
+     */
+    public PartitionLease(
+            final int index,
+            final long start,
+            final long end,
+            final String ownerId) {
+        this.index = index;
+        this.start = start;
+        this.end = end;
+        this.ownerId = ownerId;
+    }
+
+    /**
+     * Returns the index of the partition.
+     *
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the start position (inclusive) of the partition.
+     *
+     * @return byte offset
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the end position (exclusive) of the partition.
+     *
+     * @return byte offset
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the identifier of the process holding the lease.
+     *
+     * @return identifier
+     */
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * Returns the name of the progress journal file of the partition.
+     *
+     * @return file name
+     */
+    public String getJournalFileName() {
+        return "partition-" + index + ".journal";
+    }
+
+    @Override
+    public String toString() {
+        return "#" + index + " [" + start + ", " + end + ")";
+    }
+}
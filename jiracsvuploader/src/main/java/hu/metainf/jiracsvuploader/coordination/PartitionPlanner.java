@@ -0,0 +1,19 @@
+package hu.metainf.jiracsvuploader.coordination;
+
+import java.io.IOException;
+
+/**
+ * Planner splitting the CSV file of a cooperative import to partitions.
+ *
+ */
+@FunctionalInterface
+public interface PartitionPlanner {
+    /**
+     * Plans the partitions.
+     *
+     * @return Start positions of the partitions, followed by the end of the last one
+     * @throws IOException
+     *             If reading the CSV file fails
+     */
+    long[] plan() throws IOException;
+}
@@ -0,0 +1,252 @@
+package hu.metainf.jiracsvuploader.coordination;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partitions of a cooperative import with the state of their leases. Stored as text, a line with
+ * the size of the CSV file followed by a line per partition:
+ *
+ * <pre>
+ * size &lt;inputSize&gt;
+ * &lt;index&gt; &lt;start&gt; &lt;end&gt; FREE|LEASED|DONE &lt;ownerId|-&gt; &lt;expiryMillis&gt;
+ * </pre>
+ *
+ * Not thread-safe.
+ *
+ */
+final class PartitionTable {
+    /** Prefix of the line with the size of the CSV file. */
+    private static final String SIZE_PREFIX = "size ";
+    /** Owner written for partitions never leased. */
+    private static final String NO_OWNER = "-";
+    /** Number of fields of a partition line. */
+    private static final int PARTITION_FIELD_NR = 6;
+
+    /**
+     * State of a partition.
+     *
+     */
+    private enum State {
+        /** Never leased. */
+        FREE,
+        /** Leased, free again after the lease expires. */
+        LEASED,
+        /** Completed. */
+        DONE
+    }
+
+    /** Size of the CSV file in bytes. */
+    private final long inputSize;
+    /** Start positions of the partitions, followed by the end of the last one. */
+    private final long[] boundaries;
+    /** States of the partitions. */
+    private final State[] states;
+    /** Identifiers of the processes last leasing the partitions. */
+    private final String[] ownerIds;
+    /** Expiry times of the leases in milliseconds since the epoch. */
+    private final long[] expiries;
+    /** Whether the table changed since it was created or read. */
+    private boolean modified;
+
+    /**
+     * Ctor, creating partitions never leased.
+     *
+     * @param inputSize
+     *            size of the CSV file in bytes
+     * @param boundaries
+     *            start positions of the partitions, followed by the end of the last one
+     */
+    PartitionTable(final long inputSize, final long[] boundaries) {
+        this.inputSize = inputSize;
+        this.boundaries = boundaries.clone();
+        final int partitionNr = boundaries.length - 1;
+        states = new State[partitionNr];
+        ownerIds = new String[partitionNr];
+        expiries = new long[partitionNr];
+        for (int i = 0; i < partitionNr; i++) {
+            states[i] = State.FREE;
+            ownerIds[i] = NO_OWNER;
+        }
+        modified = true;
+    }
+
+    /**
+     * Reads a table written by {@link #write(Writer)}.
+     *
+     * @param reader
+     *            reader of the table
+     * @return The table read
+     * @throws IOException
+     *             If reading fails or the table is invalid
+     */
+    static PartitionTable read(final BufferedReader reader) throws IOException {
+        final String sizeLine = reader.readLine();
+        if (sizeLine == null || !sizeLine.startsWith(SIZE_PREFIX)) {
+            throw new IOException("Invalid partition table");
+        }
+        final List<String[]> partitionLines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final String[] fields = line.split(" ");
+            if (fields.length != PARTITION_FIELD_NR) {
+                throw new IOException("Invalid partition table line: " + line);
+            }
+            partitionLines.add(fields);
+        }
+        try {
+            final long[] boundaries = new long[partitionLines.size() + 1];
+            for (int i = 0; i < partitionLines.size(); i++) {
+                boundaries[i] = Long.parseLong(partitionLines.get(i)[1]);
+                boundaries[i + 1] = Long.parseLong(partitionLines.get(i)[2]);
+            }
+            final PartitionTable table = new PartitionTable(
+                    Long.parseLong(sizeLine.substring(SIZE_PREFIX.length())), boundaries);
+            for (int i = 0; i < partitionLines.size(); i++) {
+                final String[] fields = partitionLines.get(i);
+                table.states[i] = State.valueOf(fields[3]);
+                table.ownerIds[i] = fields[4];
+                table.expiries[i] = Long.parseLong(fields[5]);
+            }
+            table.modified = false;
+            return table;
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("Invalid partition table: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the table.
+     *
+     * @param writer
+     *            writer of the table
+     * @throws IOException
+     *             If writing fails
+     */
+    void write(final Writer writer) throws IOException {
+        writer.write(SIZE_PREFIX + inputSize + "\n");
+        for (int i = 0; i < states.length; i++) {
+            writer.write(i + " " + boundaries[i] + " " + boundaries[i + 1] + " " + states[i] + " "
+                    + ownerIds[i] + " " + expiries[i] + "\n");
+        }
+    }
+
+    /**
+     * Leases a partition, preferring partitions never leased over ones whose lease expired.
+     *
+     * @param ownerId
+     *            identifier of the process, without whitespace
+     * @param now
+     *            current time in milliseconds since the epoch
+     * @param leaseMillis
+     *            validity of the lease in milliseconds
+     * @return The lease acquired, or <code>null</code> if no partition is available
+     */
+    PartitionLease acquire(final String ownerId, final long now, final long leaseMillis) {
+        int leased = -1;
+        for (int i = 0; i < states.length && leased < 0; i++) {
+            if (states[i] == State.FREE) {
+                leased = i;
+            }
+        }
+        for (int i = 0; i < states.length && leased < 0; i++) {
+            if (states[i] == State.LEASED && expiries[i] < now) {
+                leased = i;
+            }
+        }
+        if (leased < 0) {
+            return null;
+        }
+        states[leased] = State.LEASED;
+        ownerIds[leased] = ownerId;
+        expiries[leased] = now + leaseMillis;
+        modified = true;
+        return new PartitionLease(leased, boundaries[leased], boundaries[leased + 1], ownerId);
+    }
+
+    /**
+     * Extends a lease.
+     *
+     * @param lease
+     *            lease held
+     * @param now
+     *            current time in milliseconds since the epoch
+     * @param leaseMillis
+     *            validity of the lease in milliseconds
+     * @return <code>true</code> if the lease was extended, <code>false</code> if it was taken over
+     */
+    boolean renew(final PartitionLease lease, final long now, final long leaseMillis) {
+        if (!isHeld(lease)) {
+            return false;
+        }
+        expiries[lease.getIndex()] = now + leaseMillis;
+        modified = true;
+        return true;
+    }
+
+    /**
+     * Marks the partition of a lease completed.
+     *
+     * @param lease
+     *            lease held
+     * @return <code>true</code> if the partition was marked, <code>false</code> if the lease was
+     *         taken over
+     */
+    boolean complete(final PartitionLease lease) {
+        if (!isHeld(lease)) {
+            return false;
+        }
+        states[lease.getIndex()] = State.DONE;
+        modified = true;
+        return true;
+    }
+
+    /**
+     * Tells whether a lease is still held by its owner. A lease expired, but not taken over yet,
+     * is still held.
+     *
+     * @param lease
+     *            lease
+     * @return <code>true</code> if held
+     */
+    private boolean isHeld(final PartitionLease lease) {
+        final int index = lease.getIndex();
+        return index < states.length && states[index] == State.LEASED
+                && ownerIds[index].equals(lease.getOwnerId());
+    }
+
+    /**
+     * Tells whether all partitions are completed.
+     *
+     * @return <code>true</code> if all partitions are completed
+     */
+    boolean isFinished() {
+        for (final State state : states) {
+            if (state != State.DONE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the CSV file.
+     *
+     * @return size in bytes
+     */
+    long getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * Tells whether the table changed since it was created or read.
+     *
+     * @return <code>true</code> if changed
+     */
+    boolean isModified() {
+        return modified;
+    }
+}
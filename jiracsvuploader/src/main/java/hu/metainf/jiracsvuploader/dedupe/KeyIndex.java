@@ -0,0 +1,377 @@
+package hu.metainf.jiracsvuploader.dedupe;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Set of issue keys held off-heap, so tens of millions of keys cost the garbage collector
+ * nothing. Keys are stored length-prefixed as UTF-16 characters in an append-only arena, indexed
+ * by an open-addressing hash table with linear probing. Each slot of the table packs the upper
+ * half of the 64-bit hash of its key with the arena offset of the key, so most probes of other
+ * keys are rejected without touching the arena. Once loaded, the index is sealed, building a
+ * blocked Bloom filter in front of the table: all bits of a key fall into the same cache line,
+ * so a key not in the index is usually rejected by a single memory access. Lookups neither
+ * allocate nor encode the key. Not thread-safe while adding, safe for concurrent lookups after
+ * sealing.
+ *
+ */
+public class KeyIndex {
+    /** Initial number of slots of the hash table. */
+    private static final int INITIAL_SLOT_NR = 1024;
+    /** Highest share of used slots of the hash table before it's doubled. */
+    private static final double MAX_LOAD_FACTOR = 0.6;
+    /** Initial size of the arena in bytes. */
+    private static final int INITIAL_ARENA_SIZE = 64 * 1024;
+    /** Size of the length prefix of a key in the arena in bytes. */
+    private static final int LENGTH_PREFIX_SIZE = Character.BYTES;
+    /** Size of a slot of the hash table in bytes. */
+    private static final int SLOT_SIZE = Long.BYTES;
+    /** Longest key in characters. */
+    public static final int MAX_KEY_LENGTH = Character.MAX_VALUE;
+    /** Number of bits of a Bloom filter block, the size of a cache line. */
+    private static final int BLOOM_BLOCK_BITS = 512;
+    /** Number of bits set per key in the Bloom filter. */
+    private static final int BLOOM_HASH_NR = 7;
+    /** Number of Bloom filter bits per key, giving a false positive rate below 1%. */
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    /** Number of hash bits selecting a bit within a Bloom filter block. */
+    private static final int BLOOM_BIT_INDEX_BITS = 9;
+    /** Mask of the lower half of a long. */
+    private static final long LOWER_HALF_MASK = 0xFFFFFFFFL;
+    /** Prime of the 64-bit FNV-1a hash. */
+    private static final long FNV_PRIME = 0x100000001B3L;
+    /** Offset basis of the 64-bit FNV-1a hash. */
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    /** First multiplier of the 64-bit finalizer of MurmurHash3. */
+    private static final long FMIX_MULTIPLIER_1 = 0xFF51AFD7ED558CCDL;
+    /** Second multiplier of the 64-bit finalizer of MurmurHash3. */
+    private static final long FMIX_MULTIPLIER_2 = 0xC4CEB9FE1A85EC53L;
+    /** Number of bits shifted by the 64-bit finalizer of MurmurHash3. */
+    private static final int FMIX_SHIFT = 33;
+
+    /** Slots of the hash table: upper hash half, arena offset + 1 in the lower half; 0 if free. */
+    private ByteBuffer slots;
+    /** Mask turning a hash into a slot index. */
+    private int slotMask;
+    /** Keys stored length-prefixed. */
+    private ByteBuffer arena;
+    /** Number of keys stored. */
+    private int keyNr;
+    /** Bloom filter built when sealing, or <code>null</code> before. */
+    private ByteBuffer bloomFilter;
+    /** Mask turning a hash into a Bloom filter block index. */
+    private int bloomBlockMask;
+
+    /**
+     * Ctor, creating an empty index.
+     */
+    public KeyIndex() {
+        slots = allocate(INITIAL_SLOT_NR * SLOT_SIZE);
+        slotMask = INITIAL_SLOT_NR - 1;
+        arena = allocate(INITIAL_ARENA_SIZE);
+    }
+
+    /**
+     * Adds a key to the index.
+     *
+     * @param key
+     *            key to add
+     * @return <code>true</code> if the key was added, <code>false</code> if it was in the index
+     *         already
+     * @throws IllegalArgumentException
+     *             If the key is longer than {@link #MAX_KEY_LENGTH}
+     * @throws IllegalStateException
+     *             If the arena is full
+     */
+    public boolean add(final String key) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key longer than " + MAX_KEY_LENGTH
+                    + " characters");
+        }
+        final long hash = hash(key);
+        int index = slotIndex(hash);
+        long slot;
+        while ((slot = slots.getLong(index * SLOT_SIZE)) != 0L) {
+            if (matches(slot, hash, key)) {
+                return false;
+            }
+            index = (index + 1) & slotMask;
+        }
+        slots.putLong(index * SLOT_SIZE, (hash & ~LOWER_HALF_MASK) | (store(key) + 1L));
+        keyNr++;
+        if (bloomFilter != null) {
+            addToBloomFilter(hash);
+        }
+        if (keyNr > (slotMask + 1) * MAX_LOAD_FACTOR) {
+            growSlots();
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether a key is in the index.
+     *
+     * @param key
+     *            key to look up
+     * @return <code>true</code> if the key is in the index
+     */
+    public boolean contains(final String key) {
+        final long hash = hash(key);
+        if (bloomFilter != null && !mightContain(hash)) {
+            return false;
+        }
+        int index = slotIndex(hash);
+        long slot;
+        while ((slot = slots.getLong(index * SLOT_SIZE)) != 0L) {
+            if (matches(slot, hash, key)) {
+                return true;
+            }
+            index = (index + 1) & slotMask;
+        }
+        return false;
+    }
+
+    /**
+     * Seals the index after loading, building its Bloom filter. Keys can still be added, but
+     * adding many more raises the false positive rate of the Bloom filter.
+     */
+    public void seal() {
+        final int blockNr = Integer.highestOneBit(
+                Math.max(1, (int) Math.min(Integer.MAX_VALUE / BLOOM_BLOCK_BITS,
+                        (long) keyNr * BLOOM_BITS_PER_KEY / BLOOM_BLOCK_BITS)) * 2 - 1);
+        bloomFilter = allocate(blockNr * (BLOOM_BLOCK_BITS / Byte.SIZE));
+        bloomBlockMask = blockNr - 1;
+        int offset = 0;
+        while (offset < arena.position()) {
+            addToBloomFilter(storedHash(offset));
+            offset += LENGTH_PREFIX_SIZE + arena.getChar(offset) * Character.BYTES;
+        }
+    }
+
+    /**
+     * Returns the number of keys in the index.
+     *
+     * @return number of keys
+     */
+    public int size() {
+        return keyNr;
+    }
+
+    /**
+     * Returns the size of the memory allocated off-heap by the index.
+     *
+     * @return size in bytes
+     */
+    public long getOffHeapBytes() {
+        return (long) slots.capacity() + arena.capacity()
+                + (bloomFilter != null ? bloomFilter.capacity() : 0);
+    }
+
+    /**
+     * Allocates an off-heap buffer in native byte order.
+     *
+     * @param size
+     *            size of the buffer in bytes
+     * @return Buffer allocated, filled with zeros
+     */
+    private static ByteBuffer allocate(final int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Computes the 64-bit hash of a key: FNV-1a over its characters, mixed by the finalizer of
+     * MurmurHash3 so both halves of the hash are well distributed.
+     *
+     * @param key
+     *            key
+     * @return Hash of the key
+     */
+    private static long hash(final String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+        }
+        return fmix(hash);
+    }
+
+    /**
+     * Mixes the bits of a hash with the 64-bit finalizer of MurmurHash3.
+     *
+     * @param value
+     *            hash to mix
+     * @return Mixed hash
+     */
+    private static long fmix(final long value) {
+        long mixed = value;
+        mixed ^= mixed >>> FMIX_SHIFT;
+        mixed *= FMIX_MULTIPLIER_1;
+        mixed ^= mixed >>> FMIX_SHIFT;
+        mixed *= FMIX_MULTIPLIER_2;
+        mixed ^= mixed >>> FMIX_SHIFT;
+        return mixed;
+    }
+
+    /**
+     * Tells whether a slot holds a key.
+     *
+     * @param slot
+     *            used slot
+     * @param hash
+     *            hash of the key
+     * @param key
+     *            key
+     * @return <code>true</code> if the slot holds the key
+     */
+    private boolean matches(final long slot, final long hash, final String key) {
+        if ((slot & ~LOWER_HALF_MASK) != (hash & ~LOWER_HALF_MASK)) {
+            return false;
+        }
+        final int offset = (int) ((slot & LOWER_HALF_MASK) - 1L);
+        if (arena.getChar(offset) != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (arena.getChar(offset + LENGTH_PREFIX_SIZE + i * Character.BYTES)
+                    != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a key to the arena, growing the arena if needed.
+     *
+     * @param key
+     *            key to store
+     * @return Offset of the key in the arena
+     * @throws IllegalStateException
+     *             If the arena is full
+     */
+    private int store(final String key) {
+        final int size = LENGTH_PREFIX_SIZE + key.length() * Character.BYTES;
+        if (arena.remaining() < size) {
+            final long newCapacity = Math.max((long) arena.capacity() * 2,
+                    (long) arena.position() + size);
+            if (newCapacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Key index arena is full after " + keyNr
+                        + " keys");
+            }
+            final ByteBuffer newArena = allocate((int) newCapacity);
+            arena.flip();
+            newArena.put(arena);
+            arena = newArena;
+        }
+        final int offset = arena.position();
+        arena.putChar((char) key.length());
+        for (int i = 0; i < key.length(); i++) {
+            arena.putChar(key.charAt(i));
+        }
+        return offset;
+    }
+
+    /**
+     * Doubles the number of slots of the hash table, moving the keys to their new slots. The slot
+     * index is taken from the upper half of the hash held by the slot, so keys aren't rehashed.
+     */
+    private void growSlots() {
+        final int newSlotNr = (slotMask + 1) * 2;
+        if ((long) newSlotNr * SLOT_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Key index table is full after " + keyNr + " keys");
+        }
+        final ByteBuffer oldSlots = slots;
+        final int oldSlotNr = slotMask + 1;
+        slots = allocate(newSlotNr * SLOT_SIZE);
+        slotMask = newSlotNr - 1;
+        for (int oldIndex = 0; oldIndex < oldSlotNr; oldIndex++) {
+            final long slot = oldSlots.getLong(oldIndex * SLOT_SIZE);
+            if (slot == 0L) {
+                continue;
+            }
+            int index = slotIndex(slot);
+            while (slots.getLong(index * SLOT_SIZE) != 0L) {
+                index = (index + 1) & slotMask;
+            }
+            slots.putLong(index * SLOT_SIZE, slot);
+        }
+    }
+
+    /**
+     * Returns the home slot index of a hash, taken from its upper half.
+     *
+     * @param hash
+     *            hash of a key, or a slot holding its upper half
+     * @return Slot index
+     */
+    private int slotIndex(final long hash) {
+        return (int) (hash >>> Integer.SIZE) & slotMask;
+    }
+
+    /**
+     * Computes the hash of a key stored in the arena.
+     *
+     * @param offset
+     *            offset of the key in the arena
+     * @return Hash of the key
+     */
+    private long storedHash(final int offset) {
+        final int length = arena.getChar(offset);
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ arena.getChar(offset + LENGTH_PREFIX_SIZE + i * Character.BYTES))
+                    * FNV_PRIME;
+        }
+        return fmix(hash);
+    }
+
+    /**
+     * Sets the Bloom filter bits of a key. The block is chosen by the lower half of the hash,
+     * the bits within the block by the upper half combined with the lower one.
+     *
+     * @param hash
+     *            hash of the key
+     */
+    private void addToBloomFilter(final long hash) {
+        final int blockOffset = blockOffset(hash);
+        int combined = (int) (hash >>> Integer.SIZE);
+        for (int i = 0; i < BLOOM_HASH_NR; i++) {
+            final int bit = combined >>> (Integer.SIZE - BLOOM_BIT_INDEX_BITS);
+            final int wordOffset = blockOffset + (bit / Long.SIZE) * Long.BYTES;
+            bloomFilter.putLong(wordOffset,
+                    bloomFilter.getLong(wordOffset) | (1L << (bit % Long.SIZE)));
+            combined += (int) hash | 1;
+        }
+    }
+
+    /**
+     * Tells whether the Bloom filter bits of a key are all set.
+     *
+     * @param hash
+     *            hash of the key
+     * @return <code>false</code> if the key is surely not in the index
+     */
+    private boolean mightContain(final long hash) {
+        final int blockOffset = blockOffset(hash);
+        int combined = (int) (hash >>> Integer.SIZE);
+        for (int i = 0; i < BLOOM_HASH_NR; i++) {
+            final int bit = combined >>> (Integer.SIZE - BLOOM_BIT_INDEX_BITS);
+            if ((bloomFilter.getLong(blockOffset + (bit / Long.SIZE) * Long.BYTES)
+                    & (1L << (bit % Long.SIZE))) == 0L) {
+                return false;
+            }
+            combined += (int) hash | 1;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the byte offset of the Bloom filter block of a hash.
+     *
+     * @param hash
+     *            hash of the key
+     * @return Offset of the block
+     */
+    private int blockOffset(final long hash) {
+        return ((int) hash & bloomBlockMask) * (BLOOM_BLOCK_BITS / Byte.SIZE);
+    }
+}
@@ -0,0 +1,241 @@
+package hu.metainf.jiracsvuploader.dedupe;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.audit.AuditLog;
+import hu.metainf.jiracsvuploader.process.CsvParseException;
+import hu.metainf.jiracsvuploader.process.CsvRecordParser;
+import hu.metainf.jiracsvuploader.process.InputCompression;
+
+/**
+ * Loads the issue keys already present in Jira into a {@link KeyIndex}. The format of each file
+ * is detected from its first line:
+ * <ul>
+ * <li>NDJSON audit log of a previous run: the issue keys or issue ids of the CSV records
+ * uploaded; refused unless its summary line tells it holds every upload, that is, it was
+ * closed, not sampled, dropped no outcome and wasn't rotated</li>
+ * <li>progress journal of a previous run: the issue keys or issue ids of the CSV records
+ * uploaded</li>
+ * <li>CSV export with an <code>Issue key</code> or <code>Issue id</code> column: the values of
+ * these columns</li>
+ * <li>anything else is a key list: the first column of every line</li>
+ * </ul>
+ * The keys Jira assigned to the issues created by a previous run are not loaded from its audit
+ * log or journal, as records are checked by their keys in the CSV file. Files may be gzip or zstd
+ * compressed.
+ *
+ */
+public class KeyIndexLoader {
+    /** Pattern of the lines of a progress journal. */
+    private static final Pattern JOURNAL_LINE = Pattern.compile("[ACF] \\d+ \\S+( \\S+)?");
+    /** Type of the journal lines of uploaded records. */
+    private static final String JOURNAL_UPLOADED_LINE = "A";
+    /** Number of parts of the journal lines of uploaded records with a source key. */
+    private static final int JOURNAL_SOURCE_KEY_PART_NR = 4;
+    /** Property of the source key of the CSV record in the NDJSON audit log. */
+    private static final String AUDIT_SOURCE_KEY_PROPERTY = "sourceKey";
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(KeyIndexLoader.class);
+    /** Maximal length of a CSV record in characters. */
+    private final int maxRecordLength;
+
+    /**
+     * Ctor.
+     *
+     * @param maxRecordLength
+     *            maximal length of a CSV record in characters, longer records are skipped
+     */
+    public KeyIndexLoader(final int maxRecordLength) {
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /**
+     * Loads the keys of files into a new, sealed {@link KeyIndex}.
+     *
+     * @param paths
+     *            paths of the files
+     * @return The {@link KeyIndex} loaded
+     * @throws IOException
+     *             If reading a file fails
+     */
+    public KeyIndex load(final List<String> paths) throws IOException {
+        final KeyIndex keyIndex = new KeyIndex();
+        for (final String path : paths) {
+            final int keyNrBefore = keyIndex.size();
+            load(path, keyIndex);
+            logger.info("Loaded {} issue key(s) from {}", keyIndex.size() - keyNrBefore, path);
+        }
+        keyIndex.seal();
+        logger.info("Dedupe index holds {} issue key(s) in {} bytes off-heap", keyIndex.size(),
+                keyIndex.getOffHeapBytes());
+        return keyIndex;
+    }
+
+    /**
+     * Loads the keys of a file.
+     *
+     * @param path
+     *            path of the file
+     * @param keyIndex
+     *            {@link KeyIndex} to add the keys to
+     * @throws IOException
+     *             If reading the file fails
+     */
+    private void load(final String path, final KeyIndex keyIndex) throws IOException {
+        try (FileInputStream fileStream = new FileInputStream(path);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        InputCompression.detect(fileStream.getChannel()).decompress(fileStream),
+                        StandardCharsets.UTF_8))) {
+            reader.mark(maxRecordLength);
+            final String firstLine = reader.readLine();
+            reader.reset();
+            if (firstLine == null) {
+                return;
+            }
+            if (firstLine.startsWith("{")) {
+                loadAuditLog(reader, keyIndex);
+            } else if (JOURNAL_LINE.matcher(firstLine).matches()) {
+                loadJournal(reader, keyIndex);
+            } else {
+                loadCsv(reader, keyIndex);
+            }
+        }
+    }
+
+    /**
+     * Loads the source keys of the CSV records uploaded from an NDJSON audit log. A log missing
+     * uploads would let a rerun create their issues again, so it's refused.
+     *
+     * @param reader
+     *            reader of the audit log
+     * @param keyIndex
+     *            {@link KeyIndex} to add the keys to
+     * @throws IOException
+     *             If reading the audit log fails, or it doesn't hold every upload of its run
+     */
+    private void loadAuditLog(final BufferedReader reader, final KeyIndex keyIndex)
+            throws IOException {
+        JSONObject summary = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            try {
+                final JSONObject record = new JSONObject(line);
+                if (record.optBoolean(AuditLog.SUMMARY_PROPERTY)) {
+                    summary = record;
+                    continue;
+                }
+                final String key = record.optString(AUDIT_SOURCE_KEY_PROPERTY, null);
+                if (key != null) {
+                    keyIndex.add(key);
+                }
+            } catch (final JSONException e) {
+                logger.debug("Skipping audit log line not being JSON: {}", e.getMessage());
+            }
+        }
+        if (summary == null) {
+            throw new IOException("Audit log has no summary line, its run may not have closed it;"
+                    + " use the progress journal of the run instead");
+        }
+        if (summary.optDouble(AuditLog.SAMPLE_RATE_PROPERTY, 0.0) < 1.0
+                || summary.optLong(AuditLog.DROPPED_PROPERTY, -1L) != 0L
+                || summary.optInt(AuditLog.ROTATED_PROPERTY, -1) != 0) {
+            throw new IOException("Audit log doesn't hold every upload of its run (" + summary
+                    + "); use the progress journal of the run instead");
+        }
+    }
+
+    /**
+     * Loads the source keys of the CSV records uploaded from a progress journal.
+     *
+     * @param reader
+     *            reader of the journal
+     * @param keyIndex
+     *            {@link KeyIndex} to add the keys to
+     * @throws IOException
+     *             If reading the journal fails
+     */
+    private void loadJournal(final BufferedReader reader, final KeyIndex keyIndex)
+            throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final String[] parts = line.split(" ");
+            if (parts.length == JOURNAL_SOURCE_KEY_PART_NR && JOURNAL_UPLOADED_LINE.equals(parts[0])
+                    && !parts[JOURNAL_SOURCE_KEY_PART_NR - 1].isEmpty()) {
+                keyIndex.add(parts[JOURNAL_SOURCE_KEY_PART_NR - 1]);
+            }
+        }
+    }
+
+    /**
+     * Loads the keys of a CSV export or a key list. If the first row has an issue key or issue
+     * id column, the values of these columns are loaded, otherwise the first column of every
+     * row.
+     *
+     * @param reader
+     *            reader of the file
+     * @param keyIndex
+     *            {@link KeyIndex} to add the keys to
+     * @throws IOException
+     *             If reading the file fails
+     */
+    private void loadCsv(final BufferedReader reader, final KeyIndex keyIndex)
+            throws IOException {
+        try (CsvRecordParser parser = new CsvRecordParser(reader, maxRecordLength)) {
+            final String[] headerRow = parser.nextRecord();
+            int[] keyColumns = RecordDeduplicator.findKeyColumns(headerRow);
+            if (keyColumns.length == 0) {
+                keyColumns = new int[] {0};
+                addKeys(headerRow, keyColumns, keyIndex);
+            }
+            while (true) {
+                final String[] fields;
+                try {
+                    fields = parser.nextRecord();
+                } catch (final CsvParseException e) {
+                    logger.warn("Skipping malformed record of key file: {}", e.getMessage());
+                    continue;
+                }
+                if (fields == null) {
+                    break;
+                }
+                addKeys(fields, keyColumns, keyIndex);
+            }
+        }
+    }
+
+    /**
+     * Adds the non-empty key values of a record to the index.
+     *
+     * @param fields
+     *            field values of the record
+     * @param keyColumns
+     *            indexes of the key columns
+     * @param keyIndex
+     *            {@link KeyIndex} to add the keys to
+     */
+    private static void addKeys(
+            final String[] fields,
+            final int[] keyColumns,
+            final KeyIndex keyIndex) {
+        for (final int keyColumn : keyColumns) {
+            if (keyColumn < fields.length) {
+                final String key = fields[keyColumn].trim();
+                if (!key.isEmpty()) {
+                    keyIndex.add(key);
+                }
+            }
+        }
+    }
+}
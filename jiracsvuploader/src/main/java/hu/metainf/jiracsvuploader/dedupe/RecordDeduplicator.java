@@ -0,0 +1,123 @@
+package hu.metainf.jiracsvuploader.dedupe;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Check of the records of a CSV file against the issue keys already present in Jira, bound to
+ * the header row of the file. A record is a duplicate if the value of its issue key or issue id
+ * column is in the {@link KeyIndex}.
+ *
+ */
+public class RecordDeduplicator {
+    /** Names of the columns holding issue keys, matched ignoring case. */
+    private static final String[] KEY_COLUMN_NAMES = {"Issue key", "Issue id"};
+
+    /** Issue keys already present in Jira. */
+    private final KeyIndex keyIndex;
+    /** Indexes of the key columns of the CSV file. */
+    private final int[] keyColumns;
+
+    /**
+     * Ctor.
+     *
+     * @param keyIndex
+     *            issue keys already present in Jira
+     * @param headerRow
+     *            field values of the header row of the CSV file
+     * @throws IllegalArgumentException
+     *             If the header row has neither an issue key nor an issue id column
+     */
+    public RecordDeduplicator(final KeyIndex keyIndex, final String[] headerRow) {
+        this.keyIndex = keyIndex;
+        keyColumns = findKeyColumns(headerRow);
+        if (keyColumns.length == 0) {
+            throw new IllegalArgumentException("No " + String.join(" or ", KEY_COLUMN_NAMES)
+                    + " column to deduplicate by in CSV header row");
+        }
+    }
+
+    /**
+     * Tells whether a record is already present in Jira.
+     *
+     * @param fields
+     *            field values of the record
+     * @return <code>true</code> if the value of a key column of the record is in the index
+     */
+    public boolean isDuplicate(final String[] fields) {
+        return isDuplicate(fields.length, column -> fields[column]);
+    }
+
+    /**
+     * Tells whether a record is already present in Jira, reading only its key columns.
+     *
+     * @param fieldNr
+     *            number of fields of the record
+     * @param fieldReader
+     *            function returning a field value of the record by its column index
+     * @return <code>true</code> if the value of a key column of the record is in the index
+     */
+    public boolean isDuplicate(final int fieldNr, final IntFunction<String> fieldReader) {
+        for (final int keyColumn : keyColumns) {
+            if (keyColumn < fieldNr) {
+                final String key = fieldReader.apply(keyColumn);
+                if (!key.isEmpty() && keyIndex.contains(key.trim())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the key of a record in the CSV file, the value of its first non-empty key column.
+     * Recorded for uploaded records by the progress journal and the audit log, so a later run
+     * deduplicating by them skips the records uploaded already.
+     *
+     * @param keyColumns
+     *            indexes of the key columns of the CSV file, see {@link #findKeyColumns(String[])}
+     * @param fieldNr
+     *            number of fields of the record
+     * @param fieldReader
+     *            function returning a field value of the record by its column index
+     * @return Trimmed key, or <code>null</code> if the record has none
+     */
+    public static String getSourceKey(
+            final int[] keyColumns,
+            final int fieldNr,
+            final IntFunction<String> fieldReader) {
+        for (final int keyColumn : keyColumns) {
+            if (keyColumn < fieldNr) {
+                final String key = fieldReader.apply(keyColumn).trim();
+                if (!key.isEmpty()) {
+                    return key;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the issue key and issue id columns of a header row.
+     *
+     * @param headerRow
+     *            field values of the header row
+     * @return Indexes of the key columns found, empty if none
+     */
+    public static int[] findKeyColumns(final String[] headerRow) {
+        final int[] keyColumns = new int[KEY_COLUMN_NAMES.length];
+        int keyColumnNr = 0;
+        for (int i = 0; i < headerRow.length; i++) {
+            for (final String keyColumnName : KEY_COLUMN_NAMES) {
+                if (keyColumnName.equalsIgnoreCase(headerRow[i].trim())) {
+                    keyColumns[keyColumnNr++] = i;
+                    break;
+                }
+            }
+            if (keyColumnNr == keyColumns.length) {
+                break;
+            }
+        }
+        return Arrays.copyOf(keyColumns, keyColumnNr);
+    }
+}
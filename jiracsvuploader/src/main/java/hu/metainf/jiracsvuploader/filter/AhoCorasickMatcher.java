@@ -0,0 +1,174 @@
+package hu.metainf.jiracsvuploader.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ValueMatcher} checking if a value contains any of a set of literals, scanning the value
+ * once with an Aho-Corasick automaton. Transitions on ASCII characters are resolved into a dense
+ * table up front, so the scan of ASCII text costs an array lookup per character; other characters
+ * follow the failure links.
+ *
+ */
+final class AhoCorasickMatcher implements ValueMatcher {
+    /** Number of characters with dense transition tables. */
+    private static final int ASCII_SIZE = 128;
+    /** State the scan starts from. */
+    private static final int ROOT = 0;
+
+    /** Transitions of every state on ASCII characters, failure links resolved. */
+    private final int[][] asciiTransitions;
+    /** Transitions of every state on other characters, failure links not resolved. */
+    private final List<Map<Character, Integer>> otherTransitions;
+    /** Failure link of every state, the longest proper suffix being a state too. */
+    private final int[] failureLinks;
+    /** Whether reaching a state means a literal was found. */
+    private final boolean[] accepting;
+
+    /**
+     * Ctor, building the automaton.
+     *
+     * @param literals
+     *            literals to look for, none of them empty
+     */
+    @SuppressWarnings("unchecked")
+    AhoCorasickMatcher(final Collection<String> literals) {
+        final List<int[]> ascii = new ArrayList<>();
+        final List<Map<Character, Integer>> other = new ArrayList<>();
+        final List<Boolean> terminal = new ArrayList<>();
+        addState(ascii, other, terminal);
+        for (final String literal : literals) {
+            int state = ROOT;
+            for (int i = 0; i < literal.length(); i++) {
+                final char c = literal.charAt(i);
+                int next = c < ASCII_SIZE
+                        ? ascii.get(state)[c] : other.get(state).getOrDefault(c, -1);
+                if (next < 0) {
+                    next = addState(ascii, other, terminal);
+                    if (c < ASCII_SIZE) {
+                        ascii.get(state)[c] = next;
+                    } else {
+                        other.get(state).put(c, next);
+                    }
+                }
+                state = next;
+            }
+            terminal.set(state, true);
+        }
+        final int stateNr = ascii.size();
+        asciiTransitions = ascii.toArray(new int[stateNr][]);
+        otherTransitions = other;
+        failureLinks = new int[stateNr];
+        accepting = new boolean[stateNr];
+        for (int i = 0; i < stateNr; i++) {
+            accepting[i] = terminal.get(i);
+        }
+        linkStates();
+    }
+
+    /**
+     * Adds a state without transitions to the trie being built.
+     *
+     * @param ascii
+     *            transitions on ASCII characters of the states
+     * @param other
+     *            transitions on other characters of the states
+     * @param terminal
+     *            whether the states end a literal
+     * @return Index of the state added
+     */
+    private static int addState(
+            final List<int[]> ascii,
+            final List<Map<Character, Integer>> other,
+            final List<Boolean> terminal) {
+        final int[] transitions = new int[ASCII_SIZE];
+        Arrays.fill(transitions, -1);
+        ascii.add(transitions);
+        other.add(new HashMap<>());
+        terminal.add(false);
+        return ascii.size() - 1;
+    }
+
+    /**
+     * Computes the failure links in breadth-first order, resolving missing ASCII transitions
+     * through them and propagating acceptance along them.
+     */
+    private void linkStates() {
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ASCII_SIZE; c++) {
+            final int next = asciiTransitions[ROOT][c];
+            if (next < 0) {
+                asciiTransitions[ROOT][c] = ROOT;
+            } else {
+                failureLinks[next] = ROOT;
+                queue.add(next);
+            }
+        }
+        for (final int next : otherTransitions.get(ROOT).values()) {
+            failureLinks[next] = ROOT;
+            queue.add(next);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            final int failure = failureLinks[state];
+            accepting[state] |= accepting[failure];
+            for (int c = 0; c < ASCII_SIZE; c++) {
+                final int next = asciiTransitions[state][c];
+                if (next < 0) {
+                    asciiTransitions[state][c] = asciiTransitions[failure][c];
+                } else {
+                    failureLinks[next] = asciiTransitions[failure][c];
+                    queue.add(next);
+                }
+            }
+            for (final Map.Entry<Character, Integer> transition
+                    : otherTransitions.get(state).entrySet()) {
+                failureLinks[transition.getValue()] = followOther(failure, transition.getKey());
+                queue.add(transition.getValue());
+            }
+        }
+    }
+
+    /**
+     * Follows the transition of a state on a non-ASCII character, falling back along the
+     * failure links.
+     *
+     * @param state
+     *            state to start from
+     * @param c
+     *            non-ASCII character
+     * @return State reached
+     */
+    private int followOther(final int state, final char c) {
+        int current = state;
+        while (true) {
+            final Integer next = otherTransitions.get(current).get(c);
+            if (next != null) {
+                return next;
+            }
+            if (current == ROOT) {
+                return ROOT;
+            }
+            current = failureLinks[current];
+        }
+    }
+
+    @Override
+    public boolean matches(final String value) {
+        int state = ROOT;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            state = c < ASCII_SIZE ? asciiTransitions[state][c] : followOther(state, c);
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
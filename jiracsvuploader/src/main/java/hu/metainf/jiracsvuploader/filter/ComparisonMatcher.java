@@ -0,0 +1,172 @@
+package hu.metainf.jiracsvuploader.filter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * {@link ValueMatcher} comparing field values with an operand by order. The kind of comparison is
+ * decided once from the operand: numbers are compared numerically, dates and date-times
+ * chronologically, anything else lexicographically. Field values not parsing as the kind of the
+ * operand don't match. Dates are accepted in ISO format (<code>2018-06-01</code>,
+ * <code>2018-06-01T15:13</code> or <code>2018-06-01 15:13</code>) and in the format of Jira CSV
+ * exports (<code>07/Jun/18 3:13 PM</code>); dates without a time stand for the start of the day.
+ *
+ */
+final class ComparisonMatcher implements ValueMatcher {
+    /** Format of date-times in Jira CSV exports. */
+    private static final DateTimeFormatter JIRA_DATE_TIME = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive().appendPattern("d/MMM/yy h:mm a").toFormatter(Locale.ENGLISH);
+    /** Format of dates in Jira CSV exports. */
+    private static final DateTimeFormatter JIRA_DATE = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive().appendPattern("d/MMM/yy").toFormatter(Locale.ENGLISH);
+    /** Format of ISO date-times separated by a space. */
+    private static final DateTimeFormatter SPACED_ISO_DATE_TIME =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm[:ss]");
+    /** Length of ISO dates. */
+    private static final int ISO_DATE_LENGTH = 10;
+    /** Position of the first separator of ISO dates. */
+    private static final int ISO_DATE_SEPARATOR_POS = 4;
+
+    /**
+     * Kind of comparison.
+     *
+     */
+    private enum Kind {
+        /** Numeric comparison. */
+        NUMBER,
+        /** Chronological comparison. */
+        DATE,
+        /** Lexicographic comparison. */
+        TEXT
+    }
+
+    /** Kind of comparison, decided from the operand. */
+    private final Kind kind;
+    /** Operand as text. */
+    private final String operand;
+    /** Operand as number, if compared numerically. */
+    private final double numberOperand;
+    /** Operand as date-time, if compared chronologically. */
+    private final LocalDateTime dateOperand;
+    /** Whether values less than the operand match. */
+    private final boolean matchingLess;
+    /** Whether values equal to the operand match. */
+    private final boolean matchingEqual;
+    /** Whether values greater than the operand match. */
+    private final boolean matchingGreater;
+
+    /**
+     * Ctor.
+     *
+     * @param operator
+     *            comparison operator, one of <code>&lt;</code>, <code>&lt;=</code>,
+     *            <code>&gt;</code> and <code>&gt;=</code>
+     * @param operand
+     *            operand the field values are compared with
+     */
+    ComparisonMatcher(final String operator, final String operand) {
+        final String trimmedOperand = operand.trim();
+        this.operand = operand;
+        if (isNumber(trimmedOperand)) {
+            kind = Kind.NUMBER;
+            numberOperand = Double.parseDouble(trimmedOperand);
+            dateOperand = null;
+        } else {
+            dateOperand = parseDate(trimmedOperand);
+            kind = dateOperand != null ? Kind.DATE : Kind.TEXT;
+            numberOperand = 0.0;
+        }
+        matchingLess = operator.startsWith("<");
+        matchingGreater = operator.startsWith(">");
+        matchingEqual = operator.endsWith("=");
+    }
+
+    @Override
+    public boolean matches(final String value) {
+        final int comparison;
+        switch (kind) {
+            case NUMBER:
+                final String number = value.trim();
+                if (!isNumber(number)) {
+                    return false;
+                }
+                comparison = Double.compare(Double.parseDouble(number), numberOperand);
+                break;
+            case DATE:
+                final LocalDateTime date = parseDate(value.trim());
+                if (date == null) {
+                    return false;
+                }
+                comparison = date.compareTo(dateOperand);
+                break;
+            default:
+                comparison = value.compareTo(operand);
+                break;
+        }
+        if (comparison < 0) {
+            return matchingLess;
+        }
+        return comparison == 0 ? matchingEqual : matchingGreater;
+    }
+
+    /**
+     * Checks if a value is a decimal number, without the cost of a failing parse.
+     *
+     * @param value
+     *            value to check
+     * @return <code>true</code> if the value is a number
+     */
+    private static boolean isNumber(final String value) {
+        int i = 0;
+        if (i < value.length() && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i++;
+        }
+        int digitNr = 0;
+        boolean pointSeen = false;
+        for (; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitNr++;
+            } else if (c == '.' && !pointSeen) {
+                pointSeen = true;
+            } else {
+                return false;
+            }
+        }
+        return digitNr > 0;
+    }
+
+    /**
+     * Parses a date or date-time in one of the supported formats.
+     *
+     * @param value
+     *            value to parse
+     * @return The date-time parsed, or <code>null</code> if the value is not a date
+     */
+    private static LocalDateTime parseDate(final String value) {
+        if (value.isEmpty() || !Character.isDigit(value.charAt(0))) {
+            return null;
+        }
+        try {
+            if (value.length() >= ISO_DATE_LENGTH && value.charAt(ISO_DATE_SEPARATOR_POS) == '-') {
+                if (value.length() == ISO_DATE_LENGTH) {
+                    return LocalDate.parse(value).atStartOfDay();
+                }
+                return value.charAt(ISO_DATE_LENGTH) == ' '
+                        ? LocalDateTime.parse(value, SPACED_ISO_DATE_TIME)
+                        : LocalDateTime.parse(value);
+            }
+            if (value.indexOf('/') > 0) {
+                return value.indexOf(':') > 0 ? LocalDateTime.parse(value, JIRA_DATE_TIME)
+                        : LocalDate.parse(value, JIRA_DATE).atStartOfDay();
+            }
+        } catch (final DateTimeParseException e) {
+            return null;
+        }
+        return null;
+    }
+}
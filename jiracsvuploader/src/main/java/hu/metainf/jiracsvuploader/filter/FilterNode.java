@@ -0,0 +1,100 @@
+package hu.metainf.jiracsvuploader.filter;
+
+import java.util.List;
+
+/**
+ * Node of a compiled filter expression. Implementations must be thread-safe.
+ *
+ */
+interface FilterNode {
+    /**
+     * Evaluates the node for a record.
+     *
+     * @param fields
+     *            field values of the record
+     * @return <code>true</code> if the record matches
+     */
+    boolean test(String[] fields);
+
+    /**
+     * Conjunction of nodes, evaluated from left to right till the first non-matching one.
+     *
+     */
+    final class And implements FilterNode {
+        /** Nodes combined. */
+        private final FilterNode[] nodes;
+
+        /**
+         * Ctor.
+         *
+         * @param nodes
+         *            nodes combined
+         */
+        And(final List<FilterNode> nodes) {
+            this.nodes = nodes.toArray(new FilterNode[0]);
+        }
+
+        @Override
+        public boolean test(final String[] fields) {
+            for (final FilterNode node : nodes) {
+                if (!node.test(fields)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Disjunction of nodes, evaluated from left to right till the first matching one.
+     *
+     */
+    final class Or implements FilterNode {
+        /** Nodes combined. */
+        private final FilterNode[] nodes;
+
+        /**
+         * Ctor.
+         *
+         * @param nodes
+         *            nodes combined
+         */
+        Or(final List<FilterNode> nodes) {
+            this.nodes = nodes.toArray(new FilterNode[0]);
+        }
+
+        @Override
+        public boolean test(final String[] fields) {
+            for (final FilterNode node : nodes) {
+                if (node.test(fields)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Negation of a node.
+     *
+     */
+    final class Not implements FilterNode {
+        /** Node negated. */
+        private final FilterNode node;
+
+        /**
+         * Ctor.
+         *
+         * @param node
+         *            node negated
+         */
+        Not(final FilterNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean test(final String[] fields) {
+            return !node.test(fields);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package hu.metainf.jiracsvuploader.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser of filter expressions:
+ *
+ * <pre>
+ * expression := and ( '||' and )*
+ * and        := unary ( '&amp;&amp;' unary )*
+ * unary      := '!' unary | '(' expression ')' | predicate
+ * predicate  := column operator operand
+ * </pre>
+ *
+ * Operands run till the next top-level <code>&amp;&amp;</code>, <code>||</code> or unbalanced
+ * closing parenthesis and are trimmed, or are quoted with <code>"</code>, in which case
+ * <code>\"</code> and <code>\\</code> stand for a quote and a backslash.
+ *
+ */
+final class FilterParser {
+    /** Operators, longer ones first to be matched greedily. */
+    private static final String[] OPERATORS = {"=~", "!~", "!=", "<=", ">=", "=", "<", ">"};
+    /** Characters starting operators. */
+    private static final String OPERATOR_CHARS = "=!<>";
+
+    /** Expression parsed. */
+    private final String expression;
+    /** Predicates of the expression, in order of appearance. */
+    private final List<FilterPredicate> predicates = new ArrayList<>();
+    /** Position of the next character to parse. */
+    private int pos;
+
+    /**
+     * Ctor.
+     *
+     * @param expression
+     *            expression to parse
+     */
+    private FilterParser(final String expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Parses and compiles a filter expression.
+     *
+     * @param expression
+     *            expression to parse
+     * @return The {@link RecordFilter} compiled
+     * @throws IllegalArgumentException
+     *             If the expression is invalid
+     */
+    static RecordFilter parse(final String expression) {
+        final FilterParser parser = new FilterParser(expression);
+        final FilterNode root = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.pos < expression.length()) {
+            throw parser.error("unexpected '" + expression.charAt(parser.pos) + "'");
+        }
+        return new RecordFilter(root, parser.predicates);
+    }
+
+    /**
+     * Parses a disjunction.
+     *
+     * @return Node parsed
+     */
+    private FilterNode parseOr() {
+        final List<FilterNode> nodes = new ArrayList<>();
+        nodes.add(parseAnd());
+        while (consume("||")) {
+            nodes.add(parseAnd());
+        }
+        return nodes.size() == 1 ? nodes.get(0) : new FilterNode.Or(nodes);
+    }
+
+    /**
+     * Parses a conjunction.
+     *
+     * @return Node parsed
+     */
+    private FilterNode parseAnd() {
+        final List<FilterNode> nodes = new ArrayList<>();
+        nodes.add(parseUnary());
+        while (consume("&&")) {
+            nodes.add(parseUnary());
+        }
+        return nodes.size() == 1 ? nodes.get(0) : new FilterNode.And(nodes);
+    }
+
+    /**
+     * Parses a negation, a parenthesized expression or a predicate.
+     *
+     * @return Node parsed
+     */
+    private FilterNode parseUnary() {
+        if (consume("(")) {
+            final FilterNode node = parseOr();
+            if (!consume(")")) {
+                throw error("missing ')'");
+            }
+            return node;
+        }
+        if (consume("!")) {
+            return new FilterNode.Not(parseUnary());
+        }
+        return parsePredicate();
+    }
+
+    /**
+     * Parses a predicate.
+     *
+     * @return Predicate parsed
+     */
+    private FilterPredicate parsePredicate() {
+        final int start = pos;
+        while (pos < expression.length() && OPERATOR_CHARS.indexOf(expression.charAt(pos)) < 0) {
+            pos++;
+        }
+        final String column = expression.substring(start, pos).trim();
+        if (column.isEmpty()) {
+            throw error("missing column name");
+        }
+        String operator = null;
+        for (final String candidate : OPERATORS) {
+            if (expression.startsWith(candidate, pos)) {
+                operator = candidate;
+                break;
+            }
+        }
+        if (operator == null) {
+            throw error("missing operator after column " + column);
+        }
+        pos += operator.length();
+        final String operand = parseOperand();
+        final FilterPredicate predicate;
+        try {
+            predicate = new FilterPredicate(column, operator, operand);
+        } catch (final IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+        predicates.add(predicate);
+        return predicate;
+    }
+
+    /**
+     * Parses the operand of a predicate.
+     *
+     * @return Operand parsed
+     */
+    private String parseOperand() {
+        skipWhitespace();
+        final StringBuilder operand = new StringBuilder();
+        if (pos < expression.length() && expression.charAt(pos) == '"') {
+            pos++;
+            while (pos < expression.length() && expression.charAt(pos) != '"') {
+                final char c = expression.charAt(pos++);
+                if (c == '\\' && pos < expression.length()
+                        && (expression.charAt(pos) == '"' || expression.charAt(pos) == '\\')) {
+                    operand.append(expression.charAt(pos++));
+                } else {
+                    operand.append(c);
+                }
+            }
+            if (pos == expression.length()) {
+                throw error("missing closing '\"'");
+            }
+            pos++;
+            return operand.toString();
+        }
+        int depth = 0;
+        while (pos < expression.length()) {
+            final char c = expression.charAt(pos);
+            if (depth == 0 && (c == ')' || expression.startsWith("&&", pos)
+                    || expression.startsWith("||", pos))) {
+                break;
+            }
+            if (c == '\\' && pos + 1 < expression.length()) {
+                // Escaped characters, like a parenthesis of a regular expression, are kept as is
+                operand.append(c).append(expression.charAt(pos + 1));
+                pos += 2;
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+            operand.append(c);
+            pos++;
+        }
+        return operand.toString().trim();
+    }
+
+    /**
+     * Consumes a token if it follows, skipping whitespace before it.
+     *
+     * @param token
+     *            token expected
+     * @return <code>true</code> if the token was consumed
+     */
+    private boolean consume(final String token) {
+        skipWhitespace();
+        if (expression.startsWith(token, pos)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips whitespace.
+     */
+    private void skipWhitespace() {
+        while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    /**
+     * Creates the exception of a syntax error at the current position.
+     *
+     * @param message
+     *            description of the error
+     * @return The exception created
+     */
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException(
+                "Invalid filter expression at position " + pos + ": " + message);
+    }
+}
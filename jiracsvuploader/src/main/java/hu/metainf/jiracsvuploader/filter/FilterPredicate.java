@@ -0,0 +1,142 @@
+package hu.metainf.jiracsvuploader.filter;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Predicate on a column of the records, or on any column, like <code>Status=~Backlog|To Do</code>.
+ * Supported operators:
+ * <ul>
+ * <li><code>=~</code> and <code>!~</code>: the whole value matches or doesn't match a regular
+ * expression,</li>
+ * <li><code>=</code> and <code>!=</code>: the value equals or doesn't equal the operand,</li>
+ * <li><code>&lt;</code>, <code>&lt;=</code>, <code>&gt;</code> and <code>&gt;=</code>: the value
+ * compares to the operand as a number, date or text, see {@link ComparisonMatcher}.</li>
+ * </ul>
+ * The number of records matched and rejected by the predicate are counted. Predicates skipped by
+ * the short-circuit evaluation of the expression count neither.
+ *
+ */
+public final class FilterPredicate implements FilterNode {
+    /** Column name standing for any column. */
+    public static final String ANY_COLUMN = "*";
+
+    /** Source text of the predicate. */
+    private final String description;
+    /** Name of the column tested. */
+    private final String column;
+    /** Whether the match of the {@link ValueMatcher} is negated. */
+    private final boolean negated;
+    /** {@link ValueMatcher} of the field values. */
+    private final ValueMatcher valueMatcher;
+    /** Index of the column tested, or -1 if any column is tested. */
+    private int columnIndex = -1;
+    /** Number of records matched. */
+    private final LongAdder matchNr = new LongAdder();
+    /** Number of records rejected. */
+    private final LongAdder rejectNr = new LongAdder();
+
+    /**
+     * Ctor, compiling the predicate.
+     *
+     * @param column
+     *            name of the column tested, or {@link #ANY_COLUMN}
+     * @param operator
+     *            operator of the predicate
+     * @param operand
+     *            operand of the predicate
+     * @throws IllegalArgumentException
+     *             If the operator is unknown or the operand is an invalid regular expression
+     */
+    FilterPredicate(final String column, final String operator, final String operand) {
+        description = column + operator + operand;
+        this.column = column;
+        switch (operator) {
+            case "=~":
+            case "!~":
+                valueMatcher = RegexMatchers.compile(operand);
+                break;
+            case "=":
+            case "!=":
+                valueMatcher = operand::equals;
+                break;
+            case "<":
+            case "<=":
+            case ">":
+            case ">=":
+                valueMatcher = new ComparisonMatcher(operator, operand);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown filter operator: " + operator);
+        }
+        negated = operator.startsWith("!");
+    }
+
+    /**
+     * Resolves the column tested.
+     *
+     * @param columnIndexes
+     *            index of each column by name
+     * @throws IllegalArgumentException
+     *             If the column doesn't exist
+     */
+    void bind(final Map<String, Integer> columnIndexes) {
+        if (ANY_COLUMN.equals(column)) {
+            return;
+        }
+        final Integer index = columnIndexes.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown column in filter: " + column);
+        }
+        columnIndex = index;
+    }
+
+    @Override
+    public boolean test(final String[] fields) {
+        boolean matched = false;
+        if (columnIndex < 0) {
+            for (final String field : fields) {
+                if (valueMatcher.matches(field)) {
+                    matched = true;
+                    break;
+                }
+            }
+        } else {
+            matched = valueMatcher.matches(columnIndex < fields.length ? fields[columnIndex] : "");
+        }
+        matched ^= negated;
+        if (matched) {
+            matchNr.increment();
+        } else {
+            rejectNr.increment();
+        }
+        return matched;
+    }
+
+    /**
+     * Returns the source text of the predicate.
+     *
+     * @return source text
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the number of records matched.
+     *
+     * @return number of records
+     */
+    public long getMatchNr() {
+        return matchNr.sum();
+    }
+
+    /**
+     * Returns the number of records rejected.
+     *
+     * @return number of records
+     */
+    public long getRejectNr() {
+        return rejectNr.sum();
+    }
+}
@@ -0,0 +1,118 @@
+package hu.metainf.jiracsvuploader.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filter of CSV records, compiled once from an expression of column predicates combined with
+ * <code>&amp;&amp;</code>, <code>||</code>, <code>!</code> and parentheses, like
+ * <code>Status=~Backlog|To Do &amp;&amp; Created&gt;2018-06-01</code>. See {@link FilterPredicate}
+ * for the predicates supported. Columns are referred to by their header, so the filter has to be
+ * bound to the header row of the CSV file before testing records. Testing is thread-safe.
+ *
+ */
+public final class RecordFilter {
+    /** Root node of the expression. */
+    private final FilterNode root;
+    /** Predicates of the expression, in order of appearance. */
+    private final List<FilterPredicate> predicates;
+
+    /**
+     * Ctor.
+     *
+     * @param root
+     *            root node of the expression
+     * @param predicates
+     *            predicates of the expression, in order of appearance
+     */
+    RecordFilter(final FilterNode root, final List<FilterPredicate> predicates) {
+        this.root = root;
+        this.predicates = Collections.unmodifiableList(new ArrayList<>(predicates));
+    }
+
+    /**
+     * Compiles a filter expression.
+     *
+     * @param expression
+     *            filter expression
+     * @return The {@link RecordFilter} compiled
+     * @throws IllegalArgumentException
+     *             If the expression is invalid
+     */
+    public static RecordFilter compile(final String expression) {
+        return FilterParser.parse(expression);
+    }
+
+    /**
+     * Compiles a filter matching records having any field matching a regular expression as a
+     * whole.
+     *
+     * @param regex
+     *            regular expression
+     * @return The {@link RecordFilter} compiled
+     * @throws IllegalArgumentException
+     *             If the regular expression is invalid
+     */
+    public static RecordFilter anyFieldMatching(final String regex) {
+        final FilterPredicate predicate =
+                new FilterPredicate(FilterPredicate.ANY_COLUMN, "=~", regex);
+        return new RecordFilter(predicate, Collections.singletonList(predicate));
+    }
+
+    /**
+     * Combines this filter with another one, matching records matching both.
+     *
+     * @param other
+     *            other filter, evaluated after this one
+     * @return The combined filter
+     */
+    public RecordFilter and(final RecordFilter other) {
+        final List<FilterPredicate> allPredicates = new ArrayList<>(predicates);
+        allPredicates.addAll(other.predicates);
+        return new RecordFilter(new FilterNode.And(Arrays.asList(root, other.root)),
+                allPredicates);
+    }
+
+    /**
+     * Binds the filter to the header row of the CSV file, resolving the columns referred to. If a
+     * header occurs multiple times, the first column is used.
+     *
+     * @param headerRow
+     *            field values of the header row
+     * @throws IllegalArgumentException
+     *             If a column referred to doesn't exist
+     */
+    public void bind(final String[] headerRow) {
+        final Map<String, Integer> columnIndexes = new HashMap<>();
+        for (int i = 0; i < headerRow.length; i++) {
+            columnIndexes.putIfAbsent(headerRow[i], i);
+        }
+        for (final FilterPredicate predicate : predicates) {
+            predicate.bind(columnIndexes);
+        }
+    }
+
+    /**
+     * Tests a record.
+     *
+     * @param fields
+     *            field values of the record
+     * @return <code>true</code> if the record matches the filter
+     */
+    public boolean test(final String[] fields) {
+        return root.test(fields);
+    }
+
+    /**
+     * Returns the predicates of the filter, holding their match and reject counts.
+     *
+     * @return predicates in order of appearance
+     */
+    public List<FilterPredicate> getPredicates() {
+        return predicates;
+    }
+}
@@ -0,0 +1,355 @@
+package hu.metainf.jiracsvuploader.filter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles regular expressions matched against whole field values into {@link ValueMatcher}s,
+ * picking a fast path when the expression allows one:
+ * <ul>
+ * <li>a literal is compared with {@link String#equals(Object)},</li>
+ * <li>an alternation of literals is looked up in a {@link Set},</li>
+ * <li><code>.*literal.*</code> is searched with {@link String#indexOf(String)}, and
+ * <code>.*(literal|literal).*</code> with an {@link AhoCorasickMatcher},</li>
+ * <li>any other expression is run by a {@link Matcher} reused by each thread, after checking with
+ * {@link String#indexOf(String)} that the value contains the longest literal the expression
+ * requires, if it has one.</li>
+ * </ul>
+ *
+ */
+final class RegexMatchers {
+    /** Characters having a special meaning in regular expressions. */
+    private static final String META_CHARS = "\\^$.|?*+()[]{}";
+    /** Prefix and suffix of expressions searching for a literal. */
+    private static final String ANY_CHARS = ".*";
+    /** Shortest required literal worth checking before running the matcher. */
+    private static final int MIN_REQUIRED_LITERAL_LENGTH = 2;
+
+    /** Ctor. */
+    private RegexMatchers() {}
+
+    /**
+     * Compiles a regular expression to be matched by whole field values.
+     *
+     * @param regex
+     *            regular expression
+     * @return The {@link ValueMatcher} compiled
+     * @throws java.util.regex.PatternSyntaxException
+     *             If the expression is invalid
+     */
+    static ValueMatcher compile(final String regex) {
+        final Pattern pattern = Pattern.compile(regex);
+        final List<String> literals = parseLiterals(regex);
+        if (literals != null) {
+            if (literals.size() == 1) {
+                final String literal = literals.get(0);
+                return literal::equals;
+            }
+            final Set<String> literalSet = new HashSet<>(literals);
+            return literalSet::contains;
+        }
+        final int length = regex.length();
+        if (length > 2 * ANY_CHARS.length() && regex.startsWith(ANY_CHARS)
+                && regex.endsWith(ANY_CHARS) && regex.charAt(length - 3) != '\\') {
+            final List<String> searched =
+                    parseLiterals(regex.substring(ANY_CHARS.length(), length - ANY_CHARS.length()));
+            if (searched != null && !searched.contains("") && !hasLineTerminator(searched)) {
+                if (searched.size() == 1) {
+                    final String literal = searched.get(0);
+                    return value -> value.contains(literal) && !hasLineTerminator(value);
+                }
+                final AhoCorasickMatcher automaton = new AhoCorasickMatcher(searched);
+                return value -> automaton.matches(value) && !hasLineTerminator(value);
+            }
+        }
+        return new PatternMatcher(pattern, findRequiredLiteral(regex));
+    }
+
+    /**
+     * Parses an expression consisting of a literal or an alternation of literals, optionally
+     * grouped.
+     *
+     * @param regex
+     *            regular expression
+     * @return The literals, or <code>null</code> if the expression is not of this form
+     */
+    private static List<String> parseLiterals(final String regex) {
+        String alternation = regex;
+        if (alternation.startsWith("(?:") && alternation.endsWith(")")) {
+            alternation = alternation.substring("(?:".length(), alternation.length() - 1);
+        } else if (alternation.startsWith("(") && alternation.endsWith(")")
+                && !alternation.startsWith("(?")) {
+            alternation = alternation.substring(1, alternation.length() - 1);
+        }
+        final List<String> literals = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < alternation.length(); i++) {
+            final char c = alternation.charAt(i);
+            if (c == '|') {
+                literals.add(literal.toString());
+                literal.setLength(0);
+            } else if (c == '\\') {
+                if (i + 1 == alternation.length()
+                        || Character.isLetterOrDigit(alternation.charAt(i + 1))) {
+                    return null;
+                }
+                literal.append(alternation.charAt(++i));
+            } else if (META_CHARS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+            }
+        }
+        literals.add(literal.toString());
+        return literals;
+    }
+
+    /**
+     * Finds the longest literal every value matching an expression contains. Only the top level of
+     * the expression is analyzed, groups and character classes end literals. Expressions with
+     * top-level alternations, flags or quoting have no required literal.
+     *
+     * @param regex
+     *            regular expression
+     * @return The required literal, or <code>null</code> if none is long enough
+     */
+    static String findRequiredLiteral(final String regex) {
+        if (regex.contains("(?") || regex.contains("\\Q")) {
+            return null;
+        }
+        final StringBuilder run = new StringBuilder();
+        String longest = "";
+        boolean lastAtomInRun = false;
+        int depth = 0;
+        int i = 0;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                final char escaped = regex.charAt(i + 1);
+                // Escapes like \x41 are a single atom, not literal text, so they end the run
+                i = skipEscape(regex, i);
+                if (depth == 0) {
+                    lastAtomInRun = !Character.isLetterOrDigit(escaped);
+                    if (lastAtomInRun) {
+                        run.append(escaped);
+                    } else {
+                        longest = longer(longest, run);
+                    }
+                }
+            } else if (c == '[') {
+                i = skipCharClass(regex, i);
+                if (depth == 0) {
+                    longest = longer(longest, run);
+                    lastAtomInRun = false;
+                }
+            } else if (c == '(') {
+                if (depth++ == 0) {
+                    longest = longer(longest, run);
+                }
+                i++;
+            } else if (c == ')') {
+                depth--;
+                lastAtomInRun = false;
+                i++;
+            } else if (depth > 0) {
+                i++;
+            } else if (c == '|') {
+                return null;
+            } else if (c == '*' || c == '?' || c == '{' || c == '+') {
+                // The quantified atom may be missing, unless it's required at least once
+                if (c != '+' && lastAtomInRun) {
+                    run.setLength(run.length() - 1);
+                }
+                longest = longer(longest, run);
+                lastAtomInRun = false;
+                i = c == '{' ? regex.indexOf('}', i) + 1 : i + 1;
+                if (i == 0) {
+                    return null;
+                }
+                if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+                    i++;
+                }
+            } else if (c == '.' || c == '^' || c == '$') {
+                longest = longer(longest, run);
+                lastAtomInRun = false;
+                i++;
+            } else {
+                run.append(c);
+                lastAtomInRun = true;
+                i++;
+            }
+        }
+        longest = longer(longest, run);
+        return longest.length() >= MIN_REQUIRED_LITERAL_LENGTH ? longest : null;
+    }
+
+    /**
+     * Ends a run of literal characters, keeping the longer of it and the longest literal found.
+     *
+     * @param longest
+     *            longest literal found
+     * @param run
+     *            run of literal characters, emptied
+     * @return The longer literal
+     */
+    private static String longer(final String longest, final StringBuilder run) {
+        final String result = run.length() > longest.length() ? run.toString() : longest;
+        run.setLength(0);
+        return result;
+    }
+
+    /**
+     * Skips an escape sequence, including the digits, names or control character following
+     * escapes like <code>\x41</code>, <code>\u0041</code>, <code>\0101</code>, <code>\cA</code>,
+     * <code>\p{Lu}</code> or <code>\k&lt;name&gt;</code>.
+     *
+     * @param regex
+     *            regular expression
+     * @param start
+     *            position of the backslash
+     * @return The position following the escape sequence
+     */
+    private static int skipEscape(final String regex, final int start) {
+        int i = start + 2;
+        if (i > regex.length()) {
+            return regex.length();
+        }
+        final char escaped = regex.charAt(start + 1);
+        final boolean braced = i < regex.length() && regex.charAt(i) == '{';
+        switch (escaped) {
+            case 'x':
+                i = braced ? regex.indexOf('}', i) + 1 : i + 2;
+                break;
+            case 'u':
+                i += 4;
+                break;
+            case 'c':
+                i++;
+                break;
+            case 'p':
+            case 'P':
+            case 'N':
+                i = braced ? regex.indexOf('}', i) + 1 : i + 1;
+                break;
+            case 'k':
+                i = regex.indexOf('>', i) + 1;
+                break;
+            case '0':
+                for (int digitNr = 0; digitNr < 3 && i < regex.length()
+                        && regex.charAt(i) >= '0' && regex.charAt(i) <= '7'; digitNr++) {
+                    i++;
+                }
+                break;
+            default:
+                // Back references take all following digits
+                while (escaped >= '1' && escaped <= '9' && i < regex.length()
+                        && Character.isDigit(regex.charAt(i))) {
+                    i++;
+                }
+                break;
+        }
+        return i <= start ? regex.length() : Math.min(i, regex.length());
+    }
+
+    /**
+     * Skips a character class, including nested classes.
+     *
+     * @param regex
+     *            regular expression
+     * @param start
+     *            position of the opening bracket
+     * @return The position following the closing bracket
+     */
+    private static int skipCharClass(final String regex, final int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i = skipEscape(regex, i);
+            } else if (c == '[') {
+                i = skipCharClass(regex, i);
+            } else if (c == ']') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Checks if any of some literals contains a line terminator.
+     *
+     * @param literals
+     *            literals to check
+     * @return <code>true</code> if a literal contains a line terminator
+     */
+    private static boolean hasLineTerminator(final List<String> literals) {
+        for (final String literal : literals) {
+            if (hasLineTerminator(literal)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a value contains a line terminator, which <code>.</code> doesn't match.
+     *
+     * @param value
+     *            value to check
+     * @return <code>true</code> if the value contains a line terminator
+     */
+    private static boolean hasLineTerminator(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@link ValueMatcher} running a {@link Pattern}, with a {@link Matcher} reused by each
+     * thread.
+     *
+     */
+    private static final class PatternMatcher implements ValueMatcher {
+        /** {@link Matcher} of each thread. */
+        private final ThreadLocal<Matcher> matchers;
+        /** Literal every matching value contains, or <code>null</code> if not known. */
+        private final String requiredLiteral;
+
+        /**
+         * Ctor.
+         *
+         * @param pattern
+         *            {@link Pattern} to run
+         * @param requiredLiteral
+         *            literal every matching value contains, or <code>null</code> if not known
+         */
+        private PatternMatcher(final Pattern pattern, final String requiredLiteral) {
+            matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+            this.requiredLiteral = requiredLiteral;
+        }
+
+        @Override
+        public boolean matches(final String value) {
+            if (requiredLiteral != null && !value.contains(requiredLiteral)) {
+                return false;
+            }
+            return matchers.get().reset(value).matches();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package hu.metainf.jiracsvuploader.filter;
+
+/**
+ * Matcher of a single field value, compiled from the operator and operand of a
+ * {@link FilterPredicate}. Implementations must be thread-safe.
+ *
+ */
+interface ValueMatcher {
+    /**
+     * Checks if a field value matches.
+     *
+     * @param value
+     *            field value
+     * @return <code>true</code> if the value matches
+     */
+    boolean matches(String value);
+}
@@ -0,0 +1,61 @@
+package hu.metainf.jiracsvuploader.journal;
+
+/**
+ * A record submitted for upload, tracked by a {@link ProgressJournal} till its completion.
+ *
+ */
+public final class JournalEntry {
+    /** Number of the record within the CSV file. */
+    private final long recordNr;
+    /** Byte offset of the end of the record within the CSV file. */
+    private final long endOffset;
+    /** Whether the record is completed, only accessed by the journal thread. */
+    private boolean completed;
+
+    /**
+     * Ctor.
+     *
+     * @param recordNr
+     *            number of the record within the CSV file
+     * @param endOffset
+     *            byte offset of the end of the record within the CSV file
+     */
+    JournalEntry(final long recordNr, final long endOffset) {
+        this.recordNr = recordNr;
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * Returns the number of the record within the CSV file.
+     *
+     * @return record number
+     */
+    public long getRecordNr() {
+        return recordNr;
+    }
+
+    /**
+     * Returns the byte offset of the end of the record within the CSV file.
+     *
+     * @return byte offset
+     */
+    long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Checks if the record is completed.
+     *
+     * @return <code>true</code> if the record is completed
+     */
+    boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Marks the record as completed.
+     */
+    void markCompleted() {
+        completed = true;
+    }
+}
@@ -0,0 +1,367 @@
+package hu.metainf.jiracsvuploader.journal;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.process.CsvRecord;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * Append-only journal of the progress of an import, used for resuming an interrupted import
+ * without uploading records again. Submissions and completions of records are handed over to a
+ * journal thread through a queue, so they cost no I/O on the upload path. The journal thread
+ * writes whatever accumulated since its last write in one go and forces it to disk once per
+ * write (group commit). It writes a line per completed record and, whenever the completed prefix
+ * of the file grows, a checkpoint line with the last record number and byte offset of the prefix:
+ *
+ * <pre>
+ * A &lt;recordNr&gt; &lt;issueKey or -&gt; [sourceKey]   uploaded
+ * F &lt;recordNr&gt; &lt;statusCode&gt;                       finally failed
+ * C &lt;recordNr&gt; &lt;byteOffset&gt;                       all records up to recordNr completed
+ * </pre>
+ *
+ * The issue key is the one Jira assigned to the issue created, the source key is the issue key
+ * or issue id of the record in the CSV file, left out if the record has none or it contains
+ * whitespace. Records never submitted (filtered out or malformed) or skipped after submission
+ * count as completed.
+ *
+ */
+public class ProgressJournal implements Closeable {
+    /** Maximal number of events written in a single group commit. */
+    private static final int MAX_BATCH_EVENT_NR = 4096;
+    /** Type of the lines of uploaded records. */
+    private static final String UPLOADED_LINE = "A";
+    /** Type of the lines of finally failed records. */
+    private static final String FAILED_LINE = "F";
+    /** Type of the checkpoint lines. */
+    private static final String CHECKPOINT_LINE = "C";
+    /** Issue key written when the response didn't contain one. */
+    private static final String NO_ISSUE_KEY = "-";
+    /** Event closing the journal. */
+    private static final Event CLOSE_EVENT = new Event(null, false, null, null);
+    /** Pattern of the characters not allowed in a source key. */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(ProgressJournal.class);
+    /** Path of the journal file. */
+    private final Path path;
+    /** {@link FileChannel} of the journal file. */
+    private final FileChannel channel;
+    /** Events waiting to be journaled. */
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    /** Thread writing the journal. */
+    private final Thread journalThread;
+    /** Submitted records in submission order, not yet part of the completed prefix. */
+    private final Deque<JournalEntry> pendingEntries = new ArrayDeque<>();
+    /** Last entry of the completed prefix, only accessed by the journal thread. */
+    private JournalEntry lastPrefixEntry;
+    /** Whether writing failed, in which case events are dropped. */
+    private boolean failed;
+    /** Whether the journal is discarded, in which case events are dropped. */
+    private volatile boolean discarded;
+
+    /**
+     * Ctor, opening the journal file and starting the journal thread.
+     *
+     * @param path
+     *            path of the journal file
+     * @param append
+     *            <code>true</code> to continue an existing journal, <code>false</code> to start a
+     *            new one
+     * @throws IOException
+     *             If the journal file can't be opened
+     */
+    public ProgressJournal(final String path, final boolean append) throws IOException {
+        this.path = Paths.get(path);
+        channel = append
+                ? FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND)
+                : FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        journalThread = new Thread(this::runJournal, "progress-journal");
+        journalThread.start();
+    }
+
+    /**
+     * Loads the progress of an interrupted import from a journal file.
+     *
+     * @param path
+     *            path of the journal file
+     * @return The progress loaded, or <code>null</code> if the journal file doesn't exist
+     * @throws IOException
+     *             If reading the journal file fails
+     */
+    public static ResumeState load(final String path) throws IOException {
+        long checkpointRecordNr = 0L;
+        long checkpointOffset = 0L;
+        final List<Long> completedRecordNrs = new ArrayList<>();
+        final boolean lastLineComplete;
+        try (FileChannel journalChannel = FileChannel.open(Paths.get(path))) {
+            final ByteBuffer lastByte = ByteBuffer.allocate(1);
+            lastLineComplete = journalChannel.size() == 0
+                    || journalChannel.read(lastByte, journalChannel.size() - 1) == 1
+                            && lastByte.get(0) == '\n';
+        } catch (final NoSuchFileException e) {
+            return null;
+        }
+        try (BufferedReader reader =
+                Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while (line != null) {
+                final String nextLine = reader.readLine();
+                if (nextLine == null && !lastLineComplete) {
+                    // Line torn by a crash while writing
+                    break;
+                }
+                final String[] parts = line.split(" ");
+                line = nextLine;
+                if (parts.length != 3 && (parts.length != 4 || !UPLOADED_LINE.equals(parts[0]))) {
+                    continue;
+                }
+                try {
+                    final long recordNr = Long.parseLong(parts[1]);
+                    if (CHECKPOINT_LINE.equals(parts[0])) {
+                        final long offset = Long.parseLong(parts[2]);
+                        if (recordNr > checkpointRecordNr) {
+                            checkpointRecordNr = recordNr;
+                            checkpointOffset = offset;
+                        }
+                    } else if (UPLOADED_LINE.equals(parts[0]) || FAILED_LINE.equals(parts[0])) {
+                        completedRecordNrs.add(recordNr);
+                    }
+                } catch (final NumberFormatException e) {
+                    continue;
+                }
+            }
+        }
+        final BitSet completedAfterCheckpoint = new BitSet();
+        for (final long recordNr : completedRecordNrs) {
+            final long index = recordNr - checkpointRecordNr - 1;
+            if (index >= 0 && index < Integer.MAX_VALUE) {
+                completedAfterCheckpoint.set((int) index);
+            }
+        }
+        return new ResumeState(checkpointRecordNr, checkpointOffset, completedAfterCheckpoint);
+    }
+
+    /**
+     * Registers a record submitted for upload. Records have to be submitted in file order.
+     *
+     * @param csvRecord
+     *            record submitted
+     * @return {@link JournalEntry} of the record, to be passed on completion
+     */
+    public JournalEntry recordSubmitted(final CsvRecord csvRecord) {
+        final JournalEntry entry =
+                new JournalEntry(csvRecord.getRecordNr(), csvRecord.getEndOffset());
+        events.add(new Event(entry, false, null, null));
+        return entry;
+    }
+
+    /**
+     * Registers the final outcome of a record.
+     *
+     * @param entry
+     *            {@link JournalEntry} of the record
+     * @param uploadResponse
+     *            final response of the upload
+     * @param sourceKey
+     *            issue key or issue id of the record in the CSV file, or <code>null</code> if it
+     *            has none
+     */
+    public void recordCompleted(
+            final JournalEntry entry,
+            final UploadResponse uploadResponse,
+            final String sourceKey) {
+        events.add(new Event(entry, true, uploadResponse, sourceKey));
+    }
+
+    /**
+     * Registers a submitted record which turned out not to be uploaded, like one filtered out
+     * after submission. It counts as completed, but no line is written for it.
+     *
+     * @param entry
+     *            {@link JournalEntry} of the record
+     */
+    public void recordSkipped(final JournalEntry entry) {
+        events.add(new Event(entry, true, null, null));
+    }
+
+    /**
+     * Stops writing the journal, like when its partition was taken over by another process
+     * continuing the same journal file. Events registered afterwards are dropped.
+     */
+    public void discard() {
+        discarded = true;
+    }
+
+    /**
+     * Writes the remaining events, stops the journal thread and closes the journal file.
+     *
+     * @throws IOException
+     *             If closing the journal file fails
+     */
+    @Override
+    public void close() throws IOException {
+        events.add(CLOSE_EVENT);
+        try {
+            journalThread.join();
+        } catch (final InterruptedException e) {
+            logger.warn("Waiting for the progress journal to be written was interrupted");
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * Main loop of the journal thread.
+     */
+    private void runJournal() {
+        final List<Event> batch = new ArrayList<>();
+        final StringBuilder lines = new StringBuilder();
+        boolean closed = false;
+        while (!closed) {
+            try {
+                batch.add(events.take());
+            } catch (final InterruptedException e) {
+                logger.warn("Progress journal thread was interrupted");
+                return;
+            }
+            events.drainTo(batch, MAX_BATCH_EVENT_NR - 1);
+            final JournalEntry prefixEntryBefore = lastPrefixEntry;
+            for (final Event event : batch) {
+                if (event == CLOSE_EVENT) {
+                    closed = true;
+                } else if (event.completion) {
+                    complete(event, lines);
+                } else {
+                    pendingEntries.add(event.entry);
+                }
+            }
+            batch.clear();
+            if (lastPrefixEntry != prefixEntryBefore) {
+                lines.append(CHECKPOINT_LINE).append(' ').append(lastPrefixEntry.getRecordNr())
+                        .append(' ').append(lastPrefixEntry.getEndOffset()).append('\n');
+            }
+            commit(lines);
+            lines.setLength(0);
+        }
+    }
+
+    /**
+     * Processes a completion event, advancing the completed prefix.
+     *
+     * @param event
+     *            completion event
+     * @param lines
+     *            journal lines to be written
+     */
+    private void complete(final Event event, final StringBuilder lines) {
+        final JournalEntry entry = event.entry;
+        entry.markCompleted();
+        final UploadResponse uploadResponse = event.uploadResponse;
+        // Skipped records have no response and only advance the completed prefix
+        if (uploadResponse != null && uploadResponse.isSuccessful()) {
+            final String issueKey = uploadResponse.getIssueKey();
+            lines.append(UPLOADED_LINE).append(' ').append(entry.getRecordNr()).append(' ')
+                    .append(issueKey != null ? issueKey : NO_ISSUE_KEY);
+            final String sourceKey = event.sourceKey;
+            if (sourceKey != null && !WHITESPACE.matcher(sourceKey).find()) {
+                lines.append(' ').append(sourceKey);
+            }
+            lines.append('\n');
+        } else if (uploadResponse != null) {
+            lines.append(FAILED_LINE).append(' ').append(entry.getRecordNr()).append(' ')
+                    .append(uploadResponse.getStatusCode()).append('\n');
+        }
+        while (!pendingEntries.isEmpty() && pendingEntries.peek().isCompleted()) {
+            lastPrefixEntry = pendingEntries.poll();
+        }
+    }
+
+    /**
+     * Writes journal lines and forces them to disk.
+     *
+     * @param lines
+     *            journal lines to be written
+     */
+    private void commit(final StringBuilder lines) {
+        if (failed || discarded || lines.length() == 0) {
+            return;
+        }
+        try {
+            final ByteBuffer bytes =
+                    ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+            StatData.addIncrementedValue(StatTypeKeys.JOURNAL_COMMIT_NR);
+        } catch (final IOException e) {
+            logger.error("Failed to write progress journal {}, stopping journaling: {}", path,
+                    e.getMessage());
+            failed = true;
+        }
+    }
+
+    /**
+     * Submission or completion of a record.
+     *
+     */
+    private static final class Event {
+        /** {@link JournalEntry} of the record. */
+        private final JournalEntry entry;
+        /** Whether the event is a completion. */
+        private final boolean completion;
+        /** Final response of the upload of a completed record, <code>null</code> if skipped. */
+        private final UploadResponse uploadResponse;
+        /** Key of a completed record in the CSV file, or <code>null</code> if not known. */
+        private final String sourceKey;
+
+        /**
+         * Ctor.
+         *
+         * @param entry
+         *            {@link JournalEntry} of the record
+         * @param completion
+         *            whether the event is a completion
+         * @param uploadResponse
+         *            final response of the upload of a completed record
+         * @param sourceKey
+         *            key of a completed record in the CSV file, or <code>null</code>
+         */
+        private Event(
+                final JournalEntry entry,
+                final boolean completion,
+                final UploadResponse uploadResponse,
+                final String sourceKey) {
+            this.entry = entry;
+            this.completion = completion;
+            this.uploadResponse = uploadResponse;
+            this.sourceKey = sourceKey;
+        }
+    }
+}
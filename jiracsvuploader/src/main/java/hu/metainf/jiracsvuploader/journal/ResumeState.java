@@ -0,0 +1,81 @@
+package hu.metainf.jiracsvuploader.journal;
+
+import java.util.BitSet;
+
+/**
+ * Progress of an interrupted import, loaded from a {@link ProgressJournal}. Every record up to the
+ * checkpoint record number is completed and reading can continue at the checkpoint byte offset.
+ * Records completed after the checkpoint, out of order, are kept in a bit set relative to the
+ * checkpoint, so they can be looked up in constant time.
+ *
+ */
+public class ResumeState {
+    /** Number of the last record of the completed prefix. */
+    private final long checkpointRecordNr;
+    /** Byte offset of the end of the completed prefix. */
+    private final long checkpointOffset;
+    /** Records completed after the checkpoint, indexed relative to the checkpoint. */
+    private final BitSet completedAfterCheckpoint;
+
+    /**
+     * Ctor.
+     *
+     * @param checkpointRecordNr
+     *            number of the last record of the completed prefix
+     * @param checkpointOffset
+     *            byte offset of the end of the completed prefix
+     * @param completedAfterCheckpoint
+     *            records completed after the checkpoint, bit <code>i</code> standing for record
+     *            <code>checkpointRecordNr + 1 + i</code>
+     */
+    public ResumeState(
+            final long checkpointRecordNr,
+            final long checkpointOffset,
+            final BitSet completedAfterCheckpoint) {
+        this.checkpointRecordNr = checkpointRecordNr;
+        this.checkpointOffset = checkpointOffset;
+        this.completedAfterCheckpoint = completedAfterCheckpoint;
+    }
+
+    /**
+     * Returns the number of the last record of the completed prefix.
+     *
+     * @return record number, 0 if no prefix is completed
+     */
+    public long getCheckpointRecordNr() {
+        return checkpointRecordNr;
+    }
+
+    /**
+     * Returns the byte offset of the end of the completed prefix.
+     *
+     * @return byte offset, 0 if no prefix is completed
+     */
+    public long getCheckpointOffset() {
+        return checkpointOffset;
+    }
+
+    /**
+     * Returns the number of records completed after the checkpoint.
+     *
+     * @return number of records
+     */
+    public int getCompletedAfterCheckpointNr() {
+        return completedAfterCheckpoint.cardinality();
+    }
+
+    /**
+     * Checks if a record was completed by the interrupted import.
+     *
+     * @param recordNr
+     *            number of the record
+     * @return <code>true</code> if the record was completed
+     */
+    public boolean isCompleted(final long recordNr) {
+        final long index = recordNr - checkpointRecordNr - 1;
+        if (index < 0) {
+            return true;
+        }
+        return index < Integer.MAX_VALUE && completedAfterCheckpoint.get((int) index);
+    }
+}
@@ -0,0 +1,94 @@
+package hu.metainf.jiracsvuploader.limit;
+
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+
+/**
+ * {@link ConcurrencyLimiter} adjusting the limit by additive increase, multiplicative decrease
+ * (AIMD). The limit starts low and doubles every round trip (slow start) till the first sign of
+ * congestion, then grows by one per round trip while the limit is used. It is cut back when the
+ * Jira instance throttles or drops requests, or when the short-term average latency rises well
+ * above the long-term average, at most once per round trip. The limit never leaves the range
+ * between 1 and the maximal limit given.
+ *
+ */
+public class AdaptiveConcurrencyLimiter extends ConcurrencyLimiter {
+    /** Limit used at start if the maximal limit is higher. */
+    private static final int INITIAL_LIMIT = 4;
+    /** Factor the limit is multiplied by on congestion. */
+    private static final double BACKOFF_RATIO = 0.75;
+    /** Ratio of short-term and long-term latency treated as congestion. */
+    private static final double LATENCY_TOLERANCE = 1.5;
+    /** Smoothing factor of the short-term latency average. */
+    private static final double SHORT_SMOOTHING = 0.1;
+    /** Smoothing factor of the long-term latency average. */
+    private static final double LONG_SMOOTHING = 0.01;
+    /** Number of latency samples needed before latency is used as a congestion signal. */
+    private static final int WARMUP_SAMPLE_NR = 20;
+
+    /** Maximal limit of uploads in flight. */
+    private final int maxLimit;
+    /** Limit with fractional part kept between additive increases. */
+    private double estimatedLimit;
+    /** Whether the limit is still in slow start, not having seen any congestion. */
+    private boolean slowStart = true;
+    /** Exponential moving average of recent latencies in nanoseconds. */
+    private double shortLatency;
+    /** Exponential moving average of latencies in nanoseconds over a longer period. */
+    private double longLatency;
+    /** Number of latency samples taken. */
+    private long sampleNr;
+    /** {@link System#nanoTime()} value of the last decrease of the limit. */
+    private long lastDecreaseTime;
+
+    /**
+     * Ctor.
+     *
+     * @param maxLimit
+     *            maximal limit of uploads in flight
+     */
+    public AdaptiveConcurrencyLimiter(final int maxLimit) {
+        super(Math.min(INITIAL_LIMIT, maxLimit));
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = Math.min(INITIAL_LIMIT, maxLimit);
+        this.lastDecreaseTime = System.nanoTime();
+    }
+
+    @Override
+    protected int adjustLimit(
+            final int currentLimit,
+            final int inFlightNr,
+            final long latencyNanos,
+            final UploadResponse uploadResponse) {
+        if (uploadResponse.isThrottled()) {
+            decrease();
+        } else {
+            if (sampleNr++ == 0) {
+                shortLatency = latencyNanos;
+                longLatency = latencyNanos;
+            } else {
+                shortLatency += (latencyNanos - shortLatency) * SHORT_SMOOTHING;
+                longLatency += (latencyNanos - longLatency) * LONG_SMOOTHING;
+            }
+            if (sampleNr > WARMUP_SAMPLE_NR && shortLatency > longLatency * LATENCY_TOLERANCE) {
+                decrease();
+            } else if (inFlightNr * 2 >= currentLimit) {
+                // Only grow a limit that is actually used
+                estimatedLimit += slowStart ? 1.0 : 1.0 / estimatedLimit;
+            }
+        }
+        estimatedLimit = Math.max(1.0, Math.min(estimatedLimit, maxLimit));
+        return (int) estimatedLimit;
+    }
+
+    /**
+     * Cuts back the limit, unless it was already cut back within the last round trip.
+     */
+    private void decrease() {
+        slowStart = false;
+        final long now = System.nanoTime();
+        if (now - lastDecreaseTime >= shortLatency) {
+            estimatedLimit *= BACKOFF_RATIO;
+            lastDecreaseTime = now;
+        }
+    }
+}
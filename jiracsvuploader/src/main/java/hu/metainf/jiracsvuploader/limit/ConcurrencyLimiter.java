@@ -0,0 +1,197 @@
+package hu.metainf.jiracsvuploader.limit;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * Limits the number of uploads waiting for a response at the same time. The limit is fixed, but
+ * subclasses can adjust it whenever an upload completes. The current, lowest and highest limits
+ * are registered as stats.
+ *
+ */
+public class ConcurrencyLimiter {
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+    /** Lock guarding the limit and the number of uploads in flight. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** {@link Condition} signalled when an upload can be started. */
+    private final Condition permitAvailable = lock.newCondition();
+    /** {@link Condition} signalled when no upload is in flight. */
+    private final Condition idle = lock.newCondition();
+    /** Current limit of uploads in flight. */
+    private int limit;
+    /** Number of uploads in flight. */
+    private int inFlight;
+
+    /**
+     * Ctor.
+     *
+     * @param limit
+     *            initial limit of uploads in flight
+     */
+    public ConcurrencyLimiter(final int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        registerLimit(limit);
+    }
+
+    /**
+     * Starts an upload if the limit allows it.
+     *
+     * @return <code>true</code> if the upload can be started, <code>false</code> if the limit is
+     *         reached
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= limit) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts an upload, waiting while the limit is reached.
+     *
+     * @throws InterruptedException
+     *             If waiting is interrupted
+     */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                permitAvailable.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finishes an upload started by {@link #acquire()} or {@link #tryAcquire()}, adjusting the
+     * limit by the outcome of the upload.
+     *
+     * @param latencyNanos
+     *            time in nanoseconds the upload waited for its response
+     * @param uploadResponse
+     *            response of the upload, or <code>null</code> if the upload was not sent
+     */
+    public void release(final long latencyNanos, final UploadResponse uploadResponse) {
+        lock.lock();
+        try {
+            final int previousLimit = limit;
+            if (uploadResponse != null) {
+                limit = adjustLimit(previousLimit, inFlight, latencyNanos, uploadResponse);
+            }
+            inFlight--;
+            if (limit != previousLimit) {
+                logger.debug("Concurrency limit of uploads in flight changed from {} to {}",
+                        previousLimit, limit);
+                registerLimit(limit);
+            }
+            if (inFlight == 0) {
+                idle.signalAll();
+            }
+            if (limit > previousLimit) {
+                permitAvailable.signalAll();
+            } else if (inFlight < limit) {
+                permitAvailable.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits till no upload is in flight.
+     *
+     * @throws InterruptedException
+     *             If waiting is interrupted
+     */
+    public void awaitIdle() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight > 0) {
+                idle.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current limit of uploads in flight.
+     *
+     * @return current limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of uploads in flight.
+     *
+     * @return number of uploads in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Computes the new limit when an upload completes. Called while holding the lock of the
+     * limiter, so implementations don't need further synchronization. Keeps the limit unchanged.
+     *
+     * @param currentLimit
+     *            current limit of uploads in flight
+     * @param inFlightNr
+     *            number of uploads in flight, including the completed one
+     * @param latencyNanos
+     *            time in nanoseconds the completed upload waited for its response
+     * @param uploadResponse
+     *            response of the completed upload
+     * @return The new limit, at least 1
+     */
+    protected int adjustLimit(
+            final int currentLimit,
+            final int inFlightNr,
+            final long latencyNanos,
+            final UploadResponse uploadResponse) {
+        return currentLimit;
+    }
+
+    /**
+     * Registers a limit value as stats.
+     *
+     * @param newLimit
+     *            limit value
+     */
+    private static void registerLimit(final int newLimit) {
+        StatData.addValue(StatTypeKeys.CONCURRENCY_LIMIT, newLimit);
+        StatData.setMinValue(StatTypeKeys.CONCURRENCY_LIMIT_MIN, newLimit);
+        StatData.setMaxValue(StatTypeKeys.CONCURRENCY_LIMIT_MAX, newLimit);
+    }
+}
@@ -0,0 +1,187 @@
+package hu.metainf.jiracsvuploader.limit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Limits the rate of uploads globally and per Jira project, keeping a {@link TokenBucket} for
+ * the global cap and one for each project, keyed by the project prefix of the issue key. An
+ * upload takes a token of its project first, so uploads of a throttled project are deferred
+ * without using up the global rate left to the other projects. Buckets hold a second worth of
+ * tokens.
+ *
+ */
+public class ProjectRateLimiter {
+    /** Name of the issue key column. */
+    private static final String ISSUE_KEY_COLUMN_NAME = "Issue key";
+    /** Number of seconds of tokens a bucket holds. */
+    private static final double BURST_SECONDS = 1.0;
+
+    /** Bucket of the global cap, or <code>null</code> if uploads aren't capped globally. */
+    private final TokenBucket globalBucket;
+    /** Requests per second of projects without a rate of their own, 0 if not limited. */
+    private final double defaultProjectRate;
+    /** Requests per second of the projects with a rate of their own, by project key. */
+    private final Map<String, Double> projectRates = new HashMap<>();
+    /** Buckets of the projects, by project key, created on their first upload. */
+    private final ConcurrentMap<String, TokenBucket> projectBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * Ctor.
+     *
+     * @param globalRate
+     *            requests per second of all uploads, 0 to not cap them globally
+     * @param projectRateSpec
+     *            comma separated requests per second of each project, optionally followed by
+     *            rates of specific projects like <code>5,DEMO=2,OPS=0.5</code>, 0 to not limit
+     *            projects, or <code>null</code> to not limit projects at all
+     * @throws IllegalArgumentException
+     *             If a rate is negative or the specification is invalid
+     */
+    public ProjectRateLimiter(final double globalRate, final String projectRateSpec) {
+        if (!(globalRate >= 0.0)) {
+            throw new IllegalArgumentException("Invalid global rate: " + globalRate);
+        }
+        globalBucket = globalRate > 0.0 ? new TokenBucket(globalRate, burstOf(globalRate)) : null;
+        double defaultRate = 0.0;
+        if (projectRateSpec != null) {
+            for (final String part : projectRateSpec.split(",")) {
+                final int separator = part.indexOf('=');
+                if (separator < 0) {
+                    defaultRate = parseRate(part);
+                } else {
+                    projectRates.put(part.substring(0, separator).trim(),
+                            parseRate(part.substring(separator + 1)));
+                }
+            }
+        }
+        defaultProjectRate = defaultRate;
+    }
+
+    /**
+     * Takes a token of the project of an upload and of the global cap, if both are available.
+     *
+     * @param projectKey
+     *            key of the project of the upload, empty if unknown
+     * @param nowNanos
+     *            current {@link System#nanoTime()} value
+     * @return 0 if the upload can be sent, otherwise the nanoseconds till it's worth trying again
+     */
+    public long tryAcquire(final String projectKey, final long nowNanos) {
+        final TokenBucket projectBucket = getProjectBucket(projectKey);
+        if (projectBucket != null) {
+            final long waitNanos = projectBucket.tryAcquire(nowNanos);
+            if (waitNanos > 0L) {
+                return waitNanos;
+            }
+        }
+        if (globalBucket != null) {
+            final long waitNanos = globalBucket.tryAcquire(nowNanos);
+            if (waitNanos > 0L) {
+                if (projectBucket != null) {
+                    projectBucket.refund();
+                }
+                return waitNanos;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Gives back the tokens taken by {@link #tryAcquire(String, long)} for an upload not sent
+     * after all.
+     *
+     * @param projectKey
+     *            key of the project of the upload, empty if unknown
+     */
+    public void refund(final String projectKey) {
+        final TokenBucket projectBucket = getProjectBucket(projectKey);
+        if (projectBucket != null) {
+            projectBucket.refund();
+        }
+        if (globalBucket != null) {
+            globalBucket.refund();
+        }
+    }
+
+    /**
+     * Finds the issue key column of a header row.
+     *
+     * @param headerRow
+     *            field values of the header row
+     * @return Index of the issue key column, or -1 if there's none
+     */
+    public static int findIssueKeyColumn(final String[] headerRow) {
+        for (int i = 0; i < headerRow.length; i++) {
+            if (ISSUE_KEY_COLUMN_NAME.equalsIgnoreCase(headerRow[i].trim())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the project key of an issue key, the part before its last hyphen.
+     *
+     * @param issueKey
+     *            issue key like <code>DEMO-42</code>
+     * @return Project key like <code>DEMO</code>, empty if the issue key has no project prefix
+     */
+    public static String getProjectKey(final String issueKey) {
+        final int separator = issueKey.lastIndexOf('-');
+        return separator > 0 ? issueKey.substring(0, separator).trim() : "";
+    }
+
+    /**
+     * Returns the bucket of a project, creating it on the first upload of the project.
+     *
+     * @param projectKey
+     *            key of the project, empty if unknown
+     * @return The bucket, or <code>null</code> if the project isn't limited
+     */
+    private TokenBucket getProjectBucket(final String projectKey) {
+        if (projectKey.isEmpty()) {
+            return null;
+        }
+        final TokenBucket projectBucket = projectBuckets.get(projectKey);
+        if (projectBucket != null) {
+            return projectBucket;
+        }
+        final double rate = projectRates.getOrDefault(projectKey, defaultProjectRate);
+        if (rate <= 0.0) {
+            return null;
+        }
+        return projectBuckets.computeIfAbsent(projectKey,
+                key -> new TokenBucket(rate, burstOf(rate)));
+    }
+
+    /**
+     * Parses a rate.
+     *
+     * @param rate
+     *            requests per second
+     * @return The rate parsed
+     * @throws IllegalArgumentException
+     *             If the rate is invalid or negative
+     */
+    private static double parseRate(final String rate) {
+        final double parsed = Double.parseDouble(rate.trim());
+        if (!(parsed >= 0.0)) {
+            throw new IllegalArgumentException("Invalid rate: " + rate);
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns the capacity of the bucket of a rate.
+     *
+     * @param rate
+     *            requests per second
+     * @return Capacity in tokens
+     */
+    private static int burstOf(final double rate) {
+        return (int) Math.max(1L, Math.round(rate * BURST_SECONDS));
+    }
+}
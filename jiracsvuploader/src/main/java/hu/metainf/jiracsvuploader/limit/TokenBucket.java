@@ -0,0 +1,67 @@
+package hu.metainf.jiracsvuploader.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket limiting the rate of requests. The bucket is kept as the theoretical
+ * time the next token becomes available, which a successful acquisition moves on by the emission
+ * interval with a compare-and-set, so no lock is taken on the upload path. Up to the burst size
+ * tokens accumulate while idle.
+ *
+ */
+public class TokenBucket {
+    /** Nanoseconds between tokens. */
+    private final long intervalNanos;
+    /** Nanoseconds of emission covered by the tokens of a full bucket besides the next one. */
+    private final long toleranceNanos;
+    /** {@link System#nanoTime()} value the bucket is empty till, as if tokens were emitted. */
+    private final AtomicLong nextFreeNanos;
+
+    /**
+     * Ctor, creating a full bucket.
+     *
+     * @param ratePerSecond
+     *            tokens emitted per second
+     * @param burst
+     *            capacity of the bucket in tokens
+     */
+    public TokenBucket(final double ratePerSecond, final int burst) {
+        if (!(ratePerSecond > 0.0) || burst < 1) {
+            throw new IllegalArgumentException(
+                    "Rate and burst must be positive: " + ratePerSecond + ", " + burst);
+        }
+        intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1L) / ratePerSecond));
+        toleranceNanos = intervalNanos * (burst - 1);
+        // Full already for callers having read the time shortly before the bucket was created
+        nextFreeNanos = new AtomicLong(System.nanoTime() - toleranceNanos - intervalNanos);
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param nowNanos
+     *            current {@link System#nanoTime()} value
+     * @return 0 if a token was taken, otherwise the nanoseconds till the next token is available
+     */
+    public long tryAcquire(final long nowNanos) {
+        while (true) {
+            final long nextFree = nextFreeNanos.get();
+            final long emitted = nextFree - nowNanos > 0L ? nextFree : nowNanos;
+            final long waitNanos = emitted - toleranceNanos - nowNanos;
+            if (waitNanos > 0L) {
+                return waitNanos;
+            }
+            if (nextFreeNanos.compareAndSet(nextFree, emitted + intervalNanos)) {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire(long)} and not used.
+     */
+    public void refund() {
+        nextFreeNanos.addAndGet(-intervalNanos);
+    }
+}
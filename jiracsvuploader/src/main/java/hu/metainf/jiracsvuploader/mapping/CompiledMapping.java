@@ -0,0 +1,71 @@
+package hu.metainf.jiracsvuploader.mapping;
+
+/**
+ * A {@link FieldMapping} compiled for a header row. The nested JSON objects of the mapping are
+ * flattened to the mapped values in output order, each preceded by the encoded keys and
+ * punctuation written before it, so writing a record takes a copy of constant bytes and a
+ * conversion per value.
+ *
+ */
+public final class CompiledMapping {
+    /** Column index of every value. */
+    private final int[] columns;
+    /** Encoded keys and punctuation preceding every value, like <code>{"fields":{"key":</code>. */
+    private final byte[][] prefixes;
+    /** Converter of every value. */
+    private final ValueConverter[] converters;
+    /** Encoded punctuation closing the objects after the last value, like <code>}}</code>. */
+    private final byte[] suffix;
+
+    /**
+     * Ctor.
+     *
+     * @param columns
+     *            column index of every value
+     * @param prefixes
+     *            encoded keys and punctuation preceding every value
+     * @param converters
+     *            converter of every value
+     * @param suffix
+     *            encoded punctuation following the last value
+     */
+    CompiledMapping(
+            final int[] columns,
+            final byte[][] prefixes,
+            final ValueConverter[] converters,
+            final byte[] suffix) {
+        this.columns = columns;
+        this.prefixes = prefixes;
+        this.converters = converters;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Writes the JSON object of a record. Values of columns missing from the record are written
+     * as <code>null</code>.
+     *
+     * @param fields
+     *            field values of the record
+     * @param buffer
+     *            buffer of the serializing thread
+     * @throws IllegalArgumentException
+     *             If a value can't be converted
+     */
+    public void write(final String[] fields, final JsonBuffer buffer) {
+        for (int i = 0; i < columns.length; i++) {
+            buffer.writeBytes(prefixes[i]);
+            final int column = columns[i];
+            if (column < fields.length && fields[column] != null) {
+                try {
+                    converters[i].write(fields[column], buffer);
+                } catch (final IllegalArgumentException e) {
+                    throw new IllegalArgumentException(
+                            "Column #" + (column + 1) + ": " + e.getMessage(), e);
+                }
+            } else {
+                buffer.writeNull();
+            }
+        }
+        buffer.writeBytes(suffix);
+    }
+}
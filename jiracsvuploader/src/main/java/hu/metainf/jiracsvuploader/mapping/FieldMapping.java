@@ -0,0 +1,286 @@
+package hu.metainf.jiracsvuploader.mapping;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapping of the CSV columns to the fields of the Jira JSON payload, read from a mapping file
+ * with a line per mapped column like
+ *
+ * <pre>
+ * Summary = fields.summary
+ * Issue key = fields.project.key | project
+ * Created = fields.created | date dd/MMM/yy h:mm a
+ * Assignee = fields.assignee.name | user
+ * </pre>
+ *
+ * The name of the column is followed by the dot separated path of the JSON field, and optionally
+ * by the {@link ValueConverters converter} of its values with its argument. A column may be mapped
+ * to several fields, and columns not mapped are left out of the payload. Empty lines and lines
+ * starting with <code>#</code> are ignored. The mapping is compiled for the header row of every
+ * file by {@link #compile(String[])}.
+ *
+ */
+public final class FieldMapping {
+    /** Separator of the column name from the JSON path. */
+    private static final char COLUMN_SEPARATOR = '=';
+    /** Separator of the JSON path from the converter. */
+    private static final char CONVERTER_SEPARATOR = '|';
+    /** Prefix of comment lines. */
+    private static final String COMMENT_PREFIX = "#";
+    /** Separator of the keys of a JSON path. */
+    private static final String PATH_SEPARATOR = ".";
+
+    /** Names of the mapped columns, in the order of the mapping. */
+    private final List<String> columnNames = new ArrayList<>();
+    /** Converters of the mapped columns, in the order of the mapping. */
+    private final List<ValueConverter> converters = new ArrayList<>();
+    /** Root object of the JSON payload. */
+    private final PathNode root = new PathNode();
+
+    /**
+     * Ctor, parsing a mapping.
+     *
+     * @param lines
+     *            lines of the mapping
+     * @param userNames
+     *            Jira user names by the values of the columns converted by the <code>user</code>
+     *            converter
+     * @throws IllegalArgumentException
+     *             If a line is invalid, JSON paths conflict or no column is mapped
+     */
+    public FieldMapping(final List<String> lines, final Map<String, String> userNames) {
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            try {
+                parseLine(line, userNames);
+            } catch (final IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Invalid field mapping line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        if (columnNames.isEmpty()) {
+            throw new IllegalArgumentException("Field mapping maps no columns");
+        }
+    }
+
+    /**
+     * Loads a mapping file.
+     *
+     * @param mappingFile
+     *            path of the mapping file
+     * @param userNameFile
+     *            path of a file of <code>value = user name</code> lines mapping the values of
+     *            the columns converted by the <code>user</code> converter to Jira user names, or
+     *            <code>null</code> to use the values as user names
+     * @return The mapping loaded
+     * @throws IOException
+     *             If reading a file fails
+     * @throws IllegalArgumentException
+     *             If a file is invalid
+     */
+    public static FieldMapping load(final Path mappingFile, final Path userNameFile)
+            throws IOException {
+        final Map<String, String> userNames = new HashMap<>();
+        if (userNameFile != null) {
+            final List<String> lines = Files.readAllLines(userNameFile, StandardCharsets.UTF_8);
+            for (int i = 0; i < lines.size(); i++) {
+                final String line = lines.get(i).trim();
+                if (line.isEmpty() || line.startsWith(COMMENT_PREFIX)) {
+                    continue;
+                }
+                final int separator = line.indexOf(COLUMN_SEPARATOR);
+                if (separator < 0) {
+                    throw new IllegalArgumentException(
+                            "Invalid user name map line " + (i + 1) + ": " + line);
+                }
+                userNames.put(line.substring(0, separator).trim(),
+                        line.substring(separator + 1).trim());
+            }
+        }
+        return new FieldMapping(Files.readAllLines(mappingFile, StandardCharsets.UTF_8),
+                Collections.unmodifiableMap(userNames));
+    }
+
+    /**
+     * Compiles the mapping for a header row.
+     *
+     * @param headerRow
+     *            field values of the header row
+     * @return The compiled mapping
+     * @throws IllegalArgumentException
+     *             If a mapped column isn't in the header row
+     */
+    public CompiledMapping compile(final String[] headerRow) {
+        final Map<String, Integer> columnIndexes = new HashMap<>();
+        for (int i = 0; i < headerRow.length; i++) {
+            columnIndexes.putIfAbsent(headerRow[i], i);
+        }
+        final int[] mappedColumns = new int[columnNames.size()];
+        for (int i = 0; i < mappedColumns.length; i++) {
+            final Integer column = columnIndexes.get(columnNames.get(i));
+            if (column == null) {
+                throw new IllegalArgumentException(
+                        "Mapped column not in CSV header row: " + columnNames.get(i));
+            }
+            mappedColumns[i] = column;
+        }
+        final Flattening flattening = new Flattening(mappedColumns);
+        flattening.flatten(root);
+        return flattening.toCompiledMapping();
+    }
+
+    /**
+     * Parses a line mapping a column.
+     *
+     * @param line
+     *            trimmed line
+     * @param userNames
+     *            Jira user names by the values of user columns
+     * @throws IllegalArgumentException
+     *             If the line is invalid or its JSON path conflicts with another one
+     */
+    private void parseLine(final String line, final Map<String, String> userNames) {
+        final int columnEnd = line.indexOf(COLUMN_SEPARATOR);
+        if (columnEnd <= 0) {
+            throw new IllegalArgumentException("No column name before " + COLUMN_SEPARATOR);
+        }
+        final String columnName = line.substring(0, columnEnd).trim();
+        final int pathEnd = line.indexOf(CONVERTER_SEPARATOR, columnEnd);
+        final String path =
+                line.substring(columnEnd + 1, pathEnd < 0 ? line.length() : pathEnd).trim();
+        String type = ValueConverters.STRING;
+        String argument = null;
+        if (pathEnd >= 0) {
+            final String converter = line.substring(pathEnd + 1).trim();
+            final int typeEnd = converter.indexOf(' ');
+            type = typeEnd < 0 ? converter : converter.substring(0, typeEnd);
+            argument = typeEnd < 0 ? null : converter.substring(typeEnd + 1).trim();
+        }
+        final ValueConverter converter = ValueConverters.create(type, argument, userNames);
+        root.add(path, columnNames.size());
+        columnNames.add(columnName);
+        converters.add(converter);
+    }
+
+    /**
+     * Node of the tree of the JSON paths of a mapping: an object with its keys in the order of
+     * their first use, or a value mapped from a column.
+     *
+     */
+    private static final class PathNode {
+        /** Keys of an object with their nodes. */
+        private final Map<String, PathNode> children = new LinkedHashMap<>();
+        /** Index of the mapped column of a value, or -1 for an object. */
+        private int mappingIndex = -1;
+
+        /**
+         * Adds a value to the object.
+         *
+         * @param path
+         *            dot separated JSON path of the value within the object
+         * @param index
+         *            index of the mapped column of the value
+         * @throws IllegalArgumentException
+         *             If the path is invalid, or is or leads through a value already added
+         */
+        private void add(final String path, final int index) {
+            PathNode node = this;
+            for (final String key : path.split("\\" + PATH_SEPARATOR, -1)) {
+                if (key.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Invalid JSON path: " + path);
+                }
+                if (node.mappingIndex >= 0) {
+                    throw new IllegalArgumentException("JSON path leads through a value: " + path);
+                }
+                node = node.children.computeIfAbsent(key.trim(), k -> new PathNode());
+            }
+            if (node.mappingIndex >= 0 || !node.children.isEmpty()) {
+                throw new IllegalArgumentException("JSON path mapped twice: " + path);
+            }
+            node.mappingIndex = index;
+        }
+    }
+
+    /**
+     * Flattening of the tree of JSON paths to the mapped values in output order.
+     *
+     */
+    private final class Flattening {
+        /** Column index of every mapped column, in the order of the mapping. */
+        private final int[] mappedColumns;
+        /** Keys and punctuation written since the last value. */
+        private final JsonBuffer pending = new JsonBuffer();
+        /** Column index of every value, in output order. */
+        private final int[] columns;
+        /** Encoded keys and punctuation preceding every value, in output order. */
+        private final byte[][] prefixes;
+        /** Converter of every value, in output order. */
+        private final ValueConverter[] valueConverters;
+        /** Number of values flattened. */
+        private int valueNr;
+
+        /**
+         * Ctor.
+         *
+         * @param mappedColumns
+         *            column index of every mapped column, in the order of the mapping
+         */
+        private Flattening(final int[] mappedColumns) {
+            this.mappedColumns = mappedColumns;
+            columns = new int[mappedColumns.length];
+            prefixes = new byte[mappedColumns.length][];
+            valueConverters = new ValueConverter[mappedColumns.length];
+        }
+
+        /**
+         * Flattens an object.
+         *
+         * @param node
+         *            node of the object
+         */
+        private void flatten(final PathNode node) {
+            pending.writeByte('{');
+            boolean first = true;
+            for (final Map.Entry<String, PathNode> child : node.children.entrySet()) {
+                if (!first) {
+                    pending.writeByte(',');
+                }
+                first = false;
+                pending.writeString(child.getKey());
+                pending.writeByte(':');
+                final int index = child.getValue().mappingIndex;
+                if (index >= 0) {
+                    columns[valueNr] = mappedColumns[index];
+                    prefixes[valueNr] = pending.toByteArray();
+                    valueConverters[valueNr] = converters.get(index);
+                    valueNr++;
+                    pending.reset();
+                } else {
+                    flatten(child.getValue());
+                }
+            }
+            pending.writeByte('}');
+        }
+
+        /**
+         * Returns the mapping compiled.
+         *
+         * @return The compiled mapping
+         */
+        private CompiledMapping toCompiledMapping() {
+            return new CompiledMapping(columns, prefixes, valueConverters, pending.toByteArray());
+        }
+    }
+}
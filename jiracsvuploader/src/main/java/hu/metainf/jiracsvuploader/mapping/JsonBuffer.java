@@ -0,0 +1,195 @@
+package hu.metainf.jiracsvuploader.mapping;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer a UTF-8 encoded JSON document is written to, encoding JSON strings without
+ * intermediate objects. Not thread-safe, every serializing thread uses its own buffer.
+ *
+ */
+public final class JsonBuffer {
+    /** Initial size of the buffer in bytes. */
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    /** Largest buffer in bytes kept for reuse after serializing a large record. */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1 << 20;
+    /** Largest number of bytes a single character is encoded to, as a <code>\\u</code> escape. */
+    private static final int MAX_ESCAPED_CHAR_LENGTH = 6;
+    /** Lowest character not needing an escape. */
+    private static final char FIRST_UNESCAPED_CHAR = 0x20;
+    /** Lowest character encoded to more than one byte. */
+    private static final char FIRST_NON_ASCII_CHAR = 0x80;
+    /** Lowest character encoded to three bytes. */
+    private static final char FIRST_THREE_BYTE_CHAR = 0x800;
+    /** Hexadecimal digits of <code>\\u</code> escapes. */
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    /** Encoded JSON <code>null</code>. */
+    private static final byte[] NULL_VALUE = "null".getBytes(StandardCharsets.US_ASCII);
+
+    /** Bytes written. */
+    private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+    /** Number of bytes written. */
+    private int length;
+
+    /**
+     * Empties the buffer, dropping its storage if a large record grew it too much.
+     */
+    public void reset() {
+        length = 0;
+        if (bytes.length > MAX_RETAINED_BUFFER_SIZE) {
+            bytes = new byte[INITIAL_BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * Makes sure there is room for a number of bytes.
+     *
+     * @param byteNr
+     *            number of bytes to be written
+     */
+    private void ensureCapacity(final int byteNr) {
+        if (length + byteNr > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + byteNr));
+        }
+    }
+
+    /**
+     * Writes a byte.
+     *
+     * @param value
+     *            byte to write
+     */
+    public void writeByte(final int value) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) value;
+    }
+
+    /**
+     * Writes bytes.
+     *
+     * @param values
+     *            bytes to write
+     */
+    public void writeBytes(final byte[] values) {
+        ensureCapacity(values.length);
+        System.arraycopy(values, 0, bytes, length, values.length);
+        length += values.length;
+    }
+
+    /**
+     * Writes a JSON <code>null</code>.
+     */
+    public void writeNull() {
+        writeBytes(NULL_VALUE);
+    }
+
+    /**
+     * Writes a value made of ASCII characters as it is, like a JSON number.
+     *
+     * @param value
+     *            value to write, holding no character above <code>U+007F</code>
+     */
+    public void writeAscii(final String value) {
+        final int charNr = value.length();
+        ensureCapacity(charNr);
+        for (int i = 0; i < charNr; i++) {
+            bytes[length++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * Writes a quoted and escaped JSON string. Characters up to <code>U+007F</code> which
+     * need no escaping are copied without further checks, the rest are escaped or encoded to
+     * UTF-8 one by one. Unpaired surrogates are written as <code>\\u</code> escapes.
+     *
+     * @param value
+     *            string to write
+     */
+    public void writeString(final String value) {
+        final int charNr = value.length();
+        ensureCapacity(charNr * MAX_ESCAPED_CHAR_LENGTH + 2);
+        final byte[] out = bytes;
+        int pos = length;
+        out[pos++] = '"';
+        for (int i = 0; i < charNr; i++) {
+            final char c = value.charAt(i);
+            if (c < FIRST_NON_ASCII_CHAR) {
+                if (c >= FIRST_UNESCAPED_CHAR && c != '"' && c != '\\') {
+                    out[pos++] = (byte) c;
+                } else {
+                    pos = writeEscape(c, pos);
+                }
+            } else if (c < FIRST_THREE_BYTE_CHAR) {
+                out[pos++] = (byte) (0xc0 | c >> 6);
+                out[pos++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < charNr
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[pos++] = (byte) (0xf0 | codePoint >> 18);
+                out[pos++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                out[pos++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                out[pos++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                pos = writeEscape(c, pos);
+            } else {
+                out[pos++] = (byte) (0xe0 | c >> 12);
+                out[pos++] = (byte) (0x80 | c >> 6 & 0x3f);
+                out[pos++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        out[pos++] = '"';
+        length = pos;
+    }
+
+    /**
+     * Writes the escape sequence of a character, the capacity having been ensured already.
+     *
+     * @param c
+     *            character to escape
+     * @param start
+     *            position to write at
+     * @return The position following the escape sequence
+     */
+    private int writeEscape(final char c, final int start) {
+        int pos = start;
+        bytes[pos++] = '\\';
+        switch (c) {
+            case '"':
+            case '\\':
+                bytes[pos++] = (byte) c;
+                break;
+            case '\n':
+                bytes[pos++] = 'n';
+                break;
+            case '\r':
+                bytes[pos++] = 'r';
+                break;
+            case '\t':
+                bytes[pos++] = 't';
+                break;
+            case '\b':
+                bytes[pos++] = 'b';
+                break;
+            case '\f':
+                bytes[pos++] = 'f';
+                break;
+            default:
+                bytes[pos++] = 'u';
+                bytes[pos++] = HEX_DIGITS[c >> 12 & 0xf];
+                bytes[pos++] = HEX_DIGITS[c >> 8 & 0xf];
+                bytes[pos++] = HEX_DIGITS[c >> 4 & 0xf];
+                bytes[pos++] = HEX_DIGITS[c & 0xf];
+                break;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns a copy of the bytes written.
+     *
+     * @return bytes written
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+}
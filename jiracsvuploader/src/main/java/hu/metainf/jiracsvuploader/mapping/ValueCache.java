@@ -0,0 +1,79 @@
+package hu.metainf.jiracsvuploader.mapping;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of the results of a conversion, shared by the serializing threads without
+ * locking on lookups. Entries are kept in two generations: new entries go to the young one, and
+ * when it's full the old generation is dropped and the young one takes its place. Entries found
+ * in the old generation are copied back to the young one, so values used recently survive the
+ * eviction and the cache holds at most twice its generation size.
+ *
+ * @param <V>
+ *            type of the cached results
+ */
+final class ValueCache<V> {
+    /** Maximal number of entries of a generation. */
+    private final int generationSize;
+    /** Conversion computing the results missing from the cache. */
+    private final Function<String, V> loader;
+    /** Entries added since the last eviction. */
+    private volatile Map<String, V> young = new ConcurrentHashMap<>();
+    /** Entries of the generation before the young one. */
+    private volatile Map<String, V> old = new ConcurrentHashMap<>();
+
+    /**
+     * Ctor.
+     *
+     * @param generationSize
+     *            maximal number of entries of a generation
+     * @param loader
+     *            conversion computing the results missing from the cache, not returning
+     *            <code>null</code>
+     */
+    ValueCache(final int generationSize, final Function<String, V> loader) {
+        this.generationSize = generationSize;
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the result of a value, computing it if it isn't cached.
+     *
+     * @param value
+     *            value to convert
+     * @return The result
+     * @throws IllegalArgumentException
+     *             If the value can't be converted
+     */
+    V get(final String value) {
+        final Map<String, V> youngEntries = young;
+        V result = youngEntries.get(value);
+        if (result != null) {
+            return result;
+        }
+        result = old.get(value);
+        if (result == null) {
+            result = loader.apply(value);
+        }
+        if (youngEntries.size() >= generationSize) {
+            evict(youngEntries);
+        }
+        young.put(value, result);
+        return result;
+    }
+
+    /**
+     * Drops the old generation, making the young one old, unless another thread did it already.
+     *
+     * @param fullEntries
+     *            young generation found full
+     */
+    private synchronized void evict(final Map<String, V> fullEntries) {
+        if (young == fullEntries) {
+            old = fullEntries;
+            young = new ConcurrentHashMap<>();
+        }
+    }
+}
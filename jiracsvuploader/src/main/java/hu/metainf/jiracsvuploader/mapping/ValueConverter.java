@@ -0,0 +1,22 @@
+package hu.metainf.jiracsvuploader.mapping;
+
+/**
+ * Converter of the CSV field values of a column to the JSON value of the Jira field they are
+ * mapped to, writing the JSON value straight into the serialization buffer. Converters are shared
+ * by the serializing threads, so they have to be thread-safe.
+ *
+ */
+@FunctionalInterface
+public interface ValueConverter {
+    /**
+     * Writes the JSON value of a field value.
+     *
+     * @param value
+     *            CSV field value
+     * @param buffer
+     *            buffer of the serializing thread
+     * @throws IllegalArgumentException
+     *             If the value can't be converted
+     */
+    void write(String value, JsonBuffer buffer);
+}
@@ -0,0 +1,203 @@
+package hu.metainf.jiracsvuploader.mapping;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import hu.metainf.jiracsvuploader.limit.ProjectRateLimiter;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * The {@link ValueConverter} types of a field mapping:
+ * <ul>
+ * <li><code>string</code>: the value as a JSON string, the default</li>
+ * <li><code>number</code>: the value as a JSON number</li>
+ * <li><code>date</code> followed by a {@link DateTimeFormatter} pattern like
+ * <code>dd/MMM/yy h:mm a</code>: the date, or the date and time in the local time zone, in the
+ * format of Jira</li>
+ * <li><code>enum</code>: the trimmed value, for columns of a few distinct values like
+ * statuses</li>
+ * <li><code>user</code>: the Jira user name of the value by the user name map, or the trimmed
+ * value if it's not in the map</li>
+ * <li><code>project</code>: the project key of an issue key</li>
+ * </ul>
+ * Blank values are written as <code>null</code> by all converters but <code>string</code>. The
+ * <code>date</code>, <code>enum</code> and <code>user</code> converters cache the encoded JSON
+ * value of the values converted recently, so repeated values are converted once.
+ *
+ */
+public final class ValueConverters {
+    /** Name of the default converter type. */
+    public static final String STRING = "string";
+    /** Maximal number of entries of a generation of the cache of a converter. */
+    private static final int CACHE_GENERATION_SIZE = 4096;
+    /** Format of the date-time values of Jira. */
+    private static final DateTimeFormatter JIRA_DATE_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ", Locale.ENGLISH);
+    /** Parsers of the date patterns by pattern, shared by the columns using the same pattern. */
+    private static final ConcurrentMap<String, DateTimeFormatter> DATE_PARSERS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Ctor, not to be instantiated.
+     */
+    private ValueConverters() {
+    }
+
+    /**
+     * Creates a converter.
+     *
+     * @param type
+     *            name of the converter type
+     * @param argument
+     *            argument of the converter type, or <code>null</code> if none is given
+     * @param userNames
+     *            Jira user names by the values of user columns
+     * @return The converter created
+     * @throws IllegalArgumentException
+     *             If the type is unknown, or the argument is missing or invalid
+     */
+    static ValueConverter create(
+            final String type,
+            final String argument,
+            final Map<String, String> userNames) {
+        if ("date".equals(type)) {
+            if (argument == null) {
+                throw new IllegalArgumentException("Date converter requires a date pattern");
+            }
+            final DateTimeFormatter parser = getDateParser(argument);
+            final ZoneId zone = ZoneId.systemDefault();
+            return cached(value -> toJiraDate(parser, zone, value));
+        }
+        if (argument != null) {
+            throw new IllegalArgumentException("Converter " + type + " takes no argument");
+        }
+        switch (type) {
+            case STRING:
+                return (value, buffer) -> buffer.writeString(value);
+            case "number":
+                return ValueConverters::writeNumber;
+            case "enum":
+                return cached(String::trim);
+            case "user":
+                return cached(value -> userNames.getOrDefault(value.trim(), value.trim()));
+            case "project":
+                // Issue keys are unique, caching them would only evict useful entries
+                return (value, buffer) -> {
+                    if (value.isBlank()) {
+                        buffer.writeNull();
+                    } else {
+                        buffer.writeString(ProjectRateLimiter.getProjectKey(value));
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown converter: " + type);
+        }
+    }
+
+    /**
+     * Creates a converter writing the converted values as JSON strings, caching the encoded JSON
+     * strings by value.
+     *
+     * @param conversion
+     *            conversion of the non-blank values
+     * @return The converter created
+     */
+    private static ValueConverter cached(final Function<String, String> conversion) {
+        final ValueCache<byte[]> cache = new ValueCache<>(CACHE_GENERATION_SIZE, value -> {
+            StatData.addIncrementedValue(StatTypeKeys.MAPPING_CACHE_MISS_NR);
+            final JsonBuffer encoded = new JsonBuffer();
+            encoded.writeString(conversion.apply(value));
+            return encoded.toByteArray();
+        });
+        return (value, buffer) -> {
+            if (value.isBlank()) {
+                buffer.writeNull();
+            } else {
+                buffer.writeBytes(cache.get(value));
+            }
+        };
+    }
+
+    /**
+     * Writes a value as a JSON number.
+     *
+     * @param value
+     *            field value
+     * @param buffer
+     *            buffer of the serializing thread
+     * @throws IllegalArgumentException
+     *             If the value isn't a number
+     */
+    private static void writeNumber(final String value, final JsonBuffer buffer) {
+        if (value.isBlank()) {
+            buffer.writeNull();
+            return;
+        }
+        try {
+            buffer.writeAscii(new BigDecimal(value.trim()).toString());
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value, e);
+        }
+    }
+
+    /**
+     * Returns the parser of a date pattern, matching month and day names case-insensitively in
+     * English.
+     *
+     * @param pattern
+     *            {@link DateTimeFormatter} pattern
+     * @return The parser
+     * @throws IllegalArgumentException
+     *             If the pattern is invalid
+     */
+    private static DateTimeFormatter getDateParser(final String pattern) {
+        return DATE_PARSERS.computeIfAbsent(pattern, key -> new DateTimeFormatterBuilder()
+                .parseCaseInsensitive().appendPattern(key).toFormatter(Locale.ENGLISH));
+    }
+
+    /**
+     * Converts a date value to the format of Jira.
+     *
+     * @param parser
+     *            parser of the date pattern of the column
+     * @param zone
+     *            time zone of the date-time values without one
+     * @param value
+     *            field value
+     * @return The date like <code>2018-06-07</code> if the pattern has no time, otherwise the
+     *         date-time like <code>2018-06-07T15:13:00.000+0200</code>
+     * @throws IllegalArgumentException
+     *             If the value doesn't match the pattern
+     */
+    private static String toJiraDate(
+            final DateTimeFormatter parser,
+            final ZoneId zone,
+            final String value) {
+        final TemporalAccessor parsed;
+        try {
+            parsed = parser.parseBest(value.trim(), ZonedDateTime::from, LocalDateTime::from,
+                    LocalDate::from);
+        } catch (final DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + value, e);
+        }
+        if (parsed instanceof LocalDate) {
+            return parsed.toString();
+        }
+        final ZonedDateTime dateTime = parsed instanceof ZonedDateTime ? (ZonedDateTime) parsed
+                : ((LocalDateTime) parsed).atZone(zone);
+        return JIRA_DATE_TIME_FORMAT.format(dateTime);
+    }
+}
@@ -0,0 +1,107 @@
+package hu.metainf.jiracsvuploader.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.stat.StatData;
+
+/**
+ * Publishes the live state of an import while it's running: {@link StatData} and the state of the
+ * record processor are registered as JMX MBeans, optionally served by a
+ * {@link PrometheusEndpoint}, and the progress is optionally logged by a {@link ProgressLogger}.
+ *
+ */
+public class LiveMetrics implements Closeable {
+    /** Object name of the {@link StatDataMetrics} MBean. */
+    public static final String STAT_DATA_OBJECT_NAME = "hu.metainf.jiracsvuploader:type=StatData";
+    /** Object name of the {@link ProcessorMetrics} MBean. */
+    public static final String PROCESSOR_OBJECT_NAME = "hu.metainf.jiracsvuploader:type=Processor";
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(LiveMetrics.class);
+    /** Platform {@link MBeanServer} the MBeans are registered to. */
+    private final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    /** Names of the MBeans registered. */
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+    /** {@link PrometheusEndpoint} serving the metrics, or <code>null</code> if not started. */
+    private final PrometheusEndpoint prometheusEndpoint;
+    /** {@link ProgressLogger} logging the progress, or <code>null</code> if not started. */
+    private final ProgressLogger progressLogger;
+
+    /**
+     * Ctor, registering the MBeans and starting the endpoint and the progress logging.
+     *
+     * @param csvRecordProcessor
+     *            {@link CsvLineProcessor} published
+     * @param metricsPort
+     *            port of the {@link PrometheusEndpoint}, 0 to use a free port, or a negative
+     *            value to not start the endpoint
+     * @param progressIntervalSeconds
+     *            time between progress lines in seconds, or 0 to not log the progress
+     * @throws IOException
+     *             If starting the endpoint fails
+     */
+    public LiveMetrics(
+            final CsvLineProcessor csvRecordProcessor,
+            final int metricsPort,
+            final long progressIntervalSeconds) throws IOException {
+        register(STAT_DATA_OBJECT_NAME, new StatDataMetrics());
+        register(PROCESSOR_OBJECT_NAME, new ProcessorMetrics(csvRecordProcessor));
+        prometheusEndpoint =
+                metricsPort >= 0 ? new PrometheusEndpoint(metricsPort, csvRecordProcessor) : null;
+        progressLogger = progressIntervalSeconds > 0L
+                ? new ProgressLogger(csvRecordProcessor, progressIntervalSeconds)
+                : null;
+    }
+
+    /**
+     * Registers an MBean, replacing an MBean registered under the same name before. A failed
+     * registration is logged only, as the import works without it.
+     *
+     * @param objectName
+     *            object name of the MBean
+     * @param mbean
+     *            MBean registered
+     */
+    private void register(final String objectName, final Object mbean) {
+        try {
+            final ObjectName name = new ObjectName(objectName);
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+            mbeanServer.registerMBean(mbean, name);
+            registeredNames.add(name);
+        } catch (final JMException e) {
+            logger.warn("Failed to register MBean {}: {}", objectName, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (progressLogger != null) {
+            progressLogger.close();
+        }
+        if (prometheusEndpoint != null) {
+            prometheusEndpoint.close();
+        }
+        for (final ObjectName name : registeredNames) {
+            try {
+                mbeanServer.unregisterMBean(name);
+            } catch (final JMException e) {
+                logger.warn("Failed to unregister MBean {}: {}", name, e.getMessage());
+            }
+        }
+        registeredNames.clear();
+    }
+}
@@ -0,0 +1,52 @@
+package hu.metainf.jiracsvuploader.metrics;
+
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+
+/**
+ * JMX MBean publishing the live state of a {@link CsvLineProcessor}.
+ *
+ */
+public class ProcessorMetrics implements ProcessorMetricsMBean {
+    /** {@link CsvLineProcessor} published. */
+    private final CsvLineProcessor csvRecordProcessor;
+
+    /**
+     * Ctor.
+     *
+     * @param csvRecordProcessor
+     *            {@link CsvLineProcessor} published
+     */
+    public ProcessorMetrics(final CsvLineProcessor csvRecordProcessor) {
+        this.csvRecordProcessor = csvRecordProcessor;
+    }
+
+    @Override
+    public int getActiveThreadNr() {
+        return csvRecordProcessor.getActiveThreadNr();
+    }
+
+    @Override
+    public long getQueuedTaskNr() {
+        return csvRecordProcessor.getQueuedTaskNr();
+    }
+
+    @Override
+    public long getCompletedTaskNr() {
+        return csvRecordProcessor.getCompletedTaskNr();
+    }
+
+    @Override
+    public long getInFlightRecordNr() {
+        return csvRecordProcessor.getInFlightRecordNr();
+    }
+
+    @Override
+    public int getInFlightUploadNr() {
+        return csvRecordProcessor.getInFlightUploadNr();
+    }
+
+    @Override
+    public int getInFlightLimit() {
+        return csvRecordProcessor.getInFlightLimit();
+    }
+}
@@ -0,0 +1,49 @@
+package hu.metainf.jiracsvuploader.metrics;
+
+/**
+ * JMX management interface publishing the live state of the record processor.
+ *
+ */
+public interface ProcessorMetricsMBean {
+    /**
+     * Returns the number of threads currently running tasks.
+     *
+     * @return number of threads
+     */
+    int getActiveThreadNr();
+
+    /**
+     * Returns the number of tasks waiting for execution.
+     *
+     * @return number of tasks
+     */
+    long getQueuedTaskNr();
+
+    /**
+     * Returns the number of upload tasks run to completion.
+     *
+     * @return number of tasks
+     */
+    long getCompletedTaskNr();
+
+    /**
+     * Returns the number of records submitted, but not finally uploaded or failed yet.
+     *
+     * @return number of records
+     */
+    long getInFlightRecordNr();
+
+    /**
+     * Returns the number of uploads waiting for a response.
+     *
+     * @return number of uploads
+     */
+    int getInFlightUploadNr();
+
+    /**
+     * Returns the current limit of uploads waiting for a response.
+     *
+     * @return number of uploads
+     */
+    int getInFlightLimit();
+}
@@ -0,0 +1,141 @@
+package hu.metainf.jiracsvuploader.metrics;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * Logs the progress of the import periodically from a daemon thread: the number of records
+ * completed, the throughput since the previous line, the share of the CSV file read, the number
+ * of records in flight and the estimated remaining time.
+ * <p>
+ * The remaining time is estimated from the share of the work done, which is the share of the
+ * file read multiplied by the share of the records read that completed. While reading is held
+ * back by a bounded queue, the share of the file read dominates; once the file is read, the
+ * records completed do.
+ *
+ */
+public class ProgressLogger implements Closeable {
+    /** Number of milliseconds in a second. */
+    private static final double MILLIS_PER_SECOND = 1000.0;
+    /** Number of seconds in a minute. */
+    private static final long SECONDS_PER_MINUTE = 60L;
+    /** Number of minutes in an hour. */
+    private static final long MINUTES_PER_HOUR = 60L;
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(ProgressLogger.class);
+    /** {@link CsvLineProcessor} the records are submitted to. */
+    private final CsvLineProcessor csvRecordProcessor;
+    /** Timer logging the progress. */
+    private final ScheduledExecutorService progressTimer;
+    /** Start time of the logging in milliseconds. */
+    private final long startMillis;
+    /** Time of the previous progress line in milliseconds, accessed by the timer only. */
+    private long previousMillis;
+    /** Number of records completed at the previous progress line, accessed by the timer only. */
+    private long previousCompletedNr;
+
+    /**
+     * Ctor, starting the logging.
+     *
+     * @param csvRecordProcessor
+     *            {@link CsvLineProcessor} the records are submitted to
+     * @param intervalSeconds
+     *            time between progress lines in seconds
+     */
+    public ProgressLogger(final CsvLineProcessor csvRecordProcessor, final long intervalSeconds) {
+        this.csvRecordProcessor = csvRecordProcessor;
+        startMillis = System.currentTimeMillis();
+        previousMillis = startMillis;
+        progressTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "progress-logger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progressTimer.scheduleAtFixedRate(this::logProgress, intervalSeconds, intervalSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        progressTimer.shutdownNow();
+    }
+
+    /**
+     * Logs a progress line.
+     */
+    private void logProgress() {
+        final long nowMillis = System.currentTimeMillis();
+        final long submittedNr = StatData.getValue(StatTypeKeys.SUBMITTED_ROW_NR);
+        final long inFlightNr = csvRecordProcessor.getInFlightRecordNr();
+        final long completedNr = Math.max(0L, submittedNr - inFlightNr);
+        final long readByteNr = StatData.getValue(StatTypeKeys.READ_BYTE_NR);
+        final long inputByteNr = StatData.getValue(StatTypeKeys.INPUT_BYTE_NR);
+        final double throughput = nowMillis > previousMillis
+                ? (completedNr - previousCompletedNr) * MILLIS_PER_SECOND
+                        / (nowMillis - previousMillis)
+                : 0.0;
+        final long remainingMillis = estimateRemainingMillis(nowMillis - startMillis,
+                readByteNr, inputByteNr, completedNr, submittedNr);
+        logger.info("Progress: {} row(s) completed, {} row(s)/s, {}% of input read,"
+                + " {} row(s) in flight, {} task(s) queued, ETA {}", completedNr,
+                String.format("%.1f", throughput),
+                String.format("%.1f", inputByteNr > 0L ? 100.0 * readByteNr / inputByteNr : 0.0),
+                inFlightNr, csvRecordProcessor.getQueuedTaskNr(),
+                remainingMillis < 0L ? "unknown" : formatDuration(remainingMillis));
+        previousMillis = nowMillis;
+        previousCompletedNr = completedNr;
+    }
+
+    /**
+     * Estimates the remaining time of the import from the share of the work done, which is the
+     * share of the file read multiplied by the share of the records read that completed.
+     *
+     * @param elapsedMillis
+     *            time elapsed since the start of the import in milliseconds
+     * @param readByteNr
+     *            number of bytes of the CSV file read
+     * @param inputByteNr
+     *            number of bytes of the CSV file to be read
+     * @param completedNr
+     *            number of records completed
+     * @param submittedNr
+     *            number of records submitted
+     * @return Estimated remaining time in milliseconds, or -1 if nothing completed yet
+     */
+    public static long estimateRemainingMillis(
+            final long elapsedMillis,
+            final long readByteNr,
+            final long inputByteNr,
+            final long completedNr,
+            final long submittedNr) {
+        if (inputByteNr <= 0L || submittedNr <= 0L || completedNr <= 0L) {
+            return -1L;
+        }
+        final double doneShare = Math.min(1.0, (double) readByteNr / inputByteNr)
+                * Math.min(1.0, (double) completedNr / submittedNr);
+        return (long) (elapsedMillis * (1.0 - doneShare) / doneShare);
+    }
+
+    /**
+     * Formats a duration as hours, minutes and seconds.
+     *
+     * @param millis
+     *            duration in milliseconds
+     * @return Formatted duration, like 1:02:03
+     */
+    private static String formatDuration(final long millis) {
+        return String.format("%d:%02d:%02d", TimeUnit.MILLISECONDS.toHours(millis),
+                TimeUnit.MILLISECONDS.toMinutes(millis) % MINUTES_PER_HOUR,
+                TimeUnit.MILLISECONDS.toSeconds(millis) % SECONDS_PER_MINUTE);
+    }
+}
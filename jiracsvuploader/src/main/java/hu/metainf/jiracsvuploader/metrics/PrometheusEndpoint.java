@@ -0,0 +1,283 @@
+package hu.metainf.jiracsvuploader.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import hu.metainf.jiracsvuploader.pipeline.PipelineStage;
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.stat.LatencyHistogram;
+import hu.metainf.jiracsvuploader.stat.StatData;
+
+/**
+ * Embedded HTTP server publishing the live values of {@link StatData} and the state of the
+ * record processor at <code>/metrics</code> in the Prometheus text exposition format. Summed
+ * properties are published as counters, other properties as gauges and histograms of nanosecond
+ * values as summaries in seconds. The server listens on the loopback interface only and answers
+ * on a single thread, rendering the metrics on every scrape.
+ *
+ */
+public class PrometheusEndpoint implements Closeable {
+    /** Path the metrics are published at. */
+    public static final String METRICS_PATH = "/metrics";
+    /** Prefix of the metric names. */
+    private static final String METRIC_PREFIX = "jiracsvuploader_";
+    /** Suffix of the counter names. */
+    private static final String COUNTER_SUFFIX = "_total";
+    /** Content type of the text exposition format. */
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    /** Status code for OK response. */
+    private static final int STATUS_CODE_OK = 200;
+    /** Status code for method not allowed response. */
+    private static final int STATUS_CODE_METHOD_NOT_ALLOWED = 405;
+    /** Number of nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(PrometheusEndpoint.class);
+    /** {@link HttpServer} instance. */
+    private final HttpServer httpServer;
+    /** {@link CsvLineProcessor} published. */
+    private final CsvLineProcessor csvRecordProcessor;
+
+    /**
+     * Ctor, starting the server.
+     *
+     * @param port
+     *            port to listen on, or 0 to use a free port
+     * @param csvRecordProcessor
+     *            {@link CsvLineProcessor} published
+     * @throws IOException
+     *             If the server can't be started
+     */
+    public PrometheusEndpoint(
+            final int port,
+            final CsvLineProcessor csvRecordProcessor) throws IOException {
+        this.csvRecordProcessor = csvRecordProcessor;
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        httpServer.createContext(METRICS_PATH, this::handleScrape);
+        httpServer.start();
+        logger.info("Publishing metrics at http://localhost:{}{}",
+                httpServer.getAddress().getPort(), METRICS_PATH);
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return port
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+    }
+
+    /**
+     * Handles a scrape request.
+     *
+     * @param exchange
+     *            HTTP exchange
+     * @throws IOException
+     *             If sending the response fails
+     */
+    private void handleScrape(final HttpExchange exchange) throws IOException {
+        try {
+            exchange.getRequestBody().close();
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(STATUS_CODE_METHOD_NOT_ALLOWED, -1);
+                return;
+            }
+            final byte[] body = formatMetrics(csvRecordProcessor).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(STATUS_CODE_OK, body.length);
+            try (OutputStream responseStream = exchange.getResponseBody()) {
+                responseStream.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Renders the live values of {@link StatData} and the state of a record processor in the
+     * Prometheus text exposition format.
+     *
+     * @param csvRecordProcessor
+     *            {@link CsvLineProcessor} published
+     * @return Metrics rendered
+     */
+    public static String formatMetrics(final CsvLineProcessor csvRecordProcessor) {
+        final StringBuilder builder = new StringBuilder();
+        for (final Map.Entry<String, Long> entry : StatData.getSummedValues().entrySet()) {
+            final String name = toMetricName(entry.getKey());
+            appendSample(builder, name.endsWith(COUNTER_SUFFIX) ? name : name + COUNTER_SUFFIX,
+                    "counter", entry.getValue());
+        }
+        for (final Map.Entry<String, Long> entry : StatData.getDirectValues().entrySet()) {
+            appendSample(builder, toMetricName(entry.getKey()), "gauge", entry.getValue());
+        }
+        for (final Map.Entry<String, LatencyHistogram> entry
+                : StatData.getHistograms().entrySet()) {
+            appendSummary(builder, toMetricName(entry.getKey()) + "_seconds", entry.getValue());
+        }
+        appendSample(builder, METRIC_PREFIX + "executor_active_threads", "gauge",
+                csvRecordProcessor.getActiveThreadNr());
+        appendSample(builder, METRIC_PREFIX + "executor_queued_tasks", "gauge",
+                csvRecordProcessor.getQueuedTaskNr());
+        appendSample(builder, METRIC_PREFIX + "executor_completed_tasks" + COUNTER_SUFFIX,
+                "counter", csvRecordProcessor.getCompletedTaskNr());
+        appendSample(builder, METRIC_PREFIX + "in_flight_records", "gauge",
+                csvRecordProcessor.getInFlightRecordNr());
+        appendSample(builder, METRIC_PREFIX + "in_flight_uploads", "gauge",
+                csvRecordProcessor.getInFlightUploadNr());
+        appendSample(builder, METRIC_PREFIX + "in_flight_limit", "gauge",
+                csvRecordProcessor.getInFlightLimit());
+        if (!csvRecordProcessor.getPipelineStages().isEmpty()) {
+            appendStageMetrics(builder, csvRecordProcessor);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Renders the state of the pipeline stages, labelled by stage name.
+     *
+     * @param builder
+     *            builder to append to
+     * @param csvRecordProcessor
+     *            {@link CsvLineProcessor} running in pipeline mode
+     */
+    private static void appendStageMetrics(
+            final StringBuilder builder,
+            final CsvLineProcessor csvRecordProcessor) {
+        final String processedName = METRIC_PREFIX + "pipeline_stage_processed" + COUNTER_SUFFIX;
+        final String occupancyName = METRIC_PREFIX + "pipeline_stage_occupancy";
+        final String busyName = METRIC_PREFIX + "pipeline_stage_busy_threads";
+        appendType(builder, processedName, "counter");
+        for (final PipelineStage<?> stage : csvRecordProcessor.getPipelineStages()) {
+            appendLabelled(builder, processedName, "stage", stage.getName(),
+                    String.valueOf(stage.getProcessedNr()));
+        }
+        appendType(builder, occupancyName, "gauge");
+        for (final PipelineStage<?> stage : csvRecordProcessor.getPipelineStages()) {
+            appendLabelled(builder, occupancyName, "stage", stage.getName(),
+                    String.valueOf(stage.getOccupancy()));
+        }
+        appendType(builder, busyName, "gauge");
+        for (final PipelineStage<?> stage : csvRecordProcessor.getPipelineStages()) {
+            appendLabelled(builder, busyName, "stage", stage.getName(),
+                    String.valueOf(stage.getBusyThreadNr()));
+        }
+    }
+
+    /**
+     * Renders a histogram of nanosecond values as a summary in seconds.
+     *
+     * @param builder
+     *            builder to append to
+     * @param name
+     *            metric name
+     * @param histogram
+     *            histogram rendered
+     */
+    private static void appendSummary(
+            final StringBuilder builder,
+            final String name,
+            final LatencyHistogram histogram) {
+        appendType(builder, name, "summary");
+        for (final double percentile : StatDataMetrics.PERCENTILES) {
+            appendLabelled(builder, name, "quantile",
+                    BigDecimal.valueOf(percentile).movePointLeft(2).stripTrailingZeros()
+                            .toPlainString(),
+                    String.valueOf(histogram.getValueAtPercentile(percentile) / NANOS_PER_SECOND));
+        }
+        builder.append(name).append("_sum ").append(histogram.getSum() / NANOS_PER_SECOND)
+                .append('\n');
+        builder.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    /**
+     * Renders a metric with a single unlabelled sample.
+     *
+     * @param builder
+     *            builder to append to
+     * @param name
+     *            metric name
+     * @param type
+     *            metric type
+     * @param value
+     *            value of the sample
+     */
+    private static void appendSample(
+            final StringBuilder builder,
+            final String name,
+            final String type,
+            final long value) {
+        appendType(builder, name, type);
+        builder.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Renders the type line of a metric.
+     *
+     * @param builder
+     *            builder to append to
+     * @param name
+     *            metric name
+     * @param type
+     *            metric type
+     */
+    private static void appendType(
+            final StringBuilder builder,
+            final String name,
+            final String type) {
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Renders a sample with a single label. Label values are expected to need no escaping.
+     *
+     * @param builder
+     *            builder to append to
+     * @param name
+     *            metric name
+     * @param label
+     *            label name
+     * @param labelValue
+     *            label value
+     * @param value
+     *            formatted value of the sample
+     */
+    private static void appendLabelled(
+            final StringBuilder builder,
+            final String name,
+            final String label,
+            final String labelValue,
+            final String value) {
+        builder.append(name).append('{').append(label).append("=\"").append(labelValue)
+                .append("\"} ").append(value).append('\n');
+    }
+
+    /**
+     * Turns a {@link StatData} property identifier to a metric name.
+     *
+     * @param propertyId
+     *            property identifier, like <code>row.uploaded.nr</code>
+     * @return Metric name, like <code>jiracsvuploader_row_uploaded_nr</code>
+     */
+    private static String toMetricName(final String propertyId) {
+        return METRIC_PREFIX + propertyId.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+}
@@ -0,0 +1,120 @@
+package hu.metainf.jiracsvuploader.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+
+import hu.metainf.jiracsvuploader.stat.LatencyHistogram;
+import hu.metainf.jiracsvuploader.stat.StatData;
+
+/**
+ * Read-only JMX MBean publishing the live values of {@link StatData}. Properties are created
+ * lazily during the run, so the attributes are collected on every access: each property is an
+ * attribute named by its identifier, and each histogram is published as attributes named by its
+ * identifier suffixed with <code>.count</code>, <code>.mean</code>, <code>.max</code> and the
+ * percentiles, like <code>.p99</code>.
+ *
+ */
+public class StatDataMetrics implements DynamicMBean {
+    /** Percentiles published for histograms. */
+    static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    /**
+     * Collects the current values of all attributes.
+     *
+     * @return attribute values by attribute name, in the order of the names
+     */
+    private static Map<String, Number> collectAttributes() {
+        final Map<String, Number> attributes = new LinkedHashMap<>();
+        attributes.putAll(StatData.getSummedValues());
+        attributes.putAll(StatData.getDirectValues());
+        for (final Map.Entry<String, LatencyHistogram> entry
+                : StatData.getHistograms().entrySet()) {
+            final String name = entry.getKey();
+            final LatencyHistogram histogram = entry.getValue();
+            attributes.put(name + ".count", histogram.getCount());
+            attributes.put(name + ".mean", histogram.getMean());
+            attributes.put(name + ".max", histogram.getMax());
+            for (final double percentile : PERCENTILES) {
+                attributes.put(name + ".p" + formatPercentile(percentile),
+                        histogram.getValueAtPercentile(percentile));
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Formats a percentile without a needless fraction.
+     *
+     * @param percentile
+     *            percentile between 0 and 100
+     * @return Formatted percentile, like 99 or 99.9
+     */
+    static String formatPercentile(final double percentile) {
+        return percentile % 1 == 0 ? String.valueOf((int) percentile)
+                : String.valueOf(percentile);
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final Number value = collectAttributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException("No stat value named " + attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final Map<String, Number> values = collectAttributes();
+        final AttributeList attributeList = new AttributeList();
+        for (final String attribute : attributes) {
+            final Number value = values.get(attribute);
+            if (value != null) {
+                attributeList.add(new Attribute(attribute, value));
+            }
+        }
+        return attributeList;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Stat value " + attribute.getName()
+                + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(
+            final String actionName,
+            final Object[] params,
+            final String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName),
+                "Stat values have no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final Map<String, Number> values = collectAttributes();
+        final MBeanAttributeInfo[] attributeInfos = new MBeanAttributeInfo[values.size()];
+        int i = 0;
+        for (final Map.Entry<String, Number> entry : values.entrySet()) {
+            attributeInfos[i++] = new MBeanAttributeInfo(entry.getKey(),
+                    entry.getValue().getClass().getName(), "Stat value " + entry.getKey(), true,
+                    false, false);
+        }
+        return new MBeanInfo(StatDataMetrics.class.getName(),
+                "Live stat values of the Jira CSV upload", attributeInfos, null, null, null);
+    }
+}
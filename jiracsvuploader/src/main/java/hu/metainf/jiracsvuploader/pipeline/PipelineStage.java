@@ -0,0 +1,297 @@
+package hu.metainf.jiracsvuploader.pipeline;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stage of a pipeline: a fixed number of threads consuming the entries of an input
+ * {@link RingBuffer}, each handing them to the handler of the stage, which passes its output on
+ * to the next stage. When the input is closed and drained, the stage runs its completion action,
+ * typically closing the input of the next stage.
+ * <p>
+ * The stage measures its throughput, the time its threads are busy handling entries and the
+ * occupancy of its input, sampled whenever an entry is taken. A stage whose threads are busy most
+ * of the time while its input is full limits the throughput of the pipeline; a stage with an
+ * empty input is starved by an earlier one.
+ *
+ * @param <E>
+ *            type of the input entries
+ */
+public class PipelineStage<E> {
+    /** Number of entries handled by a thread between updates of the shared stats. */
+    private static final int STAT_FLUSH_INTERVAL = 256;
+
+    /**
+     * Handler of the entries of a stage.
+     *
+     * @param <E>
+     *            type of the input entries
+     */
+    @FunctionalInterface
+    public interface Handler<E> {
+        /**
+         * Handles an entry. The entry is reused once the handler returns, so everything needed
+         * later has to be copied from it.
+         *
+         * @param entry
+         *            input entry
+         * @throws InterruptedException
+         *             If the thread is interrupted while passing the output on
+         */
+        void handle(E entry) throws InterruptedException;
+    }
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+    /** Name of the stage. */
+    private final String name;
+    /** Input of the stage. */
+    private final RingBuffer<E> input;
+    /** Handler of the entries. */
+    private final Handler<E> handler;
+    /** Action run once the input is closed and drained. */
+    private final Runnable completionAction;
+    /** Threads of the stage. */
+    private final Thread[] threads;
+    /** Number of threads still running. */
+    private final AtomicInteger runningThreadNr;
+    /** Latch released when all threads stopped. */
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    /** Number of entries handled. */
+    private final LongAdder processedNr = new LongAdder();
+    /** Total time in nanoseconds the threads spent handling entries. */
+    private final LongAdder busyNanos = new LongAdder();
+    /** Number of threads currently handling an entry. */
+    private final LongAdder busyThreadNr = new LongAdder();
+    /** Sum of the input occupancies sampled. */
+    private final LongAdder occupancySum = new LongAdder();
+    /** Highest input occupancy sampled. */
+    private final LongAccumulator maxOccupancy = new LongAccumulator(Math::max, 0L);
+    /** {@link System#nanoTime()} value of the start of the stage. */
+    private volatile long startTime;
+    /** {@link System#nanoTime()} value of the termination of the stage, or 0 if running. */
+    private volatile long endTime;
+
+    /**
+     * Ctor.
+     *
+     * @param name
+     *            name of the stage, also used for naming its threads
+     * @param threadNr
+     *            number of threads
+     * @param input
+     *            input of the stage
+     * @param handler
+     *            handler of the entries
+     * @param completionAction
+     *            action run once the input is closed and drained
+     */
+    public PipelineStage(
+            final String name,
+            final int threadNr,
+            final RingBuffer<E> input,
+            final Handler<E> handler,
+            final Runnable completionAction) {
+        this.name = name;
+        this.input = input;
+        this.handler = handler;
+        this.completionAction = completionAction;
+        threads = new Thread[Math.max(1, threadNr)];
+        runningThreadNr = new AtomicInteger(threads.length);
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(this::runWorker, "pipeline-" + name + "-" + (i + 1));
+        }
+    }
+
+    /**
+     * Starts the threads of the stage.
+     */
+    public void start() {
+        startTime = System.nanoTime();
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * Waits till all threads of the stage stopped.
+     *
+     * @throws InterruptedException
+     *             If waiting is interrupted
+     */
+    public void awaitTermination() throws InterruptedException {
+        terminated.await();
+    }
+
+    /**
+     * Main loop of the threads of the stage.
+     */
+    private void runWorker() {
+        long processed = 0L;
+        long busy = 0L;
+        long occupancies = 0L;
+        long maxSampled = 0L;
+        try {
+            long sequence;
+            while ((sequence = input.take()) >= 0L) {
+                final int occupancy = input.getOccupancy();
+                occupancies += occupancy;
+                maxSampled = Math.max(maxSampled, occupancy);
+                final long handleStart = System.nanoTime();
+                busyThreadNr.increment();
+                try {
+                    handler.handle(input.get(sequence));
+                } catch (final RuntimeException e) {
+                    logger.error("Pipeline stage {} failed to handle an entry: {}", name,
+                            e.getMessage(), e);
+                } finally {
+                    busyThreadNr.decrement();
+                    input.release(sequence);
+                }
+                busy += System.nanoTime() - handleStart;
+                if (++processed == STAT_FLUSH_INTERVAL) {
+                    flushStats(processed, busy, occupancies, maxSampled);
+                    processed = 0L;
+                    busy = 0L;
+                    occupancies = 0L;
+                }
+            }
+        } catch (final InterruptedException e) {
+            logger.warn("Pipeline stage {} was interrupted", name);
+            Thread.currentThread().interrupt();
+        } finally {
+            flushStats(processed, busy, occupancies, maxSampled);
+            if (runningThreadNr.decrementAndGet() == 0) {
+                endTime = System.nanoTime();
+                try {
+                    completionAction.run();
+                } finally {
+                    terminated.countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the stats collected by a thread to the shared stats.
+     *
+     * @param processed
+     *            number of entries handled
+     * @param busy
+     *            time in nanoseconds spent handling entries
+     * @param occupancies
+     *            sum of the input occupancies sampled
+     * @param maxSampled
+     *            highest input occupancy sampled
+     */
+    private void flushStats(
+            final long processed,
+            final long busy,
+            final long occupancies,
+            final long maxSampled) {
+        processedNr.add(processed);
+        busyNanos.add(busy);
+        occupancySum.add(occupancies);
+        maxOccupancy.accumulate(maxSampled);
+    }
+
+    /**
+     * Returns the name of the stage.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of threads of the stage.
+     *
+     * @return number of threads
+     */
+    public int getThreadNr() {
+        return threads.length;
+    }
+
+    /**
+     * Returns the capacity of the input of the stage.
+     *
+     * @return number of entries
+     */
+    public int getCapacity() {
+        return input.getCapacity();
+    }
+
+    /**
+     * Returns the current occupancy of the input of the stage.
+     *
+     * @return number of entries
+     */
+    public int getOccupancy() {
+        return input.getOccupancy();
+    }
+
+    /**
+     * Returns the number of threads currently handling an entry.
+     *
+     * @return number of threads
+     */
+    public int getBusyThreadNr() {
+        return (int) busyThreadNr.sum();
+    }
+
+    /**
+     * Returns the number of entries handled.
+     *
+     * @return number of entries
+     */
+    public long getProcessedNr() {
+        return processedNr.sum();
+    }
+
+    /**
+     * Returns the time the stage has been running for, till its termination.
+     *
+     * @return time in nanoseconds, 0 if not started
+     */
+    public long getActiveNanos() {
+        if (startTime == 0L) {
+            return 0L;
+        }
+        final long end = endTime;
+        return (end != 0L ? end : System.nanoTime()) - startTime;
+    }
+
+    /**
+     * Returns the total time the threads of the stage spent handling entries.
+     *
+     * @return time in nanoseconds
+     */
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * Returns the average occupancy of the input of the stage, sampled when taking entries.
+     *
+     * @return average number of entries
+     */
+    public double getAverageOccupancy() {
+        final long processed = processedNr.sum();
+        return processed == 0L ? 0.0 : (double) occupancySum.sum() / processed;
+    }
+
+    /**
+     * Returns the highest occupancy of the input of the stage, sampled when taking entries.
+     *
+     * @return number of entries
+     */
+    public long getMaxOccupancy() {
+        return maxOccupancy.get();
+    }
+}
@@ -0,0 +1,208 @@
+package hu.metainf.jiracsvuploader.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Bounded ring buffer of pre-allocated entries, passing work between the stages of a pipeline.
+ * Entries are never replaced: producers claim a sequence, fill the entry of the sequence in place
+ * and publish it, consumers claim a published sequence, read its entry and release it for reuse.
+ * Every slot has its own sequence number telling whether it's free for a producer or published
+ * for a consumer, so any number of producers and consumers can work on the buffer without locks,
+ * each claim costing a single compare-and-set. Waiting threads spin briefly, then yield, then
+ * park for short periods.
+ *
+ * @param <E>
+ *            type of the entries
+ */
+public class RingBuffer<E> {
+    /** Number of busy-spinning attempts before yielding. */
+    private static final int SPIN_TRIES = 100;
+    /** Number of yielding attempts before parking. */
+    private static final int YIELD_TRIES = 100;
+    /** Time in nanoseconds a waiting thread is parked for. */
+    private static final long PARK_NANOS = 50_000L;
+
+    /** Pre-allocated entries. */
+    private final E[] entries;
+    /** Sequence number of each slot: its claimable sequence, or that sequence + 1 if published. */
+    private final AtomicLongArray slotSequences;
+    /** Mask turning a sequence into a slot index. */
+    private final int indexMask;
+    /** Next sequence to be claimed by a producer. */
+    private final AtomicLong producerSequence = new AtomicLong();
+    /** Next sequence to be claimed by a consumer. */
+    private final AtomicLong consumerSequence = new AtomicLong();
+    /** Whether producers are done, so consumers stop when the buffer is empty. */
+    private volatile boolean closed;
+
+    /**
+     * Ctor, pre-allocating the entries.
+     *
+     * @param capacity
+     *            number of entries, rounded up to a power of two
+     * @param entryFactory
+     *            factory of the entries
+     */
+    @SuppressWarnings("unchecked")
+    public RingBuffer(final int capacity, final Supplier<E> entryFactory) {
+        final int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        entries = (E[]) new Object[size];
+        slotSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = entryFactory.get();
+            slotSequences.set(i, i);
+        }
+        indexMask = size - 1;
+    }
+
+    /**
+     * Claims the next sequence for producing, waiting till its slot is released by consumers.
+     *
+     * @return Sequence claimed
+     * @throws InterruptedException
+     *             If the thread is interrupted while waiting
+     */
+    public long claim() throws InterruptedException {
+        int tries = 0;
+        while (true) {
+            final long sequence = producerSequence.get();
+            final long slotSequence = slotSequences.get((int) sequence & indexMask);
+            if (slotSequence == sequence) {
+                if (producerSequence.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+            } else if (slotSequence < sequence) {
+                tries = idle(tries);
+            }
+        }
+    }
+
+    /**
+     * Claims the next sequence for producing if its slot is free, without waiting.
+     *
+     * @return Sequence claimed, or -1 if the buffer is full
+     */
+    public long tryClaim() {
+        while (true) {
+            final long sequence = producerSequence.get();
+            final long slotSequence = slotSequences.get((int) sequence & indexMask);
+            if (slotSequence == sequence) {
+                if (producerSequence.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+            } else if (slotSequence < sequence) {
+                return -1L;
+            }
+        }
+    }
+
+    /**
+     * Publishes a sequence claimed by {@link #claim()} or {@link #tryClaim()}, after its entry
+     * was filled.
+     *
+     * @param sequence
+     *            sequence claimed
+     */
+    public void publish(final long sequence) {
+        slotSequences.set((int) sequence & indexMask, sequence + 1);
+    }
+
+    /**
+     * Takes the next published sequence for consuming, waiting till one is published.
+     *
+     * @return Sequence taken, or -1 if the buffer is closed and empty
+     * @throws InterruptedException
+     *             If the thread is interrupted while waiting
+     */
+    public long take() throws InterruptedException {
+        int tries = 0;
+        while (true) {
+            final long sequence = consumerSequence.get();
+            final long slotSequence = slotSequences.get((int) sequence & indexMask);
+            if (slotSequence == sequence + 1) {
+                if (consumerSequence.compareAndSet(sequence, sequence + 1)) {
+                    return sequence;
+                }
+            } else if (slotSequence < sequence + 1) {
+                if (closed && producerSequence.get() == sequence) {
+                    return -1L;
+                }
+                tries = idle(tries);
+            }
+        }
+    }
+
+    /**
+     * Releases a sequence taken by {@link #take()} for reuse, after its entry was consumed.
+     *
+     * @param sequence
+     *            sequence taken
+     */
+    public void release(final long sequence) {
+        slotSequences.set((int) sequence & indexMask, sequence + entries.length);
+    }
+
+    /**
+     * Returns the entry of a claimed or taken sequence.
+     *
+     * @param sequence
+     *            sequence
+     * @return The entry of the sequence
+     */
+    public E get(final long sequence) {
+        return entries[(int) sequence & indexMask];
+    }
+
+    /**
+     * Closes the buffer after the producers published their last entries. Consumers take the
+     * remaining entries, then {@link #take()} returns -1.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Returns the number of entries claimed by producers, but not taken by consumers yet.
+     *
+     * @return number of entries
+     */
+    public int getOccupancy() {
+        return (int) Math.max(0L, producerSequence.get() - consumerSequence.get());
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return number of entries
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Waits a little before retrying an operation.
+     *
+     * @param tries
+     *            number of tries so far
+     * @return The incremented number of tries
+     * @throws InterruptedException
+     *             If the thread is interrupted
+     */
+    private static int idle(final int tries) throws InterruptedException {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return tries;
+        }
+        return tries + 1;
+    }
+}
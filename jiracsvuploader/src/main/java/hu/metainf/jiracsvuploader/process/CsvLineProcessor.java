@@ -1,14 +1,47 @@
 package hu.metainf.jiracsvuploader.process;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
 
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import hu.metainf.jiracsvuploader.audit.AuditLog;
+import hu.metainf.jiracsvuploader.dedupe.RecordDeduplicator;
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+import hu.metainf.jiracsvuploader.journal.JournalEntry;
+import hu.metainf.jiracsvuploader.journal.ProgressJournal;
+import hu.metainf.jiracsvuploader.limit.ConcurrencyLimiter;
+import hu.metainf.jiracsvuploader.limit.ProjectRateLimiter;
+import hu.metainf.jiracsvuploader.mapping.FieldMapping;
+import hu.metainf.jiracsvuploader.pipeline.PipelineStage;
+import hu.metainf.jiracsvuploader.pipeline.RingBuffer;
+import hu.metainf.jiracsvuploader.retry.CircuitBreaker;
+import hu.metainf.jiracsvuploader.retry.RejectsCsvWriter;
+import hu.metainf.jiracsvuploader.retry.RetryPolicy;
+import hu.metainf.jiracsvuploader.retry.RetryScheduler;
+import hu.metainf.jiracsvuploader.stat.LatencyHistogram;
 import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.upload.JiraUploader;
+import hu.metainf.jiracsvuploader.upload.MockJiraUploader;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
 import hu.metainf.jiracsvuploader.util.CustomLinkedBlockingQueue;
+import hu.metainf.jiracsvuploader.util.PendingCounter;
+import hu.metainf.jiracsvuploader.util.QueueTimedTask;
 import hu.metainf.jiracsvuploader.util.StatTypeKeys;
 
 /**
@@ -16,36 +49,229 @@ import hu.metainf.jiracsvuploader.util.StatTypeKeys;
  *
  */
 public class CsvLineProcessor {
+    /** Default maximal number of retries of an upload. */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    /** Default base delay of the first retry in milliseconds. */
+    public static final long DEFAULT_RETRY_BASE_DELAY = 200L;
+    /** Default maximal delay of a retry in milliseconds. */
+    public static final long DEFAULT_RETRY_MAX_DELAY = 30000L;
+    /** Default failure rate opening the circuit breaker. */
+    public static final double DEFAULT_BREAKER_FAILURE_RATE = 0.5;
+    /** Default length of the open period of the circuit breaker in milliseconds. */
+    public static final long DEFAULT_BREAKER_OPEN_TIME = 5000L;
+
     /** {@link Logger} instance. */
     private final Logger logger = LoggerFactory.getLogger(CsvLineProcessor.class);
-    /** {@link ThreadPoolExecutor} instance. */
-    private final ThreadPoolExecutor executorService;
-    /** Array of header values in the order it is in the originating CSV file. */
-    private String[] headers;
+    /** {@link ExecutorService} running the upload tasks, <code>null</code> in pipeline mode. */
+    private final ExecutorService executorService;
+    /** {@link ExecutionMode} of the upload tasks. */
+    private final ExecutionMode executionMode;
+    /**
+     * {@link Semaphore} holding the credits for tasks waiting or running, or <code>null</code> if
+     * the task queue is unbounded.
+     */
+    private final Semaphore taskCredits;
+    /** {@link JiraUploader} performing the uploads. */
+    private final JiraUploader jiraUploader;
+    /** {@link ConcurrencyLimiter} limiting the number of uploads waiting for a response. */
+    private final ConcurrencyLimiter inFlightLimiter;
+    /** {@link ProjectRateLimiter} of the uploads, or <code>null</code> if not rate limited. */
+    private final ProjectRateLimiter rateLimiter;
+    /** Number of uploads deferred by the rate limits, waiting on the retry timer. */
+    private final AtomicInteger deferredUploadNr = new AtomicInteger();
+    /** Index of the issue key column of the header row, or -1 if there's none. */
+    private volatile int issueKeyColumn = -1;
+    /** Indexes of the issue key and issue id columns of the header row. */
+    private volatile int[] keyColumns = new int[0];
+    /** {@link RetryScheduler} retrying failed uploads. */
+    private final RetryScheduler retryScheduler;
+    /** {@link CircuitBreaker} pausing uploads while the Jira instance keeps failing. */
+    private final CircuitBreaker circuitBreaker;
+    /** {@link RejectsCsvWriter} of finally failed records, or <code>null</code> if not used. */
+    private final RejectsCsvWriter rejectsWriter;
+    /** {@link ProgressJournal} of the import, or <code>null</code> if not used. */
+    private volatile ProgressJournal progressJournal;
+    /** {@link AuditLog} of the upload outcomes, or <code>null</code> if not used. */
+    private final AuditLog auditLog;
+    /** Number of records submitted, but not finally uploaded or failed yet. */
+    private final PendingCounter pendingRecords = new PendingCounter();
+    /** Number of upload tasks run to completion by the worker threads. */
+    private final LongAdder completedTaskNr = new LongAdder();
+    /** Histogram of task queue waiting times in nanoseconds, used in asynchronous mode. */
+    private final LatencyHistogram queueTimeHistogram =
+            StatData.getHistogram(StatTypeKeys.QUEUE_TIME);
+    /** Histogram of task execution times in nanoseconds. */
+    private final LatencyHistogram execTimeHistogram =
+            StatData.getHistogram(StatTypeKeys.EXEC_TIME);
+    /** {@link JsonRecordSerializer} compiled from the header row of the CSV file. */
+    private JsonRecordSerializer jsonSerializer;
+    /** Mapping of the CSV columns to Jira fields, or <code>null</code> to map headers as keys. */
+    private volatile FieldMapping fieldMapping;
+    /** {@link RecordFilter} applied by the filter stage in pipeline mode, or <code>null</code>. */
+    private final RecordFilter pipelineFilter;
+    /** Ring buffer the records are submitted to in pipeline mode. */
+    private final RingBuffer<PipelineEvent> pipelineInput;
+    /** Ring buffer feeding the serialize stage in pipeline mode. */
+    private final RingBuffer<PipelineEvent> serializeInput;
+    /** Ring buffer feeding the upload stage in pipeline mode. */
+    private final RingBuffer<PipelineEvent> uploadInput;
+    /** Stages of the pipeline in order, empty if not in pipeline mode. */
+    private final List<PipelineStage<PipelineEvent>> pipelineStages = new ArrayList<>();
 
     /**
      * Ctor.
      *
      * @param threadNr
      *            Number of parallel threads
+     * @param queueCapacity
+     *            Maximal number of tasks waiting for execution, or 0 for an unbounded queue. When
+     *            the queue is full, adding a task blocks until a running task completes.
+     * @param jiraUploader
+     *            {@link JiraUploader} performing the uploads
+     * @param inFlightLimiter
+     *            {@link ConcurrencyLimiter} limiting the number of uploads waiting for a response
+     * @param rateLimiter
+     *            {@link ProjectRateLimiter} limiting the rate of uploads globally and per project,
+     *            or <code>null</code> if uploads are not rate limited
+     * @param executionMode
+     *            {@link ExecutionMode} of the upload tasks. In {@link ExecutionMode#ASYNC} mode the
+     *            queue capacity is not used, adding a task blocks while all in-flight slots are
+     *            taken. In {@link ExecutionMode#PIPELINE} mode the queue capacity is not used
+     *            either, the thread number is the number of threads of the upload stage.
+     * @param retryScheduler
+     *            {@link RetryScheduler} retrying failed uploads, its {@link CircuitBreaker} pauses
+     *            uploads while the Jira instance keeps failing
+     * @param rejectsWriter
+     *            {@link RejectsCsvWriter} of finally failed records, or <code>null</code> if
+     *            failed records are not written
+     * @param progressJournal
+     *            {@link ProgressJournal} the submissions and final outcomes of records are
+     *            journaled to, or <code>null</code> if the import is not journaled
+     * @param auditLog
+     *            {@link AuditLog} the final outcomes of uploads are recorded to, or
+     *            <code>null</code> if uploads are not audited
+     * @param pipelineSettings
+     *            {@link PipelineSettings} of the stages in {@link ExecutionMode#PIPELINE} mode, not
+     *            used in other modes
+     */
+    public CsvLineProcessor(
+            final int threadNr,
+            final int queueCapacity,
+            final JiraUploader jiraUploader,
+            final ConcurrencyLimiter inFlightLimiter,
+            final ProjectRateLimiter rateLimiter,
+            final ExecutionMode executionMode,
+            final RetryScheduler retryScheduler,
+            final RejectsCsvWriter rejectsWriter,
+            final ProgressJournal progressJournal,
+            final AuditLog auditLog,
+            final PipelineSettings pipelineSettings) {
+        logger.debug("Creating background worker thread pool with {} thread(s) in {} mode",
+                threadNr, executionMode);
+        this.executionMode = executionMode;
+        if (executionMode == ExecutionMode.PIPELINE) {
+            taskCredits = null;
+            executorService = null;
+        } else if (executionMode == ExecutionMode.ASYNC) {
+            // In-flight permits are acquired before submitting, so the pool queue is bounded
+            taskCredits = null;
+            executorService = new ForkJoinPool(threadNr,
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        } else if (queueCapacity > 0) {
+            logger.debug("Limiting background worker task queue to {} task(s)", queueCapacity);
+            // Credits are released right before a worker thread turns back to the queue, so the
+            // queue has to be able to hold all credited tasks to never reject one.
+            taskCredits = new Semaphore(threadNr + queueCapacity);
+            executorService = new ThreadPoolExecutor(threadNr, threadNr, 0L,
+                    TimeUnit.MILLISECONDS,
+                    new CustomLinkedBlockingQueue(threadNr + queueCapacity));
+        } else {
+            taskCredits = null;
+            executorService = new ThreadPoolExecutor(threadNr, threadNr, 0L,
+                    TimeUnit.MILLISECONDS, new CustomLinkedBlockingQueue());
+        }
+        logger.debug("Limiting uploads waiting for a response to {}",
+                inFlightLimiter.getLimit());
+        this.jiraUploader = jiraUploader;
+        this.inFlightLimiter = inFlightLimiter;
+        this.rateLimiter = rateLimiter;
+        this.retryScheduler = retryScheduler;
+        this.circuitBreaker = retryScheduler.getCircuitBreaker();
+        this.rejectsWriter = rejectsWriter;
+        this.progressJournal = progressJournal;
+        this.auditLog = auditLog;
+        if (executionMode == ExecutionMode.PIPELINE) {
+            final int ringSize = pipelineSettings.getRingSize();
+            pipelineFilter = pipelineSettings.getRecordFilter();
+            serializeInput = new RingBuffer<>(ringSize, PipelineEvent::new);
+            uploadInput = new RingBuffer<>(ringSize, PipelineEvent::new);
+            if (pipelineFilter != null) {
+                pipelineInput = new RingBuffer<>(ringSize, PipelineEvent::new);
+                pipelineStages.add(new PipelineStage<>("filter",
+                        pipelineSettings.getFilterThreadNr(), pipelineInput, this::filterRecord,
+                        serializeInput::close));
+            } else {
+                pipelineInput = serializeInput;
+            }
+            pipelineStages.add(new PipelineStage<>("serialize",
+                    pipelineSettings.getSerializeThreadNr(), serializeInput,
+                    this::serializeRecord, uploadInput::close));
+            pipelineStages.add(new PipelineStage<>("upload", threadNr, uploadInput,
+                    this::uploadRecord, () -> { }));
+            logger.debug("Starting pipeline stages with ring buffers of {} entries",
+                    uploadInput.getCapacity());
+            pipelineStages.forEach(PipelineStage::start);
+        } else {
+            pipelineFilter = null;
+            pipelineInput = null;
+            serializeInput = null;
+            uploadInput = null;
+        }
+    }
+
+    /**
+     * Ctor, using an unbounded task queue and a {@link MockJiraUploader} with as many uploads in
+     * flight as threads and no rate limits, retrying with the default settings, not writing failed
+     * records and not journaling or auditing.
+     *
+     * @param threadNr
+     *            Number of parallel threads
      */
     public CsvLineProcessor(final int threadNr) {
-        logger.debug("Creating background worker thread pool with {} thread(s)", threadNr);
-        executorService = new ThreadPoolExecutor(threadNr, threadNr, 0L, TimeUnit.MILLISECONDS,
-                new CustomLinkedBlockingQueue());
+        this(threadNr, 0, new MockJiraUploader(), new ConcurrencyLimiter(threadNr), null,
+                ExecutionMode.POOLED,
+                new RetryScheduler(
+                        new RetryPolicy(DEFAULT_MAX_RETRIES, DEFAULT_RETRY_BASE_DELAY,
+                                DEFAULT_RETRY_MAX_DELAY),
+                        new CircuitBreaker(DEFAULT_BREAKER_FAILURE_RATE,
+                                DEFAULT_BREAKER_OPEN_TIME)),
+                null, null, null, null);
     }
 
     /**
-     * Sets the header row containing header key values.
+     * Sets the header row containing header key values, compiling the JSON serializer of the
+     * records with the field mapping and binding the filter of the pipeline.
      *
      * @param headerRow
-     *            row containing header values
+     *            field values of the row containing header values
+     * @throws IllegalArgumentException
+     *             If the filter of the pipeline or the field mapping refers to a column not in the
+     *             header row
      */
-    public void setHeaderRow(final String headerRow) {
+    public void setHeaderRow(final String[] headerRow) {
         if (headerRow != null) {
-            headers = headerRow.split(",");
+            if (pipelineFilter != null) {
+                pipelineFilter.bind(headerRow);
+            }
+            jsonSerializer = new JsonRecordSerializer(headerRow, fieldMapping);
+            issueKeyColumn = ProjectRateLimiter.findIssueKeyColumn(headerRow);
+            keyColumns = RecordDeduplicator.findKeyColumns(headerRow);
+            logger.debug("Set JSON property headers based on CSV header data: {}",
+                    Arrays.asList(headerRow));
+            if (rejectsWriter != null) {
+                rejectsWriter.writeHeader(headerRow);
+            }
         }
-        logger.debug("Set JSON property headers based on CSV header data: {}", headers);
     }
 
     /**
@@ -55,143 +281,885 @@ public class CsvLineProcessor {
 
     /**
      * Initiates shutdown of the background thread pool, and waits till the completion of all
-     * submitted tasks.
+     * submitted tasks and uploads including their retries, closing the {@link JiraUploader}, the
+     * {@link RejectsCsvWriter}, the {@link ProgressJournal} and the {@link AuditLog} afterwards.
      *
      * @throws InterruptedException
      *             If the shutdown process if interrupted before ordered termination if the thread
      *             pool
      */
     public void shutdown() throws InterruptedException {
-        logger.debug("Initiating background worker thread pool shutdown");
-        executorService.shutdown();
-        boolean isFinished = false;
-        while (!isFinished) {
-            logger.debug(
-                    "Backgroung worker thread pool shutdown is in progress, has {} remaining tasks",
-                    executorService.getQueue().size());
-            isFinished = executorService.awaitTermination(TERMINATION_AWAIT_TIME_VALUE,
-                    TimeUnit.SECONDS);
+        if (executionMode == ExecutionMode.PIPELINE) {
+            logger.debug("Initiating pipeline shutdown");
+            pipelineInput.close();
+            for (final PipelineStage<PipelineEvent> stage : pipelineStages) {
+                stage.awaitTermination();
+                logger.debug("Pipeline stage {} finished", stage.getName());
+            }
+        } else {
+            logger.debug("Initiating background worker thread pool shutdown");
+            executorService.shutdown();
+            boolean isFinished = false;
+            while (!isFinished) {
+                logger.debug("Backgroung worker thread pool shutdown is in progress, "
+                        + "has {} remaining tasks", getQueuedTaskNr());
+                isFinished = executorService.awaitTermination(TERMINATION_AWAIT_TIME_VALUE,
+                        TimeUnit.SECONDS);
+            }
+        }
+        logger.debug("Waiting for {} record(s) in flight or waiting for a retry to complete",
+                pendingRecords.get());
+        pendingRecords.awaitZero();
+        retryScheduler.close();
+        try {
+            jiraUploader.close();
+        } catch (final IOException e) {
+            logger.warn("Failed to close Jira uploader: {}", e.getMessage());
+        }
+        if (rejectsWriter != null) {
+            try {
+                rejectsWriter.close();
+            } catch (final IOException e) {
+                logger.warn("Failed to close rejects file: {}", e.getMessage());
+            }
+        }
+        if (progressJournal != null) {
+            try {
+                progressJournal.close();
+            } catch (final IOException e) {
+                logger.warn("Failed to close progress journal: {}", e.getMessage());
+            }
+        }
+        if (auditLog != null) {
+            try {
+                auditLog.close();
+            } catch (final IOException e) {
+                logger.warn("Failed to close audit log: {}", e.getMessage());
+            }
         }
     }
 
     /**
-     * Adds a CSV line to an uploader task and submits it to execution.
+     * Returns the stages of the pipeline, holding their throughput and utilization stats.
      *
-     * @param csvLine
-     *            CSV line value
+     * @return stages in order, empty if not in {@link ExecutionMode#PIPELINE} mode
      */
-    public void add4Task(final String csvLine) {
-        logger.debug("Adding CSV line for background processing and uploading: {}", csvLine);
-        executorService.submit(new JiraTaskUploader(csvLine));
+    public List<PipelineStage<?>> getPipelineStages() {
+        return Collections.unmodifiableList(pipelineStages);
     }
 
     /**
-     * Background task uploading a CSV line transformed to JSON to a Jira instance.
+     * Returns the number of tasks waiting for execution. In pipeline mode it's the number of
+     * records buffered before the stages.
      *
+     * @return number of tasks waiting for execution
      */
-    private class JiraTaskUploader implements Runnable {
+    public long getQueuedTaskNr() {
+        if (executionMode == ExecutionMode.PIPELINE) {
+            long occupancy = 0L;
+            for (final PipelineStage<PipelineEvent> stage : pipelineStages) {
+                occupancy += stage.getOccupancy();
+            }
+            return occupancy;
+        }
+        if (executorService instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executorService).getQueuedSubmissionCount();
+        }
+        return ((ThreadPoolExecutor) executorService).getQueue().size();
+    }
+
+    /**
+     * Returns the number of threads currently running tasks. In pipeline mode it's the number of
+     * stage threads handling a record.
+     *
+     * @return number of threads
+     */
+    public int getActiveThreadNr() {
+        if (executionMode == ExecutionMode.PIPELINE) {
+            int activeThreadNr = 0;
+            for (final PipelineStage<PipelineEvent> stage : pipelineStages) {
+                activeThreadNr += stage.getBusyThreadNr();
+            }
+            return activeThreadNr;
+        }
+        if (executorService instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executorService).getActiveThreadCount();
+        }
+        return ((ThreadPoolExecutor) executorService).getActiveCount();
+    }
+
+    /**
+     * Returns the number of upload tasks run to completion by the worker threads. Uploads still
+     * waiting for a response or a retry are included.
+     *
+     * @return number of tasks
+     */
+    public long getCompletedTaskNr() {
+        return completedTaskNr.sum();
+    }
+
+    /**
+     * Returns the number of records submitted, but not finally uploaded or failed yet.
+     *
+     * @return number of records
+     */
+    public long getInFlightRecordNr() {
+        return pendingRecords.get();
+    }
+
+    /**
+     * Waits till all records submitted are finally uploaded or failed.
+     *
+     * @throws InterruptedException
+     *             If waiting is interrupted
+     */
+    public void awaitInFlightRecords() throws InterruptedException {
+        pendingRecords.awaitZero();
+    }
+
+    /**
+     * Replaces the progress journal, like when moving on to the next partition of a cooperative
+     * import. Only to be called while no record is in flight, see
+     * {@link #awaitInFlightRecords()}. The replaced journal isn't closed.
+     *
+     * @param progressJournal
+     *            {@link ProgressJournal} of the records submitted from now on, or
+     *            <code>null</code> to stop journaling
+     */
+    public void setProgressJournal(final ProgressJournal progressJournal) {
+        this.progressJournal = progressJournal;
+    }
+
+    /**
+     * Sets the mapping of the CSV columns to Jira fields, compiled for the header rows set or
+     * bound afterwards.
+     *
+     * @param fieldMapping
+     *            {@link FieldMapping} to be used, or <code>null</code> to map each header to the
+     *            string value of its column
+     */
+    public void setFieldMapping(final FieldMapping fieldMapping) {
+        this.fieldMapping = fieldMapping;
+    }
+
+    /**
+     * Returns the mapping of the CSV columns to Jira fields.
+     *
+     * @return {@link FieldMapping}, or <code>null</code> if each header is mapped to the string
+     *         value of its column
+     */
+    FieldMapping getFieldMapping() {
+        return fieldMapping;
+    }
+
+    /**
+     * Returns the number of uploads waiting for a response.
+     *
+     * @return number of uploads
+     */
+    public int getInFlightUploadNr() {
+        return inFlightLimiter.getInFlight();
+    }
+
+    /**
+     * Returns the current limit of uploads waiting for a response.
+     *
+     * @return number of uploads
+     */
+    public int getInFlightLimit() {
+        return inFlightLimiter.getLimit();
+    }
+
+    /**
+     * Adds a CSV record to an uploader task and submits it to execution.
+     *
+     * @param csvRecord
+     *            CSV record read
+     */
+    public void add4Task(final CsvRecord csvRecord) {
+        logger.debug("Adding CSV record for background processing and uploading: {}", csvRecord);
+        if (executionMode == ExecutionMode.PIPELINE) {
+            submitToPipeline(csvRecord);
+            return;
+        }
+        if (executionMode == ExecutionMode.ASYNC) {
+            if (!acquireBlocking(circuitBreaker::tryAcquirePermission,
+                    circuitBreaker::acquirePermission)) {
+                registerInterrupted(csvRecord);
+                return;
+            }
+            if (!acquireBlocking(inFlightLimiter::tryAcquire, inFlightLimiter::acquire)) {
+                circuitBreaker.releasePermission();
+                registerInterrupted(csvRecord);
+                return;
+            }
+            final JiraTaskUploader task = createTask(csvRecord);
+            task.setEnqueueTime(System.nanoTime());
+            registerSubmitted();
+            executorService.execute(task);
+            return;
+        }
+        if (taskCredits != null
+                && !acquireBlocking(taskCredits::tryAcquire, taskCredits::acquire)) {
+            registerInterrupted(csvRecord);
+            return;
+        }
+        final JiraTaskUploader task = createTask(csvRecord);
+        registerSubmitted();
+        executorService.execute(task);
+    }
+
+    /**
+     * Registers a record whose submission was interrupted as failed, so it reaches the rejects
+     * file, the journal and the audit log like a failed upload, and a resumed run sees it.
+     *
+     * @param csvRecord
+     *            CSV record read
+     */
+    private void registerInterrupted(final CsvRecord csvRecord) {
+        registerSubmitted();
+        createTask(csvRecord).registerFailure();
+    }
+
+    /**
+     * Registers a record submitted for uploading.
+     */
+    private void registerSubmitted() {
+        pendingRecords.increment();
+        StatData.addIncrementedValue(StatTypeKeys.SUBMITTED_ROW_NR);
+    }
+
+    /**
+     * Creates the uploader task of a CSV record, journaling its submission. Records are
+     * journaled in the order they are submitted, which is the order of the CSV file.
+     *
+     * @param csvRecord
+     *            CSV record read
+     * @return The uploader task created
+     */
+    private JiraTaskUploader createTask(final CsvRecord csvRecord) {
+        return new JiraTaskUploader(csvRecord,
+                progressJournal != null ? progressJournal.recordSubmitted(csvRecord) : null);
+    }
+
+    /**
+     * Submits a CSV record to the first stage of the pipeline, journaling its submission. The
+     * reading thread waits while the ring buffer of the first stage is full.
+     *
+     * @param csvRecord
+     *            CSV record read
+     */
+    private void submitToPipeline(final CsvRecord csvRecord) {
+        long sequence = pipelineInput.tryClaim();
+        if (sequence < 0L) {
+            final long blockStart = System.nanoTime();
+            try {
+                sequence = pipelineInput.claim();
+            } catch (final InterruptedException e) {
+                logger.warn("Waiting for free pipeline capacity was interrupted: {}",
+                        e.getMessage());
+                Thread.currentThread().interrupt();
+                registerInterrupted(csvRecord);
+                return;
+            } finally {
+                StatData.addSumValue(StatTypeKeys.TOTAL_READER_BLOCKED_TIME,
+                        System.nanoTime() - blockStart);
+            }
+        }
+        registerSubmitted();
+        pipelineInput.get(sequence).set(csvRecord,
+                progressJournal != null ? progressJournal.recordSubmitted(csvRecord) : null, null);
+        pipelineInput.publish(sequence);
+    }
+
+    /**
+     * Handler of the filter stage, passing the records matching the filter on to the serialize
+     * stage. Records not matching are completed right away, records failing to be filtered are
+     * registered as failed.
+     *
+     * @param event
+     *            pipeline event of the record
+     * @throws InterruptedException
+     *             If waiting for free capacity of the serialize stage is interrupted
+     */
+    private void filterRecord(final PipelineEvent event) throws InterruptedException {
+        final CsvRecord csvRecord = event.csvRecord;
+        final JournalEntry journalEntry = event.journalEntry;
+        event.clear();
+        final boolean matching;
+        try {
+            matching = pipelineFilter.test(csvRecord.getFields());
+        } catch (final RuntimeException e) {
+            logger.warn("Failed to filter CSV record #{}: {}", csvRecord.getRecordNr(),
+                    e.getMessage());
+            new JiraTaskUploader(csvRecord, journalEntry).registerFailure();
+            return;
+        }
+        if (matching) {
+            publish(serializeInput, csvRecord, journalEntry, null);
+            return;
+        }
+        StatData.addIncrementedValue(StatTypeKeys.FILTERED_ROW_NR);
+        final ProgressJournal journal = progressJournal;
+        if (journalEntry != null && journal != null) {
+            journal.recordSkipped(journalEntry);
+        }
+        pendingRecords.decrement();
+    }
+
+    /**
+     * Handler of the serialize stage, transforming the records to JSON and passing their
+     * uploader tasks on to the upload stage.
+     *
+     * @param event
+     *            pipeline event of the record
+     * @throws InterruptedException
+     *             If waiting for free capacity of the upload stage is interrupted
+     */
+    private void serializeRecord(final PipelineEvent event) throws InterruptedException {
+        final JiraTaskUploader task = new JiraTaskUploader(event.csvRecord, event.journalEntry);
+        event.clear();
+        if (task.serialize(System.nanoTime())) {
+            publish(uploadInput, null, null, task);
+        }
+    }
+
+    /**
+     * Handler of the upload stage, starting the uploads. Records failing to be dispatched are
+     * registered as failed.
+     *
+     * @param event
+     *            pipeline event of the record
+     */
+    private void uploadRecord(final PipelineEvent event) {
+        final JiraTaskUploader task = event.task;
+        event.clear();
+        try {
+            task.acquireAndSend(System.nanoTime());
+        } catch (final RuntimeException e) {
+            logger.warn("Failed to dispatch the upload of CSV record #{}: {}",
+                    task.csvRecord.getRecordNr(), e.getMessage());
+            task.registerFailure();
+        } finally {
+            completedTaskNr.increment();
+        }
+    }
+
+    /**
+     * Publishes a record to a ring buffer of the pipeline, waiting while it's full.
+     *
+     * @param ringBuffer
+     *            ring buffer
+     * @param csvRecord
+     *            CSV record
+     * @param journalEntry
+     *            {@link JournalEntry} of the record, or <code>null</code>
+     * @param task
+     *            uploader task of the record, or <code>null</code> if not created yet
+     * @throws InterruptedException
+     *             If waiting is interrupted
+     */
+    private static void publish(
+            final RingBuffer<PipelineEvent> ringBuffer,
+            final CsvRecord csvRecord,
+            final JournalEntry journalEntry,
+            final JiraTaskUploader task) throws InterruptedException {
+        final long sequence = ringBuffer.claim();
+        ringBuffer.get(sequence).set(csvRecord, journalEntry, task);
+        ringBuffer.publish(sequence);
+    }
+
+    /**
+     * Pre-allocated entry of the ring buffers of the pipeline, carrying a record between stages.
+     *
+     */
+    private static final class PipelineEvent {
+        /** CSV record. */
+        private CsvRecord csvRecord;
+        /** {@link JournalEntry} of the record, or <code>null</code> if not journaled. */
+        private JournalEntry journalEntry;
+        /** Uploader task of the record, or <code>null</code> if not created yet. */
+        private JiraTaskUploader task;
+
+        /**
+         * Sets the content of the event.
+         *
+         * @param csvRecord
+         *            CSV record
+         * @param journalEntry
+         *            {@link JournalEntry} of the record, or <code>null</code>
+         * @param task
+         *            uploader task of the record, or <code>null</code>
+         */
+        private void set(
+                final CsvRecord csvRecord,
+                final JournalEntry journalEntry,
+                final JiraTaskUploader task) {
+            this.csvRecord = csvRecord;
+            this.journalEntry = journalEntry;
+            this.task = task;
+        }
+
+        /**
+         * Clears the content of the event, so the slot doesn't keep the record reachable.
+         */
+        private void clear() {
+            set(null, null, null);
+        }
+    }
+
+    /**
+     * Blocking acquisition of a permit.
+     *
+     */
+    @FunctionalInterface
+    private interface PermitAcquirer {
+        /**
+         * Acquires a permit, waiting till one is available.
+         *
+         * @throws InterruptedException
+         *             If waiting is interrupted
+         */
+        void acquire() throws InterruptedException;
+    }
+
+    /**
+     * Acquires a permit for the reading thread, registering the time spent blocked. If waiting is
+     * interrupted, the caller has to register the record as failed.
+     *
+     * @param tryAcquire
+     *            non-blocking acquisition of the permit
+     * @param acquire
+     *            blocking acquisition of the permit
+     * @return <code>true</code> if the permit was acquired, <code>false</code> if waiting was
+     *         interrupted
+     */
+    private boolean acquireBlocking(
+            final BooleanSupplier tryAcquire,
+            final PermitAcquirer acquire) {
+        if (tryAcquire.getAsBoolean()) {
+            return true;
+        }
+        final long blockStart = System.nanoTime();
+        try {
+            acquire.acquire();
+            return true;
+        } catch (final InterruptedException e) {
+            logger.warn("Waiting for free task capacity was interrupted: {}", e.getMessage());
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            StatData.addSumValue(StatTypeKeys.TOTAL_READER_BLOCKED_TIME,
+                    System.nanoTime() - blockStart);
+        }
+    }
+
+    /**
+     * Background task uploading a CSV line transformed to JSON to a Jira instance. Failed uploads
+     * are retried from the {@link RetryScheduler} without occupying a worker thread.
+     *
+     */
+    private class JiraTaskUploader extends QueueTimedTask {
         /** {@link Logger} instance. */
         private final Logger taskLogger = LoggerFactory.getLogger(JiraTaskUploader.class);
-        /** CSV line to be processed. */
-        private final String csvLine;
-        /** Status code for successful response. */
-        private static final int STATUS_CODE_SUCCESS = 200;
+        /** CSV record to be processed. */
+        private final CsvRecord csvRecord;
         /** Status code for internal error response. */
         private static final int STATUS_CODE_ERROR = 500;
-        /** Status code for forbidden response. */
-        private static final int STATUS_CODE_FORBIDDEN = 403;
+        /** Status code registered when no response was received. */
+        private static final int STATUS_CODE_NO_RESPONSE = 0;
+        /** Delay in milliseconds of a retry which can't be dispatched yet. */
+        private static final long RETRY_DEFER_MILLIS = 10L;
+        /**
+         * Number of uploads deferred by the rate limits, beyond which the thread dispatching an
+         * upload waits for the rate limits instead, bounding the records held by the retry timer.
+         */
+        private static final int MAX_DEFERRED_UPLOADS = 10000;
+        /*
+         * The fields below are handed over between the worker, the response and the retry timer
+         * threads, visibility is guaranteed by the handoffs of the uploader and the timer.
+         */
+        /** JSON payload uploaded. */
+        private byte[] jsonPayload;
+        /** {@link System#nanoTime()} value of the start of the execution. */
+        private long execStartTime;
+        /** Number of retries done. */
+        private int retryNr;
+        /** {@link System#nanoTime()} value of the deferral by the rate limits. */
+        private long deferTime;
+        /** Project key of the record, <code>null</code> till first needed. */
+        private String projectKey;
+        /** {@link JournalEntry} of the record, or <code>null</code> if not journaled. */
+        private final JournalEntry journalEntry;
+        /** Whether the final outcome of the record was registered. */
+        private final AtomicBoolean registered = new AtomicBoolean();
 
         /**
          * Ctor.
          *
-         * @param csvLine
-         *            CSV line value
+         * @param csvRecord
+         *            CSV record read
+         * @param journalEntry
+         *            {@link JournalEntry} of the record, or <code>null</code> if the import is not
+         *            journaled
          */
-        public JiraTaskUploader(final String csvLine) {
+        public JiraTaskUploader(final CsvRecord csvRecord, final JournalEntry journalEntry) {
             super();
-            this.csvLine = csvLine;
+            this.csvRecord = csvRecord;
+            this.journalEntry = journalEntry;
         }
 
         @Override
         public void run() {
-            final long startTime = System.currentTimeMillis();
-            taskLogger.debug("Transforming CSV line to Jira JSON data: {}", csvLine);
-            final String[] csvLineSplit = csvLine.split(",");
-            final JSONObject jsonObject = new JSONObject();
-            for (int i = 0; i < headers.length; i++) {
-                jsonObject.append(headers[i], csvLineSplit[i]);
-            }
-            taskLogger.debug("Created JSON object from CSV line: {}", jsonObject);
-            int statusCode;
+            if (executionMode == ExecutionMode.ASYNC) {
+                queueTimeHistogram.record(System.nanoTime() - getEnqueueTime());
+            }
             try {
-                statusCode = performJsonUpload(jsonObject);
-            } catch (final InterruptedException e) {
-                logger.warn("Processing of a Jira JSON upload task was interrupted: {}",
-                        e.getMessage());
-                statusCode = STATUS_CODE_ERROR;
+                upload();
+            } finally {
+                completedTaskNr.increment();
+                if (taskCredits != null) {
+                    taskCredits.release();
+                }
             }
-            taskLogger.info("JSON upload response status code received from Jira instance: {}",
-                    statusCode);
-            if (statusCode == STATUS_CODE_SUCCESS) {
-                StatData.addIncrementedValue(StatTypeKeys.UPLOADED_ROW_NR);
-            } else {
-                StatData.addIncrementedValue(StatTypeKeys.FAILED_ROW_UPLOAD_NR);
+        }
+
+        /**
+         * Transforms the CSV record to JSON and starts uploading it. The outcome is registered
+         * when the response arrives, without occupying the worker thread till then.
+         */
+        private void upload() {
+            final long startTime = System.nanoTime();
+            if (serialize(startTime)) {
+                acquireAndSend(startTime);
             }
-            final long execTime = System.currentTimeMillis() - startTime;
-            StatData.setMinValue(StatTypeKeys.MIN_EXEC_TIME, execTime);
-            StatData.setMaxValue(StatTypeKeys.MAX_EXEC_TIME, execTime);
-            StatData.setAverageValue(StatTypeKeys.AVG_EXEC_TIME, execTime);
         }
 
         /**
-         * Performs the JSON uploading to a Jira instance.
+         * Transforms the CSV record to JSON. If the transformation fails, the record is
+         * registered as failed.
          *
-         * @param jsonObject
-         *            JSON object containing JSon to upload
-         * @return Response status code of the uploading
-         * @throws InterruptedException
-         *             If the processing is interrupted.
+         * @param startTime
+         *            {@link System#nanoTime()} value of the start of the task
+         * @return <code>true</code> if the JSON payload was created
+         */
+        private boolean serialize(final long startTime) {
+            try {
+                jsonPayload = createJsonPayload();
+                if (rateLimiter != null) {
+                    // Resolved before taking any permit, so dispatching never reads the record
+                    getProjectKey();
+                }
+                return true;
+            } catch (final RuntimeException e) {
+                taskLogger.warn("Failed to transform CSV record #{} to JSON: {}",
+                        csvRecord.getRecordNr(), e.getMessage());
+                if (executionMode == ExecutionMode.ASYNC) {
+                    // The permits taken before submitting are given back, nothing is dispatched
+                    inFlightLimiter.release(0L, null);
+                    circuitBreaker.releasePermission();
+                }
+                registerResult(new UploadResponse(STATUS_CODE_ERROR, null), startTime);
+                return false;
+            }
+        }
+
+        /**
+         * Waits for the circuit breaker to let the upload through and for a free in-flight slot,
+         * then sends the JSON payload. In asynchronous mode the slot is taken before the task is
+         * submitted.
+         *
+         * @param startTime
+         *            {@link System#nanoTime()} value of the start of the task
+         */
+        private void acquireAndSend(final long startTime) {
+            final long permitWaitStart = System.nanoTime();
+            if (executionMode != ExecutionMode.ASYNC) {
+                try {
+                    circuitBreaker.acquirePermission();
+                    try {
+                        inFlightLimiter.acquire();
+                    } catch (final InterruptedException e) {
+                        circuitBreaker.releasePermission();
+                        throw e;
+                    }
+                } catch (final InterruptedException e) {
+                    logger.warn("Processing of a Jira JSON upload task was interrupted: {}",
+                            e.getMessage());
+                    Thread.currentThread().interrupt();
+                    registerResult(new UploadResponse(STATUS_CODE_ERROR, null), startTime);
+                    return;
+                }
+            }
+            if (!acquireRate(startTime)) {
+                return;
+            }
+            // Time spent waiting for an in-flight slot is not part of the execution time
+            execStartTime = startTime + System.nanoTime() - permitWaitStart;
+            send();
+        }
+
+        /**
+         * Takes a token of the rate limits for the upload, holding an in-flight slot. If no token
+         * is available, the upload is deferred to the retry timer, releasing the slot but keeping
+         * the permission of the circuit breaker, so the thread can move on to uploads of other
+         * projects. While too many uploads are deferred, the thread waits for a token instead.
+         *
+         * @param startTime
+         *            {@link System#nanoTime()} value of the start of the task
+         * @return <code>true</code> if a token was taken, <code>false</code> if the upload was
+         *         deferred, or waiting was interrupted and the record was registered as failed
+         */
+        private boolean acquireRate(final long startTime) {
+            if (rateLimiter == null) {
+                return true;
+            }
+            long waitNanos;
+            while ((waitNanos = rateLimiter.tryAcquire(getProjectKey(), System.nanoTime())) > 0L) {
+                if (deferredUploadNr.get() < MAX_DEFERRED_UPLOADS) {
+                    inFlightLimiter.release(0L, null);
+                    deferredUploadNr.incrementAndGet();
+                    StatData.addIncrementedValue(StatTypeKeys.RATE_DEFERRED_UPLOAD_NR);
+                    execStartTime = startTime;
+                    deferTime = System.nanoTime();
+                    retryScheduler.schedule(this::sendDeferred, toDelayMillis(waitNanos));
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (final InterruptedException e) {
+                    logger.warn("Waiting for the rate limits of an upload was interrupted: {}",
+                            e.getMessage());
+                    Thread.currentThread().interrupt();
+                    inFlightLimiter.release(0L, null);
+                    circuitBreaker.releasePermission();
+                    registerResult(new UploadResponse(STATUS_CODE_ERROR, null), startTime);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Sends the upload deferred by the rate limits from the retry timer, deferring it again
+         * if it can't be dispatched yet. The permission of the circuit breaker taken before the
+         * upload was deferred is still held.
+         */
+        private void sendDeferred() {
+            if (tryAcquireFromTimer(this::sendDeferred, false)) {
+                deferredUploadNr.decrementAndGet();
+                // Time spent deferred is not part of the execution time
+                execStartTime += System.nanoTime() - deferTime;
+                send();
+            }
+        }
+
+        /**
+         * Sends the JSON payload, holding an in-flight slot. When the response arrives, the slot
+         * is released and the upload is either retried later or its outcome is registered.
+         */
+        private void send() {
+            if (taskLogger.isDebugEnabled()) {
+                taskLogger.debug("Sending JSON to Jira instance: {}",
+                        new String(jsonPayload, StandardCharsets.UTF_8));
+            }
+            CompletableFuture<UploadResponse> response;
+            try {
+                response = jiraUploader.upload(jsonPayload);
+            } catch (final RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            final long sendTime = System.nanoTime();
+            response.whenComplete((uploadResponse, error) -> {
+                final UploadResponse result;
+                if (error != null) {
+                    taskLogger.warn("JSON upload to Jira instance failed: {}", error.getMessage());
+                    result = new UploadResponse(STATUS_CODE_NO_RESPONSE, null);
+                } else {
+                    result = uploadResponse;
+                }
+                inFlightLimiter.release(System.nanoTime() - sendTime, result);
+                if (!retryScheduler.onResult(retryNr, result, this::retry)) {
+                    registerResult(result, execStartTime);
+                }
+            });
+        }
+
+        /**
+         * Retries the upload from the retry timer. If no in-flight slot is free or the circuit
+         * breaker doesn't let the upload through, the retry is deferred instead of waiting.
+         */
+        private void retry() {
+            if (tryAcquireFromTimer(this::retry, true)) {
+                retryNr++;
+                send();
+            }
+        }
+
+        /**
+         * Takes an in-flight slot, a token of the rate limits and, if needed, the permission of
+         * the circuit breaker for dispatching the upload from the retry timer. If any of them
+         * isn't available, the ones taken are given back and the action is scheduled again
+         * instead of waiting.
+         *
+         * @param action
+         *            action dispatching the upload
+         * @param circuitPermission
+         *            whether the permission of the circuit breaker has to be taken, as opposed to
+         *            being held already
+         * @return <code>true</code> if the upload can be sent, <code>false</code> if the action
+         *         was scheduled again
+         */
+        private boolean tryAcquireFromTimer(
+                final Runnable action,
+                final boolean circuitPermission) {
+            if (!inFlightLimiter.tryAcquire()) {
+                retryScheduler.schedule(action, RETRY_DEFER_MILLIS);
+                return false;
+            }
+            final long rateWaitNanos = rateLimiter != null
+                    ? rateLimiter.tryAcquire(getProjectKey(), System.nanoTime()) : 0L;
+            if (rateWaitNanos > 0L) {
+                inFlightLimiter.release(0L, null);
+                retryScheduler.schedule(action, toDelayMillis(rateWaitNanos));
+                return false;
+            }
+            if (circuitPermission && !circuitBreaker.tryAcquirePermission()) {
+                inFlightLimiter.release(0L, null);
+                if (rateLimiter != null) {
+                    rateLimiter.refund(getProjectKey());
+                }
+                retryScheduler.schedule(action,
+                        Math.max(RETRY_DEFER_MILLIS, circuitBreaker.getRemainingOpenMillis()));
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the project key of the record, by the issue key column of its header row.
+         *
+         * @return Project key, empty if the record has no issue key
          */
-        private int performJsonUpload(final JSONObject jsonObject) throws InterruptedException {
-            taskLogger.info("Sending JSON to Jira instance: {}", jsonObject.toString());
-            Thread.sleep(generateSleepValue());
-            final int statusCode = getResponseStatusCode();
-            return statusCode;
+        private String getProjectKey() {
+            if (projectKey == null) {
+                final InputFile inputFile = csvRecord.getInputFile();
+                final int column =
+                        inputFile != null ? inputFile.getIssueKeyColumn() : issueKeyColumn;
+                projectKey = column >= 0 && column < csvRecord.getFieldNr()
+                        ? ProjectRateLimiter.getProjectKey(csvRecord.getField(column)) : "";
+            }
+            return projectKey;
         }
 
-        /** Lower bound for generated sleep value. */
-        private static final int SLEEP_LOWER_BOUND = 10;
-        /** Upper bound for generated sleep value. */
-        private static final int SLEEP_UPPER_BOUND = 100;
+        /**
+         * Returns the key of the record in the CSV file, by the key columns of its header row.
+         *
+         * @return Issue key or issue id of the record, or <code>null</code> if it has none
+         */
+        private String getSourceKey() {
+            final InputFile inputFile = csvRecord.getInputFile();
+            return RecordDeduplicator.getSourceKey(
+                    inputFile != null ? inputFile.getKeyColumns() : keyColumns,
+                    csvRecord.getFieldNr(), csvRecord::getField);
+        }
 
         /**
-         * Generates a random sleep value between 10 and 100 (milliseconds).
+         * Converts a waiting time to a delay of the retry timer, rounding up.
          *
-         * @return randomly generated sleep value
+         * @param waitNanos
+         *            waiting time in nanoseconds
+         * @return Delay in milliseconds, at least 1
          */
-        private long generateSleepValue() {
-            return SLEEP_LOWER_BOUND
-                    + (long) (Math.random() * (SLEEP_UPPER_BOUND - SLEEP_LOWER_BOUND));
+        private long toDelayMillis(final long waitNanos) {
+            return Math.max(1L, TimeUnit.NANOSECONDS.toMillis(
+                    waitNanos + TimeUnit.MILLISECONDS.toNanos(1L) - 1L));
         }
 
-        /** Probability of generating a status code of an error. */
-        private static final double STATUS_CODE_ERROR_PROBABILITY = 0.01;
+        /**
+         * Transforms the CSV record to a JSON payload.
+         *
+         * @return The UTF-8 encoded JSON payload created
+         */
+        private byte[] createJsonPayload() {
+            taskLogger.debug("Transforming CSV record to Jira JSON data: {}", csvRecord);
+            final InputFile inputFile = csvRecord.getInputFile();
+            final JsonRecordSerializer serializer =
+                    inputFile != null ? inputFile.getJsonSerializer() : jsonSerializer;
+            if (serializer == null) {
+                throw new IllegalStateException("No header row set");
+            }
+            return serializer.serialize(csvRecord.getFields());
+        }
 
         /**
-         * Returns a response status code. Returns status code 200 with a probability of 99%, and
-         * status code 403 with a probability of 1%.
+         * Registers the record as failed without uploading it, like when a stage of the pipeline
+         * failed to handle it. Nothing is registered if the record already has a final outcome,
+         * like when registering it failed halfway.
+         */
+        private void registerFailure() {
+            registerResult(new UploadResponse(STATUS_CODE_ERROR, null), System.nanoTime());
+        }
+
+        /**
+         * Registers the final outcome of the upload, writing the record to the rejects file if
+         * the upload failed, and journaling and auditing the outcome. Only the first outcome of
+         * the record is registered, and it's completed even if registering it fails.
+         *
+         * @param uploadResponse
+         *            response of the uploading
+         * @param startTime
+         *            {@link System#nanoTime()} value of the start of the task
+         */
+        private void registerResult(final UploadResponse uploadResponse, final long startTime) {
+            if (!registered.compareAndSet(false, true)) {
+                taskLogger.debug("Outcome of CSV record #{} is already registered",
+                        csvRecord.getRecordNr());
+                return;
+            }
+            try {
+                registerOutcome(uploadResponse, startTime);
+            } finally {
+                pendingRecords.decrement();
+            }
+        }
+
+        /**
+         * Registers the final outcome of the upload, called once per record.
          *
-         * @return response status code
+         * @param uploadResponse
+         *            response of the uploading
+         * @param startTime
+         *            {@link System#nanoTime()} value of the start of the task
          */
-        private int getResponseStatusCode() {
-            final double random = Math.random();
-            int statusCode;
-            if (random <= STATUS_CODE_ERROR_PROBABILITY) {
-                statusCode = STATUS_CODE_FORBIDDEN;
+        private void registerOutcome(final UploadResponse uploadResponse, final long startTime) {
+            if (taskLogger.isDebugEnabled()) {
+                taskLogger.debug("JSON upload response status code received from Jira instance:"
+                        + " {}", uploadResponse.getStatusCode());
+            }
+            if (uploadResponse.isSuccessful()) {
+                StatData.addIncrementedValue(StatTypeKeys.UPLOADED_ROW_NR);
             } else {
-                statusCode = STATUS_CODE_SUCCESS;
+                StatData.addIncrementedValue(StatTypeKeys.FAILED_ROW_UPLOAD_NR);
+                if (rejectsWriter != null) {
+                    rejectsWriter.writeReject(csvRecord.getFields());
+                }
+            }
+            if (csvRecord.getInputFile() != null) {
+                csvRecord.getInputFile().registerResult(uploadResponse.isSuccessful());
+            }
+            final String sourceKey = uploadResponse.isSuccessful()
+                    && (journalEntry != null || auditLog != null) ? getSourceKey() : null;
+            final ProgressJournal journal = progressJournal;
+            if (journalEntry != null && journal != null) {
+                journal.recordCompleted(journalEntry, uploadResponse, sourceKey);
+            }
+            final long execTime = System.nanoTime() - startTime;
+            execTimeHistogram.record(execTime);
+            if (auditLog != null) {
+                auditLog.record(csvRecord.getRecordNr(), sourceKey, uploadResponse, execTime,
+                        jsonPayload);
             }
-            return statusCode;
         }
     }
 }
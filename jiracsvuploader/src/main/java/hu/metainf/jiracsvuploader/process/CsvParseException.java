@@ -0,0 +1,39 @@
+package hu.metainf.jiracsvuploader.process;
+
+import java.io.IOException;
+
+/**
+ * Exception signaling a CSV record which couldn't be parsed. The parser throwing it is already
+ * positioned after the offending record, so reading can be continued with the next one.
+ *
+ */
+public class CsvParseException extends IOException {
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 6188546301914385718L;
+    /** Number of the record failed to be parsed. */
+    private final long recordNr;
+
+    /**
+     * Ctor.
+     *
+     * @param recordNr
+     *            number of the record failed to be parsed
+     * @param message
+     *            error message
+     */
+    public CsvParseException(final long recordNr, final String message) {
+        super(message);
+        this.recordNr = recordNr;
+    }
+
+    /**
+     * Returns the number of the record failed to be parsed.
+     *
+     * @return record number
+     */
+    public long getRecordNr() {
+        return recordNr;
+    }
+}
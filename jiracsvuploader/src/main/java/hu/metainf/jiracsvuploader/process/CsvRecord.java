@@ -0,0 +1,208 @@
+package hu.metainf.jiracsvuploader.process;
+
+import java.util.Arrays;
+
+/**
+ * A data record read from a CSV file, holding its already split field values, either as they
+ * are or encoded to a compact form by a {@link RecordEncoder}, decoded when read.
+ *
+ */
+public class CsvRecord {
+    /** Number of the record within the CSV file, starting from 1 with the first data row. */
+    private final long recordNr;
+    /** Field values of the record, <code>null</code> if the record is compact. */
+    private final String[] fields;
+    /** Dictionary of the values coded in {@link #arena}, or <code>null</code>. */
+    private final RecordDictionary dictionary;
+    /** Arena block holding the encoded fields of a compact record, or <code>null</code>. */
+    private final byte[] arena;
+    /** Offset of the encoded fields within {@link #arena}. */
+    private final int arenaOffset;
+    /** Number of fields of the record. */
+    private final int fieldNr;
+    /** Byte offset of the end of the record within the CSV file, or -1 if not known. */
+    private final long endOffset;
+    /** {@link InputFile} of a multi-file import the record was read from, or <code>null</code>. */
+    private final InputFile inputFile;
+
+    /**
+     * Ctor.
+     *
+     * @param recordNr
+     *            number of the record within the CSV file
+     * @param fields
+     *            field values of the record
+     * @param endOffset
+     *            byte offset of the end of the record within the CSV file, or -1 if not known
+     * @param inputFile
+     *            {@link InputFile} of a multi-file import the record was read from, or
+     *            <code>null</code> if a single file is imported
+     */
+    public CsvRecord(
+            final long recordNr,
+            final String[] fields,
+            final long endOffset,
+            final InputFile inputFile) {
+        this.recordNr = recordNr;
+        this.fields = fields;
+        this.dictionary = null;
+        this.arena = null;
+        this.arenaOffset = 0;
+        this.fieldNr = fields != null ? fields.length : 0;
+        this.endOffset = endOffset;
+        this.inputFile = inputFile;
+    }
+
+    /**
+     * Ctor, for a compact record.
+     *
+     * @param recordNr
+     *            number of the record within the CSV file
+     * @param dictionary
+     *            dictionary of the values coded in the arena
+     * @param arena
+     *            arena block holding the encoded fields
+     * @param arenaOffset
+     *            offset of the encoded fields within the arena
+     * @param fieldNr
+     *            number of fields of the record
+     * @param endOffset
+     *            byte offset of the end of the record within the CSV file, or -1 if not known
+     * @param inputFile
+     *            {@link InputFile} of a multi-file import the record was read from, or
+     *            <code>null</code> if a single file is imported
+     */
+    CsvRecord(
+            final long recordNr,
+            final RecordDictionary dictionary,
+            final byte[] arena,
+            final int arenaOffset,
+            final int fieldNr,
+            final long endOffset,
+            final InputFile inputFile) {
+        this.recordNr = recordNr;
+        this.fields = null;
+        this.dictionary = dictionary;
+        this.arena = arena;
+        this.arenaOffset = arenaOffset;
+        this.fieldNr = fieldNr;
+        this.endOffset = endOffset;
+        this.inputFile = inputFile;
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param recordNr
+     *            number of the record within the CSV file
+     * @param fields
+     *            field values of the record
+     * @param endOffset
+     *            byte offset of the end of the record within the CSV file, or -1 if not known
+     */
+    public CsvRecord(final long recordNr, final String[] fields, final long endOffset) {
+        this(recordNr, fields, endOffset, null);
+    }
+
+    /**
+     * Ctor, for a record with unknown position.
+     *
+     * @param recordNr
+     *            number of the record within the CSV file
+     * @param fields
+     *            field values of the record
+     */
+    public CsvRecord(final long recordNr, final String[] fields) {
+        this(recordNr, fields, -1L);
+    }
+
+    /**
+     * Returns the number of the record within the CSV file.
+     *
+     * @return record number
+     */
+    public long getRecordNr() {
+        return recordNr;
+    }
+
+    /**
+     * Returns a copy of the record with another number and {@link InputFile}, sharing the field
+     * values of the record.
+     *
+     * @param newRecordNr
+     *            number of the record within the CSV file
+     * @param newInputFile
+     *            {@link InputFile} of a multi-file import the record was read from, or
+     *            <code>null</code> if a single file is imported
+     * @return The copy
+     */
+    CsvRecord renumber(final long newRecordNr, final InputFile newInputFile) {
+        if (arena == null) {
+            return new CsvRecord(newRecordNr, fields, endOffset, newInputFile);
+        }
+        return new CsvRecord(newRecordNr, dictionary, arena, arenaOffset, fieldNr, endOffset,
+                newInputFile);
+    }
+
+    /**
+     * Returns the field values of the record, decoding them if the record is compact.
+     *
+     * @return field values
+     */
+    public String[] getFields() {
+        if (arena == null) {
+            return fields;
+        }
+        return RecordEncoder.decode(dictionary, arena, arenaOffset, fieldNr);
+    }
+
+    /**
+     * Returns the number of fields of the record.
+     *
+     * @return number of fields
+     */
+    public int getFieldNr() {
+        return fieldNr;
+    }
+
+    /**
+     * Returns a field value of the record, decoding only that field if the record is compact.
+     *
+     * @param column
+     *            index of the field, less than {@link #getFieldNr()}
+     * @return field value
+     */
+    public String getField(final int column) {
+        if (arena == null) {
+            return fields[column];
+        }
+        return RecordEncoder.decodeField(dictionary, arena, arenaOffset, column);
+    }
+
+    /**
+     * Returns the byte offset of the end of the record within the CSV file, which is the offset
+     * the next record starts at.
+     *
+     * @return byte offset, or -1 if not known
+     */
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Returns the {@link InputFile} of a multi-file import the record was read from.
+     *
+     * @return {@link InputFile}, or <code>null</code> if a single file is imported
+     */
+    public InputFile getInputFile() {
+        return inputFile;
+    }
+
+    @Override
+    public String toString() {
+        if (inputFile != null) {
+            return inputFile + " #" + recordNr + " " + Arrays.toString(getFields());
+        }
+        return "#" + recordNr + " " + Arrays.toString(getFields());
+    }
+}
@@ -0,0 +1,296 @@
+package hu.metainf.jiracsvuploader.process;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 CSV parser. Reads the source in one pass through a fixed size buffer and
+ * assembles records with a simple state machine, so quoted fields may contain separators, escaped
+ * (doubled) quotes and line breaks. The length of a single record is capped; records over the cap
+ * are skipped without being buffered. The UTF-8 byte offset of the end of the last record read is
+ * tracked, so reading can be continued from a record boundary later.
+ *
+ */
+public class CsvRecordParser implements Closeable {
+    /** Default maximal length of a record in characters. */
+    public static final int DEFAULT_MAX_RECORD_LENGTH = 1024 * 1024;
+    /** Size of the read buffer in characters. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Field separator character. */
+    private static final char SEPARATOR = ',';
+    /** Quote character. */
+    private static final char QUOTE = '"';
+    /** Byte order mark character. */
+    private static final char BOM = '\uFEFF';
+    /** Length of the byte order mark in UTF-8 encoding. */
+    private static final int BOM_BYTE_LENGTH = 3;
+    /** Smallest character encoded on two bytes in UTF-8. */
+    private static final char UTF8_TWO_BYTE_MIN = '\u0080';
+    /** Smallest character encoded on three bytes in UTF-8. */
+    private static final char UTF8_THREE_BYTE_MIN = '\u0800';
+    /**
+     * UTF-8 length of characters from {@link #UTF8_THREE_BYTE_MIN}. Surrogates are counted as two
+     * bytes each, making up four bytes per pair.
+     */
+    private static final int UTF8_THREE_BYTE_LENGTH = 3;
+
+    /** Parser state at the beginning of a field. */
+    private static final int STATE_FIELD_START = 0;
+    /** Parser state within an unquoted field. */
+    private static final int STATE_UNQUOTED = 1;
+    /** Parser state within a quoted field. */
+    private static final int STATE_QUOTED = 2;
+    /** Parser state after a quote character found within a quoted field. */
+    private static final int STATE_QUOTE_IN_QUOTED = 3;
+
+    /** Source {@link Reader}. */
+    private final Reader reader;
+    /** Maximal length of a record in characters. */
+    private final int maxRecordLength;
+    /** Read buffer. */
+    private final char[] buffer = new char[BUFFER_SIZE];
+    /** Position of the next character to be processed in the buffer. */
+    private int bufferPos;
+    /** Number of valid characters in the buffer. */
+    private int bufferLimit;
+    /** Builder of the current field value. */
+    private final StringBuilder fieldBuilder = new StringBuilder();
+    /** Fields of the current record. */
+    private final List<String> fields = new ArrayList<>();
+    /** Number of records read so far. */
+    private long recordNr;
+    /** Position in the buffer up to which characters are counted in {@link #byteOffset}. */
+    private int countedPos;
+    /** UTF-8 byte length of the characters read from the source up to {@link #countedPos}. */
+    private long byteOffset;
+    /** Flag whether the start of the source was already checked for a byte order mark. */
+    private boolean bomChecked;
+    /** Flag whether a line feed following a carriage return should be skipped. */
+    private boolean skipLineFeed;
+
+    /**
+     * Ctor.
+     *
+     * @param reader
+     *            source {@link Reader}
+     * @param maxRecordLength
+     *            maximal length of a record in characters
+     */
+    public CsvRecordParser(final Reader reader, final int maxRecordLength) {
+        this.reader = reader;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /**
+     * Ctor, using the default maximal record length.
+     *
+     * @param reader
+     *            source {@link Reader}
+     */
+    public CsvRecordParser(final Reader reader) {
+        this(reader, DEFAULT_MAX_RECORD_LENGTH);
+    }
+
+    /**
+     * Reads the next record from the source.
+     *
+     * @return Array of the field values of the record, or <code>null</code> if the end of the
+     *         source is reached.
+     * @throws CsvParseException
+     *             If the record is longer than the maximal record length, or the source ends
+     *             within a quoted field. The parser is positioned after the record in both cases.
+     * @throws IOException
+     *             If reading the source fails
+     */
+    public String[] nextRecord() throws IOException {
+        fields.clear();
+        fieldBuilder.setLength(0);
+        int state = STATE_FIELD_START;
+        long recordLength = 0;
+        boolean hasData = false;
+        while (true) {
+            if (bufferPos == bufferLimit && !fillBuffer()) {
+                break;
+            }
+            final char c = buffer[bufferPos++];
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            hasData = true;
+            recordLength++;
+            switch (state) {
+                case STATE_QUOTED:
+                    if (c == QUOTE) {
+                        state = STATE_QUOTE_IN_QUOTED;
+                    } else {
+                        appendChar(c, recordLength);
+                    }
+                    break;
+                case STATE_QUOTE_IN_QUOTED:
+                    if (c == QUOTE) {
+                        appendChar(QUOTE, recordLength);
+                        state = STATE_QUOTED;
+                    } else if (c == SEPARATOR) {
+                        endField(recordLength);
+                        state = STATE_FIELD_START;
+                    } else if (c == '\n' || c == '\r') {
+                        skipLineFeed = c == '\r';
+                        return endRecord(recordLength);
+                    } else {
+                        appendChar(c, recordLength);
+                        state = STATE_UNQUOTED;
+                    }
+                    break;
+                default:
+                    if (c == SEPARATOR) {
+                        endField(recordLength);
+                        state = STATE_FIELD_START;
+                    } else if (c == '\n' || c == '\r') {
+                        skipLineFeed = c == '\r';
+                        return endRecord(recordLength);
+                    } else if (c == QUOTE && state == STATE_FIELD_START) {
+                        state = STATE_QUOTED;
+                    } else {
+                        appendChar(c, recordLength);
+                        state = STATE_UNQUOTED;
+                    }
+                    break;
+            }
+        }
+        if (!hasData) {
+            return null;
+        }
+        if (state == STATE_QUOTED) {
+            countBytes();
+            recordNr++;
+            throw new CsvParseException(recordNr, "Source ended within a quoted field");
+        }
+        return endRecord(recordLength);
+    }
+
+    /**
+     * Returns the byte offset of the end of the last record read or skipped, relative to the start
+     * of the source. Assumes the source is valid UTF-8.
+     *
+     * @return byte offset
+     */
+    public long getOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * Returns the number of records read so far, including skipped ones.
+     *
+     * @return number of records read
+     */
+    public long getRecordNr() {
+        return recordNr;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Appends a character to the current field, unless the record is already over the maximal
+     * record length.
+     *
+     * @param c
+     *            character to append
+     * @param recordLength
+     *            current length of the record
+     */
+    private void appendChar(final char c, final long recordLength) {
+        if (recordLength <= maxRecordLength) {
+            fieldBuilder.append(c);
+        }
+    }
+
+    /**
+     * Finishes the current field and adds it to the fields of the current record.
+     *
+     * @param recordLength
+     *            current length of the record
+     */
+    private void endField(final long recordLength) {
+        if (recordLength <= maxRecordLength) {
+            fields.add(fieldBuilder.toString());
+        }
+        fieldBuilder.setLength(0);
+    }
+
+    /**
+     * Finishes the current record.
+     *
+     * @param recordLength
+     *            length of the record
+     * @return Array of the field values of the record
+     * @throws CsvParseException
+     *             If the record is longer than the maximal record length
+     */
+    private String[] endRecord(final long recordLength) throws CsvParseException {
+        countBytes();
+        endField(recordLength);
+        recordNr++;
+        if (recordLength > maxRecordLength) {
+            throw new CsvParseException(recordNr,
+                    "Record length " + recordLength + " exceeds the maximum " + maxRecordLength);
+        }
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * Adds the UTF-8 byte length of the processed characters not counted yet to the byte offset.
+     */
+    private void countBytes() {
+        long bytes = 0;
+        for (int i = countedPos; i < bufferPos; i++) {
+            final char c = buffer[i];
+            if (c < UTF8_TWO_BYTE_MIN) {
+                bytes++;
+            } else if (c < UTF8_THREE_BYTE_MIN || Character.isSurrogate(c)) {
+                bytes += 2;
+            } else {
+                bytes += UTF8_THREE_BYTE_LENGTH;
+            }
+        }
+        byteOffset += bytes;
+        countedPos = bufferPos;
+    }
+
+    /**
+     * Fills the read buffer from the source, skipping a leading byte order mark.
+     *
+     * @return <code>true</code> if any characters were read, <code>false</code> at the end of the
+     *         source.
+     * @throws IOException
+     *             If reading the source fails
+     */
+    private boolean fillBuffer() throws IOException {
+        countBytes();
+        countedPos = 0;
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        bufferPos = 0;
+        bufferLimit = Math.max(read, 0);
+        if (!bomChecked && bufferLimit > 0) {
+            bomChecked = true;
+            if (buffer[0] == BOM) {
+                bufferPos = 1;
+                countedPos = 1;
+                byteOffset += BOM_BYTE_LENGTH;
+                return bufferLimit > 1 || fillBuffer();
+            }
+        }
+        return bufferLimit > 0;
+    }
+}
@@ -0,0 +1,25 @@
+package hu.metainf.jiracsvuploader.process;
+
+/**
+ * Ways of executing upload tasks by a {@link CsvLineProcessor}.
+ *
+ */
+public enum ExecutionMode {
+    /**
+     * Tasks wait in a queue for a fixed pool of worker threads, a worker is occupied while its
+     * task waits for a free in-flight slot.
+     */
+    POOLED,
+    /**
+     * Tasks are only admitted when an in-flight slot is free, so worker threads never block and
+     * the number of uploads in flight is limited by a concurrency limiter instead of the pool
+     * size.
+     */
+    ASYNC,
+    /**
+     * Records pass through a staged pipeline: the reader hands them over to filter, serialize and
+     * upload stages through pre-allocated ring buffers, each stage running its own threads, so
+     * the throughput and utilization of every stage can be measured and tuned separately.
+     */
+    PIPELINE
+}
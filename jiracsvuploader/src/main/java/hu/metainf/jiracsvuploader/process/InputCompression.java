@@ -0,0 +1,78 @@
+package hu.metainf.jiracsvuploader.process;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+/**
+ * Compression formats of CSV input files, detected by the magic bytes at the start of the file.
+ *
+ */
+public enum InputCompression {
+    /** Uncompressed file. */
+    NONE,
+    /** Gzip compressed file, possibly of multiple members. */
+    GZIP,
+    /** Zstandard compressed file. */
+    ZSTD;
+
+    /** First magic byte of gzip files. */
+    private static final int GZIP_MAGIC_1 = 0x1F;
+    /** Second magic byte of gzip files. */
+    private static final int GZIP_MAGIC_2 = 0x8B;
+    /** Magic number of Zstandard frames, little-endian. */
+    private static final int ZSTD_MAGIC = 0xFD2FB528;
+    /** Number of magic bytes read. */
+    private static final int MAGIC_LENGTH = 4;
+    /** Size of the input buffer of the gzip decompression in bytes. */
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Detects the compression of a file, without changing the position of its channel.
+     *
+     * @param channel
+     *            {@link FileChannel} of the file
+     * @return The compression of the file
+     * @throws IOException
+     *             If reading the file fails
+     */
+    public static InputCompression detect(final FileChannel channel) throws IOException {
+        final ByteBuffer magic = ByteBuffer.allocate(MAGIC_LENGTH);
+        while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+            continue;
+        }
+        if (magic.position() >= 2 && (magic.get(0) & 0xFF) == GZIP_MAGIC_1
+                && (magic.get(1) & 0xFF) == GZIP_MAGIC_2) {
+            return GZIP;
+        }
+        if (magic.position() == MAGIC_LENGTH
+                && Integer.reverseBytes(magic.getInt(0)) == ZSTD_MAGIC) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    /**
+     * Wraps a stream of the file in a decompressing stream.
+     *
+     * @param compressed
+     *            stream of the file, positioned at its start
+     * @return Stream of the decompressed content
+     * @throws IOException
+     *             If reading the compression header fails
+     */
+    public InputStream decompress(final InputStream compressed) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(compressed, GZIP_BUFFER_SIZE);
+            case ZSTD:
+                return new ZstdInputStream(compressed);
+            default:
+                return compressed;
+        }
+    }
+}
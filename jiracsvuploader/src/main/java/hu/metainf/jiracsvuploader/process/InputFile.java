@@ -0,0 +1,291 @@
+package hu.metainf.jiracsvuploader.process;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+import hu.metainf.jiracsvuploader.dedupe.KeyIndex;
+import hu.metainf.jiracsvuploader.dedupe.RecordDeduplicator;
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+import hu.metainf.jiracsvuploader.limit.ProjectRateLimiter;
+import hu.metainf.jiracsvuploader.mapping.FieldMapping;
+
+/**
+ * A CSV file of a multi-file import. Every file has its own header row, so the JSON serializer,
+ * the filter and the deduplicator of its records are bound to the file. The stats of the file are
+ * kept separately from the aggregate stats of the import.
+ *
+ */
+public class InputFile {
+    /** Path of the file. */
+    private final Path path;
+    /** Size of the file in bytes. */
+    private final long size;
+    /** JSON serializer compiled for the header row of the file. */
+    private volatile JsonRecordSerializer jsonSerializer;
+    /** {@link RecordFilter} bound to the header row of the file, or <code>null</code>. */
+    private volatile RecordFilter recordFilter;
+    /** Deduplicator bound to the header row of the file, or <code>null</code>. */
+    private volatile RecordDeduplicator deduplicator;
+    /** Dictionary of the compact records of the file, or <code>null</code> if not compact. */
+    private volatile RecordDictionary dictionary;
+    /** Index of the issue key column of the header row, or -1 if there's none. */
+    private volatile int issueKeyColumn = -1;
+    /** Indexes of the issue key and issue id columns of the header row. */
+    private volatile int[] keyColumns = new int[0];
+    /** Number of records read, including malformed ones. */
+    private final LongAdder recordNr = new LongAdder();
+    /** Number of malformed records skipped. */
+    private final LongAdder malformedNr = new LongAdder();
+    /** Number of records not matching the filter. */
+    private final LongAdder filteredNr = new LongAdder();
+    /** Number of records skipped as already present in Jira. */
+    private final LongAdder duplicateNr = new LongAdder();
+    /** Number of records uploaded. */
+    private final LongAdder uploadedNr = new LongAdder();
+    /** Number of records failed to be uploaded. */
+    private final LongAdder failedNr = new LongAdder();
+    /** Time spent reading the file in nanoseconds. */
+    private volatile long readNanos;
+
+    /**
+     * Ctor.
+     *
+     * @param path
+     *            path of the file
+     * @param size
+     *            size of the file in bytes
+     */
+    public InputFile(final Path path, final long size) {
+        this.path = path;
+        this.size = size;
+    }
+
+    /**
+     * Binds the file to its header row, compiling the JSON serializer of its records and binding
+     * its filter, deduplicator and the dictionary of its compact records.
+     *
+     * @param headerRow
+     *            field values of the header row
+     * @param filter
+     *            {@link RecordFilter} not bound yet, to be matched by the records of the file, or
+     *            <code>null</code> to process all records
+     * @param keyIndex
+     *            issue keys already present in Jira, or <code>null</code> to submit all records
+     * @param compactRecords
+     *            whether the records of the file are held in compact form
+     * @param fieldMapping
+     *            mapping of the columns to Jira fields, or <code>null</code> to map each header
+     *            to the string value of its column
+     * @throws IllegalArgumentException
+     *             If the filter or the field mapping refers to a column not in the header row,
+     *             or the header row has no key column to deduplicate by
+     */
+    void bindHeader(
+            final String[] headerRow,
+            final RecordFilter filter,
+            final KeyIndex keyIndex,
+            final boolean compactRecords,
+            final FieldMapping fieldMapping) {
+        if (filter != null) {
+            filter.bind(headerRow);
+        }
+        if (keyIndex != null) {
+            deduplicator = new RecordDeduplicator(keyIndex, headerRow);
+        }
+        recordFilter = filter;
+        jsonSerializer = new JsonRecordSerializer(headerRow, fieldMapping);
+        issueKeyColumn = ProjectRateLimiter.findIssueKeyColumn(headerRow);
+        keyColumns = RecordDeduplicator.findKeyColumns(headerRow);
+        if (compactRecords) {
+            dictionary = new RecordDictionary(headerRow.length);
+        }
+    }
+
+    /**
+     * Registers records read from the file.
+     *
+     * @param readNr
+     *            number of records read, including malformed ones
+     * @param malformedReadNr
+     *            number of malformed records skipped
+     * @param filteredReadNr
+     *            number of records not matching the filter
+     */
+    void addReadRecords(final long readNr, final long malformedReadNr, final long filteredReadNr) {
+        recordNr.add(readNr);
+        malformedNr.add(malformedReadNr);
+        filteredNr.add(filteredReadNr);
+    }
+
+    /**
+     * Registers a record skipped as already present in Jira.
+     */
+    void addDuplicate() {
+        duplicateNr.increment();
+    }
+
+    /**
+     * Registers the time spent reading the file.
+     *
+     * @param nanos
+     *            time in nanoseconds
+     */
+    void setReadNanos(final long nanos) {
+        readNanos = nanos;
+    }
+
+    /**
+     * Registers the final outcome of the upload of a record of the file.
+     *
+     * @param successful
+     *            whether the record was uploaded
+     */
+    void registerResult(final boolean successful) {
+        if (successful) {
+            uploadedNr.increment();
+        } else {
+            failedNr.increment();
+        }
+    }
+
+    /**
+     * Returns the JSON serializer compiled for the header row of the file.
+     *
+     * @return JSON serializer, or <code>null</code> if the header row wasn't read yet
+     */
+    JsonRecordSerializer getJsonSerializer() {
+        return jsonSerializer;
+    }
+
+    /**
+     * Returns the index of the issue key column of the header row of the file.
+     *
+     * @return column index, or -1 if there's none or the header row wasn't read yet
+     */
+    int getIssueKeyColumn() {
+        return issueKeyColumn;
+    }
+
+    /**
+     * Returns the indexes of the issue key and issue id columns of the header row of the file.
+     *
+     * @return column indexes, empty if there's none or the header row wasn't read yet
+     */
+    int[] getKeyColumns() {
+        return keyColumns;
+    }
+
+    /**
+     * Returns the deduplicator bound to the header row of the file.
+     *
+     * @return deduplicator, or <code>null</code> if records aren't deduplicated
+     */
+    RecordDeduplicator getDeduplicator() {
+        return deduplicator;
+    }
+
+    /**
+     * Returns the dictionary of the compact records of the file.
+     *
+     * @return dictionary, or <code>null</code> if records are held as they are
+     */
+    RecordDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the path of the file.
+     *
+     * @return path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the size of the file.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the filter bound to the header row of the file.
+     *
+     * @return {@link RecordFilter}, or <code>null</code> if all records are processed or the
+     *         header row wasn't read yet
+     */
+    public RecordFilter getRecordFilter() {
+        return recordFilter;
+    }
+
+    /**
+     * Returns the number of records read, including malformed ones.
+     *
+     * @return number of records
+     */
+    public long getRecordNr() {
+        return recordNr.sum();
+    }
+
+    /**
+     * Returns the number of malformed records skipped.
+     *
+     * @return number of records
+     */
+    public long getMalformedNr() {
+        return malformedNr.sum();
+    }
+
+    /**
+     * Returns the number of records not matching the filter.
+     *
+     * @return number of records
+     */
+    public long getFilteredNr() {
+        return filteredNr.sum();
+    }
+
+    /**
+     * Returns the number of records skipped as already present in Jira.
+     *
+     * @return number of records
+     */
+    public long getDuplicateNr() {
+        return duplicateNr.sum();
+    }
+
+    /**
+     * Returns the number of records uploaded.
+     *
+     * @return number of records
+     */
+    public long getUploadedNr() {
+        return uploadedNr.sum();
+    }
+
+    /**
+     * Returns the number of records failed to be uploaded.
+     *
+     * @return number of records
+     */
+    public long getFailedNr() {
+        return failedNr.sum();
+    }
+
+    /**
+     * Returns the time spent reading the file.
+     *
+     * @return time in nanoseconds
+     */
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -1,15 +1,49 @@
 package hu.metainf.jiracsvuploader.process;
 
-import java.io.File;
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.Scanner;
-import java.util.StringTokenizer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import hu.metainf.jiracsvuploader.dedupe.KeyIndex;
+import hu.metainf.jiracsvuploader.dedupe.RecordDeduplicator;
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+import hu.metainf.jiracsvuploader.journal.ResumeState;
+import hu.metainf.jiracsvuploader.mapping.FieldMapping;
 import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.util.CountingInputStream;
+import hu.metainf.jiracsvuploader.util.MappedRangeInputStream;
+import hu.metainf.jiracsvuploader.util.ReadAheadInputStream;
 import hu.metainf.jiracsvuploader.util.StatTypeKeys;
 
 /**
@@ -17,82 +51,1064 @@ import hu.metainf.jiracsvuploader.util.StatTypeKeys;
  *
  */
 public class JiraCsvReader {
+    /** Maximal size of a chunk parsed by a single reader thread in bytes. */
+    private static final long MAX_CHUNK_SIZE = 32L * 1024 * 1024;
+    /** Number of chunks parsed ahead per reader thread. */
+    private static final int CHUNKS_AHEAD_PER_THREAD = 2;
+    /** Size of the buffer used when scanning the file for quotes and record boundaries. */
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
     /** {@link Logger} instance. */
     private final Logger logger = LoggerFactory.getLogger(JiraCsvReader.class);
 
+    /** Maximal length of a CSV record in characters. */
+    private final int maxRecordLength;
+    /** Progress of an interrupted import to resume, or <code>null</code> to read all records. */
+    private final ResumeState resumeState;
+    /** Issue keys already present in Jira, or <code>null</code> to submit all records. */
+    private final KeyIndex keyIndex;
+    /** Whether records are held in compact form till they are uploaded. */
+    private final boolean compactRecords;
+    /** Deduplicator bound to the header row of a single file read, or <code>null</code>. */
+    private RecordDeduplicator deduplicator;
+    /** Dictionary of the records of a single file read, or <code>null</code> if not compact. */
+    private RecordDictionary dictionary;
+
+    /**
+     * Ctor.
+     *
+     * @param maxRecordLength
+     *            maximal length of a CSV record in characters, longer records are skipped
+     * @param resumeState
+     *            progress of an interrupted import to resume, or <code>null</code> to read all
+     *            records. Reading starts after the completed prefix of the file, and records
+     *            completed after it are skipped.
+     * @param keyIndex
+     *            issue keys already present in Jira, or <code>null</code> to submit all records.
+     *            Records whose issue key or issue id is in the index are skipped.
+     * @param compactRecords
+     *            whether records are held in compact form till they are uploaded, with the
+     *            repeated values of each column coded by a dictionary per file
+     */
+    public JiraCsvReader(
+            final int maxRecordLength,
+            final ResumeState resumeState,
+            final KeyIndex keyIndex,
+            final boolean compactRecords) {
+        this.maxRecordLength = maxRecordLength;
+        this.resumeState = resumeState;
+        this.keyIndex = keyIndex;
+        this.compactRecords = compactRecords;
+    }
+
+    /**
+     * Ctor, holding records as they are.
+     *
+     * @param maxRecordLength
+     *            maximal length of a CSV record in characters, longer records are skipped
+     * @param resumeState
+     *            progress of an interrupted import to resume, or <code>null</code> to read all
+     *            records
+     * @param keyIndex
+     *            issue keys already present in Jira, or <code>null</code> to submit all records
+     */
+    public JiraCsvReader(
+            final int maxRecordLength,
+            final ResumeState resumeState,
+            final KeyIndex keyIndex) {
+        this(maxRecordLength, resumeState, keyIndex, false);
+    }
+
+    /**
+     * Ctor, submitting all records.
+     *
+     * @param maxRecordLength
+     *            maximal length of a CSV record in characters, longer records are skipped
+     * @param resumeState
+     *            progress of an interrupted import to resume, or <code>null</code> to read all
+     *            records
+     */
+    public JiraCsvReader(final int maxRecordLength, final ResumeState resumeState) {
+        this(maxRecordLength, resumeState, null);
+    }
+
+    /**
+     * Ctor, reading all records.
+     *
+     * @param maxRecordLength
+     *            maximal length of a CSV record in characters, longer records are skipped
+     */
+    public JiraCsvReader(final int maxRecordLength) {
+        this(maxRecordLength, null);
+    }
+
     /**
-     * Regex pattern to match a whole data record in the CSV file, even if the record is in multiple
-     * lines.
+     * Ctor, using the default maximal CSV record length.
      */
-    private final String recordPattern =
-            "^[a-zA-Z0-9_-]*[,][0-9]*[,]\\w*(\\s\\w*)*[,][0-9]{2}[\\/][\\w]{3}[\\/][0-9]{2}\\s[0-9]+[\\:][0-9]+\\s[\\w]{2}[,][0-9]{2}[\\/][\\w]{3}[\\/][0-9]{2}\\s[0-9]+[\\:][0-9]+\\s[\\w]{2}[,]\\w*[,]\\w*[,][\\s\\w[\\\"*._()-\\\\'\\\\']]*[,][\\s\\w[\\\"*._()-\\\\'\\\\']]*";
+    public JiraCsvReader() {
+        this(CsvRecordParser.DEFAULT_MAX_RECORD_LENGTH);
+    }
 
     /**
      * Processes Jira CSV file, creating processable tasks from raw data.
      *
      * @param sourceFilePath
      *            path of the source CSV file
-     * @param lineRegex
-     *            optional regular expression to be matched by CSV row part(s)
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     *            to process all records
      * @param csvRecordProcessor
      *            CSV record processor object
      */
     public void doJiraCSVProcessing(
             final String sourceFilePath,
-            final String lineRegex,
+            final RecordFilter recordFilter,
             final CsvLineProcessor csvRecordProcessor) {
-        final File csvFile = new File(sourceFilePath);
+        try (FileInputStream fileStream = new FileInputStream(sourceFilePath);
+                CsvRecordParser parser = new CsvRecordParser(new InputStreamReader(
+                        openInput(fileStream, 0L), StandardCharsets.UTF_8), maxRecordLength)) {
+            final String[] headerRow = parser.nextRecord();
+            if (headerRow == null) {
+                logger.error("CSV file is empty, no header row found");
+                return;
+            }
+            if (!applyHeaderRow(headerRow, recordFilter, csvRecordProcessor)) {
+                return;
+            }
+            final RecordCounts counts;
+            if (resumeState == null || resumeState.getCheckpointOffset() <= parser.getOffset()) {
+                counts = readRecords(parser, recordFilter, dictionary, 0L, 0L, null,
+                        csvRecord -> submitRecord(csvRecordProcessor, csvRecord));
+            } else {
+                counts = readRecordsFromCheckpoint(sourceFilePath, recordFilter,
+                        csvRecordProcessor);
+            }
+            addRowStats(counts);
+        } catch (final FileNotFoundException e) {
+            logger.error("Failed to find CSV file to read");
+        } catch (final IOException e) {
+            logger.error("Failed to read CSV file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the records of the CSV file following the checkpoint of the resumed import.
+     *
+     * @param sourceFilePath
+     *            path of the source CSV file
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     *            to process all records
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     * @return Number of records read and skipped as malformed
+     * @throws IOException
+     *             If reading fails
+     */
+    private RecordCounts readRecordsFromCheckpoint(
+            final String sourceFilePath,
+            final RecordFilter recordFilter,
+            final CsvLineProcessor csvRecordProcessor) throws IOException {
+        final long checkpointOffset = resumeState.getCheckpointOffset();
+        logger.info("Resuming import after record #{} at byte offset {}",
+                resumeState.getCheckpointRecordNr(), checkpointOffset);
+        try (FileInputStream fileStream = new FileInputStream(sourceFilePath)) {
+            try (CsvRecordParser parser = new CsvRecordParser(new InputStreamReader(
+                    openInput(fileStream, checkpointOffset), StandardCharsets.UTF_8),
+                    maxRecordLength)) {
+                return readRecords(parser, recordFilter, dictionary,
+                        resumeState.getCheckpointRecordNr(), checkpointOffset, null,
+                        csvRecord -> submitRecord(csvRecordProcessor, csvRecord));
+            }
+        }
+    }
+
+    /**
+     * Opens the content of the CSV file for reading from an offset, decompressing it if the file
+     * is compressed. Decompression runs on a separate thread, reading ahead of the parser. The
+     * size of the file to be read and the bytes read from the file, compressed if the file is
+     * compressed, are registered in the stats.
+     *
+     * @param fileStream
+     *            stream of the CSV file, positioned at its start
+     * @param offset
+     *            offset of the content to start reading from, in uncompressed bytes
+     * @return Stream of the content
+     * @throws IOException
+     *             If reading the file fails
+     */
+    private InputStream openInput(final FileInputStream fileStream, final long offset)
+            throws IOException {
+        final FileChannel channel = fileStream.getChannel();
+        final InputCompression compression = InputCompression.detect(channel);
+        if (compression == InputCompression.NONE) {
+            channel.position(offset);
+            StatData.addValue(StatTypeKeys.INPUT_BYTE_NR, channel.size() - offset);
+            return new CountingInputStream(fileStream, StatTypeKeys.READ_BYTE_NR);
+        }
+        logger.info("Decompressing {} compressed CSV file while reading", compression);
+        StatData.addValue(StatTypeKeys.INPUT_BYTE_NR, channel.size());
+        final InputStream content = openDecompressed(fileStream, compression);
+        long remaining = offset;
+        while (remaining > 0L) {
+            final long skipped = content.skip(remaining);
+            if (skipped <= 0L) {
+                throw new EOFException("CSV file ends before the offset to resume from");
+            }
+            remaining -= skipped;
+        }
+        return content;
+    }
+
+    /**
+     * Opens the content of a compressed CSV file for reading, decompressing it on a separate
+     * thread reading ahead of the parser. The compressed bytes read are registered in the stats.
+     *
+     * @param fileStream
+     *            stream of the CSV file, positioned at its start
+     * @param compression
+     *            compression of the file
+     * @return Stream of the decompressed content
+     * @throws IOException
+     *             If the compression header can't be read
+     */
+    private static InputStream openDecompressed(
+            final InputStream fileStream,
+            final InputCompression compression) throws IOException {
+        return new ReadAheadInputStream(compression.decompress(
+                new CountingInputStream(fileStream, StatTypeKeys.READ_BYTE_NR)),
+                "csv-decompressor");
+    }
+
+    /**
+     * Submits a record for processing, unless it was completed by the resumed import or it's
+     * already present in Jira.
+     *
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     * @param csvRecord
+     *            record read
+     */
+    private void submitRecord(
+            final CsvLineProcessor csvRecordProcessor,
+            final CsvRecord csvRecord) {
+        if (resumeState != null && resumeState.isCompleted(csvRecord.getRecordNr())) {
+            logger.debug("Skipping CSV record completed before resuming: {}", csvRecord);
+            StatData.addIncrementedValue(StatTypeKeys.RESUME_SKIPPED_ROW_NR);
+            return;
+        }
+        if (!isDuplicate(deduplicator, csvRecord)) {
+            csvRecordProcessor.add4Task(csvRecord);
+        }
+    }
+
+    /**
+     * Tells whether a record is already present in Jira, registering it in the stats if so.
+     *
+     * @param recordDeduplicator
+     *            deduplicator bound to the header row of the file of the record, or
+     *            <code>null</code> if records aren't deduplicated
+     * @param csvRecord
+     *            record read
+     * @return <code>true</code> if the record is to be skipped
+     */
+    private boolean isDuplicate(
+            final RecordDeduplicator recordDeduplicator,
+            final CsvRecord csvRecord) {
+        if (recordDeduplicator == null || !recordDeduplicator.isDuplicate(csvRecord.getFieldNr(),
+                csvRecord::getField)) {
+            return false;
+        }
+        logger.debug("Skipping CSV record already present in Jira: {}", csvRecord);
+        StatData.addIncrementedValue(StatTypeKeys.DUPLICATE_ROW_NR);
+        if (csvRecord.getInputFile() != null) {
+            csvRecord.getInputFile().addDuplicate();
+        }
+        return true;
+    }
+
+    /**
+     * Processes Jira CSV file on multiple reader threads. The file is memory-mapped and split into
+     * byte ranges aligned to record boundaries, which are parsed and filtered in parallel. Records
+     * are handed over to the CSV record processor in file order, numbered the same way as with
+     * {@link #doJiraCSVProcessing(String, RecordFilter, CsvLineProcessor)}. Requires RFC 4180
+     * conformant quoting and line feed terminated records. Compressed files can't be split, they
+     * are read by {@link #doJiraCSVProcessing(String, RecordFilter, CsvLineProcessor)}.
+     *
+     * @param sourceFilePath
+     *            path of the source CSV file
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     *            to process all records
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     * @param readerThreadNr
+     *            number of parallel reader threads
+     */
+    public void doParallelJiraCSVProcessing(
+            final String sourceFilePath,
+            final RecordFilter recordFilter,
+            final CsvLineProcessor csvRecordProcessor,
+            final int readerThreadNr) {
+        final ExecutorService readerPool = Executors.newFixedThreadPool(readerThreadNr);
+        try (FileChannel channel =
+                FileChannel.open(Paths.get(sourceFilePath), StandardOpenOption.READ)) {
+            if (InputCompression.detect(channel) != InputCompression.NONE) {
+                logger.info("Reading compressed CSV file on a single reader thread");
+                doJiraCSVProcessing(sourceFilePath, recordFilter, csvRecordProcessor);
+                return;
+            }
+            final long fileSize = channel.size();
+            final long headerEnd = findRecordStart(channel, 0L, false);
+            final String[] headerRow;
+            try (CsvRecordParser parser = createRangeParser(channel, 0L, headerEnd)) {
+                headerRow = parser.nextRecord();
+            }
+            if (headerRow == null) {
+                logger.error("CSV file is empty, no header row found");
+                return;
+            }
+            if (!applyHeaderRow(headerRow, recordFilter, csvRecordProcessor)) {
+                return;
+            }
+            long dataStart = headerEnd;
+            long recordNrBase = 0L;
+            if (resumeState != null && resumeState.getCheckpointOffset() > headerEnd) {
+                dataStart = resumeState.getCheckpointOffset();
+                recordNrBase = resumeState.getCheckpointRecordNr();
+                logger.info("Resuming import after record #{} at byte offset {}", recordNrBase,
+                        dataStart);
+            }
+            StatData.addValue(StatTypeKeys.INPUT_BYTE_NR, fileSize - dataStart);
+            readChunks(channel, readerPool, readerThreadNr, dataStart, recordNrBase, recordFilter,
+                    dictionary, null, csvRecord -> submitRecord(csvRecordProcessor, csvRecord));
+        } catch (final NoSuchFileException e) {
+            logger.error("Failed to find CSV file to read");
+        } catch (final IOException | ExecutionException e) {
+            logger.error("Failed to read CSV file: {}", e.getMessage());
+        } catch (final InterruptedException e) {
+            logger.warn("Parallel CSV file reading was interrupted: {}", e.getMessage());
+            Thread.currentThread().interrupt();
+        } finally {
+            readerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Plans the partitions of a cooperative import of an uncompressed CSV file: splits the data
+     * part of the file to byte ranges aligned to record boundaries like
+     * {@link #doParallelJiraCSVProcessing(String, RecordFilter, CsvLineProcessor, int)} splits it
+     * to chunks.
+     *
+     * @param sourceFilePath
+     *            path of the source CSV file
+     * @param partitionNr
+     *            minimal number of partitions, more are planned for files larger than a chunk
+     *            per partition
+     * @return Start positions of the partitions, followed by the file size
+     * @throws IOException
+     *             If the file is compressed, or reading it fails
+     */
+    public long[] planPartitions(final String sourceFilePath, final int partitionNr)
+            throws IOException {
+        final ExecutorService scanPool =
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try (FileChannel channel =
+                FileChannel.open(Paths.get(sourceFilePath), StandardOpenOption.READ)) {
+            if (InputCompression.detect(channel) != InputCompression.NONE) {
+                throw new IOException("Compressed CSV files can't be partitioned");
+            }
+            final long headerEnd = findRecordStart(channel, 0L, false);
+            return splitToChunks(channel, scanPool, headerEnd, channel.size(), partitionNr);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Partition planning was interrupted");
+        } catch (final ExecutionException e) {
+            throw new IOException("Failed to plan partitions: " + e.getCause().getMessage(),
+                    e.getCause());
+        } finally {
+            scanPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Processes a partition of a cooperative import, a byte range of the Jira CSV file planned by
+     * {@link #planPartitions(String, int)}, on the calling thread. The header row is read from the
+     * start of the file. Records are numbered from 1 within the partition, and a resume state
+     * passed to the constructor has to come from the progress journal of the partition.
+     *
+     * @param sourceFilePath
+     *            path of the source CSV file
+     * @param start
+     *            start position (inclusive) of the partition
+     * @param end
+     *            end position (exclusive) of the partition
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     *            to process all records
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     * @return <code>true</code> if the whole partition was read and submitted
+     */
+    public boolean doPartitionJiraCSVProcessing(
+            final String sourceFilePath,
+            final long start,
+            final long end,
+            final RecordFilter recordFilter,
+            final CsvLineProcessor csvRecordProcessor) {
+        return doPartitionJiraCSVProcessing(sourceFilePath, start, end, recordFilter,
+                csvRecordProcessor, () -> false);
+    }
+
+    /**
+     * Processes a partition of a cooperative import like
+     * {@link #doPartitionJiraCSVProcessing(String, long, long, RecordFilter, CsvLineProcessor)},
+     * stopping before the next record is submitted once the partition is cancelled, like when its
+     * lease was taken over by another process.
+     *
+     * @param sourceFilePath
+     *            path of the source CSV file
+     * @param start
+     *            start position (inclusive) of the partition
+     * @param end
+     *            end position (exclusive) of the partition
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     *            to process all records
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     * @param cancelled
+     *            returns <code>true</code> once no more records of the partition are to be
+     *            submitted
+     * @return <code>true</code> if the whole partition was read and submitted
+     */
+    public boolean doPartitionJiraCSVProcessing(
+            final String sourceFilePath,
+            final long start,
+            final long end,
+            final RecordFilter recordFilter,
+            final CsvLineProcessor csvRecordProcessor,
+            final BooleanSupplier cancelled) {
+        try (FileChannel channel =
+                FileChannel.open(Paths.get(sourceFilePath), StandardOpenOption.READ)) {
+            final String[] headerRow;
+            try (CsvRecordParser parser =
+                    createRangeParser(channel, 0L, findRecordStart(channel, 0L, false))) {
+                headerRow = parser.nextRecord();
+            }
+            if (headerRow == null) {
+                logger.error("CSV file is empty, no header row found");
+                return false;
+            }
+            if (!applyHeaderRow(headerRow, recordFilter, csvRecordProcessor)) {
+                return false;
+            }
+            long dataStart = start;
+            long recordNrBase = 0L;
+            if (resumeState != null && resumeState.getCheckpointOffset() > start) {
+                dataStart = Math.min(resumeState.getCheckpointOffset(), end);
+                recordNrBase = resumeState.getCheckpointRecordNr();
+                logger.info("Resuming partition after record #{} at byte offset {}",
+                        recordNrBase, dataStart);
+            }
+            try (CsvRecordParser parser = new CsvRecordParser(new InputStreamReader(
+                    new CountingInputStream(new MappedRangeInputStream(channel, dataStart, end),
+                            StatTypeKeys.READ_BYTE_NR), StandardCharsets.UTF_8),
+                    maxRecordLength)) {
+                addRowStats(readRecords(parser, recordFilter, dictionary, recordNrBase,
+                        dataStart, null, csvRecord -> {
+                            if (cancelled.getAsBoolean()) {
+                                throw new CancellationException();
+                            }
+                            submitRecord(csvRecordProcessor, csvRecord);
+                        }));
+            }
+            return true;
+        } catch (final CancellationException e) {
+            logger.warn("Stopped reading cancelled partition");
+        } catch (final NoSuchFileException e) {
+            logger.error("Failed to find CSV file to read");
+        } catch (final IOException e) {
+            logger.error("Failed to read CSV file: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Processes multiple Jira CSV files, each with its own header row, feeding the same CSV record
+     * processor. The files are read in parallel on a work-stealing pool, largest first.
+     * Uncompressed files larger than a chunk are split to chunks like by
+     * {@link #doParallelJiraCSVProcessing(String, RecordFilter, CsvLineProcessor, int)}, and the
+     * chunks are parsed by any idle thread of the pool, so a single huge file doesn't serialize
+     * the import. Records are numbered per file and handed over in file order within each file.
+     * Resuming an import isn't supported.
+     *
+     * @param sourceFilePaths
+     *            paths of the source CSV files
+     * @param recordFilterFactory
+     *            factory of the {@link RecordFilter} to be matched by the records processed,
+     *            creating a separate filter for the header row of each file, or returning
+     *            <code>null</code> to process all records
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     * @param readerThreadNr
+     *            number of parallel reader threads
+     * @return The files read, holding their stats
+     */
+    public List<InputFile> doMultiFileJiraCSVProcessing(
+            final List<Path> sourceFilePaths,
+            final Supplier<RecordFilter> recordFilterFactory,
+            final CsvLineProcessor csvRecordProcessor,
+            final int readerThreadNr) {
+        final List<InputFile> inputFiles = new ArrayList<>(sourceFilePaths.size());
+        long inputSize = 0L;
+        for (final Path sourceFilePath : sourceFilePaths) {
+            try {
+                final long fileSize = Files.size(sourceFilePath);
+                inputFiles.add(new InputFile(sourceFilePath, fileSize));
+                inputSize += fileSize;
+            } catch (final IOException e) {
+                logger.error("Failed to read CSV file {}: {}", sourceFilePath, e.getMessage());
+            }
+        }
+        // Largest first, so a huge file doesn't start last and prolong the import
+        inputFiles.sort(Comparator.comparingLong(InputFile::getSize).reversed());
+        StatData.addValue(StatTypeKeys.INPUT_BYTE_NR, inputSize);
+        logger.info("Reading {} CSV file(s) of {} bytes on {} reader thread(s)", inputFiles.size(),
+                inputSize, readerThreadNr);
+        final ForkJoinPool readerPool = new ForkJoinPool(readerThreadNr);
         try {
-            final Scanner scanner = new Scanner(csvFile, StandardCharsets.UTF_8.name());
-            final String headerRow = scanner.nextLine();
-            csvRecordProcessor.setHeaderRow(headerRow);
-            logger.debug("Set header row in CSV line processor: {}", headerRow);
-            while (scanner.hasNextLine()) {
-                String csvLine = scanner.nextLine();
-                StatData.addIncrementedValue(StatTypeKeys.PROCESSED_ROW_NR);
-                while (!csvLine.matches(recordPattern) && scanner.hasNextLine()) {
-                    final String nextCsvLine = scanner.nextLine();
-                    csvLine = csvLine.concat(nextCsvLine);
+            final List<ForkJoinTask<?>> fileTasks = new ArrayList<>(inputFiles.size());
+            for (final InputFile inputFile : inputFiles) {
+                final RecordFilter recordFilter = recordFilterFactory.get();
+                fileTasks.add(readerPool.submit(() -> readInputFile(inputFile, readerPool,
+                        readerThreadNr, recordFilter, csvRecordProcessor)));
+            }
+            for (final ForkJoinTask<?> fileTask : fileTasks) {
+                fileTask.join();
+            }
+        } finally {
+            readerPool.shutdownNow();
+        }
+        return inputFiles;
+    }
+
+    /**
+     * Reads a file of a multi-file import.
+     *
+     * @param inputFile
+     *            {@link InputFile} to be read
+     * @param readerPool
+     *            thread pool parsing the chunks of the file
+     * @param readerThreadNr
+     *            number of parallel reader threads
+     * @param recordFilter
+     *            {@link RecordFilter} not bound yet, to be matched by the records of the file, or
+     *            <code>null</code> to process all records
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     */
+    private void readInputFile(
+            final InputFile inputFile,
+            final ExecutorService readerPool,
+            final int readerThreadNr,
+            final RecordFilter recordFilter,
+            final CsvLineProcessor csvRecordProcessor) {
+        final long startTime = System.nanoTime();
+        final Consumer<CsvRecord> recordConsumer = csvRecord -> {
+            if (!isDuplicate(inputFile.getDeduplicator(), csvRecord)) {
+                csvRecordProcessor.add4Task(csvRecord);
+            }
+        };
+        try (FileChannel channel = FileChannel.open(inputFile.getPath(), StandardOpenOption.READ)) {
+            final InputCompression compression = InputCompression.detect(channel);
+            final RecordCounts counts;
+            if (compression == InputCompression.NONE) {
+                final long headerEnd = findRecordStart(channel, 0L, false);
+                final String[] headerRow;
+                try (CsvRecordParser parser = createRangeParser(channel, 0L, headerEnd)) {
+                    headerRow = parser.nextRecord();
+                }
+                if (!bindHeaderRow(inputFile, headerRow, recordFilter,
+                        csvRecordProcessor.getFieldMapping())) {
+                    return;
                 }
-                logger.debug("Read complete line from CSV: {}", csvLine);
-                if (isRecordMatchingRegex(csvLine, lineRegex)) {
-                    logger.debug("Send CSV line for processing ({})", csvLine);
-                    csvRecordProcessor.add4Task(csvLine);
+                StatData.addSumValue(StatTypeKeys.READ_BYTE_NR, headerEnd);
+                final int chunkThreadNr =
+                        inputFile.getSize() - headerEnd > MAX_CHUNK_SIZE ? readerThreadNr : 1;
+                counts = readChunks(channel, readerPool, chunkThreadNr, headerEnd, 0L,
+                        recordFilter, inputFile.getDictionary(), inputFile, recordConsumer);
+            } else {
+                try (CsvRecordParser parser = new CsvRecordParser(new InputStreamReader(
+                        openDecompressed(Channels.newInputStream(channel), compression),
+                        StandardCharsets.UTF_8), maxRecordLength)) {
+                    if (!bindHeaderRow(inputFile, parser.nextRecord(), recordFilter,
+                            csvRecordProcessor.getFieldMapping())) {
+                        return;
+                    }
+                    counts = readRecords(parser, recordFilter, inputFile.getDictionary(), 0L,
+                            0L, inputFile, recordConsumer);
                 }
+                addRowStats(counts);
             }
-            scanner.close();
-        } catch (final FileNotFoundException e) {
-            logger.error("Failed to find CSV file to read");
+            inputFile.addReadRecords(counts.recordNr, counts.malformedNr, counts.filteredNr);
+        } catch (final NoSuchFileException e) {
+            logger.error("Failed to find CSV file {} to read", inputFile);
+        } catch (final IOException | ExecutionException e) {
+            logger.error("Failed to read CSV file {}: {}", inputFile, e.getMessage());
+        } catch (final InterruptedException e) {
+            logger.warn("Reading CSV file {} was interrupted: {}", inputFile, e.getMessage());
+            Thread.currentThread().interrupt();
+        } finally {
+            inputFile.setReadNanos(System.nanoTime() - startTime);
         }
     }
 
     /**
-     * Checks if any part of the line loaded from CSV file matches the regular expression given at
-     * application start. If no regular expression was given, it's treated as successful match.
+     * Parses the data part of the CSV file in chunks on multiple reader threads, handing the
+     * records over to a consumer in file order. The row stats are registered per chunk.
+     *
+     * @param channel
+     *            {@link FileChannel} of the CSV file
+     * @param readerPool
+     *            thread pool parsing the chunks
+     * @param readerThreadNr
+     *            number of parallel reader threads
+     * @param dataStart
+     *            position of the first data record to be read
+     * @param recordNrBase
+     *            number of records preceding the first record read
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     *            to process all records
+     * @param recordDictionary
+     *            dictionary of the file to encode the matching records by, or <code>null</code>
+     *            to hold them as they are
+     * @param inputFile
+     *            {@link InputFile} of a multi-file import being read, or <code>null</code>
+     * @param recordConsumer
+     *            consumer of matching records
+     * @return Number of records read and skipped as malformed
+     * @throws IOException
+     *             If reading the file fails
+     * @throws InterruptedException
+     *             If waiting for the parsing of a chunk is interrupted
+     * @throws ExecutionException
+     *             If parsing a chunk fails
+     */
+    private RecordCounts readChunks(
+            final FileChannel channel,
+            final ExecutorService readerPool,
+            final int readerThreadNr,
+            final long dataStart,
+            final long recordNrBase,
+            final RecordFilter recordFilter,
+            final RecordDictionary recordDictionary,
+            final InputFile inputFile,
+            final Consumer<CsvRecord> recordConsumer)
+            throws IOException, InterruptedException, ExecutionException {
+        final long fileSize = channel.size();
+        final long[] chunkStarts =
+                splitToChunks(channel, readerPool, dataStart, fileSize, readerThreadNr);
+        logger.debug("Split CSV file of {} bytes to {} chunk(s)", fileSize,
+                chunkStarts.length - 1);
+        final RecordCounts counts = new RecordCounts();
+        final Deque<Future<ChunkResult>> pendingChunks = new ArrayDeque<>();
+        final int maxPendingChunks = readerThreadNr * CHUNKS_AHEAD_PER_THREAD;
+        int nextChunk = 0;
+        while (nextChunk < chunkStarts.length - 1 || !pendingChunks.isEmpty()) {
+            while (nextChunk < chunkStarts.length - 1
+                    && pendingChunks.size() < maxPendingChunks) {
+                final long start = chunkStarts[nextChunk];
+                final long end = chunkStarts[nextChunk + 1];
+                pendingChunks.add(readerPool.submit(
+                        () -> parseChunk(channel, start, end, recordFilter, recordDictionary)));
+                nextChunk++;
+            }
+            final ChunkResult chunkResult = pendingChunks.poll().get();
+            for (final CsvRecord csvRecord : chunkResult.records) {
+                recordConsumer.accept(csvRecord.renumber(
+                        recordNrBase + counts.recordNr + csvRecord.getRecordNr(), inputFile));
+            }
+            counts.add(chunkResult.counts);
+            addRowStats(chunkResult.counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Registers the numbers of records read in the stats.
+     *
+     * @param counts
+     *            number of records read
+     */
+    private static void addRowStats(final RecordCounts counts) {
+        StatData.addSumValue(StatTypeKeys.PROCESSED_ROW_NR, counts.recordNr);
+        StatData.addSumValue(StatTypeKeys.MALFORMED_ROW_NR, counts.malformedNr);
+        StatData.addSumValue(StatTypeKeys.FILTERED_ROW_NR, counts.filteredNr);
+    }
+
+    /**
+     * Reads all records from a parser, forwarding records matching the filter to a consumer.
      *
-     * @param csvLine
-     *            CSV line
-     * @param lineRegex
-     *            regular expression to match
-     * @return Returns <code>true</code> if regular expression is matched or no regular expression
-     *         was given, <code>false</code> if the regular expression wasn't matched.
+     * @param parser
+     *            parser to read records from
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     *            to process all records
+     * @param recordDictionary
+     *            dictionary of the file to encode the matching records by, or <code>null</code>
+     *            to hold them as they are
+     * @param recordNrBase
+     *            number of records preceding the first record of the parser
+     * @param offsetBase
+     *            byte offset of the start of the parser within the CSV file
+     * @param inputFile
+     *            {@link InputFile} of a multi-file import being read, or <code>null</code>
+     * @param recordConsumer
+     *            consumer of matching records
+     * @return Number of records read and skipped as malformed
+     * @throws IOException
+     *             If reading fails
      */
-    private boolean isRecordMatchingRegex(final String csvLine, final String lineRegex) {
-        logger.debug("Checking if regex given ({}) is matched by any part of CSV line: {}",
-                lineRegex, csvLine);
-        boolean hasMatch = false;
-        if (lineRegex != null && !lineRegex.isEmpty()) {
-            final StringTokenizer tokenizer = new StringTokenizer(csvLine, ",");
-            while (tokenizer.hasMoreTokens()) {
-                final String token = tokenizer.nextToken();
-                if (token.matches(lineRegex)) {
-                    hasMatch = true;
-                    break;
+    private RecordCounts readRecords(
+            final CsvRecordParser parser,
+            final RecordFilter recordFilter,
+            final RecordDictionary recordDictionary,
+            final long recordNrBase,
+            final long offsetBase,
+            final InputFile inputFile,
+            final Consumer<CsvRecord> recordConsumer) throws IOException {
+        final RecordCounts counts = new RecordCounts();
+        final RecordEncoder encoder =
+                recordDictionary != null ? new RecordEncoder(recordDictionary) : null;
+        while (true) {
+            final String[] fields;
+            try {
+                fields = parser.nextRecord();
+            } catch (final CsvParseException e) {
+                counts.recordNr++;
+                counts.malformedNr++;
+                logger.warn("Skipping malformed CSV record #{}: {}",
+                        recordNrBase + counts.recordNr, e.getMessage());
+                continue;
+            }
+            if (fields == null) {
+                break;
+            }
+            if (fields.length == 1 && fields[0].isEmpty()) {
+                continue;
+            }
+            counts.recordNr++;
+            final long recordNr = recordNrBase + counts.recordNr;
+            logger.debug("Read complete record from CSV: #{} {}", recordNr, Arrays.asList(fields));
+            if (recordFilter == null || recordFilter.test(fields)) {
+                // Only records kept for processing are worth encoding
+                final CsvRecord csvRecord = encoder != null
+                        ? encoder.encode(recordNr, fields, offsetBase + parser.getOffset(),
+                                inputFile)
+                        : new CsvRecord(recordNr, fields, offsetBase + parser.getOffset(),
+                                inputFile);
+                logger.debug("Send CSV record for processing ({})", csvRecord);
+                recordConsumer.accept(csvRecord);
+            } else {
+                counts.filteredNr++;
+            }
+        }
+        if (encoder != null) {
+            StatData.addSumValue(StatTypeKeys.COMPACT_RECORD_NR, encoder.getRecordNr());
+            StatData.addSumValue(StatTypeKeys.COMPACT_RECORD_HEAP_BYTE_NR,
+                    encoder.getHeapByteNr());
+            StatData.addSumValue(StatTypeKeys.COMPACT_RECORD_PLAIN_HEAP_BYTE_NR,
+                    encoder.getPlainHeapByteNr());
+        }
+        return counts;
+    }
+
+    /**
+     * Parses and filters a chunk of the CSV file. Records are numbered starting from 1 within the
+     * chunk, their offsets are relative to the file.
+     *
+     * @param channel
+     *            {@link FileChannel} of the CSV file
+     * @param start
+     *            start position (inclusive) of the chunk
+     * @param end
+     *            end position (exclusive) of the chunk
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     *            to process all records
+     * @param recordDictionary
+     *            dictionary of the file to encode the matching records by, or <code>null</code>
+     *            to hold them as they are
+     * @return Result of the chunk parsing
+     * @throws IOException
+     *             If reading the chunk fails
+     */
+    private ChunkResult parseChunk(
+            final FileChannel channel,
+            final long start,
+            final long end,
+            final RecordFilter recordFilter,
+            final RecordDictionary recordDictionary) throws IOException {
+        final ChunkResult chunkResult = new ChunkResult();
+        try (CsvRecordParser parser = new CsvRecordParser(new InputStreamReader(
+                new CountingInputStream(new MappedRangeInputStream(channel, start, end),
+                        StatTypeKeys.READ_BYTE_NR), StandardCharsets.UTF_8), maxRecordLength)) {
+            chunkResult.counts = readRecords(parser, recordFilter, recordDictionary, 0L, start,
+                    null, chunkResult.records::add);
+        }
+        return chunkResult;
+    }
+
+    /**
+     * Creates a parser reading a byte range of the CSV file.
+     *
+     * @param channel
+     *            {@link FileChannel} of the CSV file
+     * @param start
+     *            start position (inclusive) of the range
+     * @param end
+     *            end position (exclusive) of the range
+     * @return Parser created
+     */
+    private CsvRecordParser createRangeParser(
+            final FileChannel channel,
+            final long start,
+            final long end) {
+        return new CsvRecordParser(new InputStreamReader(
+                new MappedRangeInputStream(channel, start, end), StandardCharsets.UTF_8),
+                maxRecordLength);
+    }
+
+    /**
+     * Splits the data part of the CSV file to chunks aligned to record boundaries. Quote
+     * characters are counted per nominal chunk in parallel first, so the quoting state at each
+     * nominal chunk start is known and the scan for the next record boundary is exact.
+     *
+     * @param channel
+     *            {@link FileChannel} of the CSV file
+     * @param readerPool
+     *            thread pool used for counting quotes
+     * @param dataStart
+     *            position of the first data record
+     * @param fileSize
+     *            size of the CSV file
+     * @param readerThreadNr
+     *            number of parallel reader threads
+     * @return Start positions of the chunks, followed by the file size
+     * @throws IOException
+     *             If reading the file fails
+     * @throws InterruptedException
+     *             If waiting for the quote counting is interrupted
+     * @throws ExecutionException
+     *             If quote counting fails
+     */
+    private long[] splitToChunks(
+            final FileChannel channel,
+            final ExecutorService readerPool,
+            final long dataStart,
+            final long fileSize,
+            final int readerThreadNr)
+            throws IOException, InterruptedException, ExecutionException {
+        final long dataSize = fileSize - dataStart;
+        final int chunkNr = (int) Math.max(1L, Math.min(dataSize,
+                Math.max(readerThreadNr, (dataSize + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE)));
+        final long[] nominalStarts = new long[chunkNr + 1];
+        for (int i = 0; i <= chunkNr; i++) {
+            nominalStarts[i] = dataStart + dataSize * i / chunkNr;
+        }
+        final List<Future<Long>> quoteCounts = new ArrayList<>(chunkNr);
+        for (int i = 0; i < chunkNr; i++) {
+            final long start = nominalStarts[i];
+            final long end = nominalStarts[i + 1];
+            quoteCounts.add(readerPool.submit(() -> countQuotes(channel, start, end)));
+        }
+        final long[] chunkStarts = new long[chunkNr + 1];
+        chunkStarts[0] = dataStart;
+        long quotesBefore = 0L;
+        for (int i = 1; i < chunkNr; i++) {
+            quotesBefore += quoteCounts.get(i - 1).get();
+            chunkStarts[i] = Math.max(chunkStarts[i - 1],
+                    findRecordStart(channel, nominalStarts[i], quotesBefore % 2 == 1));
+        }
+        chunkStarts[chunkNr] = fileSize;
+        return chunkStarts;
+    }
+
+    /**
+     * Counts the quote characters within a byte range of the CSV file.
+     *
+     * @param channel
+     *            {@link FileChannel} of the CSV file
+     * @param start
+     *            start position (inclusive) of the range
+     * @param end
+     *            end position (exclusive) of the range
+     * @return Number of quote characters found
+     * @throws IOException
+     *             If reading the file fails
+     */
+    private long countQuotes(final FileChannel channel, final long start, final long end)
+            throws IOException {
+        long quoteNr = 0L;
+        try (InputStream inputStream = new MappedRangeInputStream(channel, start, end)) {
+            final byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer, 0, buffer.length)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '"') {
+                        quoteNr++;
+                    }
+                }
+            }
+        }
+        return quoteNr;
+    }
+
+    /**
+     * Finds the start of the first record beginning at or after a position, which is the position
+     * after the first line feed outside of quoted fields.
+     *
+     * @param channel
+     *            {@link FileChannel} of the CSV file
+     * @param from
+     *            position to start the scan from
+     * @param inQuotes
+     *            whether the position is within a quoted field
+     * @return Start position of the record, or the file size if no further record starts
+     * @throws IOException
+     *             If reading the file fails
+     */
+    private long findRecordStart(final FileChannel channel, final long from,
+            final boolean inQuotes) throws IOException {
+        final long fileSize = channel.size();
+        boolean quoted = inQuotes;
+        try (InputStream inputStream = new MappedRangeInputStream(channel, from, fileSize)) {
+            final byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+            long pos = from;
+            int read;
+            while ((read = inputStream.read(buffer, 0, buffer.length)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '"') {
+                        quoted = !quoted;
+                    } else if (buffer[i] == '\n' && !quoted) {
+                        return pos + i + 1;
+                    }
                 }
+                pos += read;
+            }
+        }
+        return fileSize;
+    }
+
+    /**
+     * Sets the header row in the CSV record processor and binds the filter, the deduplicator and
+     * the dictionary of compact records to it.
+     *
+     * @param headerRow
+     *            field values of the header row
+     * @param recordFilter
+     *            {@link RecordFilter} to be matched by the records processed, or <code>null</code>
+     * @param csvRecordProcessor
+     *            CSV record processor object
+     * @return <code>true</code> if the header row could be applied, <code>false</code> if the
+     *         filter or the field mapping refers to a column not in the header row or it has no
+     *         key column to deduplicate by
+     */
+    private boolean applyHeaderRow(
+            final String[] headerRow,
+            final RecordFilter recordFilter,
+            final CsvLineProcessor csvRecordProcessor) {
+        try {
+            if (recordFilter != null) {
+                recordFilter.bind(headerRow);
             }
-        } else {
-            hasMatch = true;
+            csvRecordProcessor.setHeaderRow(headerRow);
+        } catch (final IllegalArgumentException e) {
+            logger.error("Failed to apply CSV header row: {}", e.getMessage());
+            return false;
+        }
+        try {
+            deduplicator = keyIndex != null ? new RecordDeduplicator(keyIndex, headerRow) : null;
+        } catch (final IllegalArgumentException e) {
+            logger.error("Failed to deduplicate CSV records: {}", e.getMessage());
+            return false;
+        }
+        dictionary = compactRecords ? new RecordDictionary(headerRow.length) : null;
+        logger.debug("Set header row in CSV line processor: {}", Arrays.asList(headerRow));
+        return true;
+    }
+
+    /**
+     * Binds a file of a multi-file import to its header row.
+     *
+     * @param inputFile
+     *            {@link InputFile} being read
+     * @param headerRow
+     *            field values of the header row, or <code>null</code> if the file is empty
+     * @param recordFilter
+     *            {@link RecordFilter} not bound yet, to be matched by the records of the file, or
+     *            <code>null</code>
+     * @param fieldMapping
+     *            mapping of the columns to Jira fields, or <code>null</code>
+     * @return <code>true</code> if the file could be bound, <code>false</code> if it's empty, the
+     *         filter or the field mapping refers to a column not in its header row or it has no
+     *         key column to deduplicate by
+     */
+    private boolean bindHeaderRow(
+            final InputFile inputFile,
+            final String[] headerRow,
+            final RecordFilter recordFilter,
+            final FieldMapping fieldMapping) {
+        if (headerRow == null) {
+            logger.warn("CSV file {} is empty, no header row found", inputFile);
+            return false;
         }
-        return hasMatch;
+        try {
+            inputFile.bindHeader(headerRow, recordFilter, keyIndex, compactRecords, fieldMapping);
+        } catch (final IllegalArgumentException e) {
+            logger.error("Failed to apply header row of CSV file {}: {}", inputFile,
+                    e.getMessage());
+            return false;
+        }
+        logger.debug("Read header row of CSV file {}: {}", inputFile, Arrays.asList(headerRow));
+        return true;
+    }
+
+    /**
+     * Number of records read from a CSV file or file chunk.
+     *
+     */
+    private static class RecordCounts {
+        /** Number of records read, including malformed ones. */
+        private long recordNr;
+        /** Number of malformed records skipped. */
+        private long malformedNr;
+        /** Number of records not matching the filter. */
+        private long filteredNr;
+
+        /**
+         * Adds the numbers of records read from another part of the file.
+         *
+         * @param other
+         *            number of records read from the other part
+         */
+        private void add(final RecordCounts other) {
+            recordNr += other.recordNr;
+            malformedNr += other.malformedNr;
+            filteredNr += other.filteredNr;
+        }
+    }
+
+    /**
+     * Result of parsing a chunk of a CSV file.
+     *
+     */
+    private static class ChunkResult {
+        /** Records matching the regular expression, numbered within the chunk. */
+        private final List<CsvRecord> records = new ArrayList<>();
+        /** Number of records read from the chunk. */
+        private RecordCounts counts;
     }
 }
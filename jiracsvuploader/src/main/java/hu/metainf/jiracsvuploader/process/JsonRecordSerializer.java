@@ -0,0 +1,160 @@
+package hu.metainf.jiracsvuploader.process;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import hu.metainf.jiracsvuploader.mapping.CompiledMapping;
+import hu.metainf.jiracsvuploader.mapping.FieldMapping;
+import hu.metainf.jiracsvuploader.mapping.JsonBuffer;
+import hu.metainf.jiracsvuploader.stat.LatencyHistogram;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * Serializes CSV records to UTF-8 encoded JSON objects, mapping each header to the string value of
+ * the field in its column, or the columns to the Jira fields of a {@link FieldMapping}. A header
+ * repeated in several columns, like <code>Labels</code> or <code>Watchers</code> in Jira exports,
+ * is mapped once, to the array of the values of its columns. The serializer is compiled once from
+ * the header row: the key of every header is escaped and encoded up front, together with the
+ * punctuation preceding its value. Field values are escaped and
+ * encoded straight into a byte buffer reused by the serializing thread, so serializing a record
+ * allocates nothing but the payload returned.
+ *
+ */
+public final class JsonRecordSerializer {
+    /** Histogram of the times spent mapping a record in nanoseconds. */
+    private static final LatencyHistogram MAPPING_TIME_HISTOGRAM =
+            StatData.getHistogram(StatTypeKeys.MAPPING_TIME);
+
+    /**
+     * Encoded key of every distinct header with the punctuation preceding its value, like
+     * <code>{"Summary":</code> for the first header and <code>,"Summary":</code> for the others,
+     * or <code>null</code> if the record is mapped.
+     */
+    private final byte[][] keyPrefixes;
+    /**
+     * Columns of every distinct header in ascending order, the headers ordered by their first
+     * column, or <code>null</code> if the record is mapped.
+     */
+    private final int[][] headerColumns;
+    /** Field mapping compiled for the header row, or <code>null</code> if not mapped. */
+    private final CompiledMapping compiledMapping;
+    /** Serialization buffer of each thread. */
+    private final ThreadLocal<JsonBuffer> buffers = ThreadLocal.withInitial(JsonBuffer::new);
+
+    /**
+     * Ctor, compiling the serializer of a header row.
+     *
+     * @param headerRow
+     *            field values of the header row
+     * @param fieldMapping
+     *            mapping of the columns to Jira fields, or <code>null</code> to map each header
+     *            to the string value of its column
+     * @throws IllegalArgumentException
+     *             If a column of the mapping isn't in the header row
+     */
+    public JsonRecordSerializer(final String[] headerRow, final FieldMapping fieldMapping) {
+        if (fieldMapping != null) {
+            compiledMapping = fieldMapping.compile(headerRow);
+            keyPrefixes = null;
+            headerColumns = null;
+            return;
+        }
+        compiledMapping = null;
+        final Map<String, List<Integer>> columnsByHeader = new LinkedHashMap<>();
+        for (int i = 0; i < headerRow.length; i++) {
+            columnsByHeader.computeIfAbsent(headerRow[i], header -> new ArrayList<>()).add(i);
+        }
+        keyPrefixes = new byte[columnsByHeader.size()][];
+        headerColumns = new int[columnsByHeader.size()][];
+        final JsonBuffer buffer = new JsonBuffer();
+        int headerIndex = 0;
+        for (final Map.Entry<String, List<Integer>> header : columnsByHeader.entrySet()) {
+            buffer.reset();
+            buffer.writeByte(headerIndex == 0 ? '{' : ',');
+            buffer.writeString(header.getKey());
+            buffer.writeByte(':');
+            keyPrefixes[headerIndex] = buffer.toByteArray();
+            headerColumns[headerIndex] =
+                    header.getValue().stream().mapToInt(Integer::intValue).toArray();
+            headerIndex++;
+        }
+    }
+
+    /**
+     * Ctor, compiling the serializer of a header row, mapping each header to the string value of
+     * its column.
+     *
+     * @param headerRow
+     *            field values of the header row
+     */
+    public JsonRecordSerializer(final String[] headerRow) {
+        this(headerRow, null);
+    }
+
+    /**
+     * Serializes a record. Without a field mapping, fields without a header, and headers without
+     * a field are left out; a repeated header is mapped to an array even if only one of its
+     * columns has a field. The time spent mapping a record is registered in the stats.
+     *
+     * @param fields
+     *            field values of the record
+     * @return The UTF-8 encoded JSON object
+     * @throws IllegalArgumentException
+     *             If a field value can't be converted by the field mapping
+     */
+    public byte[] serialize(final String[] fields) {
+        final JsonBuffer buffer = buffers.get();
+        buffer.reset();
+        if (compiledMapping != null) {
+            final long startTime = System.nanoTime();
+            compiledMapping.write(fields, buffer);
+            MAPPING_TIME_HISTOGRAM.record(System.nanoTime() - startTime);
+            return buffer.toByteArray();
+        }
+        // Headers are ordered by their first column, so the ones without a field are the last
+        int headerNr = 0;
+        while (headerNr < headerColumns.length && headerColumns[headerNr][0] < fields.length) {
+            headerNr++;
+        }
+        if (headerNr == 0) {
+            buffer.writeByte('{');
+        }
+        for (int i = 0; i < headerNr; i++) {
+            buffer.writeBytes(keyPrefixes[i]);
+            final int[] columns = headerColumns[i];
+            if (columns.length == 1) {
+                writeField(buffer, fields[columns[0]]);
+                continue;
+            }
+            buffer.writeByte('[');
+            for (int j = 0; j < columns.length && columns[j] < fields.length; j++) {
+                if (j > 0) {
+                    buffer.writeByte(',');
+                }
+                writeField(buffer, fields[columns[j]]);
+            }
+            buffer.writeByte(']');
+        }
+        buffer.writeByte('}');
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Writes the JSON value of a field.
+     *
+     * @param buffer
+     *            buffer written
+     * @param field
+     *            field value, or <code>null</code>
+     */
+    private static void writeField(final JsonBuffer buffer, final String field) {
+        if (field == null) {
+            buffer.writeNull();
+        } else {
+            buffer.writeString(field);
+        }
+    }
+}
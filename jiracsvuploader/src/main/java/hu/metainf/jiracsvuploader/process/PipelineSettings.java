@@ -0,0 +1,93 @@
+package hu.metainf.jiracsvuploader.process;
+
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+
+/**
+ * Settings of the stages of a {@link CsvLineProcessor} in {@link ExecutionMode#PIPELINE} mode.
+ *
+ */
+public final class PipelineSettings {
+    /** Default number of threads of the filter stage. */
+    public static final int DEFAULT_FILTER_THREAD_NR = 1;
+    /** Default number of threads of the serialize stage. */
+    public static final int DEFAULT_SERIALIZE_THREAD_NR = 1;
+    /** Default number of entries of the ring buffers between the stages. */
+    public static final int DEFAULT_RING_SIZE = 1024;
+
+    /** {@link RecordFilter} applied by the filter stage, or <code>null</code> if none. */
+    private final RecordFilter recordFilter;
+    /** Number of threads of the filter stage. */
+    private final int filterThreadNr;
+    /** Number of threads of the serialize stage. */
+    private final int serializeThreadNr;
+    /** Number of entries of the ring buffers between the stages. */
+    private final int ringSize;
+
+    /**
+     * Ctor.
+     *
+     * @param recordFilter
+     *            {@link RecordFilter} applied by the filter stage, or <code>null</code> to run no
+     *            filter stage
+     * @param filterThreadNr
+     *            number of threads of the filter stage
+     * @param serializeThreadNr
+     *            number of threads of the serialize stage
+     * @param ringSize
+     *            number of entries of the ring buffers between the stages, rounded up to a power
+     *            of two
+     */
+    public PipelineSettings(
+            final RecordFilter recordFilter,
+            final int filterThreadNr,
+            final int serializeThreadNr,
+            final int ringSize) {
+        this.recordFilter = recordFilter;
+        this.filterThreadNr = filterThreadNr;
+        this.serializeThreadNr = serializeThreadNr;
+        this.ringSize = ringSize;
+    }
+
+    /**
+     * Ctor, using the default settings without a filter stage.
+     */
+    public PipelineSettings() {
+        this(null, DEFAULT_FILTER_THREAD_NR, DEFAULT_SERIALIZE_THREAD_NR, DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * Returns the {@link RecordFilter} applied by the filter stage.
+     *
+     * @return {@link RecordFilter}, or <code>null</code> if there's no filter stage
+     */
+    public RecordFilter getRecordFilter() {
+        return recordFilter;
+    }
+
+    /**
+     * Returns the number of threads of the filter stage.
+     *
+     * @return number of threads
+     */
+    public int getFilterThreadNr() {
+        return filterThreadNr;
+    }
+
+    /**
+     * Returns the number of threads of the serialize stage.
+     *
+     * @return number of threads
+     */
+    public int getSerializeThreadNr() {
+        return serializeThreadNr;
+    }
+
+    /**
+     * Returns the number of entries of the ring buffers between the stages.
+     *
+     * @return number of entries
+     */
+    public int getRingSize() {
+        return ringSize;
+    }
+}
@@ -0,0 +1,175 @@
+package hu.metainf.jiracsvuploader.process;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per column dictionaries of the repeated field values of the records of a CSV file, shared by
+ * the threads encoding its records. A column collects codes for its short values till its
+ * dictionary is full, after which its new values are stored as they are. A column whose sampled
+ * values are mostly distinct, like an issue key column, stops collecting codes and drops its
+ * lookup map, as its codes would cost more than they save. Codes never change, so records
+ * encoded earlier stay decodable.
+ *
+ */
+final class RecordDictionary {
+    /** Maximal number of codes of a column. */
+    static final int MAX_CODES_PER_COLUMN = 4096;
+    /** Maximal length in characters of a value given a code. */
+    private static final int MAX_CODED_VALUE_LENGTH = 64;
+    /** Number of values of a column sampled before deciding whether it's worth coding. */
+    private static final int SAMPLE_VALUE_NR = 1024;
+    /** Maximal ratio of the distinct values among the sampled ones of a column worth coding. */
+    private static final double MAX_DISTINCT_RATIO = 0.5;
+    /** Estimated heap bytes of an entry of the lookup map: node, table slot and boxed code. */
+    private static final int MAP_ENTRY_BYTES = 56;
+
+    /** Dictionaries of the columns. */
+    private final Column[] columns;
+    /** Estimated heap bytes of the dictionary not yet taken by an encoder. */
+    private final AtomicLong heapByteDelta = new AtomicLong();
+
+    /**
+     * Ctor.
+     *
+     * @param columnNr
+     *            number of columns of the header row
+     */
+    RecordDictionary(final int columnNr) {
+        columns = new Column[columnNr];
+        for (int i = 0; i < columnNr; i++) {
+            columns[i] = new Column(heapByteDelta);
+        }
+    }
+
+    /**
+     * Returns the code of a field value, giving it a code if it has none yet.
+     *
+     * @param column
+     *            index of the column
+     * @param value
+     *            field value
+     * @return Code of the value, or -1 if the value is stored as it is
+     */
+    int encode(final int column, final String value) {
+        if (column >= columns.length || value.length() > MAX_CODED_VALUE_LENGTH) {
+            return -1;
+        }
+        return columns[column].encode(value);
+    }
+
+    /**
+     * Returns the value of a code.
+     *
+     * @param column
+     *            index of the column
+     * @param code
+     *            code returned by {@link #encode(int, String)}
+     * @return Field value
+     */
+    String decode(final int column, final int code) {
+        return columns[column].values[code];
+    }
+
+    /**
+     * Takes the change of the estimated heap bytes of the dictionary since the last call, so
+     * each change is counted by a single encoder.
+     *
+     * @return Heap bytes added, negative if more were freed
+     */
+    long takeHeapByteDelta() {
+        return heapByteDelta.get() != 0L ? heapByteDelta.getAndSet(0L) : 0L;
+    }
+
+    /**
+     * Dictionary of a column.
+     *
+     */
+    private static final class Column {
+        /** Codes by value, cleared if the column isn't worth coding. */
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        /**
+         * Values by code, each written before its code is published through {@link #codes}, so
+         * threads decoding a record see the values of its codes.
+         */
+        private final String[] values = new String[MAX_CODES_PER_COLUMN];
+        /** Estimated heap bytes of the dictionary not yet taken by an encoder. */
+        private final AtomicLong heapByteDelta;
+        /** Number of values sampled so far. */
+        private final AtomicInteger sampledNr = new AtomicInteger();
+        /** Number of codes given, guarded by the monitor of the column. */
+        private int codeNr;
+        /** Whether the dictionary is full, so new values aren't looked up any more. */
+        private volatile boolean full;
+        /** Whether the sample is complete, so values aren't counted any more. */
+        private volatile boolean sampled;
+        /** Whether the column turned out not to be worth coding, so no value is looked up. */
+        private volatile boolean dropped;
+
+        /**
+         * Ctor.
+         *
+         * @param heapByteDelta
+         *            estimated heap bytes of the dictionary not yet taken by an encoder
+         */
+        private Column(final AtomicLong heapByteDelta) {
+            this.heapByteDelta = heapByteDelta;
+            heapByteDelta.addAndGet(RecordEncoder.estimateReferenceArrayBytes(values.length));
+        }
+
+        /**
+         * Returns the code of a value, giving it a code if it has none yet.
+         *
+         * @param value
+         *            field value
+         * @return Code of the value, or -1 if the dictionary is full or dropped
+         */
+        private int encode(final String value) {
+            if (dropped) {
+                return -1;
+            }
+            if (!sampled && sampledNr.incrementAndGet() == SAMPLE_VALUE_NR) {
+                checkDistinctRatio();
+            }
+            final Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (full) {
+                return -1;
+            }
+            synchronized (this) {
+                final Integer addedCode = codes.get(value);
+                if (addedCode != null) {
+                    return addedCode;
+                }
+                if (dropped) {
+                    return -1;
+                }
+                if (codeNr == MAX_CODES_PER_COLUMN) {
+                    full = true;
+                    return -1;
+                }
+                values[codeNr] = value;
+                codes.put(value, codeNr);
+                heapByteDelta.addAndGet(RecordEncoder.estimateStringBytes(value) + MAP_ENTRY_BYTES);
+                return codeNr++;
+            }
+        }
+
+        /**
+         * Drops the lookup map once the sample is complete if most of the sampled values are
+         * distinct. The values of the codes given are kept for decoding.
+         */
+        private synchronized void checkDistinctRatio() {
+            sampled = true;
+            if (codeNr > SAMPLE_VALUE_NR * MAX_DISTINCT_RATIO) {
+                dropped = true;
+                codes.clear();
+                heapByteDelta.addAndGet(-(long) MAP_ENTRY_BYTES * codeNr);
+            }
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package hu.metainf.jiracsvuploader.process;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes the records read from a chunk of a CSV file to a compact form, holding no object per
+ * field. The fields of a record are written one after the other to a byte arena shared by the
+ * records of the chunk, each as a varint header followed by its content: <code>code * 2 + 1</code>
+ * for a value coded by the {@link RecordDictionary} of the file, or <code>length * 2</code>
+ * followed by the UTF-8 bytes of the value otherwise. Not thread-safe, every reading thread uses
+ * its own encoder.
+ * <p>
+ * The heap used by the field values of each record, compact and plain, is estimated for the
+ * stats, assuming a 64-bit JVM with compressed references and compact strings. The compact
+ * estimate counts whole arena blocks, including their unused tails, and the growth of the
+ * dictionary caused by the records encoded.
+ *
+ */
+final class RecordEncoder {
+    /** Size of an arena block in bytes. */
+    private static final int BLOCK_SIZE = 64 * 1024;
+    /** Maximal number of bytes of a varint header. */
+    private static final int MAX_HEADER_BYTES = 5;
+    /** Bits of a varint byte carrying data. */
+    private static final int VARINT_DATA_BITS = 7;
+    /** Mask of the data bits of a varint byte. */
+    private static final int VARINT_DATA_MASK = 0x7F;
+    /** Flag of a varint byte followed by further bytes. */
+    private static final int VARINT_CONTINUATION = 0x80;
+    /** Highest character encoded to a single UTF-8 byte. */
+    private static final char MAX_ONE_BYTE_CHAR = 0x7F;
+    /** Highest character encoded to two UTF-8 bytes. */
+    private static final char MAX_TWO_BYTE_CHAR = 0x7FF;
+    /** Number of UTF-8 bytes of a surrogate pair. */
+    private static final int SURROGATE_PAIR_BYTES = 4;
+    /** Number of UTF-8 bytes of other characters. */
+    private static final int THREE_BYTES = 3;
+    /** Prefix of the lead byte of a two byte UTF-8 sequence. */
+    private static final int TWO_BYTE_PREFIX = 0xC0;
+    /** Prefix of the lead byte of a three byte UTF-8 sequence. */
+    private static final int THREE_BYTE_PREFIX = 0xE0;
+    /** Prefix of the lead byte of a four byte UTF-8 sequence. */
+    private static final int FOUR_BYTE_PREFIX = 0xF0;
+    /** Prefix of a continuation byte of a UTF-8 sequence. */
+    private static final int CONTINUATION_PREFIX = 0x80;
+    /** Mask of the data bits of a continuation byte of a UTF-8 sequence. */
+    private static final int CONTINUATION_MASK = 0x3F;
+    /** Bits of a continuation byte of a UTF-8 sequence carrying data. */
+    private static final int CONTINUATION_BITS = 6;
+
+    /** Estimated heap bytes of a {@link CsvRecord} object. */
+    private static final int RECORD_OBJECT_BYTES = 56;
+    /** Estimated heap bytes of an array header. */
+    private static final int ARRAY_HEADER_BYTES = 16;
+    /** Estimated heap bytes of a reference. */
+    private static final int REFERENCE_BYTES = 4;
+    /** Estimated heap bytes of a {@link String} object, without its content. */
+    private static final int STRING_OBJECT_BYTES = 24;
+    /** Alignment of heap objects in bytes. */
+    private static final int OBJECT_ALIGNMENT = 8;
+
+    /** Dictionary of the file the records are read from. */
+    private final RecordDictionary dictionary;
+    /** Codes of the fields of the record being encoded, -1 for values stored as they are. */
+    private int[] codes = new int[0];
+    /** Current arena block. */
+    private byte[] block = new byte[0];
+    /** Position of the free part of the current block. */
+    private int position;
+    /** Number of records encoded. */
+    private long recordNr;
+    /** Estimated heap bytes of the records encoded. */
+    private long heapByteNr;
+    /** Estimated heap bytes the records encoded would use held as they are. */
+    private long plainHeapByteNr;
+
+    /**
+     * Ctor.
+     *
+     * @param dictionary
+     *            dictionary of the file the records are read from
+     */
+    RecordEncoder(final RecordDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Encodes a record.
+     *
+     * @param recordNr
+     *            number of the record within the CSV file
+     * @param fields
+     *            field values of the record
+     * @param endOffset
+     *            byte offset of the end of the record within the CSV file, or -1 if not known
+     * @param inputFile
+     *            {@link InputFile} of a multi-file import the record was read from, or
+     *            <code>null</code>
+     * @return The compact record
+     */
+    CsvRecord encode(
+            final long recordNr,
+            final String[] fields,
+            final long endOffset,
+            final InputFile inputFile) {
+        if (codes.length < fields.length) {
+            codes = new int[fields.length];
+        }
+        int size = 0;
+        for (int i = 0; i < fields.length; i++) {
+            codes[i] = dictionary.encode(i, fields[i]);
+            size += codes[i] >= 0 ? MAX_HEADER_BYTES
+                    : MAX_HEADER_BYTES + utf8Length(fields[i]);
+        }
+        heapByteNr += dictionary.takeHeapByteDelta();
+        if (block.length - position < size) {
+            block = new byte[Math.max(BLOCK_SIZE, size)];
+            position = 0;
+            heapByteNr += align(ARRAY_HEADER_BYTES + (long) block.length);
+        }
+        final int start = position;
+        for (int i = 0; i < fields.length; i++) {
+            if (codes[i] >= 0) {
+                position = writeVarint(block, position, codes[i] * 2 + 1);
+            } else {
+                position = writeVarint(block, position, utf8Length(fields[i]) * 2);
+                position = writeUtf8(block, position, fields[i]);
+            }
+        }
+        this.recordNr++;
+        heapByteNr += RECORD_OBJECT_BYTES;
+        plainHeapByteNr += RECORD_OBJECT_BYTES + estimatePlainBytes(fields);
+        return new CsvRecord(recordNr, dictionary, block, start, fields.length, endOffset,
+                inputFile);
+    }
+
+    /**
+     * Returns the number of records encoded.
+     *
+     * @return number of records
+     */
+    long getRecordNr() {
+        return recordNr;
+    }
+
+    /**
+     * Returns the estimated heap bytes of the records encoded, counting the arena blocks
+     * allocated and the growth of the dictionary.
+     *
+     * @return heap bytes
+     */
+    long getHeapByteNr() {
+        return heapByteNr;
+    }
+
+    /**
+     * Returns the estimated heap bytes the records encoded would use held as they are.
+     *
+     * @return heap bytes
+     */
+    long getPlainHeapByteNr() {
+        return plainHeapByteNr;
+    }
+
+    /**
+     * Decodes the fields of a compact record.
+     *
+     * @param dictionary
+     *            dictionary of the file of the record
+     * @param arena
+     *            arena block holding the record
+     * @param offset
+     *            offset of the record within the block
+     * @param fieldNr
+     *            number of fields of the record
+     * @return Field values
+     */
+    static String[] decode(
+            final RecordDictionary dictionary,
+            final byte[] arena,
+            final int offset,
+            final int fieldNr) {
+        final String[] fields = new String[fieldNr];
+        int position = offset;
+        for (int i = 0; i < fieldNr; i++) {
+            int header = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = arena[position++];
+                header |= (b & VARINT_DATA_MASK) << shift;
+                shift += VARINT_DATA_BITS;
+            } while ((b & VARINT_CONTINUATION) != 0);
+            if ((header & 1) != 0) {
+                fields[i] = dictionary.decode(i, header >>> 1);
+            } else {
+                final int length = header >>> 1;
+                fields[i] = new String(arena, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Decodes a single field of a compact record, skipping the fields before it.
+     *
+     * @param dictionary
+     *            dictionary of the file of the record
+     * @param arena
+     *            arena block holding the record
+     * @param offset
+     *            offset of the record within the block
+     * @param column
+     *            index of the field, less than the number of fields of the record
+     * @return Field value
+     */
+    static String decodeField(
+            final RecordDictionary dictionary,
+            final byte[] arena,
+            final int offset,
+            final int column) {
+        int position = offset;
+        for (int i = 0;; i++) {
+            int header = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = arena[position++];
+                header |= (b & VARINT_DATA_MASK) << shift;
+                shift += VARINT_DATA_BITS;
+            } while ((b & VARINT_CONTINUATION) != 0);
+            final boolean coded = (header & 1) != 0;
+            if (i == column) {
+                return coded ? dictionary.decode(i, header >>> 1)
+                        : new String(arena, position, header >>> 1, StandardCharsets.UTF_8);
+            }
+            if (!coded) {
+                position += header >>> 1;
+            }
+        }
+    }
+
+    /**
+     * Estimates the heap used by the field values of a record held as they are: the array of
+     * the fields and a {@link String} per field.
+     *
+     * @param fields
+     *            field values
+     * @return Estimated heap bytes
+     */
+    static long estimatePlainBytes(final String[] fields) {
+        long bytes = estimateReferenceArrayBytes(fields.length);
+        for (final String field : fields) {
+            bytes += estimateStringBytes(field);
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the heap used by a {@link String}.
+     *
+     * @param value
+     *            value
+     * @return Estimated heap bytes
+     */
+    static long estimateStringBytes(final String value) {
+        return STRING_OBJECT_BYTES
+                + align(ARRAY_HEADER_BYTES + (long) value.length() * (isLatin1(value) ? 1 : 2));
+    }
+
+    /**
+     * Estimates the heap used by an array of references.
+     *
+     * @param length
+     *            length of the array
+     * @return Estimated heap bytes
+     */
+    static long estimateReferenceArrayBytes(final int length) {
+        return align(ARRAY_HEADER_BYTES + (long) REFERENCE_BYTES * length);
+    }
+
+    /**
+     * Tells whether a value is stored with a byte per character by a JVM using compact strings.
+     *
+     * @param value
+     *            value
+     * @return <code>true</code> if all characters are Latin-1
+     */
+    private static boolean isLatin1(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Aligns a size to the alignment of heap objects.
+     *
+     * @param bytes
+     *            size in bytes
+     * @return Aligned size in bytes
+     */
+    private static long align(final long bytes) {
+        return (bytes + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+    }
+
+    /**
+     * Writes a varint.
+     *
+     * @param target
+     *            target array
+     * @param offset
+     *            offset to write at
+     * @param value
+     *            non-negative value
+     * @return Offset following the varint
+     */
+    private static int writeVarint(final byte[] target, final int offset, final int value) {
+        int position = offset;
+        int remaining = value;
+        while (remaining > VARINT_DATA_MASK) {
+            target[position++] = (byte) (remaining & VARINT_DATA_MASK | VARINT_CONTINUATION);
+            remaining >>>= VARINT_DATA_BITS;
+        }
+        target[position++] = (byte) remaining;
+        return position;
+    }
+
+    /**
+     * Returns the number of bytes of a value encoded to UTF-8, unpaired surrogates being
+     * replaced by <code>?</code> like by {@link String#getBytes(java.nio.charset.Charset)}.
+     *
+     * @param value
+     *            value
+     * @return Number of bytes
+     */
+    private static int utf8Length(final String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c <= MAX_ONE_BYTE_CHAR) {
+                length++;
+            } else if (c <= MAX_TWO_BYTE_CHAR) {
+                length += 2;
+            } else if (isSurrogatePair(value, i)) {
+                length += SURROGATE_PAIR_BYTES;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += THREE_BYTES;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes a value encoded to UTF-8, unpaired surrogates being replaced by <code>?</code>.
+     *
+     * @param target
+     *            target array
+     * @param offset
+     *            offset to write at
+     * @param value
+     *            value
+     * @return Offset following the value
+     */
+    private static int writeUtf8(final byte[] target, final int offset, final String value) {
+        int position = offset;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c <= MAX_ONE_BYTE_CHAR) {
+                target[position++] = (byte) c;
+            } else if (c <= MAX_TWO_BYTE_CHAR) {
+                target[position++] = (byte) (TWO_BYTE_PREFIX | c >> CONTINUATION_BITS);
+                target[position++] = (byte) (CONTINUATION_PREFIX | c & CONTINUATION_MASK);
+            } else if (isSurrogatePair(value, i)) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                target[position++] =
+                        (byte) (FOUR_BYTE_PREFIX | codePoint >> THREE_BYTES * CONTINUATION_BITS);
+                target[position++] = (byte) (CONTINUATION_PREFIX
+                        | codePoint >> 2 * CONTINUATION_BITS & CONTINUATION_MASK);
+                target[position++] = (byte) (CONTINUATION_PREFIX
+                        | codePoint >> CONTINUATION_BITS & CONTINUATION_MASK);
+                target[position++] = (byte) (CONTINUATION_PREFIX | codePoint & CONTINUATION_MASK);
+            } else if (Character.isSurrogate(c)) {
+                target[position++] = (byte) '?';
+            } else {
+                target[position++] = (byte) (THREE_BYTE_PREFIX | c >> 2 * CONTINUATION_BITS);
+                target[position++] = (byte) (CONTINUATION_PREFIX
+                        | c >> CONTINUATION_BITS & CONTINUATION_MASK);
+                target[position++] = (byte) (CONTINUATION_PREFIX | c & CONTINUATION_MASK);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Tells whether a character of a value starts a valid surrogate pair.
+     *
+     * @param value
+     *            value
+     * @param index
+     *            index of the character
+     * @return <code>true</code> if the character is a high surrogate followed by a low one
+     */
+    private static boolean isSurrogatePair(final String value, final int index) {
+        return Character.isHighSurrogate(value.charAt(index)) && index + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(index + 1));
+    }
+}
@@ -0,0 +1,249 @@
+package hu.metainf.jiracsvuploader.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * Circuit breaker pausing uploads when the Jira instance keeps failing. The outcomes of the last
+ * uploads are kept in a sliding window; when the failure rate within the window exceeds the
+ * threshold, the circuit opens and no upload is dispatched for the open period. After that a few
+ * trial uploads are let through: the circuit closes if all of them succeed, and opens again if
+ * any of them fails.
+ *
+ */
+public class CircuitBreaker {
+    /** Number of outcomes kept in the sliding window. */
+    private static final int WINDOW_SIZE = 100;
+    /** Minimal number of outcomes in the window needed for opening the circuit. */
+    private static final int MIN_OUTCOME_NR = 20;
+    /** Number of trial uploads let through after the open period. */
+    private static final int TRIAL_NR = 5;
+
+    /**
+     * States of the circuit.
+     *
+     */
+    private enum State {
+        /** Uploads are dispatched. */
+        CLOSED,
+        /** Uploads are paused. */
+        OPEN,
+        /** Trial uploads are dispatched. */
+        HALF_OPEN
+    }
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+    /** Failure rate opening the circuit, or 0 if the circuit never opens. */
+    private final double failureRateThreshold;
+    /** Length of the open period in nanoseconds. */
+    private final long openNanos;
+    /** Lock guarding the state of the circuit. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** {@link Condition} signalled when the circuit lets uploads through again. */
+    private final Condition dispatchAllowed = lock.newCondition();
+    /** Outcomes in the sliding window, <code>true</code> for failures. */
+    private final boolean[] window = new boolean[WINDOW_SIZE];
+    /** Index of the next outcome in the window. */
+    private int windowIndex;
+    /** Number of outcomes in the window. */
+    private int outcomeNr;
+    /** Number of failures in the window. */
+    private int failureNr;
+    /** Current state of the circuit. */
+    private State state = State.CLOSED;
+    /** {@link System#nanoTime()} value of the last opening of the circuit. */
+    private long openTime;
+    /** Number of trial uploads dispatched in half open state. */
+    private int trialsDispatched;
+    /** Number of successful trial uploads in half open state. */
+    private int trialsSucceeded;
+
+    /**
+     * Ctor.
+     *
+     * @param failureRateThreshold
+     *            failure rate between 0 and 1 opening the circuit, 0 disables the circuit breaker
+     * @param openMillis
+     *            length of the open period in milliseconds
+     */
+    public CircuitBreaker(final double failureRateThreshold, final long openMillis) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Asks permission for dispatching an upload without waiting.
+     *
+     * @return <code>true</code> if the upload can be dispatched
+     */
+    public boolean tryAcquirePermission() {
+        lock.lock();
+        try {
+            return tryAcquireLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Asks permission for dispatching an upload, waiting while the circuit is open.
+     *
+     * @throws InterruptedException
+     *             If waiting is interrupted
+     */
+    public void acquirePermission() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!tryAcquireLocked()) {
+                final long remainingNanos = getRemainingOpenNanos();
+                if (remainingNanos > 0) {
+                    dispatchAllowed.awaitNanos(remainingNanos);
+                } else {
+                    dispatchAllowed.await();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back the permission of an upload which is not dispatched after all, like when its
+     * record can't be transformed to JSON, so no outcome will be registered for it. In half open
+     * state the trial is let through to another upload.
+     */
+    public void releasePermission() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && trialsDispatched > trialsSucceeded) {
+                trialsDispatched--;
+                dispatchAllowed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the time remaining from the open period.
+     *
+     * @return time in milliseconds, or 0 if the circuit is not open
+     */
+    public long getRemainingOpenMillis() {
+        lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis(getRemainingOpenNanos());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers the outcome of a dispatched upload.
+     *
+     * @param failure
+     *            <code>true</code> if the upload failed in a way signalling a problem of the Jira
+     *            instance
+     */
+    public void onResult(final boolean failure) {
+        if (failureRateThreshold <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (failure) {
+                    open();
+                } else if (++trialsSucceeded >= TRIAL_NR) {
+                    close();
+                }
+                return;
+            }
+            if (outcomeNr == WINDOW_SIZE && window[windowIndex]) {
+                failureNr--;
+            }
+            window[windowIndex] = failure;
+            windowIndex = (windowIndex + 1) % WINDOW_SIZE;
+            outcomeNr = Math.min(outcomeNr + 1, WINDOW_SIZE);
+            if (failure) {
+                failureNr++;
+            }
+            if (state == State.CLOSED && outcomeNr >= MIN_OUTCOME_NR
+                    && failureNr > failureRateThreshold * outcomeNr) {
+                open();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks and updates the state when asked for permission. Called while holding the lock.
+     *
+     * @return <code>true</code> if the upload can be dispatched
+     */
+    private boolean tryAcquireLocked() {
+        if (state == State.OPEN) {
+            if (getRemainingOpenNanos() > 0) {
+                return false;
+            }
+            logger.info("Circuit breaker is half open, dispatching {} trial upload(s)", TRIAL_NR);
+            StatData.addSumValue(StatTypeKeys.CIRCUIT_OPEN_TIME, System.nanoTime() - openTime);
+            state = State.HALF_OPEN;
+            trialsDispatched = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsDispatched >= TRIAL_NR) {
+                return false;
+            }
+            trialsDispatched++;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the time remaining from the open period. Called while holding the lock.
+     *
+     * @return time in nanoseconds, or 0 if the circuit is not open
+     */
+    private long getRemainingOpenNanos() {
+        if (state != State.OPEN) {
+            return 0L;
+        }
+        return Math.max(0L, openTime + openNanos - System.nanoTime());
+    }
+
+    /**
+     * Opens the circuit. Called while holding the lock.
+     */
+    private void open() {
+        logger.warn("Circuit breaker opened, pausing uploads for {} ms after {} failure(s) of {}",
+                TimeUnit.NANOSECONDS.toMillis(openNanos), failureNr, outcomeNr);
+        StatData.addIncrementedValue(StatTypeKeys.CIRCUIT_OPEN_NR);
+        state = State.OPEN;
+        openTime = System.nanoTime();
+        // Waiters for a half open circuit have to start waiting for the open period
+        dispatchAllowed.signalAll();
+    }
+
+    /**
+     * Closes the circuit, clearing the window. Called while holding the lock.
+     */
+    private void close() {
+        logger.info("Circuit breaker closed, resuming uploads");
+        state = State.CLOSED;
+        windowIndex = 0;
+        outcomeNr = 0;
+        failureNr = 0;
+        dispatchAllowed.signalAll();
+    }
+}
@@ -0,0 +1,141 @@
+package hu.metainf.jiracsvuploader.retry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the CSV records which finally failed to upload to a rejects file, in the format of the
+ * input file, so the file can be used as input for replaying the failed uploads.
+ *
+ */
+public class RejectsCsvWriter implements Closeable {
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(RejectsCsvWriter.class);
+    /** Path of the rejects file. */
+    private final String path;
+    /** {@link Writer} of the rejects file. */
+    private final Writer writer;
+    /** Number of records written. */
+    private long rejectNr;
+    /** Whether the header row is to be skipped, as the file already has one. */
+    private final boolean skipHeader;
+
+    /**
+     * Ctor, creating or truncating the rejects file.
+     *
+     * @param path
+     *            path of the rejects file
+     * @throws IOException
+     *             If the file can't be created
+     */
+    public RejectsCsvWriter(final String path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param path
+     *            path of the rejects file
+     * @param append
+     *            <code>true</code> to append to an existing rejects file, as done when resuming
+     *            an import, <code>false</code> to truncate it
+     * @throws IOException
+     *             If the file can't be created
+     */
+    public RejectsCsvWriter(final String path, final boolean append) throws IOException {
+        this.path = path;
+        final Path filePath = Paths.get(path);
+        if (append) {
+            skipHeader = Files.exists(filePath) && Files.size(filePath) > 0;
+            writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            skipHeader = false;
+            writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes the header row of the rejects file, unless appending to a file having one.
+     *
+     * @param headerRow
+     *            field values of the header row of the input file
+     */
+    public synchronized void writeHeader(final String[] headerRow) {
+        if (!skipHeader) {
+            writeRecord(headerRow);
+        }
+    }
+
+    /**
+     * Writes a rejected record. The record is flushed right away, so it is not lost if the
+     * import is interrupted after journaling its failure.
+     *
+     * @param fields
+     *            field values of the record
+     */
+    public synchronized void writeReject(final String[] fields) {
+        writeRecord(fields);
+        try {
+            writer.flush();
+        } catch (final IOException e) {
+            logger.error("Failed to flush rejected record to {}: {}", path, e.getMessage());
+        }
+        rejectNr++;
+    }
+
+    /**
+     * Writes a record, quoting fields as needed.
+     *
+     * @param fields
+     *            field values of the record
+     */
+    private void writeRecord(final String[] fields) {
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(fields[i]);
+            }
+            writer.write('\n');
+        } catch (final IOException e) {
+            logger.error("Failed to write rejected record to {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a field, quoting it if it contains a separator, quote or line break.
+     *
+     * @param field
+     *            field value
+     * @throws IOException
+     *             If writing fails
+     */
+    private void writeField(final String field) throws IOException {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0
+                && field.indexOf('\r') < 0) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        writer.write(field.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+        logger.info("Wrote {} rejected record(s) to {}", rejectNr, path);
+    }
+}
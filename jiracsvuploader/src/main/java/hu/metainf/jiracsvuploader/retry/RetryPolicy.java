@@ -0,0 +1,88 @@
+package hu.metainf.jiracsvuploader.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+
+/**
+ * Decides whether a failed upload is retried and how long to wait before the retry. Uploads are
+ * retried when no response was received, on request timeouts, rate limiting and server errors;
+ * other client errors fail fast, as sending the same issue again won't change the outcome. Retry
+ * delays grow exponentially with full jitter, but are never shorter than the delay asked by the
+ * server in its <code>Retry-After</code> header.
+ *
+ */
+public class RetryPolicy {
+    /** Status code registered when no response was received. */
+    private static final int STATUS_CODE_NO_RESPONSE = 0;
+    /** Status code of request timeout responses. */
+    private static final int STATUS_CODE_REQUEST_TIMEOUT = 408;
+    /** Status code of rate limited responses. */
+    private static final int STATUS_CODE_TOO_MANY_REQUESTS = 429;
+    /** Lower bound (inclusive) of server error status codes. */
+    private static final int STATUS_CODE_SERVER_ERROR_MIN = 500;
+    /** Upper bound (exclusive) of server error status codes. */
+    private static final int STATUS_CODE_SERVER_ERROR_MAX = 600;
+    /** Largest exponent used for growing the delay, to avoid overflow. */
+    private static final int MAX_BACKOFF_EXPONENT = 30;
+
+    /** Maximal number of retries of an upload. */
+    private final int maxRetries;
+    /** Base delay of the first retry in milliseconds. */
+    private final long baseDelayMillis;
+    /** Maximal delay of a retry in milliseconds, not applied to server requested delays. */
+    private final long maxDelayMillis;
+
+    /**
+     * Ctor.
+     *
+     * @param maxRetries
+     *            maximal number of retries of an upload, 0 disables retrying
+     * @param baseDelayMillis
+     *            base delay of the first retry in milliseconds
+     * @param maxDelayMillis
+     *            maximal delay of a retry in milliseconds
+     */
+    public RetryPolicy(
+            final int maxRetries,
+            final long baseDelayMillis,
+            final long maxDelayMillis) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Checks if a response signals a failure which may go away when retrying.
+     *
+     * @param uploadResponse
+     *            response of the upload
+     * @return <code>true</code> if the upload may be retried
+     */
+    public boolean isRetryable(final UploadResponse uploadResponse) {
+        final int statusCode = uploadResponse.getStatusCode();
+        return statusCode == STATUS_CODE_NO_RESPONSE || statusCode == STATUS_CODE_REQUEST_TIMEOUT
+                || statusCode == STATUS_CODE_TOO_MANY_REQUESTS
+                || statusCode >= STATUS_CODE_SERVER_ERROR_MIN
+                        && statusCode < STATUS_CODE_SERVER_ERROR_MAX;
+    }
+
+    /**
+     * Returns the delay before retrying a failed upload.
+     *
+     * @param retryNr
+     *            number of retries done already
+     * @param uploadResponse
+     *            response of the last attempt
+     * @return delay in milliseconds, or -1 if the upload is not to be retried
+     */
+    public long getRetryDelayMillis(final int retryNr, final UploadResponse uploadResponse) {
+        if (retryNr >= maxRetries || !isRetryable(uploadResponse)) {
+            return -1L;
+        }
+        final long backoff = Math.min(maxDelayMillis,
+                baseDelayMillis << Math.min(retryNr, MAX_BACKOFF_EXPONENT));
+        final long jitteredDelay = ThreadLocalRandom.current().nextLong(backoff + 1);
+        return Math.max(jitteredDelay, uploadResponse.getRetryAfterMillis());
+    }
+}
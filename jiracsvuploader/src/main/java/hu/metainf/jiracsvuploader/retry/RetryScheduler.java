@@ -0,0 +1,106 @@
+package hu.metainf.jiracsvuploader.retry;
+
+import java.io.Closeable;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * Schedules retries of failed uploads on a delay queue served by a single timer thread, so no
+ * worker thread sleeps while waiting for a retry. Retry actions are expected to be short and
+ * non-blocking, as they run on the timer thread.
+ *
+ */
+public class RetryScheduler implements Closeable {
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(RetryScheduler.class);
+    /** {@link RetryPolicy} deciding on retries. */
+    private final RetryPolicy retryPolicy;
+    /** {@link CircuitBreaker} pausing uploads while the Jira instance keeps failing. */
+    private final CircuitBreaker circuitBreaker;
+    /** Timer running the retries. */
+    private final ScheduledThreadPoolExecutor timer;
+
+    /**
+     * Ctor.
+     *
+     * @param retryPolicy
+     *            {@link RetryPolicy} deciding on retries
+     * @param circuitBreaker
+     *            {@link CircuitBreaker} pausing uploads while the Jira instance keeps failing
+     */
+    public RetryScheduler(final RetryPolicy retryPolicy, final CircuitBreaker circuitBreaker) {
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+        timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "upload-retry-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Returns the {@link CircuitBreaker} pausing uploads.
+     *
+     * @return {@link CircuitBreaker} instance
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Registers the outcome of an upload attempt and schedules a retry if the policy allows it.
+     *
+     * @param retryNr
+     *            number of retries done already
+     * @param uploadResponse
+     *            response of the attempt
+     * @param retry
+     *            action retrying the upload
+     * @return <code>true</code> if a retry was scheduled, <code>false</code> if the outcome is
+     *         final
+     */
+    public boolean onResult(
+            final int retryNr,
+            final UploadResponse uploadResponse,
+            final Runnable retry) {
+        circuitBreaker.onResult(retryPolicy.isRetryable(uploadResponse));
+        if (uploadResponse.isSuccessful()) {
+            return false;
+        }
+        final long delayMillis = retryPolicy.getRetryDelayMillis(retryNr, uploadResponse);
+        if (delayMillis < 0) {
+            return false;
+        }
+        logger.debug("Retrying upload with status code {} in {} ms, retry #{}",
+                uploadResponse.getStatusCode(), delayMillis, retryNr + 1);
+        StatData.addIncrementedValue(StatTypeKeys.RETRIED_UPLOAD_NR);
+        schedule(retry, delayMillis);
+        return true;
+    }
+
+    /**
+     * Schedules an action to run after a delay, e.g. for deferring a retry which can't be
+     * dispatched yet.
+     *
+     * @param action
+     *            action to run
+     * @param delayMillis
+     *            delay in milliseconds
+     */
+    public void schedule(final Runnable action, final long delayMillis) {
+        timer.schedule(action, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
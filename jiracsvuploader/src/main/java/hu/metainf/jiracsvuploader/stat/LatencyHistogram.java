@@ -0,0 +1,263 @@
+package hu.metainf.jiracsvuploader.stat;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of non-negative values with logarithmic buckets. Each power of two range
+ * is split to 16 linear sub-buckets, so recorded values are kept with a relative error below
+ * 6.25%, using a fixed amount of memory and without allocation when recording. Recording threads
+ * are spread over a fixed number of stripes to avoid contention; stripes are summed up when read.
+ * Histograms can be merged into each other.
+ *
+ */
+public class LatencyHistogram {
+    /** Number of bits used for the sub-bucket index. */
+    private static final int SUB_BUCKET_BITS = 4;
+    /** Number of sub-buckets per power of two range. */
+    private static final int SUB_BUCKET_NR = 1 << SUB_BUCKET_BITS;
+    /** Total number of buckets, covering all non-negative long values. */
+    private static final int BUCKET_NR = SUB_BUCKET_NR * (Long.SIZE - SUB_BUCKET_BITS);
+    /** Index of the value count slot within a stripe. */
+    private static final int COUNT_SLOT = BUCKET_NR;
+    /** Index of the value sum slot within a stripe. */
+    private static final int SUM_SLOT = BUCKET_NR + 1;
+    /** Index of the minimal value slot within a stripe. */
+    private static final int MIN_SLOT = BUCKET_NR + 2;
+    /** Index of the maximal value slot within a stripe. */
+    private static final int MAX_SLOT = BUCKET_NR + 3;
+    /** Number of slots within a stripe. */
+    private static final int STRIPE_SIZE = BUCKET_NR + 4;
+    /** Maximal number of stripes. */
+    private static final int MAX_STRIPE_NR = 64;
+    /** Multiplier used for spreading thread ids over stripes. */
+    private static final long STRIPE_HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /** Stripes holding bucket counts, value count, sum, minimum and maximum. */
+    private final AtomicLongArray[] stripes;
+    /** Mask selecting a stripe index from a hash value. */
+    private final int stripeMask;
+
+    /**
+     * Ctor.
+     */
+    public LatencyHistogram() {
+        int stripeNr = 1;
+        while (stripeNr < Runtime.getRuntime().availableProcessors() * 2
+                && stripeNr < MAX_STRIPE_NR) {
+            stripeNr <<= 1;
+        }
+        stripes = new AtomicLongArray[stripeNr];
+        for (int i = 0; i < stripeNr; i++) {
+            stripes[i] = new AtomicLongArray(STRIPE_SIZE);
+            stripes[i].set(MIN_SLOT, Long.MAX_VALUE);
+        }
+        stripeMask = stripeNr - 1;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value
+     *            value to record
+     */
+    public void record(final long value) {
+        final long recordedValue = Math.max(value, 0L);
+        final AtomicLongArray stripe = stripes[(int) ((Thread.currentThread().getId()
+                * STRIPE_HASH_MULTIPLIER) >>> (Long.SIZE - 16)) & stripeMask];
+        stripe.incrementAndGet(bucketIndex(recordedValue));
+        stripe.incrementAndGet(COUNT_SLOT);
+        stripe.addAndGet(SUM_SLOT, recordedValue);
+        accumulateMin(stripe, recordedValue);
+        accumulateMax(stripe, recordedValue);
+    }
+
+    /**
+     * Adds all values recorded by another histogram to this histogram.
+     *
+     * @param other
+     *            histogram to merge
+     */
+    public void merge(final LatencyHistogram other) {
+        final AtomicLongArray target = stripes[0];
+        for (final AtomicLongArray source : other.stripes) {
+            for (int i = 0; i < BUCKET_NR; i++) {
+                final long bucketCount = source.get(i);
+                if (bucketCount != 0) {
+                    target.addAndGet(i, bucketCount);
+                }
+            }
+            target.addAndGet(COUNT_SLOT, source.get(COUNT_SLOT));
+            target.addAndGet(SUM_SLOT, source.get(SUM_SLOT));
+            accumulateMin(target, source.get(MIN_SLOT));
+            accumulateMax(target, source.get(MAX_SLOT));
+        }
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return number of values recorded
+     */
+    public long getCount() {
+        return sumSlot(COUNT_SLOT);
+    }
+
+    /**
+     * Returns the sum of values recorded.
+     *
+     * @return sum of values recorded
+     */
+    public long getSum() {
+        return sumSlot(SUM_SLOT);
+    }
+
+    /**
+     * Returns the smallest value recorded.
+     *
+     * @return smallest value recorded, or 0 if no value was recorded
+     */
+    public long getMin() {
+        long min = Long.MAX_VALUE;
+        for (final AtomicLongArray stripe : stripes) {
+            min = Math.min(min, stripe.get(MIN_SLOT));
+        }
+        return min == Long.MAX_VALUE ? 0L : min;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return largest value recorded, or 0 if no value was recorded
+     */
+    public long getMax() {
+        long max = 0L;
+        for (final AtomicLongArray stripe : stripes) {
+            max = Math.max(max, stripe.get(MAX_SLOT));
+        }
+        return max;
+    }
+
+    /**
+     * Returns the arithmetic mean of values recorded.
+     *
+     * @return mean of values recorded, or 0 if no value was recorded
+     */
+    public double getMean() {
+        final long valueNr = getCount();
+        return valueNr == 0 ? 0.0 : (double) getSum() / valueNr;
+    }
+
+    /**
+     * Returns the value at a percentile of the recorded values, which is the upper bound of the
+     * bucket holding the value, capped by the largest value recorded.
+     *
+     * @param percentile
+     *            percentile between 0 and 100
+     * @return value at the percentile, or 0 if no value was recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long totalCount = 0L;
+        final long[] counts = new long[BUCKET_NR];
+        for (final AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKET_NR; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        for (int i = 0; i < BUCKET_NR; i++) {
+            totalCount += counts[i];
+        }
+        if (totalCount == 0) {
+            return 0L;
+        }
+        final long targetCount =
+                Math.max(1L, (long) Math.ceil(totalCount * Math.min(percentile, 100.0) / 100.0));
+        final long max = getMax();
+        long cumulativeCount = 0L;
+        for (int i = 0; i < BUCKET_NR; i++) {
+            cumulativeCount += counts[i];
+            if (cumulativeCount >= targetCount) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Sums up a slot over all stripes.
+     *
+     * @param slot
+     *            slot index
+     * @return sum of the slot values
+     */
+    private long sumSlot(final int slot) {
+        long sum = 0L;
+        for (final AtomicLongArray stripe : stripes) {
+            sum += stripe.get(slot);
+        }
+        return sum;
+    }
+
+    /**
+     * Updates the minimal value of a stripe.
+     *
+     * @param stripe
+     *            stripe to update
+     * @param value
+     *            value recorded
+     */
+    private static void accumulateMin(final AtomicLongArray stripe, final long value) {
+        long current = stripe.get(MIN_SLOT);
+        while (value < current && !stripe.compareAndSet(MIN_SLOT, current, value)) {
+            current = stripe.get(MIN_SLOT);
+        }
+    }
+
+    /**
+     * Updates the maximal value of a stripe.
+     *
+     * @param stripe
+     *            stripe to update
+     * @param value
+     *            value recorded
+     */
+    private static void accumulateMax(final AtomicLongArray stripe, final long value) {
+        long current = stripe.get(MAX_SLOT);
+        while (value > current && !stripe.compareAndSet(MAX_SLOT, current, value)) {
+            current = stripe.get(MAX_SLOT);
+        }
+    }
+
+    /**
+     * Returns the index of the bucket holding a value.
+     *
+     * @param value
+     *            non-negative value
+     * @return bucket index
+     */
+    private static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_NR) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKET_NR;
+        return SUB_BUCKET_NR * (shift + 1) + subBucket;
+    }
+
+    /**
+     * Returns the largest value held by a bucket.
+     *
+     * @param index
+     *            bucket index
+     * @return upper bound of the bucket
+     */
+    private static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_NR) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_NR - 1;
+        final long subBucket = index % SUB_BUCKET_NR;
+        final long lowerBound = (SUB_BUCKET_NR + subBucket) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
@@ -1,95 +1,87 @@
 package hu.metainf.jiracsvuploader.stat;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Data holder class for raw values used to produce statistical data.
+ * Data holder class for raw values used to produce statistical data. All updates are lock-free
+ * and don't lose values under contention: sums are kept in {@link LongAdder}s, minimums and
+ * maximums in {@link LongAccumulator}s and value distributions in {@link LatencyHistogram}s.
  *
  */
 public final class StatData {
     /** Ctor. */
     private StatData() {}
 
-    /** {@link Map} for storing runtime raw stat data values. */
-    private static final Map<String, Long> DATA_VALUE_MAP = new ConcurrentHashMap<String, Long>();
+    /** {@link Map} for storing runtime raw stat data values set directly. */
+    private static final Map<String, AtomicLong> DATA_VALUE_MAP =
+            new ConcurrentHashMap<String, AtomicLong>();
+    /** {@link Map} for storing runtime summarized stat data values. */
+    private static final Map<String, LongAdder> SUM_VALUE_MAP =
+            new ConcurrentHashMap<String, LongAdder>();
+    /** {@link Map} for storing runtime minimal and maximal stat data values. */
+    private static final Map<String, LongAccumulator> EXTREME_VALUE_MAP =
+            new ConcurrentHashMap<String, LongAccumulator>();
+    /** {@link Map} for storing runtime value histograms. */
+    private static final Map<String, LatencyHistogram> HISTOGRAM_MAP =
+            new ConcurrentHashMap<String, LatencyHistogram>();
 
     /**
-     * Adds a value to a property, updating any previous value set.
+     * Sets the value of a property, overwriting any previous value set.
      *
      * @param propertyId
      *            property identifier value
      * @param value
      *            new property value
-     * @return The previous value set, or <code>null</code> if no previous value was set to the
-     *         property id.
      */
-    public static Long addValue(final String propertyId, final Long value) {
-        return DATA_VALUE_MAP.put(propertyId, value);
-    }
-
-    /**
-     * Sets an average value to a property. When setting a new value, the average of the old value
-     * and the new value is calculated and set as value for the property.
-     *
-     * @param propertyId
-     *            property identifier value
-     * @param value
-     *            new value to be averaged
-     * @return The previous value set, or <code>null</code> if no previous value was set to the
-     *         property id.
-     */
-    public static Long setAverageValue(final String propertyId, final Long value) {
-        if (!DATA_VALUE_MAP.containsKey(propertyId)) {
-            StatData.addValue(propertyId, 0L);
+    public static void addValue(final String propertyId, final long value) {
+        AtomicLong dataValue = DATA_VALUE_MAP.get(propertyId);
+        if (dataValue == null) {
+            dataValue = DATA_VALUE_MAP.computeIfAbsent(propertyId, key -> new AtomicLong());
         }
-        final Long currentVal = DATA_VALUE_MAP.get(propertyId);
-        final Long newVal = (currentVal + value) / 2;
-        return StatData.addValue(propertyId, newVal);
+        dataValue.set(value);
     }
 
     /**
      * Sets a minimal value to a property. When setting a new value, the old value and the new value
-     * is compared and the lower value is set as value for the property.
+     * is compared and the lower value is kept as value for the property.
      *
      * @param propertyId
      *            property identifier value
      * @param value
-     *            new value to be calculates an minimum
-     * @return The previous value set, or <code>null</code> if no previous value was set to the
-     *         property id.
+     *            new value to be calculated as minimum
      */
-    public static Long setMinValue(final String propertyId, final Long value) {
-        if (!DATA_VALUE_MAP.containsKey(propertyId)) {
-            StatData.addValue(propertyId, Long.MAX_VALUE);
-        }
-        final Long currentVal = DATA_VALUE_MAP.get(propertyId);
-        if (value < currentVal) {
-            return StatData.addValue(propertyId, value);
+    public static void setMinValue(final String propertyId, final long value) {
+        LongAccumulator accumulator = EXTREME_VALUE_MAP.get(propertyId);
+        if (accumulator == null) {
+            accumulator = EXTREME_VALUE_MAP.computeIfAbsent(propertyId,
+                    key -> new LongAccumulator(Math::min, Long.MAX_VALUE));
         }
-        return currentVal;
+        accumulator.accumulate(value);
     }
 
     /**
      * Sets a maximal value to a property. When setting a new value, the old value and the new value
-     * is compared and the higher value is set as value for the property.
+     * is compared and the higher value is kept as value for the property.
      *
      * @param propertyId
      *            property identifier value
      * @param value
-     *            new value to be calculates an maximum
-     * @return The previous value set, or <code>null</code> if no previous value was set to the
-     *         property id.
+     *            new value to be calculated as maximum
      */
-    public static Long setMaxValue(final String propertyId, final Long value) {
-        if (!DATA_VALUE_MAP.containsKey(propertyId)) {
-            StatData.addValue(propertyId, Long.MIN_VALUE);
+    public static void setMaxValue(final String propertyId, final long value) {
+        LongAccumulator accumulator = EXTREME_VALUE_MAP.get(propertyId);
+        if (accumulator == null) {
+            accumulator = EXTREME_VALUE_MAP.computeIfAbsent(propertyId,
+                    key -> new LongAccumulator(Math::max, Long.MIN_VALUE));
         }
-        final Long currentVal = DATA_VALUE_MAP.get(propertyId);
-        if (value > currentVal) {
-            return StatData.addValue(propertyId, value);
-        }
-        return currentVal;
+        accumulator.accumulate(value);
     }
 
     /**
@@ -97,11 +89,9 @@ public final class StatData {
      *
      * @param propertyId
      *            property identifier value
-     * @return The previous value set, or <code>null</code> if no previous value was set to the
-     *         property id.
      */
-    public static Long addIncrementedValue(final String propertyId) {
-        return StatData.addSumValue(propertyId, 1L);
+    public static void addIncrementedValue(final String propertyId) {
+        getSumAdder(propertyId).increment();
     }
 
     /**
@@ -111,15 +101,9 @@ public final class StatData {
      *            property identifier value
      * @param increment
      *            new value to be added to the summarized value
-     * @return The previous value set, or <code>null</code> if no previous value was set to the
-     *         property id.
      */
-    public static Long addSumValue(final String propertyId, final Long increment) {
-        if (!DATA_VALUE_MAP.containsKey(propertyId)) {
-            StatData.addValue(propertyId, 0L);
-        }
-        final Long currentVal = DATA_VALUE_MAP.get(propertyId);
-        return StatData.addValue(propertyId, currentVal + increment);
+    public static void addSumValue(final String propertyId, final long increment) {
+        getSumAdder(propertyId).add(increment);
     }
 
     /**
@@ -129,11 +113,85 @@ public final class StatData {
      *            property identifier value
      * @return The value stored for the property, or 0 if no value is set for the property.
      */
-    public static Long getValue(final String propertyId) {
-        Long value = DATA_VALUE_MAP.get(propertyId);
-        if (value == null) {
-            value = 0L;
+    public static long getValue(final String propertyId) {
+        final LongAdder sumValue = SUM_VALUE_MAP.get(propertyId);
+        if (sumValue != null) {
+            return sumValue.sum();
+        }
+        final LongAccumulator extremeValue = EXTREME_VALUE_MAP.get(propertyId);
+        if (extremeValue != null) {
+            return extremeValue.get();
+        }
+        final AtomicLong dataValue = DATA_VALUE_MAP.get(propertyId);
+        if (dataValue != null) {
+            return dataValue.get();
+        }
+        return 0L;
+    }
+
+    /**
+     * Returns the histogram of a property, creating it if it doesn't exist yet. Callers on hot
+     * paths should keep the histogram returned instead of looking it up for every value.
+     *
+     * @param propertyId
+     *            property identifier value
+     * @return The histogram of the property
+     */
+    public static LatencyHistogram getHistogram(final String propertyId) {
+        final LatencyHistogram histogram = HISTOGRAM_MAP.get(propertyId);
+        if (histogram != null) {
+            return histogram;
+        }
+        return HISTOGRAM_MAP.computeIfAbsent(propertyId, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Returns a snapshot of the summarized properties, incremented by
+     * {@link #addIncrementedValue(String)} and {@link #addSumValue(String, long)}. The values only
+     * grow during a run.
+     *
+     * @return values by property identifier, sorted by identifier
+     */
+    public static SortedMap<String, Long> getSummedValues() {
+        final SortedMap<String, Long> values = new TreeMap<>();
+        SUM_VALUE_MAP.forEach((propertyId, adder) -> values.put(propertyId, adder.sum()));
+        return values;
+    }
+
+    /**
+     * Returns a snapshot of the properties set directly, or as a minimum or a maximum.
+     *
+     * @return values by property identifier, sorted by identifier
+     */
+    public static SortedMap<String, Long> getDirectValues() {
+        final SortedMap<String, Long> values = new TreeMap<>();
+        DATA_VALUE_MAP.forEach((propertyId, dataValue) -> values.put(propertyId, dataValue.get()));
+        EXTREME_VALUE_MAP.forEach(
+                (propertyId, accumulator) -> values.put(propertyId, accumulator.get()));
+        return values;
+    }
+
+    /**
+     * Returns the histograms of all properties. The histograms are live, they keep recording.
+     *
+     * @return histograms by property identifier, sorted by identifier
+     */
+    public static SortedMap<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(HISTOGRAM_MAP));
+    }
+
+    /**
+     * Returns the adder of a summarized property, creating it if it doesn't exist yet.
+     *
+     * @param propertyId
+     *            property identifier value
+     * @return The adder of the property
+     */
+    private static LongAdder getSumAdder(final String propertyId) {
+        final LongAdder adder = SUM_VALUE_MAP.get(propertyId);
+        if (adder != null) {
+            return adder;
         }
-        return value;
+        return SUM_VALUE_MAP.computeIfAbsent(propertyId, key -> new LongAdder());
     }
 }
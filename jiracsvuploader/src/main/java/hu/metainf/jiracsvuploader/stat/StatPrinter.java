@@ -1,8 +1,17 @@
 package hu.metainf.jiracsvuploader.stat;
 
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import hu.metainf.jiracsvuploader.filter.FilterPredicate;
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+import hu.metainf.jiracsvuploader.pipeline.PipelineStage;
+import hu.metainf.jiracsvuploader.process.InputFile;
 import hu.metainf.jiracsvuploader.util.StatTypeKeys;
 
 /**
@@ -12,6 +21,12 @@ import hu.metainf.jiracsvuploader.util.StatTypeKeys;
 public class StatPrinter {
     /** {@link Logger} instance. */
     private final Logger logger = LoggerFactory.getLogger(StatPrinter.class);
+    /** Number of nanoseconds in a millisecond. */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    /** Number of nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    /** Percentiles printed for histograms. */
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
 
     /**
      * Prints all statistical information available.
@@ -19,27 +34,167 @@ public class StatPrinter {
     public void printAppStats() {
         printExecutionStats();
         printQueueStats();
+        printMappingStats();
         printRowStats();
     }
 
+    /**
+     * Prints the number of records matched and rejected by each predicate of a filter.
+     *
+     * @param recordFilter
+     *            {@link RecordFilter} applied to the records
+     */
+    public void printFilterStats(final RecordFilter recordFilter) {
+        for (final FilterPredicate predicate : recordFilter.getPredicates()) {
+            logger.info("Filter predicate {} matched {} and rejected {} row(s)",
+                    predicate.getDescription(), predicate.getMatchNr(), predicate.getRejectNr());
+        }
+    }
+
+    /**
+     * Prints the row stats and the reading time of each file of a multi-file import. The
+     * aggregate stats of all files are printed by {@link #printAppStats()}.
+     *
+     * @param inputFiles
+     *            files read
+     */
+    public void printInputFileStats(final List<InputFile> inputFiles) {
+        for (final InputFile inputFile : inputFiles) {
+            logger.info("CSV file {} of {} bytes read in {} ms: {} row(s) processed, {} malformed,"
+                    + " {} not matching the filter, {} already in Jira, {} uploaded, {} failed",
+                    inputFile, inputFile.getSize(),
+                    TimeUnit.NANOSECONDS.toMillis(inputFile.getReadNanos()),
+                    inputFile.getRecordNr(), inputFile.getMalformedNr(),
+                    inputFile.getFilteredNr(), inputFile.getDuplicateNr(),
+                    inputFile.getUploadedNr(), inputFile.getFailedNr());
+            if (inputFile.getRecordFilter() != null) {
+                printFilterStats(inputFile.getRecordFilter());
+            }
+        }
+    }
+
+    /**
+     * Prints the counters of the processes of a cooperative import finished so far, summed, so
+     * the totals are complete when printed by the last process finishing. Histograms aren't
+     * merged, the execution and waiting times printed by {@link #printAppStats()} are of this
+     * process only.
+     *
+     * @param mergedStats
+     *            counters by name
+     */
+    public void printMergedStats(final SortedMap<String, Long> mergedStats) {
+        for (final Map.Entry<String, Long> stat : mergedStats.entrySet()) {
+            logger.info("Cooperative import total of {}: {}", stat.getKey(), stat.getValue());
+        }
+    }
+
+    /**
+     * Prints the throughput, the utilization and the input occupancy of each stage of a pipeline.
+     * The utilization is the share of the running time of the stage its threads spent handling
+     * records.
+     *
+     * @param stages
+     *            stages of the pipeline in order
+     */
+    public void printPipelineStats(final List<PipelineStage<?>> stages) {
+        for (final PipelineStage<?> stage : stages) {
+            final double activeSeconds = stage.getActiveNanos() / NANOS_PER_SECOND;
+            final double throughput =
+                    activeSeconds > 0.0 ? stage.getProcessedNr() / activeSeconds : 0.0;
+            final double utilization = stage.getActiveNanos() > 0L
+                    ? (double) stage.getBusyNanos() / stage.getThreadNr() / stage.getActiveNanos()
+                    : 0.0;
+            logger.info("Pipeline stage {} with {} thread(s) processed {} row(s), {} row(s)/s,"
+                    + " utilization {}%", stage.getName(), stage.getThreadNr(),
+                    stage.getProcessedNr(), String.format("%.1f", throughput),
+                    String.format("%.1f", utilization * 100.0));
+            logger.info("Pipeline stage {} input occupancy average / highest / capacity:"
+                    + " {} / {} / {}", stage.getName(),
+                    String.format("%.1f", stage.getAverageOccupancy()), stage.getMaxOccupancy(),
+                    stage.getCapacity());
+        }
+    }
+
     /**
      * Prints uploading job execution stats.
      */
     private void printExecutionStats() {
-        logger.info("Shortest execution time of a record: {}",
-                StatData.getValue(StatTypeKeys.MIN_EXEC_TIME));
-        logger.info("Longest execution time of a record: {}",
-                StatData.getValue(StatTypeKeys.MAX_EXEC_TIME));
-        logger.info("Average execution time of a record: {}",
-                StatData.getValue(StatTypeKeys.AVG_EXEC_TIME));
+        final LatencyHistogram execTimes = StatData.getHistogram(StatTypeKeys.EXEC_TIME);
+        logger.info("Shortest execution time in milliseconds of a record: {}",
+                formatMillis(execTimes.getMin()));
+        logger.info("Longest execution time in milliseconds of a record: {}",
+                formatMillis(execTimes.getMax()));
+        logger.info("Average execution time in milliseconds of a record: {}",
+                formatMillis(execTimes.getMean()));
+        printPercentiles("Execution time", execTimes);
+    }
+
+    /**
+     * Prints field mapping stats, if records were mapped.
+     */
+    private void printMappingStats() {
+        final LatencyHistogram mappingTimes = StatData.getHistogram(StatTypeKeys.MAPPING_TIME);
+        if (mappingTimes.getCount() == 0L) {
+            return;
+        }
+        logger.info("Average / longest time in milliseconds of mapping a record: {} / {}",
+                formatMillis(mappingTimes.getMean()), formatMillis(mappingTimes.getMax()));
+        printPercentiles("Mapping time", mappingTimes);
+        logger.info("Number of field values converted, not found in the converter caches: {}",
+                StatData.getValue(StatTypeKeys.MAPPING_CACHE_MISS_NR));
     }
 
     /**
      * Prints job queue stats.
      */
     private void printQueueStats() {
+        final LatencyHistogram queueTimes = StatData.getHistogram(StatTypeKeys.QUEUE_TIME);
         logger.info("Total time in milliseconds jobs spent waiting in the queue: {}",
-                StatData.getValue(StatTypeKeys.TOTAL_QUEUE_TIME));
+                TimeUnit.NANOSECONDS.toMillis(queueTimes.getSum()));
+        logger.info("Average time in milliseconds a job spent waiting in the queue: {}",
+                formatMillis(queueTimes.getMean()));
+        logger.info("Longest time in milliseconds a job spent waiting in the queue: {}",
+                formatMillis(queueTimes.getMax()));
+        printPercentiles("Queue waiting time", queueTimes);
+        logger.info("Total time in milliseconds the reader spent blocked on a full queue: {}",
+                TimeUnit.NANOSECONDS.toMillis(
+                        StatData.getValue(StatTypeKeys.TOTAL_READER_BLOCKED_TIME)));
+        logger.info("Limit of uploads in flight at the end / lowest / highest: {} / {} / {}",
+                StatData.getValue(StatTypeKeys.CONCURRENCY_LIMIT),
+                StatData.getValue(StatTypeKeys.CONCURRENCY_LIMIT_MIN),
+                StatData.getValue(StatTypeKeys.CONCURRENCY_LIMIT_MAX));
+    }
+
+    /**
+     * Prints the percentiles of a histogram of nanosecond values in milliseconds.
+     *
+     * @param name
+     *            name of the value measured
+     * @param histogram
+     *            histogram to print
+     */
+    private void printPercentiles(final String name, final LatencyHistogram histogram) {
+        final StringBuilder builder = new StringBuilder();
+        for (final double percentile : PERCENTILES) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append('p').append(percentile % 1 == 0 ? String.valueOf((int) percentile)
+                    : String.valueOf(percentile)).append('=')
+                    .append(formatMillis(histogram.getValueAtPercentile(percentile)));
+        }
+        logger.info("{} percentiles in milliseconds: {}", name, builder);
+    }
+
+    /**
+     * Formats a nanosecond value as milliseconds.
+     *
+     * @param nanos
+     *            value in nanoseconds
+     * @return Formatted value in milliseconds
+     */
+    private static String formatMillis(final double nanos) {
+        return String.format("%.3f", nanos / NANOS_PER_MILLI);
     }
 
     /**
@@ -48,9 +203,39 @@ public class StatPrinter {
     private void printRowStats() {
         logger.info("Number of total processed rows: {}",
                 StatData.getValue(StatTypeKeys.PROCESSED_ROW_NR));
+        logger.info("Number of malformed rows skipped: {}",
+                StatData.getValue(StatTypeKeys.MALFORMED_ROW_NR));
+        logger.info("Number of rows not matching the filter: {}",
+                StatData.getValue(StatTypeKeys.FILTERED_ROW_NR));
+        logger.info("Number of rows skipped as already present in Jira: {}",
+                StatData.getValue(StatTypeKeys.DUPLICATE_ROW_NR));
+        logger.info("Number of rows skipped as completed before resuming: {}",
+                StatData.getValue(StatTypeKeys.RESUME_SKIPPED_ROW_NR));
         logger.info("Number of total uploaded rows: {}",
                 StatData.getValue(StatTypeKeys.UPLOADED_ROW_NR));
         logger.info("Number of total failed row uploads: {}",
                 StatData.getValue(StatTypeKeys.FAILED_ROW_UPLOAD_NR));
+        logger.info("Number of bulk upload requests sent: {}",
+                StatData.getValue(StatTypeKeys.UPLOADED_BATCH_NR));
+        logger.info("Number of progress journal commits: {}",
+                StatData.getValue(StatTypeKeys.JOURNAL_COMMIT_NR));
+        logger.info("Number of audit records written / dropped: {} / {}",
+                StatData.getValue(StatTypeKeys.AUDIT_RECORD_NR),
+                StatData.getValue(StatTypeKeys.AUDIT_DROPPED_NR));
+        logger.info("Number of upload retries: {}",
+                StatData.getValue(StatTypeKeys.RETRIED_UPLOAD_NR));
+        logger.info("Number of times uploads were deferred by the rate limits: {}",
+                StatData.getValue(StatTypeKeys.RATE_DEFERRED_UPLOAD_NR));
+        logger.info("Number of times the circuit breaker paused uploads: {}",
+                StatData.getValue(StatTypeKeys.CIRCUIT_OPEN_NR));
+        logger.info("Total time in milliseconds the circuit breaker paused uploads: {}",
+                TimeUnit.NANOSECONDS.toMillis(StatData.getValue(StatTypeKeys.CIRCUIT_OPEN_TIME)));
+        final long compactRecordNr = StatData.getValue(StatTypeKeys.COMPACT_RECORD_NR);
+        if (compactRecordNr > 0L) {
+            logger.info("Estimated heap bytes per record held compact / plain: {} / {}",
+                    StatData.getValue(StatTypeKeys.COMPACT_RECORD_HEAP_BYTE_NR) / compactRecordNr,
+                    StatData.getValue(StatTypeKeys.COMPACT_RECORD_PLAIN_HEAP_BYTE_NR)
+                            / compactRecordNr);
+        }
     }
 }
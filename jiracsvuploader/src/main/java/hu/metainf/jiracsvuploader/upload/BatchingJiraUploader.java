@@ -0,0 +1,275 @@
+package hu.metainf.jiracsvuploader.upload;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+/**
+ * {@link JiraUploader} decorator collecting single uploads into batches sent through the bulk
+ * issue creation resource of the decorated uploader. A batch is sent when it reaches the maximal
+ * number of issues or payload size, or when its first issue waited for the linger time. The bulk
+ * response is split back to a response per issue, so callers see the outcome of their own issue.
+ *
+ */
+public class BatchingJiraUploader implements JiraUploader {
+    /** Maximal number of issues accepted by the bulk issue creation resource of Jira. */
+    public static final int MAX_BATCH_SIZE = 50;
+    /** Status code for created response. */
+    private static final int STATUS_CODE_CREATED = 201;
+    /** Status code registered for issues missing from a bulk response. */
+    private static final int STATUS_CODE_NO_RESPONSE = 0;
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(BatchingJiraUploader.class);
+    /** Decorated {@link JiraUploader} performing the bulk uploads. */
+    private final JiraUploader delegate;
+    /** Maximal number of issues in a batch. */
+    private final int maxBatchSize;
+    /** Maximal total length of the issue payloads of a batch in bytes. */
+    private final int maxBatchBytes;
+    /** Maximal time in milliseconds an issue waits for its batch to fill. */
+    private final long lingerMillis;
+    /** Timer sending batches not filled within the linger time. */
+    private final ScheduledExecutorService lingerScheduler =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "jira-batch-linger");
+                thread.setDaemon(true);
+                return thread;
+            });
+    /** Batch being filled, guarded by <code>this</code>. */
+    private Batch currentBatch;
+
+    /**
+     * Ctor.
+     *
+     * @param delegate
+     *            {@link JiraUploader} performing the bulk uploads
+     * @param maxBatchSize
+     *            maximal number of issues in a batch, at most {@link #MAX_BATCH_SIZE}
+     * @param maxBatchBytes
+     *            maximal total length of the issue payloads of a batch in bytes
+     * @param lingerMillis
+     *            maximal time in milliseconds an issue waits for its batch to fill
+     */
+    public BatchingJiraUploader(
+            final JiraUploader delegate,
+            final int maxBatchSize,
+            final int maxBatchBytes,
+            final long lingerMillis) {
+        this.delegate = delegate;
+        this.maxBatchSize = Math.min(maxBatchSize, MAX_BATCH_SIZE);
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerMillis = lingerMillis;
+        logger.debug("Batching uploads by {} issue(s), {} byte(s), {} ms linger time",
+                this.maxBatchSize, maxBatchBytes, lingerMillis);
+    }
+
+    @Override
+    public CompletableFuture<UploadResponse> upload(final byte[] jsonPayload) {
+        final CompletableFuture<UploadResponse> response = new CompletableFuture<>();
+        Batch overflownBatch = null;
+        Batch filledBatch = null;
+        synchronized (this) {
+            if (currentBatch != null
+                    && currentBatch.payloadBytes + jsonPayload.length > maxBatchBytes) {
+                overflownBatch = currentBatch;
+                currentBatch = null;
+            }
+            if (currentBatch == null) {
+                final Batch batch = new Batch();
+                currentBatch = batch;
+                lingerScheduler.schedule(() -> sendIfCurrent(batch), lingerMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+            currentBatch.add(jsonPayload, response);
+            if (currentBatch.payloads.size() >= maxBatchSize
+                    || currentBatch.payloadBytes >= maxBatchBytes) {
+                filledBatch = currentBatch;
+                currentBatch = null;
+            }
+        }
+        if (overflownBatch != null) {
+            send(overflownBatch);
+        }
+        if (filledBatch != null) {
+            send(filledBatch);
+        }
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<UploadResponse> uploadBulk(final List<byte[]> jsonPayloads) {
+        return delegate.uploadBulk(jsonPayloads);
+    }
+
+    /**
+     * Sends the batch being filled, and closes the decorated uploader.
+     *
+     * @throws IOException
+     *             If closing the decorated uploader fails
+     */
+    @Override
+    public void close() throws IOException {
+        final Batch batchToSend;
+        synchronized (this) {
+            batchToSend = currentBatch;
+            currentBatch = null;
+        }
+        if (batchToSend != null) {
+            send(batchToSend);
+        }
+        lingerScheduler.shutdownNow();
+        delegate.close();
+    }
+
+    /**
+     * Sends a batch if it is still being filled, called when its linger time is over.
+     *
+     * @param batch
+     *            batch to send
+     */
+    private void sendIfCurrent(final Batch batch) {
+        synchronized (this) {
+            if (currentBatch != batch) {
+                return;
+            }
+            currentBatch = null;
+        }
+        send(batch);
+    }
+
+    /**
+     * Sends a batch and completes the responses of its issues when the bulk response arrives.
+     *
+     * @param batch
+     *            batch to send
+     */
+    private void send(final Batch batch) {
+        logger.debug("Sending batch of {} issue(s)", batch.payloads.size());
+        StatData.addIncrementedValue(StatTypeKeys.UPLOADED_BATCH_NR);
+        final CompletableFuture<UploadResponse> bulkResponse;
+        try {
+            bulkResponse = delegate.uploadBulk(batch.payloads);
+        } catch (final RuntimeException e) {
+            batch.responses.forEach(response -> response.completeExceptionally(e));
+            return;
+        }
+        bulkResponse.whenComplete((response, error) -> {
+            if (error != null) {
+                batch.responses.forEach(
+                        issueResponse -> issueResponse.completeExceptionally(error));
+            } else {
+                completeIssueResponses(batch, response);
+            }
+        });
+    }
+
+    /**
+     * Splits a bulk response to responses of the single issues. Failed issues are identified by
+     * the <code>failedElementNumber</code> of the errors, the created issues are listed in the
+     * order of the remaining issues. If the response can't be split, every issue gets the bulk
+     * response.
+     *
+     * @param batch
+     *            batch sent
+     * @param bulkResponse
+     *            response of the bulk upload
+     */
+    private void completeIssueResponses(final Batch batch, final UploadResponse bulkResponse) {
+        final int batchSize = batch.responses.size();
+        final UploadResponse[] issueResponses = new UploadResponse[batchSize];
+        try {
+            if (bulkResponse.getBody() == null) {
+                throw new JSONException("Bulk response has no body");
+            }
+            final JSONObject body = new JSONObject(bulkResponse.getBody());
+            final JSONArray errors = body.optJSONArray("errors");
+            for (int i = 0; errors != null && i < errors.length(); i++) {
+                final JSONObject error = errors.getJSONObject(i);
+                final int elementNr = error.getInt("failedElementNumber");
+                if (elementNr >= 0 && elementNr < batchSize) {
+                    issueResponses[elementNr] = new UploadResponse(
+                            error.optInt("status", bulkResponse.getStatusCode()), error.toString());
+                }
+            }
+            final JSONArray issues = body.optJSONArray("issues");
+            int issueIndex = 0;
+            for (int i = 0; i < batchSize; i++) {
+                if (issueResponses[i] != null) {
+                    continue;
+                }
+                if (issues != null && issueIndex < issues.length()) {
+                    issueResponses[i] = new UploadResponse(STATUS_CODE_CREATED,
+                            issues.getJSONObject(issueIndex++).toString());
+                } else {
+                    issueResponses[i] = missingIssueResponse(bulkResponse);
+                }
+            }
+        } catch (final JSONException e) {
+            logger.debug("Failed to split bulk response with status code {}: {}",
+                    bulkResponse.getStatusCode(), e.getMessage());
+            for (int i = 0; i < batchSize; i++) {
+                issueResponses[i] = missingIssueResponse(bulkResponse);
+            }
+        }
+        for (int i = 0; i < batchSize; i++) {
+            batch.responses.get(i).complete(issueResponses[i]);
+        }
+    }
+
+    /**
+     * Returns the response of an issue which isn't listed in the bulk response. A failed bulk
+     * response is returned as is, a successful one is turned to a failure, as it didn't confirm
+     * the creation of the issue.
+     *
+     * @param bulkResponse
+     *            response of the bulk upload
+     * @return Response of the issue
+     */
+    private static UploadResponse missingIssueResponse(final UploadResponse bulkResponse) {
+        if (bulkResponse.isSuccessful()) {
+            return new UploadResponse(STATUS_CODE_NO_RESPONSE, bulkResponse.getBody());
+        }
+        return bulkResponse;
+    }
+
+    /**
+     * Issues collected to be sent in a single bulk request.
+     *
+     */
+    private static class Batch {
+        /** JSON payloads of the issues. */
+        private final List<byte[]> payloads = new ArrayList<>();
+        /** Responses of the issues, in the order of the payloads. */
+        private final List<CompletableFuture<UploadResponse>> responses = new ArrayList<>();
+        /** Total length of the payloads in bytes. */
+        private int payloadBytes;
+
+        /**
+         * Adds an issue to the batch.
+         *
+         * @param payload
+         *            JSON payload of the issue
+         * @param response
+         *            response of the issue
+         */
+        private void add(final byte[] payload, final CompletableFuture<UploadResponse> response) {
+            payloads.add(payload);
+            responses.add(response);
+            payloadBytes += payload.length;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package hu.metainf.jiracsvuploader.upload;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link JiraUploader} implementation creating issues through the REST API of a Jira instance. Uses
+ * a single asynchronous {@link HttpClient}, which keeps connections alive and pools them, so no
+ * thread waits for the responses.
+ *
+ */
+public class HttpJiraUploader implements JiraUploader {
+    /** Path of the issue creation REST resource. */
+    public static final String ISSUE_PATH = "/rest/api/2/issue";
+    /** Path of the bulk issue creation REST resource. */
+    public static final String BULK_ISSUE_PATH = ISSUE_PATH + "/bulk";
+
+    /** Number of milliseconds in a second. */
+    private static final long MILLIS_PER_SECOND = 1000L;
+    /** Encoded start of bulk issue creation payloads. */
+    private static final byte[] BULK_PAYLOAD_START =
+            "{\"issueUpdates\":[".getBytes(StandardCharsets.US_ASCII);
+    /** Encoded end of bulk issue creation payloads. */
+    private static final byte[] BULK_PAYLOAD_END = "]}".getBytes(StandardCharsets.US_ASCII);
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(HttpJiraUploader.class);
+    /** {@link HttpClient} instance. */
+    private final HttpClient httpClient;
+    /** URI of the issue creation REST resource. */
+    private final URI issueUri;
+    /** URI of the bulk issue creation REST resource. */
+    private final URI bulkIssueUri;
+    /** Value of the Authorization header, or <code>null</code> if no authentication is used. */
+    private final String authorization;
+    /** Timeout of a single request. */
+    private final Duration requestTimeout;
+
+    /**
+     * Ctor.
+     *
+     * @param baseUrl
+     *            base URL of the Jira instance, e.g. <code>https://jira.example.com</code>
+     * @param user
+     *            user name for basic authentication, or <code>null</code> to use the token as a
+     *            bearer token
+     * @param token
+     *            password or API token of the user, or personal access token if no user is given;
+     *            <code>null</code> if no authentication is used
+     * @param timeoutMillis
+     *            connection and request timeout in milliseconds
+     */
+    public HttpJiraUploader(
+            final String baseUrl,
+            final String user,
+            final String token,
+            final long timeoutMillis) {
+        final String trimmedBaseUrl =
+                baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        issueUri = URI.create(trimmedBaseUrl + ISSUE_PATH);
+        bulkIssueUri = URI.create(trimmedBaseUrl + BULK_ISSUE_PATH);
+        if (token == null) {
+            authorization = null;
+        } else if (user == null) {
+            authorization = "Bearer " + token;
+        } else {
+            authorization = "Basic " + Base64.getEncoder()
+                    .encodeToString((user + ":" + token).getBytes(StandardCharsets.UTF_8));
+        }
+        requestTimeout = Duration.ofMillis(timeoutMillis);
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout).build();
+        logger.debug("Created HTTP Jira uploader for {}", issueUri);
+    }
+
+    @Override
+    public CompletableFuture<UploadResponse> upload(final byte[] jsonPayload) {
+        return post(issueUri, jsonPayload);
+    }
+
+    @Override
+    public CompletableFuture<UploadResponse> uploadBulk(final List<byte[]> jsonPayloads) {
+        // Payloads are separated by commas
+        int length = BULK_PAYLOAD_START.length + BULK_PAYLOAD_END.length
+                + Math.max(0, jsonPayloads.size() - 1);
+        for (final byte[] jsonPayload : jsonPayloads) {
+            length += jsonPayload.length;
+        }
+        final byte[] bulkPayload = new byte[length];
+        System.arraycopy(BULK_PAYLOAD_START, 0, bulkPayload, 0, BULK_PAYLOAD_START.length);
+        int pos = BULK_PAYLOAD_START.length;
+        for (int i = 0; i < jsonPayloads.size(); i++) {
+            if (i > 0) {
+                bulkPayload[pos++] = ',';
+            }
+            final byte[] jsonPayload = jsonPayloads.get(i);
+            System.arraycopy(jsonPayload, 0, bulkPayload, pos, jsonPayload.length);
+            pos += jsonPayload.length;
+        }
+        System.arraycopy(BULK_PAYLOAD_END, 0, bulkPayload, pos, BULK_PAYLOAD_END.length);
+        return post(bulkIssueUri, bulkPayload);
+    }
+
+    /**
+     * Posts a JSON document to a REST resource of the Jira instance.
+     *
+     * @param uri
+     *            URI of the REST resource
+     * @param jsonPayload
+     *            UTF-8 encoded JSON document to post
+     * @return {@link CompletableFuture} completed with the response
+     */
+    private CompletableFuture<UploadResponse> post(final URI uri, final byte[] jsonPayload) {
+        final HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(jsonPayload));
+        if (authorization != null) {
+            requestBuilder.header("Authorization", authorization);
+        }
+        return httpClient.sendAsync(requestBuilder.build(), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> new UploadResponse(response.statusCode(), response.body(),
+                        response.headers().firstValue("Retry-After")
+                                .map(HttpJiraUploader::parseRetryAfter).orElse(-1L)));
+    }
+
+    /**
+     * Parses the value of a <code>Retry-After</code> header, given either as seconds or as an
+     * HTTP date.
+     *
+     * @param retryAfter
+     *            header value
+     * @return time in milliseconds to wait, or -1 if the value can't be parsed
+     */
+    static long parseRetryAfter(final String retryAfter) {
+        final String value = retryAfter.trim();
+        try {
+            return Math.max(0L, Long.parseLong(value) * MILLIS_PER_SECOND);
+        } catch (final NumberFormatException e) {
+            try {
+                return Math.max(0L, ZonedDateTime.parse(value,
+                        DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+                        - System.currentTimeMillis());
+            } catch (final DateTimeParseException dateException) {
+                return -1L;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        logger.debug("Closing HTTP Jira uploader for {}", issueUri);
+    }
+}
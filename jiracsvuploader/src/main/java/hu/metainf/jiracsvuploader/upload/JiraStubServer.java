@@ -0,0 +1,257 @@
+package hu.metainf.jiracsvuploader.upload;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server imitating the single and bulk issue creation REST API of a Jira instance,
+ * for testing uploads without a network. Responses are delayed by a random latency and issues
+ * fail with a configurable probability. Delayed responses are sent by a timer, so slow responses
+ * don't occupy the request handling threads.
+ *
+ */
+public class JiraStubServer implements Closeable {
+    /** Status code for created response. */
+    private static final int STATUS_CODE_CREATED = 201;
+    /** Status code for bad request response. */
+    private static final int STATUS_CODE_BAD_REQUEST = 400;
+    /** Status code for not found response. */
+    private static final int STATUS_CODE_NOT_FOUND = 404;
+    /** Status code for rate limited response. */
+    private static final int STATUS_CODE_TOO_MANY_REQUESTS = 429;
+    /** Status code for service unavailable response. */
+    private static final int STATUS_CODE_SERVICE_UNAVAILABLE = 503;
+    /** Value of the Retry-After header sent with rate limited responses, in seconds. */
+    private static final String RETRY_AFTER_SECONDS = "1";
+    /** Number of request handling threads. */
+    private static final int HANDLER_THREAD_NR = 4;
+    /** Default latency of the server started from command line in milliseconds. */
+    private static final String DEFAULT_LATENCY = "10-100";
+    /** Default status code of error responses. */
+    private static final int DEFAULT_ERROR_STATUS_CODE = 503;
+
+    /** {@link Logger} instance. */
+    private final Logger logger = LoggerFactory.getLogger(JiraStubServer.class);
+    /** {@link HttpServer} instance. */
+    private final HttpServer httpServer;
+    /** Executor handling requests. */
+    private final ExecutorService handlerExecutor;
+    /** Timer sending the delayed responses. */
+    private final ScheduledExecutorService responseScheduler;
+    /** Lower bound of the response latency in milliseconds. */
+    private final long minLatencyMillis;
+    /** Upper bound of the response latency in milliseconds. */
+    private final long maxLatencyMillis;
+    /** Probability of an error response. */
+    private final double errorRate;
+    /** Status code of error responses. */
+    private final int errorStatusCode;
+    /** Number of requests received. */
+    private final AtomicLong requestCounter = new AtomicLong();
+    /** Number of issues created. */
+    private final AtomicLong issueCounter = new AtomicLong();
+
+    /**
+     * Ctor, starting the server.
+     *
+     * @param port
+     *            port to listen on, or 0 to use a free port
+     * @param minLatencyMillis
+     *            lower bound of the response latency in milliseconds
+     * @param maxLatencyMillis
+     *            upper bound of the response latency in milliseconds
+     * @param errorRate
+     *            probability of an error response, between 0 and 1
+     * @param errorStatusCode
+     *            status code of error responses
+     * @throws IOException
+     *             If the server can't be started
+     */
+    public JiraStubServer(
+            final int port,
+            final long minLatencyMillis,
+            final long maxLatencyMillis,
+            final double errorRate,
+            final int errorStatusCode) throws IOException {
+        this.minLatencyMillis = minLatencyMillis;
+        this.maxLatencyMillis = Math.max(minLatencyMillis, maxLatencyMillis);
+        this.errorRate = errorRate;
+        this.errorStatusCode = errorStatusCode;
+        handlerExecutor = Executors.newFixedThreadPool(HANDLER_THREAD_NR);
+        responseScheduler = Executors.newSingleThreadScheduledExecutor();
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        httpServer.setExecutor(handlerExecutor);
+        httpServer.createContext(HttpJiraUploader.ISSUE_PATH, this::handleIssueCreation);
+        httpServer.start();
+        logger.info("Jira stub server listening on {}", getBaseUrl());
+    }
+
+    /**
+     * Returns the base URL of the server.
+     *
+     * @return base URL
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of requests received.
+     *
+     * @return number of requests received
+     */
+    public long getRequestNr() {
+        return requestCounter.get();
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        responseScheduler.shutdownNow();
+        handlerExecutor.shutdownNow();
+    }
+
+    /**
+     * Handles an issue creation request, either a single or a bulk one.
+     *
+     * @param exchange
+     *            HTTP exchange
+     * @throws IOException
+     *             If reading the request fails
+     */
+    private void handleIssueCreation(final HttpExchange exchange) throws IOException {
+        final String requestBody;
+        try (InputStream requestStream = exchange.getRequestBody()) {
+            requestBody = new String(requestStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        final String path = exchange.getRequestURI().getPath();
+        final boolean isBulk = HttpJiraUploader.BULK_ISSUE_PATH.equals(path);
+        if (!"POST".equals(exchange.getRequestMethod())
+                || !isBulk && !HttpJiraUploader.ISSUE_PATH.equals(path)) {
+            sendResponse(exchange, STATUS_CODE_NOT_FOUND, "{\"errorMessages\":[\"Not found\"]}");
+            return;
+        }
+        requestCounter.incrementAndGet();
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long latency = minLatencyMillis + (long) (random.nextDouble()
+                * (maxLatencyMillis - minLatencyMillis));
+        final int statusCode;
+        final String responseBody;
+        if (isBulk) {
+            final int elementNr;
+            try {
+                elementNr = new JSONObject(requestBody).getJSONArray("issueUpdates").length();
+            } catch (final JSONException e) {
+                sendResponse(exchange, STATUS_CODE_BAD_REQUEST,
+                        "{\"errorMessages\":[\"" + e.getMessage() + "\"]}");
+                return;
+            }
+            final JSONArray issues = new JSONArray();
+            final JSONArray errors = new JSONArray();
+            for (int i = 0; i < elementNr; i++) {
+                if (random.nextDouble() < errorRate) {
+                    errors.put(new JSONObject().put("status", errorStatusCode)
+                            .put("failedElementNumber", i).put("elementErrors",
+                                    new JSONObject().put("errorMessages",
+                                            new JSONArray().put("Stub error response"))));
+                } else {
+                    issues.put(new JSONObject(createIssueBody()));
+                }
+            }
+            statusCode = issues.length() > 0 || elementNr == 0 ? STATUS_CODE_CREATED
+                    : STATUS_CODE_BAD_REQUEST;
+            responseBody = new JSONObject().put("issues", issues).put("errors", errors).toString();
+        } else if (random.nextDouble() < errorRate) {
+            statusCode = errorStatusCode;
+            responseBody = "{\"errorMessages\":[\"Stub error response\"],\"errors\":{}}";
+        } else {
+            statusCode = STATUS_CODE_CREATED;
+            responseBody = createIssueBody();
+        }
+        responseScheduler.schedule(() -> sendResponse(exchange, statusCode, responseBody), latency,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates the JSON description of a newly created issue.
+     *
+     * @return JSON description of the issue
+     */
+    private String createIssueBody() {
+        final long issueId = issueCounter.incrementAndGet();
+        return "{\"id\":\"" + issueId + "\",\"key\":\"STUB-" + issueId + "\",\"self\":\""
+                + getBaseUrl() + HttpJiraUploader.ISSUE_PATH + "/" + issueId + "\"}";
+    }
+
+    /**
+     * Sends a JSON response and closes the exchange.
+     *
+     * @param exchange
+     *            HTTP exchange
+     * @param statusCode
+     *            status code of the response
+     * @param body
+     *            JSON body of the response
+     */
+    private void sendResponse(
+            final HttpExchange exchange,
+            final int statusCode,
+            final String body) {
+        final byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (statusCode == STATUS_CODE_TOO_MANY_REQUESTS
+                    || statusCode == STATUS_CODE_SERVICE_UNAVAILABLE) {
+                exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+            }
+            exchange.sendResponseHeaders(statusCode, bodyBytes.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(bodyBytes);
+            }
+        } catch (final IOException e) {
+            logger.warn("Failed to send stub response: {}", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Starts a stub server from command line, running till the process is terminated.
+     * Arguments: port, latency range in milliseconds (e.g. <code>10-100</code>), error rate and
+     * error status code, all optional.
+     *
+     * @param args
+     *            command line arguments array
+     * @throws IOException
+     *             If the server can't be started
+     */
+    public static void main(final String[] args) throws IOException {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        final String[] latency = (args.length > 1 ? args[1] : DEFAULT_LATENCY).split("-");
+        final double errorRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.0;
+        final int errorStatusCode =
+                args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_ERROR_STATUS_CODE;
+        final long minLatency = Long.parseLong(latency[0]);
+        final long maxLatency = latency.length > 1 ? Long.parseLong(latency[1]) : minLatency;
+        new JiraStubServer(port, minLatency, maxLatency, errorRate, errorStatusCode);
+    }
+}
@@ -0,0 +1,37 @@
+package hu.metainf.jiracsvuploader.upload;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service interface of uploading issue JSON documents to a Jira instance. Implementations must not
+ * block the calling thread while waiting for the response, and must be thread-safe.
+ *
+ */
+public interface JiraUploader extends Closeable {
+    /**
+     * Starts uploading a JSON document describing a Jira issue. The payload must not be modified
+     * after the call.
+     *
+     * @param jsonPayload
+     *            UTF-8 encoded JSON document to upload
+     * @return {@link CompletableFuture} completed with the response of the Jira instance, or
+     *         completed exceptionally if no response could be received
+     */
+    CompletableFuture<UploadResponse> upload(byte[] jsonPayload);
+
+    /**
+     * Starts uploading multiple JSON documents describing Jira issues in a single bulk request.
+     * The response body follows the format of the bulk issue creation REST resource of Jira: the
+     * <code>issues</code> array lists the issues created in the order of the successful
+     * documents, the <code>errors</code> array holds the failed ones with their
+     * <code>failedElementNumber</code>.
+     *
+     * @param jsonPayloads
+     *            UTF-8 encoded JSON documents to upload
+     * @return {@link CompletableFuture} completed with the response of the Jira instance, or
+     *         completed exceptionally if no response could be received
+     */
+    CompletableFuture<UploadResponse> uploadBulk(List<byte[]> jsonPayloads);
+}
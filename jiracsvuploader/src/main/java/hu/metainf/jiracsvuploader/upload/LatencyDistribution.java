@@ -0,0 +1,138 @@
+package hu.metainf.jiracsvuploader.upload;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of the response latencies of a {@link MockJiraUploader}. Distributions are given
+ * by a specification like:
+ * <ul>
+ * <li><code>uniform:10-100</code>: uniform between 10 and 100 milliseconds,</li>
+ * <li><code>lognormal:40,0.8</code>: log-normal with a median of 40 milliseconds and a sigma of
+ * 0.8, giving a long tail,</li>
+ * <li><code>bimodal:10-30,500-2000,0.05</code>: uniform between 10 and 30 milliseconds, except
+ * for 5% of the responses taking between 500 and 2000 milliseconds.</li>
+ * </ul>
+ *
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+    /**
+     * Draws a latency.
+     *
+     * @return latency in milliseconds
+     */
+    long nextMillis();
+
+    /**
+     * Creates a uniform distribution.
+     *
+     * @param minMillis
+     *            lowest latency in milliseconds
+     * @param maxMillis
+     *            highest latency in milliseconds
+     * @return The distribution created
+     */
+    static LatencyDistribution uniform(final long minMillis, final long maxMillis) {
+        if (minMillis < 0L || maxMillis < minMillis) {
+            throw new IllegalArgumentException(
+                    "Invalid latency range: " + minMillis + "-" + maxMillis);
+        }
+        return () -> ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1L);
+    }
+
+    /**
+     * Creates a log-normal distribution.
+     *
+     * @param medianMillis
+     *            median latency in milliseconds
+     * @param sigma
+     *            standard deviation of the logarithm of the latency
+     * @return The distribution created
+     */
+    static LatencyDistribution logNormal(final double medianMillis, final double sigma) {
+        if (medianMillis <= 0.0 || sigma < 0.0) {
+            throw new IllegalArgumentException(
+                    "Invalid log-normal latency: " + medianMillis + "," + sigma);
+        }
+        final double mu = Math.log(medianMillis);
+        return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    /**
+     * Creates a bimodal distribution of two uniform ones.
+     *
+     * @param fast
+     *            distribution of most latencies
+     * @param slow
+     *            distribution of the slow latencies
+     * @param slowShare
+     *            share of the slow latencies, between 0 and 1
+     * @return The distribution created
+     */
+    static LatencyDistribution bimodal(
+            final LatencyDistribution fast,
+            final LatencyDistribution slow,
+            final double slowShare) {
+        if (slowShare < 0.0 || slowShare > 1.0) {
+            throw new IllegalArgumentException("Invalid share of slow latencies: " + slowShare);
+        }
+        return () -> ThreadLocalRandom.current().nextDouble() < slowShare ? slow.nextMillis()
+                : fast.nextMillis();
+    }
+
+    /**
+     * Parses the specification of a distribution.
+     *
+     * @param spec
+     *            specification, see {@link LatencyDistribution}
+     * @return The distribution parsed
+     * @throws IllegalArgumentException
+     *             If the specification is invalid
+     */
+    static LatencyDistribution parse(final String spec) {
+        final int colon = spec.indexOf(':');
+        final String type = colon < 0 ? spec : spec.substring(0, colon);
+        final String[] args = colon < 0 ? new String[0] : spec.substring(colon + 1).split(",");
+        try {
+            switch (type.trim()) {
+                case "uniform":
+                    if (args.length == 1) {
+                        return parseRange(args[0]);
+                    }
+                    break;
+                case "lognormal":
+                    if (args.length == 2) {
+                        return logNormal(Double.parseDouble(args[0].trim()),
+                                Double.parseDouble(args[1].trim()));
+                    }
+                    break;
+                case "bimodal":
+                    if (args.length == 3) {
+                        return bimodal(parseRange(args[0]), parseRange(args[1]),
+                                Double.parseDouble(args[2].trim()));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in latency distribution: " + spec);
+        }
+        throw new IllegalArgumentException("Invalid latency distribution: " + spec);
+    }
+
+    /**
+     * Parses a uniform distribution given by a range like <code>10-100</code>.
+     *
+     * @param range
+     *            range of latencies in milliseconds
+     * @return The distribution parsed
+     */
+    private static LatencyDistribution parseRange(final String range) {
+        final String[] bounds = range.trim().split("-");
+        if (bounds.length != 2) {
+            throw new IllegalArgumentException("Invalid latency range: " + range);
+        }
+        return uniform(Long.parseLong(bounds[0].trim()), Long.parseLong(bounds[1].trim()));
+    }
+}
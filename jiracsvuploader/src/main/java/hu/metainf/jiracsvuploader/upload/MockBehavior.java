@@ -0,0 +1,151 @@
+package hu.metainf.jiracsvuploader.upload;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Behaviour of a {@link MockJiraUploader}: the latency of its responses, the status codes of the
+ * errors it returns and their rates, and periodic throttling windows during which every request
+ * is rejected with status code 429, asking to retry after the end of the window.
+ * <p>
+ * Errors are given like <code>403:0.01,500:0.002</code>, meaning 1% of the issues fail with
+ * status code 403 and 0.2% with 500. Throttling is given like <code>10000:2000</code>, meaning
+ * the last 2000 milliseconds of every 10000 milliseconds are throttled.
+ *
+ */
+public final class MockBehavior {
+    /** Default latency distribution. */
+    public static final String DEFAULT_LATENCY = "uniform:10-100";
+    /** Default errors. */
+    public static final String DEFAULT_ERRORS = "403:0.01";
+    /** Status code for successful response. */
+    private static final int STATUS_CODE_SUCCESS = 200;
+    /** Status code for rate limited response. */
+    private static final int STATUS_CODE_TOO_MANY_REQUESTS = 429;
+
+    /** {@link LatencyDistribution} of the responses. */
+    private final LatencyDistribution latencyDistribution;
+    /** Status codes of the errors. */
+    private final int[] errorStatusCodes;
+    /** Cumulative rates of the errors, in the order of their status codes. */
+    private final double[] cumulativeErrorRates;
+    /** Length of a throttling period in milliseconds, or 0 if not throttling. */
+    private final long throttlePeriodMillis;
+    /** Length of the throttling window at the end of each period in milliseconds. */
+    private final long throttleWindowMillis;
+    /** {@link System#currentTimeMillis()} value of the start of the first period. */
+    private final long startMillis = System.currentTimeMillis();
+
+    /**
+     * Ctor, parsing the specifications of the behaviour.
+     *
+     * @param latencySpec
+     *            latency distribution, see {@link LatencyDistribution}, or <code>null</code> for
+     *            {@link #DEFAULT_LATENCY}
+     * @param errorSpec
+     *            errors like <code>403:0.01,500:0.002</code>, or <code>null</code> for
+     *            {@link #DEFAULT_ERRORS}; an empty specification means no errors
+     * @param throttleSpec
+     *            throttling like <code>10000:2000</code>, or <code>null</code> for no throttling
+     * @throws IllegalArgumentException
+     *             If a specification is invalid
+     */
+    public MockBehavior(
+            final String latencySpec,
+            final String errorSpec,
+            final String throttleSpec) {
+        latencyDistribution =
+                LatencyDistribution.parse(latencySpec != null ? latencySpec : DEFAULT_LATENCY);
+        final String errors = (errorSpec != null ? errorSpec : DEFAULT_ERRORS).trim();
+        final String[] errorParts = errors.isEmpty() ? new String[0] : errors.split(",");
+        errorStatusCodes = new int[errorParts.length];
+        cumulativeErrorRates = new double[errorParts.length];
+        double cumulativeRate = 0.0;
+        for (int i = 0; i < errorParts.length; i++) {
+            final String[] error = errorParts[i].trim().split(":");
+            if (error.length != 2) {
+                throw new IllegalArgumentException("Invalid mock error: " + errorParts[i]);
+            }
+            try {
+                errorStatusCodes[i] = Integer.parseInt(error[0].trim());
+                cumulativeRate += Double.parseDouble(error[1].trim());
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid mock error: " + errorParts[i]);
+            }
+            cumulativeErrorRates[i] = cumulativeRate;
+        }
+        if (cumulativeRate > 1.0) {
+            throw new IllegalArgumentException("Mock error rates add up to more than 1: " + errors);
+        }
+        if (throttleSpec == null) {
+            throttlePeriodMillis = 0L;
+            throttleWindowMillis = 0L;
+        } else {
+            final String[] throttle = throttleSpec.split(":");
+            if (throttle.length != 2) {
+                throw new IllegalArgumentException("Invalid mock throttling: " + throttleSpec);
+            }
+            try {
+                throttlePeriodMillis = Long.parseLong(throttle[0].trim());
+                throttleWindowMillis = Long.parseLong(throttle[1].trim());
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid mock throttling: " + throttleSpec);
+            }
+            if (throttlePeriodMillis <= 0L || throttleWindowMillis < 0L
+                    || throttleWindowMillis > throttlePeriodMillis) {
+                throw new IllegalArgumentException("Invalid mock throttling: " + throttleSpec);
+            }
+        }
+    }
+
+    /**
+     * Ctor, using the default latency distribution and errors without throttling.
+     */
+    public MockBehavior() {
+        this(null, null, null);
+    }
+
+    /**
+     * Draws the latency of a response.
+     *
+     * @return latency in milliseconds
+     */
+    public long nextLatencyMillis() {
+        return latencyDistribution.nextMillis();
+    }
+
+    /**
+     * Draws the status code of an issue creation.
+     *
+     * @return status code 200, or the status code of an error
+     */
+    public int nextStatusCode() {
+        final double draw = ThreadLocalRandom.current().nextDouble();
+        for (int i = 0; i < cumulativeErrorRates.length; i++) {
+            if (draw < cumulativeErrorRates[i]) {
+                return errorStatusCodes[i];
+            }
+        }
+        return STATUS_CODE_SUCCESS;
+    }
+
+    /**
+     * Returns the response of a request if it's throttled at a given time.
+     *
+     * @param timeMillis
+     *            {@link System#currentTimeMillis()} value of the time the response is sent
+     * @return Rate limited response asking to retry after the throttling window, or
+     *         <code>null</code> if the request isn't throttled
+     */
+    public UploadResponse getThrottledResponse(final long timeMillis) {
+        if (throttlePeriodMillis == 0L) {
+            return null;
+        }
+        final long periodTime = (timeMillis - startMillis) % throttlePeriodMillis;
+        final long windowStart = throttlePeriodMillis - throttleWindowMillis;
+        if (periodTime < windowStart) {
+            return null;
+        }
+        return new UploadResponse(STATUS_CODE_TOO_MANY_REQUESTS, null,
+                throttlePeriodMillis - periodTime);
+    }
+}
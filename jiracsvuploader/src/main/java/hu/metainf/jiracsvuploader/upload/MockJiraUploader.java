@@ -0,0 +1,121 @@
+package hu.metainf.jiracsvuploader.upload;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link JiraUploader} implementation not connecting to any Jira instance. Responses are completed
+ * by a timer thread after a random delay, with random status codes, both drawn as configured by a
+ * {@link MockBehavior}. By default the delay is between 10 and 100 milliseconds, and the status
+ * code is 200 with a probability of 99%, and 403 with a probability of 1%.
+ *
+ */
+public class MockJiraUploader implements JiraUploader {
+    /** Status code for successful response. */
+    private static final int STATUS_CODE_SUCCESS = 200;
+    /** Status code for created response. */
+    private static final int STATUS_CODE_CREATED = 201;
+    /** Status code for bad request response. */
+    private static final int STATUS_CODE_BAD_REQUEST = 400;
+
+    /** {@link MockBehavior} drawing the latencies and status codes. */
+    private final MockBehavior behavior;
+    /** Timer completing the responses. */
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "mock-jira-uploader");
+                thread.setDaemon(true);
+                return thread;
+            });
+    /** Counter of issue ids generated. */
+    private final AtomicLong issueIdCounter = new AtomicLong();
+
+    /**
+     * Ctor.
+     *
+     * @param behavior
+     *            {@link MockBehavior} drawing the latencies and status codes
+     */
+    public MockJiraUploader(final MockBehavior behavior) {
+        this.behavior = behavior;
+    }
+
+    /**
+     * Ctor, using the default {@link MockBehavior}.
+     */
+    public MockJiraUploader() {
+        this(new MockBehavior());
+    }
+
+    @Override
+    public CompletableFuture<UploadResponse> upload(final byte[] jsonPayload) {
+        final CompletableFuture<UploadResponse> response = new CompletableFuture<>();
+        scheduler.schedule(() -> response.complete(createResponse()),
+                behavior.nextLatencyMillis(), TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<UploadResponse> uploadBulk(final List<byte[]> jsonPayloads) {
+        final CompletableFuture<UploadResponse> response = new CompletableFuture<>();
+        scheduler.schedule(() -> response.complete(createBulkResponse(jsonPayloads.size())),
+                behavior.nextLatencyMillis(), TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Creates a single creation response.
+     *
+     * @return Response created
+     */
+    private UploadResponse createResponse() {
+        final UploadResponse throttledResponse =
+                behavior.getThrottledResponse(System.currentTimeMillis());
+        if (throttledResponse != null) {
+            return throttledResponse;
+        }
+        return new UploadResponse(behavior.nextStatusCode(), null);
+    }
+
+    /**
+     * Creates a bulk creation response, with each element failing independently like single
+     * uploads do. Throttling rejects the whole request.
+     *
+     * @param elementNr
+     *            number of issues in the bulk request
+     * @return Response created
+     */
+    private UploadResponse createBulkResponse(final int elementNr) {
+        final UploadResponse throttledResponse =
+                behavior.getThrottledResponse(System.currentTimeMillis());
+        if (throttledResponse != null) {
+            return throttledResponse;
+        }
+        final StringBuilder issues = new StringBuilder();
+        final StringBuilder errors = new StringBuilder();
+        for (int i = 0; i < elementNr; i++) {
+            final int statusCode = behavior.nextStatusCode();
+            if (statusCode == STATUS_CODE_SUCCESS) {
+                final long issueId = issueIdCounter.incrementAndGet();
+                issues.append(issues.length() > 0 ? "," : "").append("{\"id\":\"")
+                        .append(issueId).append("\",\"key\":\"MOCK-").append(issueId).append("\"}");
+            } else {
+                errors.append(errors.length() > 0 ? "," : "").append("{\"status\":")
+                        .append(statusCode).append(",\"failedElementNumber\":").append(i)
+                        .append(",\"elementErrors\":{\"errorMessages\":[\"Mock error\"]}}");
+            }
+        }
+        return new UploadResponse(
+                issues.length() > 0 ? STATUS_CODE_CREATED : STATUS_CODE_BAD_REQUEST,
+                "{\"issues\":[" + issues + "],\"errors\":[" + errors + "]}");
+    }
+}
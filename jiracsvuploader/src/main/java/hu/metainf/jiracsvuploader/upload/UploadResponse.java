@@ -0,0 +1,120 @@
+package hu.metainf.jiracsvuploader.upload;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Response received from a Jira instance for an upload.
+ *
+ */
+public class UploadResponse {
+    /** Lower bound (inclusive) of successful status codes. */
+    private static final int STATUS_CODE_SUCCESS_MIN = 200;
+    /** Upper bound (exclusive) of successful status codes. */
+    private static final int STATUS_CODE_SUCCESS_MAX = 300;
+    /** Status code of rate limited requests. */
+    private static final int STATUS_CODE_TOO_MANY_REQUESTS = 429;
+    /** Status code of requests rejected by an overloaded server. */
+    private static final int STATUS_CODE_SERVICE_UNAVAILABLE = 503;
+
+    /** HTTP status code of the response. */
+    private final int statusCode;
+    /** Body of the response, may be <code>null</code>. */
+    private final String body;
+    /** Time in milliseconds the server asked to wait before retrying, or -1 if not given. */
+    private final long retryAfterMillis;
+
+    /**
+     * Ctor, for a response not asking for a retry delay.
+     *
+     * @param statusCode
+     *            HTTP status code of the response
+     * @param body
+     *            body of the response, may be <code>null</code>
+     */
+    public UploadResponse(final int statusCode, final String body) {
+        this(statusCode, body, -1L);
+    }
+
+    /**
+     * Ctor.
+     *
+     * @param statusCode
+     *            HTTP status code of the response
+     * @param body
+     *            body of the response, may be <code>null</code>
+     * @param retryAfterMillis
+     *            time in milliseconds the server asked to wait before retrying, as given by the
+     *            <code>Retry-After</code> header, or -1 if not given
+     */
+    public UploadResponse(final int statusCode, final String body, final long retryAfterMillis) {
+        this.statusCode = statusCode;
+        this.body = body;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns the HTTP status code of the response.
+     *
+     * @return status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the body of the response.
+     *
+     * @return response body, or <code>null</code> if the response had no body
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * Extracts the key of the created issue from the body of the response. Parses the body, so
+     * it's meant to be called off the upload path.
+     *
+     * @return The issue key, or <code>null</code> if the body doesn't contain a valid one
+     */
+    public String getIssueKey() {
+        if (body == null) {
+            return null;
+        }
+        try {
+            final String key = new JSONObject(body).optString("key", "");
+            return key.isEmpty() || key.indexOf(' ') >= 0 ? null : key;
+        } catch (final JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the time the server asked to wait before retrying.
+     *
+     * @return time in milliseconds, or -1 if the response didn't ask for a delay
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * Checks if the response signals a successful upload.
+     *
+     * @return <code>true</code> if the status code is a 2xx one
+     */
+    public boolean isSuccessful() {
+        return statusCode >= STATUS_CODE_SUCCESS_MIN && statusCode < STATUS_CODE_SUCCESS_MAX;
+    }
+
+    /**
+     * Checks if the response signals that the Jira instance is overloaded: the request was rate
+     * limited, rejected as the service is unavailable, or no response was received at all.
+     *
+     * @return <code>true</code> if the status code is 429, 503 or 0
+     */
+    public boolean isThrottled() {
+        return statusCode == STATUS_CODE_TOO_MANY_REQUESTS
+                || statusCode == STATUS_CODE_SERVICE_UNAVAILABLE || statusCode == 0;
+    }
+}
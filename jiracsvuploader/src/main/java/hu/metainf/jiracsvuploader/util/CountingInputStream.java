@@ -0,0 +1,58 @@
+package hu.metainf.jiracsvuploader.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import hu.metainf.jiracsvuploader.stat.StatData;
+
+/**
+ * {@link InputStream} adding the number of bytes read through it to a summarized
+ * {@link StatData} property, so the progress of reading is visible during the run. Meant to be
+ * read in blocks, as every read updates the property.
+ *
+ */
+public class CountingInputStream extends FilterInputStream {
+    /** Identifier of the property the bytes read are added to. */
+    private final String propertyId;
+
+    /**
+     * Ctor.
+     *
+     * @param in
+     *            {@link InputStream} read
+     * @param propertyId
+     *            identifier of the property the bytes read are added to
+     */
+    public CountingInputStream(final InputStream in, final String propertyId) {
+        super(in);
+        this.propertyId = propertyId;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (b >= 0) {
+            StatData.addIncrementedValue(propertyId);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int readNr = super.read(b, off, len);
+        if (readNr > 0) {
+            StatData.addSumValue(propertyId, readNr);
+        }
+        return readNr;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skippedNr = super.skip(n);
+        if (skippedNr > 0L) {
+            StatData.addSumValue(propertyId, skippedNr);
+        }
+        return skippedNr;
+    }
+}
@@ -1,14 +1,17 @@
 package hu.metainf.jiracsvuploader.util;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import hu.metainf.jiracsvuploader.stat.LatencyHistogram;
 import hu.metainf.jiracsvuploader.stat.StatData;
 
 /**
  * Custom {@link LinkedBlockingQueue} implementation registering waiting times tasks spending within
- * the queue.
+ * the queue. The enqueueing time is carried by the {@link QueueTimedTask} itself, other
+ * {@link Runnable}s are queued without being timed. Waiting times are recorded on every dequeuing
+ * path to the {@link StatTypeKeys#QUEUE_TIME} histogram.
  *
  */
 public class CustomLinkedBlockingQueue extends LinkedBlockingQueue<Runnable> {
@@ -16,27 +19,103 @@ public class CustomLinkedBlockingQueue extends LinkedBlockingQueue<Runnable> {
      * Serial version UID.
      */
     private static final long serialVersionUID = -3573032047260897279L;
+    /** Histogram of queue waiting times in nanoseconds. */
+    private final transient LatencyHistogram queueTimeHistogram =
+            StatData.getHistogram(StatTypeKeys.QUEUE_TIME);
+
+    /**
+     * Ctor, creating an unbounded queue.
+     */
+    public CustomLinkedBlockingQueue() {
+        super();
+    }
+
     /**
-     * {@link Map} holding task queuing times.
+     * Ctor, creating a queue with a fixed capacity.
+     *
+     * @param capacity
+     *            capacity of the queue
      */
-    private final Map<Runnable, Long> taskWaitMap = new ConcurrentHashMap<>();
+    public CustomLinkedBlockingQueue(final int capacity) {
+        super(capacity);
+    }
 
     @Override
     public boolean offer(final Runnable e) {
-        if (e == null) {
-            throw new NullPointerException();
-        }
-        taskWaitMap.put(e, System.currentTimeMillis());
+        markEnqueued(e);
         return super.offer(e);
     }
 
+    @Override
+    public boolean offer(final Runnable e, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        markEnqueued(e);
+        return super.offer(e, timeout, unit);
+    }
+
+    @Override
+    public void put(final Runnable e) throws InterruptedException {
+        markEnqueued(e);
+        super.put(e);
+    }
+
     @Override
     public Runnable take() throws InterruptedException {
-        final Runnable runnable = super.take();
-        if (runnable != null && taskWaitMap.containsKey(runnable)) {
-            final Long taskWaitStart = taskWaitMap.remove(runnable);
-            final Long queueTime = System.currentTimeMillis() - taskWaitStart;
-            StatData.addSumValue(StatTypeKeys.TOTAL_QUEUE_TIME, queueTime);
+        return recordDequeued(super.take());
+    }
+
+    @Override
+    public Runnable poll() {
+        return recordDequeued(super.poll());
+    }
+
+    @Override
+    public Runnable poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return recordDequeued(super.poll(timeout, unit));
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Runnable> c, final int maxElements) {
+        int drainedNr = 0;
+        Runnable runnable;
+        while (drainedNr < maxElements && (runnable = poll()) != null) {
+            c.add(runnable);
+            drainedNr++;
+        }
+        return drainedNr;
+    }
+
+    /**
+     * Sets the enqueueing time of a task.
+     *
+     * @param runnable
+     *            task being enqueued
+     */
+    private void markEnqueued(final Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException();
+        }
+        if (runnable instanceof QueueTimedTask) {
+            ((QueueTimedTask) runnable).setEnqueueTime(System.nanoTime());
+        }
+    }
+
+    /**
+     * Records the time a task spent waiting in the queue.
+     *
+     * @param runnable
+     *            task dequeued, may be <code>null</code>
+     * @return The task dequeued
+     */
+    private Runnable recordDequeued(final Runnable runnable) {
+        if (runnable instanceof QueueTimedTask) {
+            queueTimeHistogram.record(
+                    System.nanoTime() - ((QueueTimedTask) runnable).getEnqueueTime());
         }
         return runnable;
     }
@@ -0,0 +1,91 @@
+package hu.metainf.jiracsvuploader.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * {@link InputStream} reading a byte range of a file through memory-mapped windows. Doesn't use
+ * the position of the {@link FileChannel}, so multiple instances can read ranges of the same
+ * channel in parallel.
+ *
+ */
+public class MappedRangeInputStream extends InputStream {
+    /** Maximal size of a mapped window in bytes. */
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /** {@link FileChannel} of the file read. */
+    private final FileChannel channel;
+    /** End position (exclusive) of the range read. */
+    private final long end;
+    /** File position of the start of the next window to be mapped. */
+    private long nextWindowPos;
+    /** Currently mapped window. */
+    private MappedByteBuffer window;
+
+    /**
+     * Ctor.
+     *
+     * @param channel
+     *            {@link FileChannel} of the file to read
+     * @param start
+     *            start position (inclusive) of the range to read
+     * @param end
+     *            end position (exclusive) of the range to read
+     */
+    public MappedRangeInputStream(final FileChannel channel, final long start, final long end) {
+        super();
+        this.channel = channel;
+        this.end = end;
+        this.nextWindowPos = start;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureWindow()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureWindow()) {
+            return -1;
+        }
+        final int readLen = Math.min(len, window.remaining());
+        window.get(b, off, readLen);
+        return readLen;
+    }
+
+    @Override
+    public int available() {
+        return window == null ? 0 : window.remaining();
+    }
+
+    /**
+     * Maps the next window if the current one is exhausted.
+     *
+     * @return <code>true</code> if there are bytes to read, <code>false</code> at the end of the
+     *         range.
+     * @throws IOException
+     *             If mapping the file fails
+     */
+    private boolean ensureWindow() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (nextWindowPos >= end) {
+            return false;
+        }
+        final long windowSize = Math.min(WINDOW_SIZE, end - nextWindowPos);
+        window = channel.map(MapMode.READ_ONLY, nextWindowPos, windowSize);
+        nextWindowPos += windowSize;
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+package hu.metainf.jiracsvuploader.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter of pending work items which can be waited for to reach zero. Counting is lock-free, the
+ * monitor is only taken when the counter drops to zero.
+ *
+ */
+public class PendingCounter {
+    /** Number of pending items. */
+    private final AtomicLong pendingNr = new AtomicLong();
+    /** Monitor notified when the counter drops to zero. */
+    private final Object monitor = new Object();
+
+    /**
+     * Registers a new pending item.
+     */
+    public void increment() {
+        pendingNr.incrementAndGet();
+    }
+
+    /**
+     * Registers the completion of a pending item.
+     */
+    public void decrement() {
+        if (pendingNr.decrementAndGet() == 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of pending items.
+     *
+     * @return number of pending items
+     */
+    public long get() {
+        return pendingNr.get();
+    }
+
+    /**
+     * Waits till no item is pending.
+     *
+     * @throws InterruptedException
+     *             If waiting is interrupted
+     */
+    public void awaitZero() throws InterruptedException {
+        synchronized (monitor) {
+            while (pendingNr.get() > 0) {
+                monitor.wait();
+            }
+        }
+    }
+}
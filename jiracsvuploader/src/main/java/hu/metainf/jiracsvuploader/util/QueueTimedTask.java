@@ -0,0 +1,33 @@
+package hu.metainf.jiracsvuploader.util;
+
+/**
+ * Base class of tasks carrying the time they were put in a {@link CustomLinkedBlockingQueue}, so
+ * waiting times can be measured without a lookup structure maintained by the queue.
+ *
+ */
+public abstract class QueueTimedTask implements Runnable {
+    /**
+     * {@link System#nanoTime()} value of the enqueueing of the task. Visibility to the dequeuing
+     * thread is guaranteed by the queue handoff.
+     */
+    private long enqueueTime;
+
+    /**
+     * Returns the time the task was enqueued.
+     *
+     * @return {@link System#nanoTime()} value of the enqueueing
+     */
+    public long getEnqueueTime() {
+        return enqueueTime;
+    }
+
+    /**
+     * Sets the time the task was enqueued.
+     *
+     * @param enqueueTime
+     *            {@link System#nanoTime()} value of the enqueueing
+     */
+    public void setEnqueueTime(final long enqueueTime) {
+        this.enqueueTime = enqueueTime;
+    }
+}
@@ -0,0 +1,224 @@
+package hu.metainf.jiracsvuploader.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link InputStream} reading its source on a separate thread into large buffers, handed over to
+ * the reading thread through a queue. Expensive sources, like decompressing streams, are read
+ * ahead while the reading thread processes the previous buffers, so the work of the two threads
+ * overlaps. Buffers are allocated once and recycled, the number of buffers bounding how far the
+ * source is read ahead. A failure of the source is rethrown to the reading thread once the
+ * buffers read before it are consumed.
+ *
+ */
+public class ReadAheadInputStream extends InputStream {
+    /** Default size of a buffer in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    /** Default number of buffers. */
+    public static final int DEFAULT_BUFFER_NR = 4;
+    /** Marker handed over after the last buffer of the source. */
+    private static final Buffer END = new Buffer(0);
+
+    /** Source read ahead. */
+    private final InputStream source;
+    /** Buffers free for the source thread to fill. */
+    private final BlockingQueue<Buffer> freeBuffers;
+    /** Buffers filled by the source thread, followed by {@link #END}. */
+    private final BlockingQueue<Buffer> filledBuffers;
+    /** Thread reading the source. */
+    private final Thread sourceThread;
+    /** Failure of the source, set before {@link #END} is handed over. */
+    private volatile IOException failure;
+    /** Buffer being consumed, or <code>null</code>. */
+    private Buffer current;
+    /** Position of the next byte in the current buffer. */
+    private int position;
+    /** Whether the end of the source was reached. */
+    private boolean ended;
+
+    /**
+     * Ctor, starting the thread reading the source.
+     *
+     * @param source
+     *            source read ahead
+     * @param bufferSize
+     *            size of a buffer in bytes
+     * @param bufferNr
+     *            number of buffers
+     * @param threadName
+     *            name of the thread reading the source
+     */
+    public ReadAheadInputStream(
+            final InputStream source,
+            final int bufferSize,
+            final int bufferNr,
+            final String threadName) {
+        super();
+        this.source = source;
+        freeBuffers = new ArrayBlockingQueue<>(bufferNr);
+        filledBuffers = new ArrayBlockingQueue<>(bufferNr + 1);
+        for (int i = 0; i < bufferNr; i++) {
+            freeBuffers.add(new Buffer(bufferSize));
+        }
+        sourceThread = new Thread(this::readSource, threadName);
+        sourceThread.setDaemon(true);
+        sourceThread.start();
+    }
+
+    /**
+     * Ctor, using the default buffer size and number.
+     *
+     * @param source
+     *            source read ahead
+     * @param threadName
+     *            name of the thread reading the source
+     */
+    public ReadAheadInputStream(final InputStream source, final String threadName) {
+        this(source, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_NR, threadName);
+    }
+
+    /**
+     * Main loop of the source thread, filling the free buffers till the end of the source. The
+     * end is handed over however the loop stops, so the reading thread never waits for it in
+     * vain.
+     */
+    private void readSource() {
+        try {
+            while (true) {
+                final Buffer buffer = freeBuffers.take();
+                buffer.length = fill(buffer.data);
+                if (buffer.length == 0) {
+                    break;
+                }
+                filledBuffers.put(buffer);
+            }
+        } catch (final IOException e) {
+            failure = e;
+        } catch (final InterruptedException e) {
+            // Closed by the reading thread
+            return;
+        } catch (final Throwable e) {
+            failure = new IOException("Reading the source failed", e);
+        } finally {
+            // The queue holds all the buffers and the end, so it's never full
+            filledBuffers.add(END);
+        }
+    }
+
+    /**
+     * Fills a buffer from the source, reading till it's full or the source ends.
+     *
+     * @param data
+     *            buffer to fill
+     * @return Number of bytes read, 0 at the end of the source
+     * @throws IOException
+     *             If reading the source fails
+     */
+    private int fill(final byte[] data) throws IOException {
+        int length = 0;
+        while (length < data.length) {
+            final int readNr = source.read(data, length, data.length - length);
+            if (readNr < 0) {
+                break;
+            }
+            length += readNr;
+        }
+        return length;
+    }
+
+    /**
+     * Makes sure the current buffer has bytes left, taking the next filled buffer if needed.
+     *
+     * @return <code>true</code> if bytes are available, <code>false</code> at the end of the
+     *         source
+     * @throws IOException
+     *             If reading the source failed, or waiting for it was interrupted
+     */
+    private boolean ensureBuffer() throws IOException {
+        if (current != null && position < current.length) {
+            return true;
+        }
+        if (ended) {
+            return false;
+        }
+        if (current != null) {
+            freeBuffers.add(current);
+            current = null;
+        }
+        final Buffer next;
+        try {
+            next = filledBuffers.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for read-ahead data was interrupted");
+        }
+        if (next == END) {
+            ended = true;
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+        current = next;
+        position = 0;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureBuffer()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureBuffer()) {
+            return -1;
+        }
+        final int readNr = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, readNr);
+        position += readNr;
+        return readNr;
+    }
+
+    @Override
+    public int available() {
+        return current != null ? current.length - position : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sourceThread.interrupt();
+        source.close();
+    }
+
+    /**
+     * Buffer handed over between the threads.
+     *
+     */
+    private static final class Buffer {
+        /** Data of the buffer. */
+        private final byte[] data;
+        /** Number of bytes filled. */
+        private int length;
+
+        /**
+         * Ctor.
+         *
+         * @param size
+         *            size of the buffer in bytes
+         */
+        private Buffer(final int size) {
+            data = new byte[size];
+        }
+    }
+}
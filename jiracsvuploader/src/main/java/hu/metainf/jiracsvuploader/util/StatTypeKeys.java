@@ -12,18 +12,63 @@ public final class StatTypeKeys {
     public static final String APP_START_TIMESTAMP = "app.start.timestamp";
     /** Property identifier for application ending timestamp value. */
     public static final String APP_END_TIMESTAMP = "app.end.timestamp";
-    /** Shortest execution time. */
-    public static final String MIN_EXEC_TIME = "exec.time.min";
-    /** Longest execution time. */
-    public static final String MAX_EXEC_TIME = "exec.time.max";
-    /** Average execution time. */
-    public static final String AVG_EXEC_TIME = "exec.time.avg";
-    /** Total time taken by waiting in queue. */
-    public static final String TOTAL_QUEUE_TIME = "queue.time.total";
+    /** Histogram of execution times in nanoseconds. */
+    public static final String EXEC_TIME = "exec.time";
+    /** Histogram of times in nanoseconds taken by waiting in queue. */
+    public static final String QUEUE_TIME = "queue.time";
+    /** Total time in nanoseconds the reader spent blocked on a full task queue. */
+    public static final String TOTAL_READER_BLOCKED_TIME = "reader.blocked.time.total";
+    /** Number of bytes of the CSV file to be read by the run. */
+    public static final String INPUT_BYTE_NR = "input.byte.nr";
+    /** Number of bytes of the CSV file read so far. */
+    public static final String READ_BYTE_NR = "input.read.byte.nr";
+    /** Number of rows submitted for uploading. */
+    public static final String SUBMITTED_ROW_NR = "row.submitted.nr";
     /** Number of processed rows. */
     public static final String PROCESSED_ROW_NR = "row.processed.nr";
+    /** Number of malformed rows skipped. */
+    public static final String MALFORMED_ROW_NR = "row.malformed.nr";
     /** Number of uploaded rows. */
     public static final String UPLOADED_ROW_NR = "row.uploaded.nr";
+    /** Number of bulk upload requests sent. */
+    public static final String UPLOADED_BATCH_NR = "batch.uploaded.nr";
+    /** Last limit of uploads in flight. */
+    public static final String CONCURRENCY_LIMIT = "concurrency.limit";
+    /** Lowest limit of uploads in flight. */
+    public static final String CONCURRENCY_LIMIT_MIN = "concurrency.limit.min";
+    /** Highest limit of uploads in flight. */
+    public static final String CONCURRENCY_LIMIT_MAX = "concurrency.limit.max";
     /** Number of failed row uploads. */
     public static final String FAILED_ROW_UPLOAD_NR = "row.failed.upload.nr";
+    /** Number of rows not matching the filter. */
+    public static final String FILTERED_ROW_NR = "row.filtered.nr";
+    /** Number of rows skipped as already present in Jira. */
+    public static final String DUPLICATE_ROW_NR = "row.duplicate.nr";
+    /** Number of rows skipped as completed by the resumed import. */
+    public static final String RESUME_SKIPPED_ROW_NR = "row.resume.skipped.nr";
+    /** Number of group commits of the progress journal. */
+    public static final String JOURNAL_COMMIT_NR = "journal.commit.nr";
+    /** Number of audit records written. */
+    public static final String AUDIT_RECORD_NR = "audit.record.nr";
+    /** Number of audit records dropped as the audit writer fell behind. */
+    public static final String AUDIT_DROPPED_NR = "audit.dropped.nr";
+    /** Number of upload retries scheduled. */
+    public static final String RETRIED_UPLOAD_NR = "upload.retried.nr";
+    /** Number of times uploads were deferred by the rate limits. */
+    public static final String RATE_DEFERRED_UPLOAD_NR = "upload.rate.deferred.nr";
+    /** Number of records held in compact form. */
+    public static final String COMPACT_RECORD_NR = "record.compact.nr";
+    /** Estimated heap bytes of the records held in compact form. */
+    public static final String COMPACT_RECORD_HEAP_BYTE_NR = "record.compact.heap.byte.nr";
+    /** Estimated heap bytes the records held in compact form would use as they are. */
+    public static final String COMPACT_RECORD_PLAIN_HEAP_BYTE_NR =
+            "record.compact.plain.heap.byte.nr";
+    /** Time spent mapping a record to the Jira fields in nanoseconds. */
+    public static final String MAPPING_TIME = "mapping.time";
+    /** Number of field values converted, missing from the caches of the field mapping. */
+    public static final String MAPPING_CACHE_MISS_NR = "mapping.cache.miss.nr";
+    /** Number of times the circuit breaker opened. */
+    public static final String CIRCUIT_OPEN_NR = "circuit.open.nr";
+    /** Total time in nanoseconds the circuit breaker was open. */
+    public static final String CIRCUIT_OPEN_TIME = "circuit.open.time.total";
 }
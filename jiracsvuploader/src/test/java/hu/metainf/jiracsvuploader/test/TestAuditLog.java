@@ -0,0 +1,86 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.audit.AuditFormat;
+import hu.metainf.jiracsvuploader.audit.AuditLog;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+
+public class TestAuditLog {
+    @Test
+    public void testNdjsonRotationAndSampling() throws IOException {
+        final Path directory = Files.createTempDirectory("audit");
+        final Path path = directory.resolve("audit.ndjson");
+        try (AuditLog auditLog =
+                new AuditLog(path.toString(), AuditFormat.NDJSON, 0.0, true, 1000L, 100)) {
+            for (int i = 1; i <= 50; i++) {
+                auditLog.record(i, "SRC-" + i, new UploadResponse(500, null), 2_000_000L,
+                        "{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+                // Sampled out
+                auditLog.record(i, "SRC-" + i, new UploadResponse(201, "{\"key\":\"T-1\"}"), 1L,
+                        null);
+            }
+        }
+        int lineNr = 0;
+        int summaryNr = 0;
+        for (final File file : directory.toFile().listFiles()) {
+            final List<String> lines = Files.readAllLines(file.toPath());
+            for (final String line : lines) {
+                final JSONObject record = new JSONObject(line);
+                if (record.optBoolean(AuditLog.SUMMARY_PROPERTY)) {
+                    assertEquals(path.toFile(), file);
+                    assertEquals(0.0, record.getDouble(AuditLog.SAMPLE_RATE_PROPERTY), 0.0);
+                    assertEquals(0L, record.getLong(AuditLog.DROPPED_PROPERTY));
+                    assertTrue(record.getInt(AuditLog.ROTATED_PROPERTY) > 0);
+                    summaryNr++;
+                    continue;
+                }
+                assertEquals(500, record.getInt("status"));
+                assertEquals(2000L, record.getLong("latencyMicros"));
+                assertTrue(record.isNull("key"));
+                assertEquals("SRC-" + record.getLong("row"), record.getString("sourceKey"));
+                assertEquals(1, record.getJSONObject("payload").getInt("a"));
+                lineNr++;
+            }
+            file.delete();
+        }
+        assertEquals(50, lineNr);
+        assertEquals(1, summaryNr);
+        directory.toFile().delete();
+    }
+
+    @Test
+    public void testBinary() throws IOException {
+        final File file = File.createTempFile("audit", ".bin");
+        file.deleteOnExit();
+        try (AuditLog auditLog =
+                new AuditLog(file.getPath(), AuditFormat.BINARY, 1.0, false, 0L, 1)) {
+            auditLog.record(7L, "SRC-7", new UploadResponse(201, "{\"key\":\"T-7\"}"), 5L,
+                    new byte[1]);
+        }
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            assertTrue(input.readLong() > 0L);
+            assertEquals(7L, input.readLong());
+            assertEquals(201, input.readShort());
+            assertEquals(5L, input.readLong());
+            assertEquals("T-7", input.readUTF());
+            assertEquals("SRC-7", input.readUTF());
+            assertEquals(-1, input.readInt());
+            assertFalse(input.available() > 0);
+        }
+    }
+}
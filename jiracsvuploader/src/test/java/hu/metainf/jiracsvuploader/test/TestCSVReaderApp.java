@@ -11,7 +11,7 @@ public class TestCSVReaderApp {
         args[0] = "-t";
         args[1] = "8";
         args[2] = "-f";
-        args[3] = "target\\test-classes\\miketest.csv";
+        args[3] = "target/test-classes/miketest.csv";
         AppMain.main(args);
     }
 }
@@ -0,0 +1,84 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import hu.metainf.jiracsvuploader.process.InputCompression;
+import hu.metainf.jiracsvuploader.util.ReadAheadInputStream;
+
+public class TestCompressedInput {
+    @Test
+    public void testDetectAndDecompress() throws IOException {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            content.append(i).append(",\"value ").append(i).append("\"\n");
+        }
+        final byte[] expected = content.toString().getBytes(StandardCharsets.UTF_8);
+        final File plainFile = File.createTempFile("input", ".csv");
+        final File gzipFile = File.createTempFile("input", ".csv.gz");
+        final File zstdFile = File.createTempFile("input", ".csv.zst");
+        try (OutputStream output = new FileOutputStream(plainFile)) {
+            output.write(expected);
+        }
+        try (OutputStream output = new GZIPOutputStream(new FileOutputStream(gzipFile))) {
+            output.write(expected);
+        }
+        try (OutputStream output = new ZstdOutputStream(new FileOutputStream(zstdFile))) {
+            output.write(expected);
+        }
+        assertArrayEquals(expected, readDecompressed(plainFile, InputCompression.NONE));
+        assertArrayEquals(expected, readDecompressed(gzipFile, InputCompression.GZIP));
+        assertArrayEquals(expected, readDecompressed(zstdFile, InputCompression.ZSTD));
+        plainFile.delete();
+        gzipFile.delete();
+        zstdFile.delete();
+    }
+
+    @Test(expected = IOException.class)
+    public void testSourceFailure() throws IOException {
+        try (InputStream input = new ReadAheadInputStream(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Broken source");
+            }
+        }, 4, 2, "test-read-ahead")) {
+            input.read();
+        }
+    }
+
+    @Test(timeout = 10000L, expected = IOException.class)
+    public void testSourceRuntimeFailure() throws IOException {
+        try (InputStream input = new ReadAheadInputStream(new InputStream() {
+            @Override
+            public int read() {
+                throw new IllegalStateException("Corrupt source");
+            }
+        }, 4, 2, "test-read-ahead")) {
+            input.read();
+        }
+    }
+
+    private static byte[] readDecompressed(final File file, final InputCompression compression)
+            throws IOException {
+        try (FileInputStream fileStream = new FileInputStream(file)) {
+            assertEquals(compression, InputCompression.detect(fileStream.getChannel()));
+            try (InputStream input = new ReadAheadInputStream(
+                    compression.decompress(fileStream), 1000, 3, "test-read-ahead")) {
+                return input.readAllBytes();
+            }
+        }
+    }
+}
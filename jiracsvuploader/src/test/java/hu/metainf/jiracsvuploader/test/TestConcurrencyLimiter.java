@@ -0,0 +1,61 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.limit.AdaptiveConcurrencyLimiter;
+import hu.metainf.jiracsvuploader.limit.ConcurrencyLimiter;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+
+public class TestConcurrencyLimiter {
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void testFixedLimit() throws InterruptedException {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.release(LATENCY, new UploadResponse(429, null));
+        assertEquals(2, limiter.getLimit());
+        assertTrue(limiter.tryAcquire());
+        limiter.release(LATENCY, new UploadResponse(200, null));
+        limiter.release(LATENCY, new UploadResponse(200, null));
+        limiter.awaitIdle();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws InterruptedException {
+        final ConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(64);
+        for (int round = 0; round < 10; round++) {
+            final int acquiredNr = acquireAll(limiter);
+            for (int i = 0; i < acquiredNr; i++) {
+                limiter.release(LATENCY, new UploadResponse(200, null));
+            }
+        }
+        assertEquals(64, limiter.getLimit());
+
+        // A round trip passed since the creation of the limiter, the throttled responses arrive
+        // within a round trip, cutting the limit back once
+        Thread.sleep(150);
+        final int acquiredNr = acquireAll(limiter);
+        for (int i = 0; i < acquiredNr; i++) {
+            limiter.release(LATENCY, new UploadResponse(429, null));
+        }
+        assertEquals(48, limiter.getLimit());
+    }
+
+    private static int acquireAll(final ConcurrencyLimiter limiter) {
+        int acquiredNr = 0;
+        while (limiter.tryAcquire()) {
+            acquiredNr++;
+        }
+        return acquiredNr;
+    }
+}
@@ -0,0 +1,222 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.coordination.CooperativeImport;
+import hu.metainf.jiracsvuploader.coordination.DirectoryCoordinator;
+import hu.metainf.jiracsvuploader.coordination.LocalCoordinator;
+import hu.metainf.jiracsvuploader.coordination.PartitionCoordinator;
+import hu.metainf.jiracsvuploader.coordination.PartitionLease;
+import hu.metainf.jiracsvuploader.coordination.PartitionPlanner;
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+
+public class TestCooperativeImport {
+    @Test
+    public void testExpiredLeaseTakeover() throws IOException, InterruptedException {
+        final Path directory = Files.createTempDirectory("coordination");
+        final DirectoryCoordinator coordinator =
+                new DirectoryCoordinator(directory.toString(), 50L);
+        coordinator.initialize(300L, () -> new long[] {0L, 100L, 200L, 300L});
+        coordinator.initialize(300L, () -> {
+            throw new IOException("Partitions planned twice");
+        });
+        final PartitionLease lease = coordinator.acquire("a");
+        assertEquals(0, lease.getIndex());
+        assertEquals(1, coordinator.acquire("b").getIndex());
+        Thread.sleep(100L);
+        final PartitionLease takenOver = coordinator.acquire("b");
+        assertEquals(2, takenOver.getIndex());
+        assertEquals(0, coordinator.acquire("b").getIndex());
+        assertFalse(coordinator.renew(lease));
+        assertFalse(coordinator.complete(lease));
+        assertTrue(coordinator.complete(takenOver));
+        assertFalse(coordinator.isFinished());
+    }
+
+    @Test
+    public void testEachRecordUploadedOnce() throws Exception {
+        final Path csvFile = createCsvFile(200);
+        final Path journalDirectory = Files.createTempDirectory("journals");
+        final LocalCoordinator coordinator = new LocalCoordinator(3000L, journalDirectory);
+        final ExecutorService workers = Executors.newFixedThreadPool(2);
+        final List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final String ownerId = "worker-" + i;
+            results.add(workers.submit(() -> {
+                final CsvLineProcessor processor = new CsvLineProcessor(8);
+                new CooperativeImport(coordinator, ownerId, 3000L, 1024, null, false)
+                        .run(csvFile.toString(), 8, null, processor);
+                processor.shutdown();
+                return null;
+            }));
+        }
+        for (final Future<?> result : results) {
+            result.get();
+        }
+        workers.shutdown();
+        assertTrue(coordinator.isFinished());
+        assertNull(coordinator.acquire("worker-0"));
+        assertEquals(200, countJournaledRecords(journalDirectory));
+        Files.delete(csvFile);
+    }
+
+    @Test
+    public void testLeaseLostWhileOwnerAlive() throws Exception {
+        runStalledImport(false);
+    }
+
+    @Test
+    public void testLeaseLostOnRenewalFailures() throws Exception {
+        runStalledImport(true);
+    }
+
+    private static void runStalledImport(final boolean renewalFailing) throws Exception {
+        final Path csvFile = createCsvFile(200);
+        final Path journalDirectory = Files.createTempDirectory("journals");
+        final StalledCoordinator coordinator = new StalledCoordinator(
+                new LocalCoordinator(300L, journalDirectory), "stalled", renewalFailing);
+        final ExecutorService workers = Executors.newFixedThreadPool(2);
+        final List<Future<?>> results = new ArrayList<>();
+        for (final String ownerId : new String[] {"stalled", "healthy"}) {
+            results.add(workers.submit(() -> {
+                final CsvLineProcessor processor = new CsvLineProcessor(4);
+                new CooperativeImport(coordinator, ownerId, 300L, 1024, null, false)
+                        .run(csvFile.toString(), 1, null, processor);
+                processor.shutdown();
+                return null;
+            }));
+            // The stalled process leases the only partition first
+            assertTrue(coordinator.stalledLeased.await(10L, TimeUnit.SECONDS));
+        }
+        for (final Future<?> result : results) {
+            result.get();
+        }
+        workers.shutdown();
+        assertTrue(coordinator.renewalRefused);
+        assertTrue(coordinator.isFinished());
+        // The stalled process stopped journaling before the partition was taken over
+        assertEquals(200, countJournaledRecords(journalDirectory));
+        Files.delete(csvFile);
+    }
+
+    private static Path createCsvFile(final int recordNr) throws IOException {
+        final Path csvFile = Files.createTempFile("cooperative", ".csv");
+        final StringBuilder content = new StringBuilder("Issue key,Summary\n");
+        for (int i = 1; i <= recordNr; i++) {
+            content.append("DEMO-").append(i).append(",\"Issue\n").append(i).append("\"\n");
+        }
+        Files.write(csvFile, content.toString().getBytes(StandardCharsets.UTF_8));
+        return csvFile;
+    }
+
+    private static int countJournaledRecords(final Path journalDirectory) throws IOException {
+        int completedNr = 0;
+        try (Stream<Path> journals = Files.list(journalDirectory)) {
+            for (final Path journal : (Iterable<Path>) journals::iterator) {
+                final Set<String> recordNrs = new HashSet<>();
+                for (final String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("A ") || line.startsWith("F ")) {
+                        assertTrue(line, recordNrs.add(line.split(" ")[1]));
+                        completedNr++;
+                    }
+                }
+            }
+        }
+        return completedNr;
+    }
+
+    // Process alive but failing to renew its leases, which doesn't get any lease afterwards
+    private static final class StalledCoordinator implements PartitionCoordinator {
+        private final PartitionCoordinator coordinator;
+        private final String stalledOwnerId;
+        private final boolean renewalFailing;
+        private final CountDownLatch stalledLeased = new CountDownLatch(1);
+        private volatile boolean renewalRefused;
+
+        private StalledCoordinator(
+                final PartitionCoordinator coordinator,
+                final String stalledOwnerId,
+                final boolean renewalFailing) {
+            this.coordinator = coordinator;
+            this.stalledOwnerId = stalledOwnerId;
+            this.renewalFailing = renewalFailing;
+        }
+
+        @Override
+        public void initialize(final long inputSize, final PartitionPlanner planner)
+                throws IOException {
+            coordinator.initialize(inputSize, planner);
+        }
+
+        @Override
+        public PartitionLease acquire(final String ownerId) throws IOException {
+            if (renewalRefused && stalledOwnerId.equals(ownerId)) {
+                return null;
+            }
+            final PartitionLease lease = coordinator.acquire(ownerId);
+            if (lease != null && stalledOwnerId.equals(ownerId)) {
+                stalledLeased.countDown();
+            }
+            return lease;
+        }
+
+        @Override
+        public boolean renew(final PartitionLease lease) throws IOException {
+            if (stalledOwnerId.equals(lease.getOwnerId())) {
+                renewalRefused = true;
+                if (renewalFailing) {
+                    throw new IOException("Coordination directory is not reachable");
+                }
+                return false;
+            }
+            return coordinator.renew(lease);
+        }
+
+        @Override
+        public boolean complete(final PartitionLease lease) throws IOException {
+            return coordinator.complete(lease);
+        }
+
+        @Override
+        public boolean isFinished() throws IOException {
+            return coordinator.isFinished();
+        }
+
+        @Override
+        public String getJournalPath(final PartitionLease lease) {
+            return coordinator.getJournalPath(lease);
+        }
+
+        @Override
+        public void publishStats(final String ownerId, final SortedMap<String, Long> stats)
+                throws IOException {
+            coordinator.publishStats(ownerId, stats);
+        }
+
+        @Override
+        public SortedMap<String, Long> getMergedStats() throws IOException {
+            return coordinator.getMergedStats();
+        }
+    }
+}
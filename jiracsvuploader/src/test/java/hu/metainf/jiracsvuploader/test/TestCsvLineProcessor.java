@@ -0,0 +1,166 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.limit.ConcurrencyLimiter;
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.process.ExecutionMode;
+import hu.metainf.jiracsvuploader.process.JiraCsvReader;
+import hu.metainf.jiracsvuploader.process.PipelineSettings;
+import hu.metainf.jiracsvuploader.retry.CircuitBreaker;
+import hu.metainf.jiracsvuploader.retry.RejectsCsvWriter;
+import hu.metainf.jiracsvuploader.retry.RetryPolicy;
+import hu.metainf.jiracsvuploader.retry.RetryScheduler;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.upload.JiraUploader;
+import hu.metainf.jiracsvuploader.upload.MockBehavior;
+import hu.metainf.jiracsvuploader.upload.MockJiraUploader;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+public class TestCsvLineProcessor {
+    @Test(timeout = 30000L)
+    public void testPipelineFailureRegisteredOnce() throws Exception {
+        final File csvFile = writeCsvFile(1);
+        final File rejectsFile = File.createTempFile("rejects", ".csv");
+        final AtomicInteger rejectNr = new AtomicInteger();
+        // Registering the outcome fails halfway, after the record was counted as failed
+        final RejectsCsvWriter rejectsWriter = new RejectsCsvWriter(rejectsFile.getPath()) {
+            @Override
+            public synchronized void writeReject(final String[] fields) {
+                rejectNr.incrementAndGet();
+                throw new IllegalStateException("Rejects file is not writable");
+            }
+        };
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(0.5, 60000L);
+        for (int i = 0; i < 20; i++) {
+            circuitBreaker.tryAcquirePermission();
+            circuitBreaker.onResult(true);
+        }
+        final long failedNrBefore = StatData.getValue(StatTypeKeys.FAILED_ROW_UPLOAD_NR);
+        final CsvLineProcessor processor = new CsvLineProcessor(1, 0,
+                new MockJiraUploader(new MockBehavior("uniform:0-1", "", null)),
+                new ConcurrencyLimiter(1), null, ExecutionMode.PIPELINE,
+                new RetryScheduler(new RetryPolicy(0, 1L, 1L), circuitBreaker), rejectsWriter,
+                null, null, new PipelineSettings());
+        new JiraCsvReader().doJiraCSVProcessing(csvFile.getPath(), null, processor);
+        // The upload stage waits for the open circuit till it's interrupted
+        final Thread uploadThread = findThread("pipeline-upload-1");
+        while (uploadThread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(10L);
+        }
+        uploadThread.interrupt();
+        processor.shutdown();
+        assertEquals(1, rejectNr.get());
+        assertEquals(1L, StatData.getValue(StatTypeKeys.FAILED_ROW_UPLOAD_NR) - failedNrBefore);
+        csvFile.delete();
+        rejectsFile.delete();
+    }
+
+    @Test(timeout = 30000L)
+    public void testAsyncInFlightLimit() throws Exception {
+        final File csvFile = writeCsvFile(100);
+        final CountingUploader uploader = new CountingUploader();
+        final long uploadedNrBefore = StatData.getValue(StatTypeKeys.UPLOADED_ROW_NR);
+        // More threads than permits, uploads complete on the timer, not on the submitting threads
+        final CsvLineProcessor processor = new CsvLineProcessor(8, 0, uploader,
+                new ConcurrencyLimiter(3), null, ExecutionMode.ASYNC,
+                new RetryScheduler(new RetryPolicy(0, 1L, 1L), new CircuitBreaker(0.0, 1L)),
+                null, null, null, new PipelineSettings());
+        new JiraCsvReader().doJiraCSVProcessing(csvFile.getPath(), null, processor);
+        processor.shutdown();
+        uploader.close();
+        assertEquals(3, uploader.maxInFlightNr.get());
+        assertEquals(100L, StatData.getValue(StatTypeKeys.UPLOADED_ROW_NR) - uploadedNrBefore);
+        csvFile.delete();
+    }
+
+    @Test(timeout = 30000L)
+    public void testBoundedQueue() throws Exception {
+        final File csvFile = writeCsvFile(50);
+        final AtomicLong maxQueuedNr = new AtomicLong();
+        final CsvLineProcessor[] processor = new CsvLineProcessor[1];
+        final JiraUploader uploader = new MockJiraUploader(new MockBehavior("uniform:0-1", "",
+                null)) {
+            @Override
+            public CompletableFuture<UploadResponse> upload(final byte[] jsonPayload) {
+                maxQueuedNr.accumulateAndGet(processor[0].getQueuedTaskNr(), Math::max);
+                return super.upload(jsonPayload);
+            }
+        };
+        final long uploadedNrBefore = StatData.getValue(StatTypeKeys.UPLOADED_ROW_NR);
+        processor[0] = new CsvLineProcessor(1, 2, uploader, new ConcurrencyLimiter(1), null,
+                ExecutionMode.POOLED,
+                new RetryScheduler(new RetryPolicy(0, 1L, 1L), new CircuitBreaker(0.0, 1L)),
+                null, null, null, new PipelineSettings());
+        // The reader blocks while a task runs and two more wait in the queue
+        new JiraCsvReader().doJiraCSVProcessing(csvFile.getPath(), null, processor[0]);
+        processor[0].shutdown();
+        assertTrue(maxQueuedNr.get() <= 2);
+        assertEquals(50L, StatData.getValue(StatTypeKeys.UPLOADED_ROW_NR) - uploadedNrBefore);
+        csvFile.delete();
+    }
+
+    private static Thread findThread(final String name) {
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                return thread;
+            }
+        }
+        throw new AssertionError("No thread named " + name);
+    }
+
+    private static File writeCsvFile(final int recordNr) throws IOException {
+        final File csvFile = File.createTempFile("processor", ".csv");
+        final StringBuilder content = new StringBuilder("Issue key,Summary\n");
+        for (int i = 1; i <= recordNr; i++) {
+            content.append("DEMO-").append(i).append(",Issue ").append(i).append('\n');
+        }
+        Files.write(csvFile.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        assertTrue(csvFile.length() > 0L);
+        return csvFile;
+    }
+
+    // Completes uploads later on a timer thread, tracking the number of uploads in flight
+    private static final class CountingUploader implements JiraUploader {
+        private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(4);
+        private final AtomicInteger inFlightNr = new AtomicInteger();
+        private final AtomicInteger maxInFlightNr = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<UploadResponse> upload(final byte[] jsonPayload) {
+            maxInFlightNr.accumulateAndGet(inFlightNr.incrementAndGet(), Math::max);
+            final CompletableFuture<UploadResponse> response = new CompletableFuture<>();
+            timer.schedule(() -> {
+                inFlightNr.decrementAndGet();
+                response.complete(new UploadResponse(201, null));
+            }, 5L, TimeUnit.MILLISECONDS);
+            return response;
+        }
+
+        @Override
+        public CompletableFuture<UploadResponse> uploadBulk(final List<byte[]> jsonPayloads) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            timer.shutdown();
+        }
+    }
+}
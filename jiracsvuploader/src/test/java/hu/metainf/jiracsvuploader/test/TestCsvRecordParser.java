@@ -0,0 +1,58 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.process.CsvParseException;
+import hu.metainf.jiracsvuploader.process.CsvRecordParser;
+
+public class TestCsvRecordParser {
+    @Test
+    public void testQuotedFields() throws IOException {
+        final CsvRecordParser parser = new CsvRecordParser(new StringReader(
+                "a,b,c\r\n1,\"x,y\",\"say \"\"hi\"\"\nnext line\"\n2,,\n"));
+        assertArrayEquals(new String[] {"a", "b", "c"}, parser.nextRecord());
+        assertArrayEquals(new String[] {"1", "x,y", "say \"hi\"\nnext line"},
+                parser.nextRecord());
+        assertArrayEquals(new String[] {"2", "", ""}, parser.nextRecord());
+        assertNull(parser.nextRecord());
+        assertEquals(3, parser.getRecordNr());
+    }
+
+    @Test
+    public void testOversizedRecordIsSkipped() throws IOException {
+        final CsvRecordParser parser =
+                new CsvRecordParser(new StringReader("1,\"0123456789\n0123456789\"\n2,b\n"), 10);
+        try {
+            parser.nextRecord();
+            fail("Oversized record should be rejected");
+        } catch (final CsvParseException e) {
+            assertEquals(1, e.getRecordNr());
+        }
+        assertArrayEquals(new String[] {"2", "b"}, parser.nextRecord());
+        assertNull(parser.nextRecord());
+    }
+
+    @Test(expected = CsvParseException.class)
+    public void testUnterminatedQuote() throws IOException {
+        final CsvRecordParser parser = new CsvRecordParser(new StringReader("1,\"abc\n2,b\n"));
+        parser.nextRecord();
+    }
+
+    @Test
+    public void testByteOffset() throws IOException {
+        final CsvRecordParser parser =
+                new CsvRecordParser(new StringReader("\ufeffa,\u00e1rv\u00edz\n\"\u20ac\",b\n"));
+        parser.nextRecord();
+        assertEquals(3 + 10, parser.getOffset());
+        parser.nextRecord();
+        assertEquals(3 + 10 + 8, parser.getOffset());
+    }
+}
@@ -0,0 +1,93 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.mapping.FieldMapping;
+import hu.metainf.jiracsvuploader.process.JsonRecordSerializer;
+
+public class TestFieldMapping {
+    private static final String[] HEADER_ROW =
+            {"Issue key", "Status", "Created", "Assignee", "Story Points", "Summary"};
+
+    @Test
+    public void testNestedPathsAndConverters() {
+        final FieldMapping fieldMapping = new FieldMapping(Arrays.asList(
+                "# Jira fields",
+                "Issue key = fields.project.key | project",
+                "Summary = fields.summary",
+                "Status = fields.status.name | enum",
+                "Created = fields.created | date dd/MMM/yy h:mm a",
+                "",
+                "Assignee = fields.assignee.name | user",
+                "Story Points = fields.customfield_10002 | number",
+                "Issue key = properties.source"),
+                Collections.singletonMap("Mike Demo", "mdemo"));
+        final JsonRecordSerializer serializer = new JsonRecordSerializer(HEADER_ROW, fieldMapping);
+        final String created = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ")
+                .format(LocalDateTime.of(2018, 6, 7, 15, 13).atZone(ZoneId.systemDefault()));
+        for (int i = 0; i < 2; i++) {
+            assertEquals("{\"fields\":{\"project\":{\"key\":\"DEMO\"},"
+                    + "\"summary\":\"Say \\\"hi\\\"\",\"status\":{\"name\":\"Backlog\"},"
+                    + "\"created\":\"" + created + "\","
+                    + "\"assignee\":{\"name\":\"mdemo\"},\"customfield_10002\":3.50},"
+                    + "\"properties\":{\"source\":\"DEMO-1000\"}}",
+                    serialize(serializer, "DEMO-1000", " Backlog", "07/jun/18 3:13 PM",
+                            "Mike Demo", "3.50", "Say \"hi\""));
+        }
+        assertEquals("{\"fields\":{\"project\":{\"key\":\"DEMO\"},\"summary\":null,"
+                + "\"status\":{\"name\":null},\"created\":null,"
+                + "\"assignee\":{\"name\":\"someone\"},\"customfield_10002\":null},"
+                + "\"properties\":{\"source\":\"DEMO-1\"}}",
+                serialize(serializer, "DEMO-1", "", " ", "someone", ""));
+        try {
+            serialize(serializer, "DEMO-2", "Open", "yesterday", "", "", "");
+            fail("Invalid date converted");
+        } catch (final IllegalArgumentException e) {
+            assertEquals("Column #3: Invalid date: yesterday", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testInvalidMappings() {
+        assertInvalid("Invalid field mapping line 2: JSON path leads through a value:"
+                + " fields.summary.text", "Summary = fields.summary",
+                "Summary = fields.summary.text");
+        assertInvalid("Invalid field mapping line 1: Unknown converter: bool",
+                "Status = fields.status | bool");
+        assertInvalid("Invalid field mapping line 1: Date converter requires a date pattern",
+                "Created = fields.created | date");
+        assertInvalid("Field mapping maps no columns", "# nothing");
+        try {
+            new JsonRecordSerializer(HEADER_ROW,
+                    new FieldMapping(Arrays.asList("Priority = fields.priority.name"),
+                            Collections.emptyMap()));
+            fail("Missing column compiled");
+        } catch (final IllegalArgumentException e) {
+            assertEquals("Mapped column not in CSV header row: Priority", e.getMessage());
+        }
+    }
+
+    private static String serialize(final JsonRecordSerializer serializer,
+            final String... fields) {
+        return new String(serializer.serialize(fields), StandardCharsets.UTF_8);
+    }
+
+    private static void assertInvalid(final String message, final String... lines) {
+        try {
+            new FieldMapping(Arrays.asList(lines), Collections.emptyMap());
+            fail("Invalid mapping parsed");
+        } catch (final IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
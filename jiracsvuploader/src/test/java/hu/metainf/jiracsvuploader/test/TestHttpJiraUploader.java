@@ -0,0 +1,76 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.upload.BatchingJiraUploader;
+import hu.metainf.jiracsvuploader.upload.HttpJiraUploader;
+import hu.metainf.jiracsvuploader.upload.JiraStubServer;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+
+public class TestHttpJiraUploader {
+    @Test
+    public void testUploadToStubServer() throws Exception {
+        try (JiraStubServer stubServer = new JiraStubServer(0, 5, 20, 0.0, 503);
+                HttpJiraUploader uploader = new HttpJiraUploader(stubServer.getBaseUrl(),
+                        "user", "secret", 5000)) {
+            final List<CompletableFuture<UploadResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                responses.add(uploader.upload(createIssue(i)));
+            }
+            for (final CompletableFuture<UploadResponse> response : responses) {
+                assertTrue(response.get().isSuccessful());
+                assertTrue(response.get().getBody().contains("\"key\""));
+            }
+            assertEquals(50, stubServer.getRequestNr());
+        }
+    }
+
+    @Test
+    public void testErrorResponses() throws Exception {
+        try (JiraStubServer stubServer = new JiraStubServer(0, 0, 0, 1.0, 503);
+                HttpJiraUploader uploader =
+                        new HttpJiraUploader(stubServer.getBaseUrl(), null, null, 5000)) {
+            final UploadResponse response = uploader.upload(new byte[] {'{', '}'}).get();
+            assertEquals(503, response.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testBatchedUploads() throws Exception {
+        try (JiraStubServer stubServer = new JiraStubServer(0, 0, 5, 0.3, 400);
+                BatchingJiraUploader uploader = new BatchingJiraUploader(
+                        new HttpJiraUploader(stubServer.getBaseUrl(), null, null, 5000), 10,
+                        1024 * 1024, 1000)) {
+            final List<CompletableFuture<UploadResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 95; i++) {
+                responses.add(uploader.upload(createIssue(i)));
+            }
+            int createdNr = 0;
+            int failedNr = 0;
+            for (final CompletableFuture<UploadResponse> response : responses) {
+                if (response.get().isSuccessful()) {
+                    assertTrue(response.get().getBody().contains("\"key\""));
+                    createdNr++;
+                } else {
+                    assertEquals(400, response.get().getStatusCode());
+                    failedNr++;
+                }
+            }
+            assertEquals(95, createdNr + failedNr);
+            assertTrue(failedNr > 0);
+            assertEquals(10, stubServer.getRequestNr());
+        }
+    }
+
+    private static byte[] createIssue(final int i) {
+        return ("{\"fields\":{\"summary\":\"Issue " + i + "\"}}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,77 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.process.CsvRecord;
+import hu.metainf.jiracsvuploader.process.JiraCsvReader;
+
+public class TestJiraCsvReader {
+    private static final int RECORD_NR = 300;
+
+    @Test
+    public void testParallelReadMatchesSerialRead() throws IOException, InterruptedException {
+        final File csvFile = writeCsvFile();
+        final List<CsvRecord> serialRecords = readRecords(csvFile, 0);
+        assertEquals(RECORD_NR, serialRecords.size());
+        // Different chunk numbers move the chunk boundaries across the quoted multi-line fields
+        for (int readerThreadNr = 2; readerThreadNr <= 9; readerThreadNr++) {
+            final List<CsvRecord> parallelRecords = readRecords(csvFile, readerThreadNr);
+            assertEquals(serialRecords.size(), parallelRecords.size());
+            for (int i = 0; i < serialRecords.size(); i++) {
+                assertEquals(serialRecords.get(i).getRecordNr(),
+                        parallelRecords.get(i).getRecordNr());
+                assertArrayEquals(serialRecords.get(i).getFields(),
+                        parallelRecords.get(i).getFields());
+            }
+        }
+        csvFile.delete();
+    }
+
+    private static List<CsvRecord> readRecords(final File csvFile, final int readerThreadNr)
+            throws InterruptedException {
+        final List<CsvRecord> records = new CopyOnWriteArrayList<>();
+        final CsvLineProcessor processor = new CsvLineProcessor(1) {
+            @Override
+            public void add4Task(final CsvRecord csvRecord) {
+                records.add(csvRecord);
+            }
+        };
+        if (readerThreadNr > 0) {
+            new JiraCsvReader().doParallelJiraCSVProcessing(csvFile.getPath(), null, processor,
+                    readerThreadNr);
+        } else {
+            new JiraCsvReader().doJiraCSVProcessing(csvFile.getPath(), null, processor);
+        }
+        processor.shutdown();
+        records.sort(Comparator.comparingLong(CsvRecord::getRecordNr));
+        return records;
+    }
+
+    private static File writeCsvFile() throws IOException {
+        final File csvFile = File.createTempFile("reader", ".csv");
+        final StringBuilder content = new StringBuilder("Issue key,Summary,Description\n");
+        for (int i = 1; i <= RECORD_NR; i++) {
+            content.append("DEMO-").append(i).append(",Issue ").append(i).append(",\"");
+            // Lines of the description look like records, with commas and escaped quotes
+            for (int j = 0; j < i % 7; j++) {
+                content.append("DEMO-").append(i + j).append(",\"\"Issue\"\", ").append(j)
+                        .append('\n');
+            }
+            content.append("End of ").append(i).append("\"\n");
+        }
+        Files.write(csvFile.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        return csvFile;
+    }
+}
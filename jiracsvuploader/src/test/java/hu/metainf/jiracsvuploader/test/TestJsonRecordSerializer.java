@@ -0,0 +1,44 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.process.JsonRecordSerializer;
+
+public class TestJsonRecordSerializer {
+    @Test
+    public void testSerialize() {
+        final JsonRecordSerializer serializer =
+                new JsonRecordSerializer(new String[] {"Summary", "Say \"hi\"", "Extra"});
+        final String[] fields = {"árvíz € 😀", "a\\b\n\t\u0001\""};
+        final String json =
+                new String(serializer.serialize(fields), StandardCharsets.UTF_8);
+        assertEquals("{\"Summary\":\"árvíz € 😀\","
+                + "\"Say \\\"hi\\\"\":\"a\\\\b\\n\\t\\u0001\\\"\"}", json);
+
+        final JSONObject jsonObject = new JSONObject(json);
+        assertEquals(fields[0], jsonObject.getString("Summary"));
+        assertEquals(fields[1], jsonObject.getString("Say \"hi\""));
+        assertEquals("{}", new String(serializer.serialize(new String[0]),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRepeatedHeaders() {
+        final JsonRecordSerializer serializer = new JsonRecordSerializer(
+                new String[] {"Summary", "Labels", "Watchers", "Labels", "Labels"});
+        final String json = new String(serializer.serialize(
+                new String[] {"Title", "ui", "alice", "", "backend"}), StandardCharsets.UTF_8);
+        assertEquals("{\"Summary\":\"Title\",\"Labels\":[\"ui\",\"\",\"backend\"],"
+                + "\"Watchers\":\"alice\"}", json);
+
+        final JSONObject jsonObject = new JSONObject(json);
+        assertEquals(3, jsonObject.getJSONArray("Labels").length());
+        assertEquals("{\"Summary\":\"Title\",\"Labels\":[\"ui\"]}", new String(
+                serializer.serialize(new String[] {"Title", "ui"}), StandardCharsets.UTF_8));
+    }
+}
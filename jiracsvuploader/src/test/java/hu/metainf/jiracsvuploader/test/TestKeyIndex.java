@@ -0,0 +1,146 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.audit.AuditFormat;
+import hu.metainf.jiracsvuploader.audit.AuditLog;
+import hu.metainf.jiracsvuploader.dedupe.KeyIndex;
+import hu.metainf.jiracsvuploader.dedupe.KeyIndexLoader;
+import hu.metainf.jiracsvuploader.dedupe.RecordDeduplicator;
+import hu.metainf.jiracsvuploader.journal.ProgressJournal;
+import hu.metainf.jiracsvuploader.limit.ConcurrencyLimiter;
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.process.CsvRecordParser;
+import hu.metainf.jiracsvuploader.process.ExecutionMode;
+import hu.metainf.jiracsvuploader.process.JiraCsvReader;
+import hu.metainf.jiracsvuploader.retry.CircuitBreaker;
+import hu.metainf.jiracsvuploader.retry.RetryPolicy;
+import hu.metainf.jiracsvuploader.retry.RetryScheduler;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.upload.MockBehavior;
+import hu.metainf.jiracsvuploader.upload.MockJiraUploader;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+public class TestKeyIndex {
+    @Test
+    public void testAddAndContains() {
+        final KeyIndex keyIndex = new KeyIndex();
+        for (int i = 0; i < 200_000; i++) {
+            assertTrue(keyIndex.add("PROJ-" + i));
+        }
+        assertFalse(keyIndex.add("PROJ-42"));
+        assertTrue(keyIndex.add("Ütközés-1"));
+        assertEquals(200_001, keyIndex.size());
+        keyIndex.seal();
+        for (int i = 0; i < 200_000; i++) {
+            assertTrue(keyIndex.contains("PROJ-" + i));
+            assertFalse(keyIndex.contains("OTHER-" + i));
+        }
+        assertTrue(keyIndex.contains("Ütközés-1"));
+        assertFalse(keyIndex.contains("PROJ-"));
+        assertTrue(keyIndex.add("LATE-1"));
+        assertTrue(keyIndex.contains("LATE-1"));
+    }
+
+    @Test
+    public void testLoadFormats() throws IOException {
+        final File exportFile = writeTempFile("Summary,Issue key,Issue id\nFirst,PROJ-1,10001\n");
+        // Only the keys of the CSV records are loaded, not the ones Jira assigned
+        final File journalFile =
+                writeTempFile("A 1 T-1 PROJ-2\nF 2 403\nA 3 -\nA 4 T-4\nC 4 120\n");
+        final File auditFile = writeTempFile("{\"time\":1,\"row\":1,\"status\":201,\"key\":"
+                + "\"T-1\",\"sourceKey\":\"PROJ-3\"}\n{\"time\":2,\"row\":2,\"status\":403,"
+                + "\"key\":null,\"sourceKey\":null}\n"
+                + "{\"summary\":true,\"sampleRate\":1,\"dropped\":0,\"rotated\":0}\n");
+        final File keyListFile = writeTempFile("PROJ-4\nPROJ-5\n");
+        final KeyIndex keyIndex = new KeyIndexLoader(CsvRecordParser.DEFAULT_MAX_RECORD_LENGTH)
+                .load(Arrays.asList(exportFile.getPath(), journalFile.getPath(),
+                        auditFile.getPath(), keyListFile.getPath()));
+        assertEquals(6, keyIndex.size());
+        final RecordDeduplicator deduplicator =
+                new RecordDeduplicator(keyIndex, new String[] {"Issue id", "Issue Key"});
+        assertTrue(deduplicator.isDuplicate(new String[] {"10001", "NEW-1"}));
+        assertTrue(deduplicator.isDuplicate(new String[] {"", "PROJ-5"}));
+        assertFalse(deduplicator.isDuplicate(new String[] {"", "NEW-1"}));
+        exportFile.delete();
+        journalFile.delete();
+        auditFile.delete();
+        keyListFile.delete();
+    }
+
+    @Test
+    public void testIncompleteAuditLogRefused() throws IOException {
+        final File sampledFile = writeTempFile("");
+        try (AuditLog auditLog =
+                new AuditLog(sampledFile.getPath(), AuditFormat.NDJSON, 0.5, false, 0L, 1)) {
+            auditLog.record(1L, "PROJ-1", new UploadResponse(201, null), 1L, null);
+        }
+        final File unclosedFile = writeTempFile("{\"time\":1,\"row\":1,\"status\":201,"
+                + "\"key\":\"T-1\",\"sourceKey\":\"PROJ-1\"}\n");
+        final KeyIndexLoader loader =
+                new KeyIndexLoader(CsvRecordParser.DEFAULT_MAX_RECORD_LENGTH);
+        for (final File auditFile : new File[] {sampledFile, unclosedFile}) {
+            try {
+                loader.load(Arrays.asList(auditFile.getPath()));
+                fail("Incomplete audit log loaded");
+            } catch (final IOException e) {
+                assertTrue(e.getMessage().contains("progress journal"));
+            }
+            auditFile.delete();
+        }
+    }
+
+    @Test
+    public void testRerunWithOwnJournalAndAuditLog() throws IOException, InterruptedException {
+        final StringBuilder content = new StringBuilder("Summary,Issue key\n");
+        for (int i = 1; i <= 200; i++) {
+            content.append("Issue ").append(i).append(",SRC-").append(i).append('\n');
+        }
+        final File csvFile = writeTempFile(content.toString());
+        final File journalFile = writeTempFile("");
+        final File auditFile = writeTempFile("");
+        final CsvLineProcessor firstRun = new CsvLineProcessor(2, 0,
+                new MockJiraUploader(new MockBehavior("uniform:0-1", "", null)),
+                new ConcurrencyLimiter(2), null, ExecutionMode.POOLED,
+                new RetryScheduler(new RetryPolicy(0, 1L, 1L), new CircuitBreaker(0.0, 1L)),
+                null, new ProgressJournal(journalFile.getPath(), false),
+                new AuditLog(auditFile.getPath(), AuditFormat.NDJSON, 1.0, false, 0L, 1), null);
+        new JiraCsvReader().doJiraCSVProcessing(csvFile.getPath(), null, firstRun);
+        firstRun.shutdown();
+
+        final KeyIndexLoader loader =
+                new KeyIndexLoader(CsvRecordParser.DEFAULT_MAX_RECORD_LENGTH);
+        assertEquals(200, loader.load(Arrays.asList(auditFile.getPath())).size());
+        final KeyIndex keyIndex = loader.load(Arrays.asList(journalFile.getPath()));
+        assertEquals(200, keyIndex.size());
+        final long duplicateNrBefore = StatData.getValue(StatTypeKeys.DUPLICATE_ROW_NR);
+        final long submittedNrBefore = StatData.getValue(StatTypeKeys.SUBMITTED_ROW_NR);
+        final CsvLineProcessor secondRun = new CsvLineProcessor(2);
+        new JiraCsvReader(CsvRecordParser.DEFAULT_MAX_RECORD_LENGTH, null, keyIndex)
+                .doJiraCSVProcessing(csvFile.getPath(), null, secondRun);
+        secondRun.shutdown();
+        assertEquals(200L, StatData.getValue(StatTypeKeys.DUPLICATE_ROW_NR) - duplicateNrBefore);
+        assertEquals(0L, StatData.getValue(StatTypeKeys.SUBMITTED_ROW_NR) - submittedNrBefore);
+        csvFile.delete();
+        journalFile.delete();
+        auditFile.delete();
+    }
+
+    private static File writeTempFile(final String content) throws IOException {
+        final File file = File.createTempFile("keys", ".txt");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
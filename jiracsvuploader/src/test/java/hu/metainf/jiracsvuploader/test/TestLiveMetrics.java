@@ -0,0 +1,68 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.metrics.LiveMetrics;
+import hu.metainf.jiracsvuploader.metrics.PrometheusEndpoint;
+import hu.metainf.jiracsvuploader.metrics.ProgressLogger;
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.stat.StatData;
+
+public class TestLiveMetrics {
+    @Test
+    public void testEstimateRemaining() {
+        assertEquals(-1L, ProgressLogger.estimateRemainingMillis(1000L, 0L, 0L, 0L, 0L));
+        assertEquals(3000L, ProgressLogger.estimateRemainingMillis(1000L, 25L, 100L, 10L, 10L));
+        assertEquals(1000L, ProgressLogger.estimateRemainingMillis(1000L, 100L, 100L, 50L, 100L));
+        assertEquals(0L, ProgressLogger.estimateRemainingMillis(1000L, 100L, 100L, 10L, 10L));
+    }
+
+    @Test
+    public void testPublishing() throws IOException, JMException, InterruptedException {
+        StatData.addSumValue("test.live.nr", 3L);
+        StatData.getHistogram("test.live.time").record(2_000_000L);
+        final CsvLineProcessor csvRecordProcessor = new CsvLineProcessor(1);
+        final LiveMetrics liveMetrics = new LiveMetrics(csvRecordProcessor, -1, 0L);
+        final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName statDataName = new ObjectName(LiveMetrics.STAT_DATA_OBJECT_NAME);
+        try {
+            assertEquals(3L, mbeanServer.getAttribute(statDataName, "test.live.nr"));
+            assertEquals(1L, mbeanServer.getAttribute(statDataName, "test.live.time.count"));
+            assertEquals(0L, mbeanServer.getAttribute(
+                    new ObjectName(LiveMetrics.PROCESSOR_OBJECT_NAME), "InFlightRecordNr"));
+        } finally {
+            liveMetrics.close();
+        }
+        assertFalse(mbeanServer.isRegistered(statDataName));
+        try (PrometheusEndpoint endpoint = new PrometheusEndpoint(0, csvRecordProcessor)) {
+            final HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:"
+                    + endpoint.getPort() + PrometheusEndpoint.METRICS_PATH).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            final String body;
+            try (InputStream bodyStream = connection.getInputStream()) {
+                body = new String(bodyStream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(body.contains("# TYPE jiracsvuploader_test_live_nr_total counter\n"
+                    + "jiracsvuploader_test_live_nr_total 3\n"));
+            assertTrue(body.contains("jiracsvuploader_test_live_time_seconds_count 1\n"));
+            assertTrue(body.contains("jiracsvuploader_executor_active_threads 0\n"));
+        } finally {
+            csvRecordProcessor.shutdown();
+        }
+    }
+}
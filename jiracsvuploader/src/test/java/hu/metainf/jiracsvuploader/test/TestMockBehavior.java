@@ -0,0 +1,53 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.upload.LatencyDistribution;
+import hu.metainf.jiracsvuploader.upload.MockBehavior;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+
+public class TestMockBehavior {
+    @Test
+    public void testLatencyDistributions() {
+        final LatencyDistribution uniform = LatencyDistribution.parse("uniform:10-20");
+        final LatencyDistribution bimodal = LatencyDistribution.parse("bimodal:1-2,500-600,0.5");
+        int slowNr = 0;
+        for (int i = 0; i < 1000; i++) {
+            final long latency = uniform.nextMillis();
+            assertTrue(latency >= 10 && latency <= 20);
+            final long bimodalLatency = bimodal.nextMillis();
+            assertTrue(bimodalLatency <= 2 || bimodalLatency >= 500);
+            slowNr += bimodalLatency >= 500 ? 1 : 0;
+        }
+        assertTrue(slowNr > 350 && slowNr < 650);
+        assertEquals(40L, LatencyDistribution.parse("lognormal:40,0").nextMillis());
+    }
+
+    @Test
+    public void testErrorsAndThrottling() {
+        final MockBehavior behavior = new MockBehavior(null, "500:1.0", "1000:200");
+        assertEquals(500, behavior.nextStatusCode());
+        final long now = System.currentTimeMillis();
+        int throttledNr = 0;
+        for (long time = now; time < now + 1000; time++) {
+            final UploadResponse response = behavior.getThrottledResponse(time);
+            if (response != null) {
+                assertEquals(429, response.getStatusCode());
+                assertTrue(response.getRetryAfterMillis() <= 200);
+                throttledNr++;
+            }
+        }
+        assertEquals(200, throttledNr);
+        assertNull(new MockBehavior(null, "", null).getThrottledResponse(now));
+        assertEquals(200, new MockBehavior(null, "", null).nextStatusCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSpec() {
+        new MockBehavior("gaussian:10", null, null);
+    }
+}
@@ -0,0 +1,57 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.process.InputFile;
+import hu.metainf.jiracsvuploader.process.JiraCsvReader;
+
+public class TestMultiFileReader {
+    @Test
+    public void testHeadersAndStatsPerFile() throws IOException, InterruptedException {
+        final File plainFile = File.createTempFile("multi", ".csv");
+        final File gzipFile = File.createTempFile("multi", ".csv.gz");
+        final StringBuilder plainContent = new StringBuilder("Summary,Status\n");
+        final StringBuilder gzipContent = new StringBuilder("Status,Priority,Summary\n");
+        for (int i = 0; i < 300; i++) {
+            plainContent.append("Issue ").append(i).append(',')
+                    .append(i % 3 == 0 ? "Open" : "Closed").append('\n');
+            gzipContent.append(i % 2 == 0 ? "Open" : "Closed").append(",High,Issue ").append(i)
+                    .append('\n');
+        }
+        try (OutputStream output = new FileOutputStream(plainFile)) {
+            output.write(plainContent.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        try (OutputStream output = new GZIPOutputStream(new FileOutputStream(gzipFile))) {
+            output.write(gzipContent.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        final CsvLineProcessor processor = new CsvLineProcessor(2);
+        final List<InputFile> inputFiles = new JiraCsvReader().doMultiFileJiraCSVProcessing(
+                Arrays.asList(plainFile.toPath(), gzipFile.toPath()),
+                () -> RecordFilter.compile("Status=~^Open$"), processor, 2);
+        processor.shutdown();
+        assertEquals(2, inputFiles.size());
+        for (final InputFile inputFile : inputFiles) {
+            final long expectedNr = inputFile.getPath().equals(plainFile.toPath()) ? 100 : 150;
+            assertEquals(300, inputFile.getRecordNr());
+            assertEquals(300 - expectedNr, inputFile.getFilteredNr());
+            assertEquals(expectedNr, inputFile.getUploadedNr() + inputFile.getFailedNr());
+            assertEquals(expectedNr, inputFile.getRecordFilter().getPredicates().get(0)
+                    .getMatchNr());
+        }
+        plainFile.delete();
+        gzipFile.delete();
+    }
+}
@@ -0,0 +1,49 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.journal.JournalEntry;
+import hu.metainf.jiracsvuploader.journal.ProgressJournal;
+import hu.metainf.jiracsvuploader.journal.ResumeState;
+import hu.metainf.jiracsvuploader.process.CsvRecord;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+
+public class TestProgressJournal {
+    @Test
+    public void testResumeState() throws IOException {
+        final File file = File.createTempFile("journal", ".txt");
+        file.deleteOnExit();
+        try (ProgressJournal journal = new ProgressJournal(file.getPath(), false)) {
+            final JournalEntry first = journal.recordSubmitted(new CsvRecord(1, null, 10));
+            final JournalEntry second = journal.recordSubmitted(new CsvRecord(2, null, 20));
+            final JournalEntry third = journal.recordSubmitted(new CsvRecord(4, null, 40));
+            journal.recordCompleted(first, new UploadResponse(201, "{\"key\":\"T-1\"}"),
+                    "SRC-1");
+            journal.recordCompleted(third, new UploadResponse(400, null), null);
+            assertEquals(2, second.getRecordNr());
+        }
+        // Torn line of a crash while writing
+        Files.write(file.toPath(), "C 4 4".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        final ResumeState resumeState = ProgressJournal.load(file.getPath());
+        assertEquals(1L, resumeState.getCheckpointRecordNr());
+        assertEquals(10L, resumeState.getCheckpointOffset());
+        assertTrue(resumeState.isCompleted(1));
+        assertFalse(resumeState.isCompleted(2));
+        assertFalse(resumeState.isCompleted(3));
+        assertTrue(resumeState.isCompleted(4));
+        assertNull(ProgressJournal.load(file.getPath() + ".missing"));
+    }
+}
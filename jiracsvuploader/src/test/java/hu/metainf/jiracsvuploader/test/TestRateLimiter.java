@@ -0,0 +1,61 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.limit.ProjectRateLimiter;
+import hu.metainf.jiracsvuploader.limit.TokenBucket;
+
+public class TestRateLimiter {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testTokenBucket() {
+        final long now = System.nanoTime();
+        final TokenBucket bucket = new TokenBucket(10.0, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, bucket.tryAcquire(now));
+        }
+        assertEquals(SECOND / 10, bucket.tryAcquire(now));
+        assertEquals(0L, bucket.tryAcquire(now + SECOND / 10));
+        assertTrue(bucket.tryAcquire(now + SECOND / 10) > 0L);
+        bucket.refund();
+        assertEquals(0L, bucket.tryAcquire(now + SECOND / 10));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, bucket.tryAcquire(now + 10 * SECOND));
+        }
+        assertTrue(bucket.tryAcquire(now + 10 * SECOND) > 0L);
+    }
+
+    @Test
+    public void testThrottledProjectDoesNotBlockOthers() {
+        final long now = System.nanoTime();
+        final ProjectRateLimiter limiter = new ProjectRateLimiter(4.0, "0,DEMO=1");
+        assertEquals(0L, limiter.tryAcquire("DEMO", now));
+        assertTrue(limiter.tryAcquire("DEMO", now) > 0L);
+        assertTrue(limiter.tryAcquire("DEMO", now) > 0L);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, limiter.tryAcquire("OPS", now));
+        }
+        assertTrue(limiter.tryAcquire("OPS", now) > 0L);
+        assertTrue(limiter.tryAcquire("", now) > 0L);
+        assertEquals("DEMO", ProjectRateLimiter.getProjectKey("DEMO-42"));
+        assertEquals("", ProjectRateLimiter.getProjectKey("42"));
+        assertEquals(1, ProjectRateLimiter
+                .findIssueKeyColumn(new String[] {"Summary", "Issue key", "Issue id"}));
+    }
+
+    @Test
+    public void testGlobalCapRefundsProjectToken() {
+        final long now = System.nanoTime();
+        final ProjectRateLimiter limiter = new ProjectRateLimiter(2.0, "DEMO=1");
+        assertEquals(0L, limiter.tryAcquire("OPS", now));
+        assertEquals(0L, limiter.tryAcquire("OPS", now));
+        assertEquals(SECOND / 2, limiter.tryAcquire("DEMO", now));
+        assertEquals(0L, limiter.tryAcquire("DEMO", now + SECOND / 2));
+    }
+}
@@ -0,0 +1,74 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.process.CsvRecord;
+import hu.metainf.jiracsvuploader.process.JiraCsvReader;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+public class TestRecordEncoding {
+    private static final int RECORD_NR = 6000;
+
+    @Test
+    public void testCompactRecordsRoundTrip() throws IOException, InterruptedException {
+        final StringBuilder content = new StringBuilder("Issue key,Status,Label,Summary\n");
+        for (int i = 1; i <= RECORD_NR; i++) {
+            content.append(String.join(",", expectedFields(i))).append('\n');
+        }
+        final File csvFile = File.createTempFile("compact", ".csv");
+        Files.write(csvFile.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        final long heapBytesBefore = StatData.getValue(StatTypeKeys.COMPACT_RECORD_HEAP_BYTE_NR);
+        final long plainBytesBefore =
+                StatData.getValue(StatTypeKeys.COMPACT_RECORD_PLAIN_HEAP_BYTE_NR);
+        final List<CsvRecord> records = new CopyOnWriteArrayList<>();
+        final CsvLineProcessor processor = new CsvLineProcessor(1) {
+            @Override
+            public void add4Task(final CsvRecord csvRecord) {
+                records.add(csvRecord);
+            }
+        };
+        new JiraCsvReader(1024, null, null, true)
+                .doParallelJiraCSVProcessing(csvFile.getPath(), null, processor, 2);
+        processor.shutdown();
+        assertEquals(RECORD_NR, records.size());
+        records.sort(Comparator.comparingLong(CsvRecord::getRecordNr));
+        for (int i = 1; i <= RECORD_NR; i++) {
+            final CsvRecord csvRecord = records.get(i - 1);
+            assertEquals(i, csvRecord.getRecordNr());
+            assertArrayEquals(expectedFields(i), csvRecord.getFields());
+            assertEquals(4, csvRecord.getFieldNr());
+            assertEquals(expectedFields(i)[3], csvRecord.getField(3));
+        }
+        assertTrue(StatData.getValue(StatTypeKeys.COMPACT_RECORD_HEAP_BYTE_NR) - heapBytesBefore
+                < StatData.getValue(StatTypeKeys.COMPACT_RECORD_PLAIN_HEAP_BYTE_NR)
+                        - plainBytesBefore);
+        csvFile.delete();
+    }
+
+    private static String[] expectedFields(final int i) {
+        final String summary;
+        if (i % 3 == 0) {
+            summary = "Ütközés 😀 #" + i;
+        } else if (i % 3 == 1) {
+            summary = "Long summary of an issue which is longer than a value worth a dictionary"
+                    + " code #" + i;
+        } else {
+            summary = "";
+        }
+        return new String[] {"DEMO-" + i, i % 2 == 0 ? "Open" : "Closed", "label-" + i, summary};
+    }
+}
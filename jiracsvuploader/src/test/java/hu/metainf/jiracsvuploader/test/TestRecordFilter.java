@@ -0,0 +1,54 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.filter.FilterPredicate;
+import hu.metainf.jiracsvuploader.filter.RecordFilter;
+
+public class TestRecordFilter {
+    private static final String[] HEADER = {"Issue key", "Status", "Created", "Votes"};
+
+    @Test
+    public void testColumnPredicates() {
+        final RecordFilter filter = RecordFilter.compile(
+                "Status=~Backlog|To Do && (Created>2018-06-01 || Votes>=10) && !Issue key=DEMO-1");
+        filter.bind(HEADER);
+        assertTrue(filter.test(new String[] {"DEMO-2", "To Do", "07/Jun/18 3:13 PM", "0"}));
+        assertTrue(filter.test(new String[] {"DEMO-3", "Backlog", "2018-05-01", "12"}));
+        assertFalse(filter.test(new String[] {"DEMO-4", "Backlog", "2018-05-01", "9.5"}));
+        assertFalse(filter.test(new String[] {"DEMO-1", "Backlog", "2018-07-01", "0"}));
+        assertFalse(filter.test(new String[] {"DEMO-5", "Done", "2018-07-01", "0"}));
+
+        final FilterPredicate status = filter.getPredicates().get(0);
+        assertEquals("Status=~Backlog|To Do", status.getDescription());
+        assertEquals(4, status.getMatchNr());
+        assertEquals(1, status.getRejectNr());
+    }
+
+    @Test
+    public void testRegexFastPaths() {
+        final String[] regexes = {"Backlog", "a|b|To Do", ".*log.*", ".*(?:log|Do).*",
+            "DEMO-\\d+", "Ba.k+log", "x?Back(lo)g", "(?i)back.*", "\\x41bc", "\\u0041bc",
+            "\\0101bc", "\\cAbc", "x*\\x{41}bc"};
+        final String[] values = {"Backlog", "To Do", "b", "Back\nlog", "DEMO-12", "DEMO-",
+            "Backkklog", "Backlog x", "backLOG", "", "Abc", "\u0001bc", "41bc"};
+        for (final String regex : regexes) {
+            final RecordFilter filter = RecordFilter.anyFieldMatching(regex);
+            for (final String value : values) {
+                assertEquals(regex + " on " + value, Pattern.matches(regex, value),
+                        filter.test(new String[] {value}));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownColumn() {
+        RecordFilter.compile("Assignee=nobody").bind(HEADER);
+    }
+}
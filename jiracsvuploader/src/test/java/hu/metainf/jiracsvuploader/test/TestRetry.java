@@ -0,0 +1,113 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.limit.ConcurrencyLimiter;
+import hu.metainf.jiracsvuploader.limit.ProjectRateLimiter;
+import hu.metainf.jiracsvuploader.process.CsvLineProcessor;
+import hu.metainf.jiracsvuploader.process.ExecutionMode;
+import hu.metainf.jiracsvuploader.process.JiraCsvReader;
+import hu.metainf.jiracsvuploader.retry.CircuitBreaker;
+import hu.metainf.jiracsvuploader.retry.RetryPolicy;
+import hu.metainf.jiracsvuploader.retry.RetryScheduler;
+import hu.metainf.jiracsvuploader.stat.StatData;
+import hu.metainf.jiracsvuploader.upload.MockBehavior;
+import hu.metainf.jiracsvuploader.upload.MockJiraUploader;
+import hu.metainf.jiracsvuploader.upload.UploadResponse;
+import hu.metainf.jiracsvuploader.util.StatTypeKeys;
+
+public class TestRetry {
+    @Test
+    public void testRetryPolicy() {
+        final RetryPolicy retryPolicy = new RetryPolicy(2, 100L, 1000L);
+        assertEquals(-1L, retryPolicy.getRetryDelayMillis(0, new UploadResponse(400, null)));
+        assertEquals(-1L, retryPolicy.getRetryDelayMillis(2, new UploadResponse(503, null)));
+        final long delay = retryPolicy.getRetryDelayMillis(1, new UploadResponse(503, null));
+        assertTrue("Unexpected delay " + delay, delay >= 0 && delay <= 200L);
+        assertEquals(5000L,
+                retryPolicy.getRetryDelayMillis(0, new UploadResponse(429, null, 5000L)));
+        assertEquals(-1L, retryPolicy.getRetryDelayMillis(0, new UploadResponse(201, null)));
+    }
+
+    @Test
+    public void testCircuitBreaker() throws InterruptedException {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(0.5, 50L);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+            circuitBreaker.onResult(i % 4 != 0);
+        }
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        assertTrue(circuitBreaker.getRemainingOpenMillis() > 0);
+
+        circuitBreaker.acquirePermission();
+        for (int i = 1; i < 5; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+        }
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.onResult(false);
+        }
+        assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testReleasedTrialPermission() throws InterruptedException {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(0.5, 50L);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+            circuitBreaker.onResult(true);
+        }
+        circuitBreaker.acquirePermission();
+        for (int i = 1; i < 5; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+        }
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        // A trial not dispatched after all is let through to another upload
+        circuitBreaker.releasePermission();
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.onResult(false);
+        }
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.releasePermission();
+        assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test(timeout = 30000L)
+    public void testRateDeferredUploadsAfterOpenCircuit()
+            throws IOException, InterruptedException {
+        final File csvFile = File.createTempFile("deferred", ".csv");
+        final StringBuilder content = new StringBuilder("Issue key,Summary\n");
+        for (int i = 1; i <= 10; i++) {
+            content.append("DEMO-").append(i).append(",Issue ").append(i).append('\n');
+        }
+        Files.write(csvFile.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(0.5, 100L);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+            circuitBreaker.onResult(true);
+        }
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        final long uploadedNrBefore = StatData.getValue(StatTypeKeys.UPLOADED_ROW_NR);
+        // Trial uploads of the half open circuit are deferred by the rate limit of the project
+        final CsvLineProcessor processor = new CsvLineProcessor(4, 0,
+                new MockJiraUploader(new MockBehavior("uniform:0-1", "", null)),
+                new ConcurrencyLimiter(4), new ProjectRateLimiter(0.0, "DEMO=3"),
+                ExecutionMode.POOLED,
+                new RetryScheduler(new RetryPolicy(0, 1L, 1L), circuitBreaker), null, null, null,
+                null);
+        new JiraCsvReader().doJiraCSVProcessing(csvFile.getPath(), null, processor);
+        processor.shutdown();
+        assertEquals(10L, StatData.getValue(StatTypeKeys.UPLOADED_ROW_NR) - uploadedNrBefore);
+        csvFile.delete();
+    }
+}
@@ -0,0 +1,76 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.pipeline.PipelineStage;
+import hu.metainf.jiracsvuploader.pipeline.RingBuffer;
+
+public class TestRingBuffer {
+    @Test
+    public void testCapacityAndClose() throws InterruptedException {
+        final RingBuffer<AtomicLong> ringBuffer = new RingBuffer<>(3, AtomicLong::new);
+        assertEquals(4, ringBuffer.getCapacity());
+        for (int i = 0; i < 4; i++) {
+            final long sequence = ringBuffer.tryClaim();
+            ringBuffer.get(sequence).set(i);
+            ringBuffer.publish(sequence);
+        }
+        assertEquals(-1L, ringBuffer.tryClaim());
+        assertEquals(4, ringBuffer.getOccupancy());
+        ringBuffer.close();
+        for (int i = 0; i < 4; i++) {
+            final long sequence = ringBuffer.take();
+            assertEquals(i, ringBuffer.get(sequence).get());
+            ringBuffer.release(sequence);
+        }
+        assertEquals(-1L, ringBuffer.take());
+    }
+
+    @Test
+    public void testStages() throws InterruptedException {
+        final int producerNr = 3;
+        final int valueNr = 100_000;
+        final RingBuffer<AtomicLong> first = new RingBuffer<>(64, AtomicLong::new);
+        final RingBuffer<AtomicLong> second = new RingBuffer<>(16, AtomicLong::new);
+        final LongAdder sum = new LongAdder();
+        final PipelineStage<AtomicLong> doubling = new PipelineStage<>("double", 2, first,
+                entry -> {
+                    final long sequence = second.claim();
+                    second.get(sequence).set(entry.get() * 2);
+                    second.publish(sequence);
+                }, second::close);
+        final PipelineStage<AtomicLong> summing =
+                new PipelineStage<>("sum", 3, second, entry -> sum.add(entry.get()), () -> { });
+        doubling.start();
+        summing.start();
+        final Thread[] producers = new Thread[producerNr];
+        for (int i = 0; i < producerNr; i++) {
+            producers[i] = new Thread(() -> {
+                for (int value = 1; value <= valueNr; value++) {
+                    try {
+                        final long sequence = first.claim();
+                        first.get(sequence).set(value);
+                        first.publish(sequence);
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            producers[i].start();
+        }
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+        first.close();
+        doubling.awaitTermination();
+        summing.awaitTermination();
+        assertEquals((long) producerNr * valueNr * (valueNr + 1), sum.sum());
+        assertEquals((long) producerNr * valueNr, doubling.getProcessedNr());
+        assertEquals((long) producerNr * valueNr, summing.getProcessedNr());
+    }
+}
@@ -0,0 +1,68 @@
+package hu.metainf.jiracsvuploader.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import hu.metainf.jiracsvuploader.stat.LatencyHistogram;
+import hu.metainf.jiracsvuploader.stat.StatData;
+
+public class TestStatData {
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        final int threadNr = 16;
+        final int updateNr = 10000;
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadNr; i++) {
+            final long threadValue = i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < updateNr; j++) {
+                    StatData.addIncrementedValue("test.concurrent.counter");
+                    StatData.setMinValue("test.concurrent.min", threadValue);
+                    StatData.setMaxValue("test.concurrent.max", threadValue);
+                    StatData.getHistogram("test.concurrent.histogram").record(j);
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threadNr * updateNr, StatData.getValue("test.concurrent.counter"));
+        assertEquals(0L, StatData.getValue("test.concurrent.min"));
+        assertEquals(threadNr - 1, StatData.getValue("test.concurrent.max"));
+        final LatencyHistogram histogram = StatData.getHistogram("test.concurrent.histogram");
+        assertEquals(threadNr * updateNr, histogram.getCount());
+        assertEquals((updateNr - 1) / 2.0, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(1000L, histogram.getMin());
+        assertEquals(1000000L, histogram.getMax());
+        assertWithinError(500000L, histogram.getValueAtPercentile(50.0));
+        assertWithinError(990000L, histogram.getValueAtPercentile(99.0));
+        assertEquals(1000000L, histogram.getValueAtPercentile(100.0));
+
+        final LatencyHistogram other = new LatencyHistogram();
+        other.record(5L);
+        histogram.merge(other);
+        assertEquals(1001L, histogram.getCount());
+        assertEquals(5L, histogram.getMin());
+    }
+
+    private static void assertWithinError(final long expected, final long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / 16);
+    }
+}